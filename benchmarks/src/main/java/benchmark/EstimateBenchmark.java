@@ -0,0 +1,51 @@
+package benchmark;
+
+import model.BaseModel;
+import org.apache.commons.cli.CommandLine;
+import org.openjdk.jmh.annotations.*;
+import structure.Paper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// scores a test paper against all the models of the given type, as AuthorEstimator does without index
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class EstimateBenchmark {
+    @Param({"hpb", "cc", "socc", "sc", "mnb", "lr"})
+    public String modelType;
+    private BaseModel[] models;
+    private Paper[] papers;
+    private int paperIdx;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData();
+        CommandLine cl = data.buildCommandLine();
+        List<BaseModel> modelList = data.buildModels(this.modelType, cl);
+        this.models = modelList.toArray(new BaseModel[modelList.size()]);
+        this.papers = new Paper[data.testLineList.size()];
+        for (int i = 0; i < this.papers.length; i++) {
+            this.papers[i] = new Paper(data.testLineList.get(i));
+        }
+        this.paperIdx = 0;
+    }
+
+    @Benchmark
+    public double estimate() {
+        Paper paper = this.papers[this.paperIdx];
+        this.paperIdx = (this.paperIdx + 1) % this.papers.length;
+        double total = 0.0d;
+        for (BaseModel model : this.models) {
+            double score = model.estimate(paper);
+            if (score != BaseModel.INVALID_VALUE) {
+                total += score;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,52 @@
+package benchmark;
+
+import model.BaseModel;
+import model.LogisticRegressionModel;
+import org.apache.commons.cli.CommandLine;
+import org.openjdk.jmh.annotations.*;
+import structure.Paper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// extracts feature values of a test paper for all the logistic regression models, as LogRegParamEstimator does
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class FeatureBenchmark {
+    private LogisticRegressionModel[] models;
+    private Paper[] papers;
+    private int paperIdx;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData();
+        CommandLine cl = data.buildCommandLine();
+        List<BaseModel> modelList = data.buildModels(LogisticRegressionModel.TYPE, cl);
+        this.models = new LogisticRegressionModel[modelList.size()];
+        for (int i = 0; i < this.models.length; i++) {
+            this.models[i] = (LogisticRegressionModel) modelList.get(i);
+        }
+
+        this.papers = new Paper[data.testLineList.size()];
+        for (int i = 0; i < this.papers.length; i++) {
+            this.papers[i] = new Paper(data.testLineList.get(i));
+        }
+        this.paperIdx = 0;
+    }
+
+    @Benchmark
+    public double extractFeatureValues() {
+        Paper paper = this.papers[this.paperIdx];
+        this.paperIdx = (this.paperIdx + 1) % this.papers.length;
+        double total = 0.0d;
+        for (LogisticRegressionModel model : this.models) {
+            double[] featureValues = LogisticRegressionModel.extractFeatureValues(model, paper);
+            total += featureValues[1] + featureValues[3] + featureValues[5];
+        }
+        return total;
+    }
+}
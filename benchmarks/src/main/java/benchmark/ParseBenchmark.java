@@ -0,0 +1,51 @@
+package benchmark;
+
+import model.BaseModel;
+import org.apache.commons.cli.CommandLine;
+import org.openjdk.jmh.annotations.*;
+import structure.Paper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// parses a paper line and a model line of the given type, lines are taken in turn
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class ParseBenchmark {
+    @Param({"hpb", "cc", "socc", "mnb", "lr"})
+    public String modelType;
+    private CommandLine cl;
+    private String[] paperLines;
+    private String[] modelLines;
+    private int paperIdx;
+    private int modelIdx;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData();
+        this.cl = data.buildCommandLine();
+        this.paperLines = data.trainLineList.toArray(new String[data.trainLineList.size()]);
+        List<String> modelLineList = data.buildModelLines(this.modelType, this.cl);
+        this.modelLines = modelLineList.toArray(new String[modelLineList.size()]);
+        this.paperIdx = 0;
+        this.modelIdx = 0;
+    }
+
+    @Benchmark
+    public Paper parsePaper() {
+        String line = this.paperLines[this.paperIdx];
+        this.paperIdx = (this.paperIdx + 1) % this.paperLines.length;
+        return new Paper(line);
+    }
+
+    @Benchmark
+    public BaseModel parseModel() {
+        String line = this.modelLines[this.modelIdx];
+        this.modelIdx = (this.modelIdx + 1) % this.modelLines.length;
+        return SyntheticData.parseModel(this.modelType, line, this.cl);
+    }
+}
@@ -0,0 +1,236 @@
+package benchmark;
+
+import common.Config;
+import common.MiscUtil;
+import model.*;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import structure.Author;
+import structure.IntIntMap;
+
+import java.util.*;
+
+// synthetic training authors and test papers following distributions of KDD Cup 2016 dataset:
+// # of refs per paper (log-normal), # of papers per author (power law) and popularity of ref papers (Zipf)
+public class SyntheticData {
+    public static final int DEFAULT_AUTHOR_SIZE = 2000;
+    public static final int DEFAULT_TEST_PAPER_SIZE = 1000;
+    private static final int REF_UNIVERSE_SIZE = 1000000;
+    private static final double REF_SIZE_LOG_MEAN = Math.log(12.0d);
+    private static final double REF_SIZE_LOG_STD = 0.9d;
+    private static final int MAX_REF_SIZE = 300;
+    private static final double PAPER_SIZE_EXPONENT = 2.0d;
+    private static final int MAX_PAPER_SIZE = 500;
+    private static final double REF_POPULARITY_EXPONENT = 1.0d;
+    private static final int MAX_COAUTHOR_SIZE = 4;
+    // probability that a ref of a test paper is picked from papers its true author wrote or cited in training
+    private static final double HIT_RATE = 0.3d;
+    private static final String PARAMS = "-5.0,0.5,4.0,0.5,4.0,0.5,2.0";
+    private static final long SEED = 2016L;
+    private final Random rand;
+    private final double[] refCdf;
+    private final int[] paperIdPerm;
+    public final List<Author> authorList;
+    public final List<String> trainLineList;
+    public final List<String> testLineList;
+    public final int trainPaperSize;
+    public final int uniqueRefSize;
+
+    public SyntheticData(int authorSize, int testPaperSize) {
+        this.rand = new Random(SEED);
+        this.refCdf = buildZipfCdf(REF_UNIVERSE_SIZE, REF_POPULARITY_EXPONENT);
+        this.paperIdPerm = buildPermutation(REF_UNIVERSE_SIZE);
+        this.authorList = new ArrayList<>();
+        this.trainLineList = new ArrayList<>();
+        this.testLineList = new ArrayList<>();
+        List<List<String>> ownIdsList = new ArrayList<>();
+        Set<String> uniqueRefSet = new HashSet<>();
+        int paperCount = 0;
+        for (int i = 0; i < authorSize; i++) {
+            String authorId = "a" + String.valueOf(i);
+            int paperSize = samplePaperSize();
+            List<String> lineList = new ArrayList<>();
+            List<String> ownIdList = new ArrayList<>();
+            for (int j = 0; j < paperSize; j++) {
+                // training papers take IDs from the ref universe so that they can be cited by test papers
+                String paperId = "p" + String.valueOf(this.paperIdPerm[paperCount++ % REF_UNIVERSE_SIZE]);
+                Set<String> refIdSet = sampleRefIds(sampleRefSize(), null);
+                uniqueRefSet.addAll(refIdSet);
+                ownIdList.add(paperId);
+                ownIdList.addAll(refIdSet);
+                lineList.add(buildLine(paperId, authorSize, authorId, refIdSet));
+            }
+
+            this.trainLineList.addAll(lineList);
+            this.authorList.add(new Author(authorId, lineList));
+            ownIdsList.add(ownIdList);
+        }
+
+        for (int i = 0; i < testPaperSize; i++) {
+            int authorIdx = this.rand.nextInt(authorSize);
+            String paperId = "t" + String.valueOf(i);
+            Set<String> refIdSet = sampleRefIds(sampleRefSize(), ownIdsList.get(authorIdx));
+            this.testLineList.add(buildLine(paperId, authorSize, "a" + String.valueOf(authorIdx), refIdSet));
+        }
+
+        this.trainPaperSize = paperCount;
+        this.uniqueRefSize = uniqueRefSet.size();
+    }
+
+    public SyntheticData() {
+        this(DEFAULT_AUTHOR_SIZE, DEFAULT_TEST_PAPER_SIZE);
+    }
+
+    private static double[] buildZipfCdf(int size, double exponent) {
+        double[] cdf = new double[size];
+        double sum = 0.0d;
+        for (int i = 0; i < size; i++) {
+            sum += 1.0d / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+
+        for (int i = 0; i < size; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private int[] buildPermutation(int size) {
+        int[] perm = new int[size];
+        for (int i = 0; i < size; i++) {
+            perm[i] = i;
+        }
+
+        for (int i = size - 1; i > 0; i--) {
+            int j = this.rand.nextInt(i + 1);
+            int tmp = perm[i];
+            perm[i] = perm[j];
+            perm[j] = tmp;
+        }
+        return perm;
+    }
+
+    private int sampleRefSize() {
+        double size = Math.exp(REF_SIZE_LOG_MEAN + REF_SIZE_LOG_STD * this.rand.nextGaussian());
+        return (int) Math.max(1L, Math.min(MAX_REF_SIZE, Math.round(size)));
+    }
+
+    private int samplePaperSize() {
+        double size = Math.pow(1.0d - this.rand.nextDouble(), -1.0d / (PAPER_SIZE_EXPONENT - 1.0d));
+        return (int) Math.min(MAX_PAPER_SIZE, Math.floor(size));
+    }
+
+    private String sampleRefId() {
+        int rank = Arrays.binarySearch(this.refCdf, this.rand.nextDouble());
+        return "p" + String.valueOf(rank >= 0 ? rank : Math.min(-rank - 1, REF_UNIVERSE_SIZE - 1));
+    }
+
+    private Set<String> sampleRefIds(int refSize, List<String> ownIdList) {
+        Set<String> refIdSet = new LinkedHashSet<>();
+        for (int i = 0; i < refSize * 2 && refIdSet.size() < refSize; i++) {
+            boolean hit = ownIdList != null && this.rand.nextDouble() < HIT_RATE;
+            refIdSet.add(hit ? ownIdList.get(this.rand.nextInt(ownIdList.size())) : sampleRefId());
+        }
+        return refIdSet;
+    }
+
+    private String buildLine(String paperId, int authorSize, String authorId, Set<String> refIdSet) {
+        StringBuilder sb = new StringBuilder(paperId + Config.FIRST_DELIMITER + "2015" + Config.FIRST_DELIMITER
+                + "v" + String.valueOf(this.rand.nextInt(100)) + Config.FIRST_DELIMITER + authorId);
+        int coauthorSize = this.rand.nextInt(MAX_COAUTHOR_SIZE);
+        for (int i = 0; i < coauthorSize; i++) {
+            sb.append(Config.SECOND_DELIMITER + "a" + String.valueOf(this.rand.nextInt(authorSize)));
+        }
+
+        sb.append(Config.FIRST_DELIMITER);
+        boolean first = true;
+        for (String refId : refIdSet) {
+            if (!first) {
+                sb.append(Config.SECOND_DELIMITER);
+            }
+
+            first = false;
+            sb.append(refId);
+        }
+        return sb.toString();
+    }
+
+    public CommandLine buildCommandLine() {
+        Options options = new Options();
+        HillProvostBestModel.setOptions(options);
+        MultiNaiveBayesModel.setOptions(options);
+        LogisticRegressionModel.setOptions(options);
+        String[] args = {"-trainsize", String.valueOf(this.trainPaperSize),
+                "-topis", String.valueOf(this.trainPaperSize), "-tucs", String.valueOf(this.uniqueRefSize),
+                "-sp", "1.0", "-param", PARAMS};
+        return MiscUtil.setParams("SyntheticData", options, args);
+    }
+
+    private static BaseModel selectModel(String modelType, Author author, CommandLine cl) {
+        if (HillProvostBestModel.checkIfValid(modelType)) {
+            return new HillProvostBestModel(author, cl);
+        } else if (CommonCitationModel.checkIfValid(modelType)) {
+            return new CommonCitationModel(author, cl);
+        } else if (SocialCitationModel.checkIfValid(modelType)) {
+            return new SocialCitationModel(author, cl);
+        } else if (SelfCitationModel.checkIfValid(modelType)) {
+            return new SelfCitationModel(author);
+        } else if (MultiNaiveBayesModel.checkIfValid(modelType)) {
+            return new MultiNaiveBayesModel(author, cl);
+        } else if (LogisticRegressionModel.checkIfValid(modelType)) {
+            return new LogisticRegressionModel(author, cl);
+        }
+        return null;
+    }
+
+    // trains models the same way ModelBuilder does, and returns them in text format
+    public List<String> buildModelLines(String modelType, CommandLine cl) {
+        List<BaseModel> modelList = new ArrayList<>();
+        IntIntMap totalCitationCountMap = new IntIntMap();
+        Map<String, int[]> paperIdsMap = new HashMap<>();
+        for (Author author : this.authorList) {
+            BaseModel model = selectModel(modelType, author, cl);
+            model.train();
+            model.shareCitationCounts(totalCitationCountMap);
+            model.sharePaperIds(paperIdsMap);
+            modelList.add(model);
+        }
+
+        List<String> lineList = new ArrayList<>();
+        for (BaseModel model : modelList) {
+            model.setSocialPaperIds(paperIdsMap);
+            model.setInverseCitationFrequencyWeights(totalCitationCountMap);
+            // ModelBuilder drops social citation models without social citations
+            if (!SocialCitationModel.checkIfValid(modelType) || model.getSocialCitationIdSize() > 0) {
+                lineList.add(model.toString());
+            }
+        }
+        return lineList;
+    }
+
+    // models loaded from text as AuthorEstimator does, so that they are ready to score
+    public List<BaseModel> buildModels(String modelType, CommandLine cl) {
+        List<BaseModel> modelList = new ArrayList<>();
+        for (String line : buildModelLines(modelType, cl)) {
+            modelList.add(parseModel(modelType, line, cl));
+        }
+        return modelList;
+    }
+
+    public static BaseModel parseModel(String modelType, String line, CommandLine cl) {
+        if (HillProvostBestModel.checkIfValid(modelType)) {
+            return new HillProvostBestModel(line);
+        } else if (CommonCitationModel.checkIfValid(modelType)) {
+            return new CommonCitationModel(line);
+        } else if (SocialCitationModel.checkIfValid(modelType)) {
+            return new SocialCitationModel(line);
+        } else if (SelfCitationModel.checkIfValid(modelType)) {
+            return new SelfCitationModel(line);
+        } else if (MultiNaiveBayesModel.checkIfValid(modelType)) {
+            return new MultiNaiveBayesModel(line, cl);
+        } else if (LogisticRegressionModel.checkIfValid(modelType)) {
+            return new LogisticRegressionModel(line, cl);
+        }
+        return null;
+    }
+}
@@ -40,7 +40,7 @@ public class AuthorDisambiguationHelper {
         List<File> trainFileList = FileUtil.getFileList(trainDirPath);
         try {
             for (File trainFile : trainFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(trainFile));
+                BufferedReader br = FileUtil.getReader(trainFile);
                 String line;
                 while ((line = br.readLine()) != null) {
                     Paper paper = new Paper(line);
@@ -13,6 +13,7 @@ import structure.Result;
 
 import java.io.*;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class CollaborativeResultAnalyzer {
     private static final String TRAIN_DIR_OPTION = "tr";
@@ -42,7 +43,7 @@ public class CollaborativeResultAnalyzer {
         List<File> trainFileList = FileUtil.getFileList(trainDirPath);
         try {
             for (File trainFile : trainFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(trainFile));
+                BufferedReader br = FileUtil.getReader(trainFile);
                 String line;
                 while ((line = br.readLine()) != null) {
                     Paper paper = new Paper(line);
@@ -173,12 +174,12 @@ public class CollaborativeResultAnalyzer {
             int guessablePaperSize = 0;
             int dirSize = inputDirList.size();
             for (int i = 0; i < dirSize; i++) {
-                File inputDir = inputDirList.remove(0);
-                List<File> inputFileList = FileUtil.getFileListR(inputDir.getPath());
-                int fileSize = inputFileList.size();
-                blindPaperSize += fileSize;
-                for (int j = 0; j < fileSize; j++) {
-                    File inputFile = inputFileList.remove(0);
+                File inputDir = inputDirList.get(i);
+                Stream<File> inputFileStream = FileUtil.walkFiles(inputDir.getPath());
+                Iterator<File> iterator = inputFileStream.iterator();
+                while (iterator.hasNext()) {
+                    File inputFile = iterator.next();
+                    blindPaperSize++;
                     Pair<Paper, List<Result>> resultPair = Evaluator.readScoreFile(inputFile, halThr);
                     Paper paper = resultPair.first;
                     List<Result> resultList = resultPair.second;
@@ -195,6 +196,8 @@ public class CollaborativeResultAnalyzer {
                     outputLineList.add(outputLine);
                     guessablePaperSize++;
                 }
+
+                inputFileStream.close();
             }
 
             String header = "Blind Paper Count" + Config.FIRST_DELIMITER + String.valueOf(blindPaperSize)
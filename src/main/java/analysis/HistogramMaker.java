@@ -9,6 +9,7 @@ import structure.Paper;
 
 import java.io.*;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class HistogramMaker {
     private static final String PAPER_FILE_OPTION = "p";
@@ -124,7 +125,7 @@ public class HistogramMaker {
             Map<Integer, Integer> countMap = new TreeMap<>();
             for (String suffix : suffixList) {
                 File file = new File(prefix + suffix);
-                BufferedReader br = new BufferedReader(new FileReader(file));
+                BufferedReader br = FileUtil.getReader(file);
                 String line;
                 while ((line = br.readLine()) != null) {
                     String[] elements = line.split(Config.FIRST_DELIMITER);
@@ -162,8 +163,8 @@ public class HistogramMaker {
             int dirSize = authorDirList.size();
             for (int i = 0; i < dirSize; i++) {
                 System.out.println("\tStage " + String.valueOf(i + 1) + " / " + String.valueOf(dirSize));
-                File authorDir = authorDirList.remove(0);
-                String authorDirName = authorDir.getName();
+                File authorDir = authorDirList.get(i);
+                String authorDirName = FileUtil.getDirName(authorDir);
                 suffixList.add(authorDirName);
                 if (checkIfCompleted(authorDirName, outputTmpDirPath)) {
                     System.out.println("\t" + authorDirName + " has been already completed");
@@ -174,17 +175,17 @@ public class HistogramMaker {
                 int[] authorCounts = MiscUtil.initIntArray(DEFAULT_ARRAY_SIZE, 0);
                 Map<Integer, Integer> exRefAuthorCountMap = new TreeMap<>();
                 Map<Integer, Integer> exAuthorCountMap = new TreeMap<>();
-                List<File> authorFileList = FileUtil.getFileListR(authorDir.getPath());
-                int size = authorFileList.size();
-                for (int j = 0; j < size; j++) {
-                    File authorFile = authorFileList.remove(0);
+                Stream<File> authorFileStream = FileUtil.walkFiles(authorDir.getPath());
+                Iterator<File> iterator = authorFileStream.iterator();
+                while (iterator.hasNext()) {
+                    File authorFile = iterator.next();
                     int totalCount = 0;
                     Set<String> refPaperIdSet = new HashSet<>();
-                    BufferedReader br = new BufferedReader(new FileReader(authorFile));
+                    BufferedReader br = FileUtil.getReader(authorFile);
                     String line;
                     while ((line = br.readLine()) != null) {
                         Paper paper = new Paper(line);
-                        for (String refPaperId : paper.refPaperIds) {
+                        for (String refPaperId : paper.getRefPaperIdStrs()) {
                             refPaperIdSet.add(refPaperId);
                         }
                         totalCount++;
@@ -205,6 +206,7 @@ public class HistogramMaker {
                     }
                 }
 
+                authorFileStream.close();
                 writeHistogramFile(authorCounts, exAuthorCountMap, outputTmpDirPath
                         + TMP_AUTHOR_HISTOGRAM_FILE_PREFIX + authorDirName);
                 writeHistogramFile(refAuthorCounts, exRefAuthorCountMap, outputTmpDirPath
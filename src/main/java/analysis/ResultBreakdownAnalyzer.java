@@ -13,6 +13,7 @@ import structure.Result;
 
 import java.io.*;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class ResultBreakdownAnalyzer {
     private static final String ENTITY_OPTION = "entity";
@@ -215,12 +216,12 @@ public class ResultBreakdownAnalyzer {
             int guessablePaperSize = 0;
             int dirSize = inputDirList.size();
             for (int i = 0; i < dirSize; i++) {
-                File inputDir = inputDirList.remove(0);
-                List<File> inputFileList = FileUtil.getFileListR(inputDir.getPath());
-                int fileSize = inputFileList.size();
-                blindPaperSize += fileSize;
-                for (int j = 0; j < fileSize; j++) {
-                    File inputFile = inputFileList.remove(0);
+                File inputDir = inputDirList.get(i);
+                Stream<File> inputFileStream = FileUtil.walkFiles(inputDir.getPath());
+                Iterator<File> iterator = inputFileStream.iterator();
+                while (iterator.hasNext()) {
+                    File inputFile = iterator.next();
+                    blindPaperSize++;
                     Pair<Paper, List<Result>> resultPair = Evaluator.readScoreFile(inputFile, halThr);
                     Paper paper = resultPair.first;
                     List<Result> resultList = resultPair.second;
@@ -241,6 +242,8 @@ public class ResultBreakdownAnalyzer {
                                 entityCountMap, identifiedEntityCountMap);
                     }
                 }
+
+                inputFileStream.close();
             }
             writeFiles(entityCountMap, identifiedEntityCountMap, blindPaperSize, guessablePaperSize,
                     halThr, topMs, entityType, idFilePath, outputDirPath);
@@ -6,6 +6,7 @@ import common.MathUtil;
 import common.MiscUtil;
 import main.Evaluator;
 import model.LogisticRegressionModel;
+import model.ModelFileReader;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import structure.Pair;
@@ -14,6 +15,7 @@ import structure.Result;
 
 import java.io.*;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class SequentialResultAnalyzer {
     private static final String AFFILS_FILE_OPTION = "a";
@@ -100,14 +102,14 @@ public class SequentialResultAnalyzer {
         List<File> modelFileList = FileUtil.getFileList(modelDirPath);
         try {
             for (File modelFile : modelFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(modelFile));
-                String line;
-                while ((line = br.readLine()) != null) {
-                    LogisticRegressionModel model = new LogisticRegressionModel(line);
+                ModelFileReader reader = new ModelFileReader(modelFile, LogisticRegressionModel.TYPE);
+                while (reader.next()) {
+                    LogisticRegressionModel model = reader.binary ? new LogisticRegressionModel(reader.getInput())
+                            : new LogisticRegressionModel(reader.getLine());
                     modelIndicatorsMap.put(model.authorId, new Integer[]{model.paperIds.length,
                             model.getCitationIdSize(), model.getTotalCitationCount()});
                 }
-                br.close();
+                reader.close();
             }
         } catch (Exception e) {
             System.err.println("Exception @ buildModelIndicatorsMap");
@@ -302,12 +304,12 @@ public class SequentialResultAnalyzer {
             int guessablePaperSize = 0;
             int dirSize = inputDirList.size();
             for (int i = 0; i < dirSize; i++) {
-                File inputDir = inputDirList.remove(0);
-                List<File> inputFileList = FileUtil.getFileListR(inputDir.getPath());
-                int fileSize = inputFileList.size();
-                blindPaperSize += fileSize;
-                for (int j = 0; j < fileSize; j++) {
-                    File inputFile = inputFileList.remove(0);
+                File inputDir = inputDirList.get(i);
+                Stream<File> inputFileStream = FileUtil.walkFiles(inputDir.getPath());
+                Iterator<File> iterator = inputFileStream.iterator();
+                while (iterator.hasNext()) {
+                    File inputFile = iterator.next();
+                    blindPaperSize++;
                     Pair<Paper, List<Result>> resultPair = Evaluator.readScoreFile(inputFile, halThr);
                     Paper paper = resultPair.first;
                     List<Result> resultList = resultPair.second;
@@ -324,6 +326,8 @@ public class SequentialResultAnalyzer {
                     evaluate(resultList, topMs, paper, guessable, sequentialNumberMap, modelIndicatorsMap,
                             entityCountMap, identifiedEntityCountMap, indicatorListMap);
                 }
+
+                inputFileStream.close();
             }
 
             for (int authorSize : entityCountMap.keySet()) {
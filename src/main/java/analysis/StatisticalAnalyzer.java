@@ -10,7 +10,6 @@ import structure.Paper;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.util.*;
 
 public class StatisticalAnalyzer {
@@ -38,7 +37,7 @@ public class StatisticalAnalyzer {
         try {
             Set<String> idSet = new HashSet<>();
             File orgFile = new File(orgFilePath);
-            BufferedReader br = new BufferedReader(new FileReader(orgFile));
+            BufferedReader br = FileUtil.getReader(orgFile);
             String line;
             while ((line = br.readLine()) != null) {
                 String[] elements = line.split(Config.FIRST_DELIMITER);
@@ -59,7 +58,7 @@ public class StatisticalAnalyzer {
         try {
             Set<String> idSet = new HashSet<>();
             File orgFile = new File(orgFilePath);
-            BufferedReader br = new BufferedReader(new FileReader(orgFile));
+            BufferedReader br = FileUtil.getReader(orgFile);
             String line;
             while ((line = br.readLine()) != null) {
                 String[] elements = line.split(Config.FIRST_DELIMITER);
@@ -101,7 +100,7 @@ public class StatisticalAnalyzer {
             for (Paper paper : author.papers) {
                 paperIdSet.add(paper.id);
                 dupRefPaperCount += paper.refPaperIds.length;
-                for (String refPaperId : paper.refPaperIds) {
+                for (String refPaperId : paper.getRefPaperIdStrs()) {
                     refPaperIdSet.add(refPaperId);
                 }
             }
@@ -142,7 +141,7 @@ public class StatisticalAnalyzer {
                     yearPaperCountMap.put(paper.year, yearPaperCountMap.getOrDefault(paper.year, 0) + 1);
                 }
 
-                for (String refPaperId : paper.refPaperIds) {
+                for (String refPaperId : paper.getRefPaperIdStrs()) {
                     refPaperIdSet.add(refPaperId);
                 }
                 refCountMap.put(paper.refPaperIds.length, refCountMap.getOrDefault(paper.refPaperIds.length, 0) + 1);
@@ -171,7 +170,7 @@ public class StatisticalAnalyzer {
         Set<String> overlappedIdSet = new HashSet<>();
         try {
             for (File testFile : testFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(testFile));
+                BufferedReader br = FileUtil.getReader(testFile);
                 String line;
                 while ((line = br.readLine()) != null) {
                     Paper paper = new Paper(line);
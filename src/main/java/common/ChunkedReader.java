@@ -0,0 +1,174 @@
+package common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+// splits a file into chunks at line boundaries and parses lines of each chunk on a worker pool,
+// parsed objects are returned by next() in the same order as the file (ordered mode) or as chunks are done.
+// Lines for which the parser returns null are skipped.
+public class ChunkedReader<T> {
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 2;
+    private final File file;
+    private final Function<String, T> parser;
+    private final boolean ordered;
+    private final long[] boundaries;
+    private final int maxPendingSize;
+    private final ExecutorService executor;
+    private final CompletionService<List<T>> completionService;
+    private final Deque<Future<List<T>>> futureQueue;
+    private int nextChunkIdx;
+    private List<T> currentList;
+    private int currentIdx;
+
+    public ChunkedReader(File file, int threadSize, int chunkSize, Function<String, T> parser, boolean ordered)
+            throws IOException {
+        this.file = file;
+        this.parser = parser;
+        this.ordered = ordered;
+        this.boundaries = findBoundaries(file, chunkSize);
+        // bounds # of chunks read in memory
+        this.maxPendingSize = threadSize * CHUNKS_PER_THREAD;
+        // daemon threads not to keep the JVM alive when a caller fails before close()
+        this.executor = Executors.newFixedThreadPool(threadSize, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.completionService = new ExecutorCompletionService<>(this.executor);
+        this.futureQueue = new ArrayDeque<>();
+        this.nextChunkIdx = 0;
+        this.currentList = null;
+        this.currentIdx = 0;
+        submitChunks();
+    }
+
+    public ChunkedReader(File file, int threadSize, Function<String, T> parser, boolean ordered) throws IOException {
+        this(file, threadSize, DEFAULT_CHUNK_SIZE, parser, ordered);
+    }
+
+    // start offsets of chunks followed by the file size, chunks start right after a line break
+    private static long[] findBoundaries(File file, int chunkSize) throws IOException {
+        List<Long> boundaryList = new ArrayList<>();
+        boundaryList.add(0L);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        long fileSize = raf.length();
+        byte[] buffer = new byte[8192];
+        long position = chunkSize;
+        while (position < fileSize) {
+            raf.seek(position - 1);
+            long boundary = -1L;
+            int readSize;
+            long bufferStart = position - 1;
+            while (boundary < 0L && (readSize = raf.read(buffer)) > 0) {
+                for (int i = 0; i < readSize; i++) {
+                    if (buffer[i] == '\n') {
+                        boundary = bufferStart + i + 1;
+                        break;
+                    }
+                }
+                bufferStart += readSize;
+            }
+
+            if (boundary < 0L || boundary >= fileSize) {
+                break;
+            }
+
+            boundaryList.add(boundary);
+            position = boundary + chunkSize;
+        }
+
+        raf.close();
+        boundaryList.add(fileSize);
+        long[] boundaries = new long[boundaryList.size()];
+        for (int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = boundaryList.get(i);
+        }
+        return boundaries;
+    }
+
+    private List<T> parseChunk(int chunkIdx) throws IOException {
+        long start = this.boundaries[chunkIdx];
+        int size = (int) (this.boundaries[chunkIdx + 1] - start);
+        byte[] bytes = new byte[size];
+        RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+        FileChannel channel = raf.getChannel();
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+        while (byteBuffer.hasRemaining()) {
+            if (channel.read(byteBuffer, start + byteBuffer.position()) < 0) {
+                break;
+            }
+        }
+
+        raf.close();
+        List<T> list = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < size) {
+            int lineEnd = lineStart;
+            while (lineEnd < size && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+
+            int nextLineStart = lineEnd + 1;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+
+            T t = this.parser.apply(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+            if (t != null) {
+                list.add(t);
+            }
+            lineStart = nextLineStart;
+        }
+        return list;
+    }
+
+    private void submitChunks() {
+        int totalChunkSize = this.boundaries.length - 1;
+        while (this.nextChunkIdx < totalChunkSize && this.futureQueue.size() < this.maxPendingSize) {
+            int chunkIdx = this.nextChunkIdx++;
+            Callable<List<T>> task = () -> parseChunk(chunkIdx);
+            // completion queue is used only in unordered mode, otherwise it would keep all the parsed chunks
+            this.futureQueue.add(this.ordered ? this.executor.submit(task) : this.completionService.submit(task));
+        }
+    }
+
+    private List<T> takeChunk() throws IOException, InterruptedException {
+        Future<List<T>> future = this.ordered ? this.futureQueue.peekFirst() : this.completionService.take();
+        try {
+            List<T> list = future.get();
+            this.futureQueue.remove(future);
+            return list;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // returns null at the end of the file
+    public T next() throws IOException, InterruptedException {
+        while (this.currentList == null || this.currentIdx >= this.currentList.size()) {
+            if (this.futureQueue.isEmpty()) {
+                return null;
+            }
+
+            this.currentList = takeChunk();
+            this.currentIdx = 0;
+            submitChunks();
+        }
+        return this.currentList.get(this.currentIdx++);
+    }
+
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
@@ -7,6 +7,22 @@ public class Config {
     public static final String KEY_VALUE_DELIMITER = ":";
     public static final String OPTION_DELIMITER = ",";
     public static final String NULL = "Null";
+    public static final int MODEL_FILE_MAGIC_NUMBER = 0x47424D46;
+    public static final int MODEL_FILE_VERSION = 1;
+    public static final int FEATURE_STORE_MAGIC_NUMBER = 0x47424653;
+    public static final int FEATURE_STORE_VERSION = 2;
+    public static final int PAPER_STORE_MAGIC_NUMBER = 0x47425053;
+    public static final int PAPER_STORE_VERSION = 2;
+    public static final int CITATION_COUNT_FILE_MAGIC_NUMBER = 0x47424343;
+    public static final int CITATION_COUNT_FILE_VERSION = 1;
+    public static final int PROGRESS_FILE_MAGIC_NUMBER = 0x47425052;
+    public static final int PROGRESS_FILE_VERSION = 1;
+    public static final int PROGRESS_JOURNAL_MAGIC_NUMBER = 0x4742504A;
+    public static final int PROGRESS_JOURNAL_VERSION = 2;
+    public static final int SEGMENT_FILE_MAGIC_NUMBER = 0x47425347;
+    public static final int SEGMENT_FILE_VERSION = 1;
+    public static final String SEGMENT_FILE_EXTENSION = ".seg";
+    public static final String SEGMENT_OPTION = "seg";
     public static final String INPUT_DIR_OPTION = "i";
     public static final String INPUT_FILE_OPTION = "i";
     public static final String OUTPUT_DIR_OPTION = "o";
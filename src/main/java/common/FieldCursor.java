@@ -0,0 +1,191 @@
+package common;
+
+import java.util.NoSuchElementException;
+
+// cursor over fields separated by a delimiter in a range of a line, used instead of String.split not to allocate
+// arrays and substrings for each field. A cursor can be reset to the current field of another cursor
+// to read nested fields, e.g. "id:count" pairs separated by "#" in a tab-separated line.
+// As with String.split, an empty range has a single empty field, but trailing empty fields are not dropped.
+public class FieldCursor {
+    private static final int MAX_INT_DIGIT_SIZE = 9;
+    // max mantissa and power of ten represented exactly in double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private final char delimiter;
+    private String line;
+    private int from, to;
+    private int position;
+    private int start, end;
+
+    public FieldCursor(String delimiter) {
+        this.delimiter = delimiter.charAt(0);
+    }
+
+    private FieldCursor reset(String line, int from, int to) {
+        this.line = line;
+        this.from = from;
+        this.to = to;
+        this.position = from;
+        this.start = -1;
+        this.end = -1;
+        return this;
+    }
+
+    public FieldCursor reset(String line) {
+        return reset(line, 0, line.length());
+    }
+
+    // range of the cursor becomes the current field of the parent cursor
+    public FieldCursor reset(FieldCursor parent) {
+        parent.checkField();
+        return reset(parent.line, parent.start, parent.end);
+    }
+
+    public boolean next() {
+        if (this.position > this.to) {
+            this.start = -1;
+            return false;
+        }
+
+        int idx = this.line.indexOf(this.delimiter, this.position);
+        this.start = this.position;
+        this.end = idx >= 0 && idx < this.to ? idx : this.to;
+        this.position = this.end + 1;
+        return true;
+    }
+
+    // moves to the field of the index in the range
+    public boolean seek(int fieldIdx) {
+        this.position = this.from;
+        for (int i = 0; i < fieldIdx; i++) {
+            if (!next()) {
+                return false;
+            }
+        }
+        return next();
+    }
+
+    public int countFields() {
+        int count = 1;
+        for (int i = this.from; i < this.to; i++) {
+            if (this.line.charAt(i) == this.delimiter) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void checkField() {
+        if (this.start < 0) {
+            throw new NoSuchElementException("No field in " + this.line.substring(this.from, this.to));
+        }
+    }
+
+    public int length() {
+        checkField();
+        return this.end - this.start;
+    }
+
+    public boolean equalsTo(String str) {
+        checkField();
+        return str.length() == this.end - this.start && this.line.regionMatches(this.start, str, 0, str.length());
+    }
+
+    public String getString() {
+        checkField();
+        return this.line.substring(this.start, this.end);
+    }
+
+    public int parseInt() {
+        checkField();
+        int idx = this.start;
+        boolean negative = idx < this.end && this.line.charAt(idx) == '-';
+        if (negative || idx < this.end && this.line.charAt(idx) == '+') {
+            idx++;
+        }
+
+        int digitSize = this.end - idx;
+        if (digitSize == 0 || digitSize > MAX_INT_DIGIT_SIZE) {
+            // Integer.parseInt handles the rest including errors
+            return Integer.parseInt(getString());
+        }
+
+        int value = 0;
+        for (; idx < this.end; idx++) {
+            int digit = this.line.charAt(idx) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(getString());
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    // exact for decimals whose digits fit in the mantissa of double, others are parsed by Double.parseDouble
+    public double parseDouble() {
+        checkField();
+        int idx = this.start;
+        boolean negative = idx < this.end && this.line.charAt(idx) == '-';
+        if (negative || idx < this.end && this.line.charAt(idx) == '+') {
+            idx++;
+        }
+
+        long mantissa = 0L;
+        int exponent = 0;
+        int digitSize = 0;
+        boolean afterPoint = false;
+        for (; idx < this.end; idx++) {
+            char c = this.line.charAt(idx);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10L + (c - '0');
+                if (mantissa > MAX_EXACT_MANTISSA) {
+                    return Double.parseDouble(getString());
+                }
+
+                digitSize++;
+                if (afterPoint) {
+                    exponent--;
+                }
+            } else if (c == '.' && !afterPoint) {
+                afterPoint = true;
+            } else {
+                break;
+            }
+        }
+
+        if (idx < this.end && (this.line.charAt(idx) == 'E' || this.line.charAt(idx) == 'e')) {
+            idx++;
+            boolean negativeExponent = idx < this.end && this.line.charAt(idx) == '-';
+            if (negativeExponent || idx < this.end && this.line.charAt(idx) == '+') {
+                idx++;
+            }
+
+            int exponentStart = idx;
+            int value = 0;
+            for (; idx < this.end && idx - exponentStart < 3; idx++) {
+                int digit = this.line.charAt(idx) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+            }
+
+            if (idx == exponentStart) {
+                return Double.parseDouble(getString());
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (idx < this.end || digitSize == 0 || exponent < -22 || exponent > 22) {
+            return Double.parseDouble(getString());
+        }
+
+        // product or quotient of exact values is correctly rounded
+        double value = exponent >= 0 ? (double) mantissa * EXACT_POWERS_OF_TEN[exponent]
+                : (double) mantissa / EXACT_POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+}
@@ -1,42 +1,145 @@
 package common;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.stream.Stream;
 
+// records of a segment file (dir/suffix.seg) are listed as files dir/suffix.seg/ID and read through getReader,
+// so a segment file stands for its suffix dir
 public class FileUtil {
-    public static List<File> getFileListR(String dirPath) {
-        File[] files = (new File(dirPath)).listFiles();
+    private static final int SEGMENT_READER_CACHE_SIZE = 16;
+    // access order, the first entry is the least recently used one
+    private static final LinkedHashMap<String, SegmentReader> SEGMENT_READER_MAP =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    // index of a segment file is read once and reused until the file changes
+    private static synchronized SegmentReader getSegmentReader(File segmentFile) throws IOException {
+        SegmentReader reader = SEGMENT_READER_MAP.get(segmentFile.getPath());
+        if (reader != null && reader.length == segmentFile.length()) {
+            return reader;
+        }
+
+        if (reader == null && SEGMENT_READER_MAP.size() >= SEGMENT_READER_CACHE_SIZE) {
+            Iterator<SegmentReader> iterator = SEGMENT_READER_MAP.values().iterator();
+            iterator.next();
+            iterator.remove();
+        }
+
+        reader = new SegmentReader(segmentFile);
+        SEGMENT_READER_MAP.put(segmentFile.getPath(), reader);
+        return reader;
+    }
+
+    private static List<File> getRecordFileList(File segmentFile) {
         List<File> fileList = new ArrayList<>();
-        for (File file : files) {
-            if (file.isDirectory()) {
-                fileList.addAll(getFileListR(file.getPath()));
-            } else {
-                fileList.add(file);
+        try {
+            for (String id : getSegmentReader(segmentFile).getIdList()) {
+                fileList.add(new File(segmentFile, id));
             }
+        } catch (Exception e) {
+            System.err.println("Exception @ getRecordFileList");
+            e.printStackTrace();
         }
         return fileList;
     }
 
-    public static List<File> getFileList(String dirPath) {
-        File[] files = (new File(dirPath)).listFiles();
-        List<File> fileList = new ArrayList<>();
-        for (File file : files) {
-            if (file.isFile()) {
-                fileList.add(file);
+    // reader of a file or a record of a segment file
+    public static BufferedReader getReader(File file) throws IOException {
+        File parentFile = file.getParentFile();
+        if (parentFile != null && SegmentReader.checkIfSegment(parentFile)) {
+            byte[] bytes = getSegmentReader(parentFile).readBytes(file.getName());
+            if (bytes == null) {
+                throw new FileNotFoundException(file.getPath());
             }
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes),
+                    StandardCharsets.UTF_8));
+        }
+        return new BufferedReader(new FileReader(file));
+    }
+
+    // name of a dir, or of the suffix dir a segment file stands for
+    public static String getDirName(File dir) {
+        String dirName = dir.getName();
+        return dirName.endsWith(Config.SEGMENT_FILE_EXTENSION) ?
+                dirName.substring(0, dirName.length() - Config.SEGMENT_FILE_EXTENSION.length()) : dirName;
+    }
+
+    // lazily walks files under the dir (or records of the segment file) in depth-first order, records of
+    // segment files are walked as files (see getReader). The stream holds open dirs until it is closed,
+    // and it can be consumed in parallel
+    public static Stream<File> walkFiles(String dirPath) throws IOException {
+        File dir = new File(dirPath);
+        if (SegmentReader.checkIfSegment(dir)) {
+            return getRecordFileList(dir).stream();
+        }
+
+        return Files.find(dir.toPath(), Integer.MAX_VALUE, (path, attrs) -> !attrs.isDirectory(),
+                FileVisitOption.FOLLOW_LINKS).map(Path::toFile)
+                .flatMap(file -> SegmentReader.checkIfSegment(file) ? getRecordFileList(file).stream()
+                        : Stream.of(file));
+    }
+
+    // lazily lists files directly under the dir (or records of the segment file)
+    public static Stream<File> listFiles(String dirPath) throws IOException {
+        File dir = new File(dirPath);
+        if (SegmentReader.checkIfSegment(dir)) {
+            return getRecordFileList(dir).stream();
         }
+
+        return Files.list(dir.toPath()).map(Path::toFile)
+                .filter(file -> file.isFile() && !SegmentReader.checkIfSegment(file));
+    }
+
+    // lazily lists dirs (and segment files) directly under the dir
+    public static Stream<File> listDirs(String dirPath) throws IOException {
+        return Files.list(new File(dirPath).toPath()).map(Path::toFile)
+                .filter(file -> file.isDirectory() || SegmentReader.checkIfSegment(file));
+    }
+
+    private static List<File> collect(Stream<File> stream) {
+        List<File> fileList = new ArrayList<>();
+        Iterator<File> iterator = stream.iterator();
+        while (iterator.hasNext()) {
+            fileList.add(iterator.next());
+        }
+
+        stream.close();
         return fileList;
     }
 
+    public static List<File> getFileListR(String dirPath) {
+        try {
+            return collect(walkFiles(dirPath));
+        } catch (Exception e) {
+            System.err.println("Exception @ getFileListR");
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    public static List<File> getFileList(String dirPath) {
+        try {
+            return collect(listFiles(dirPath));
+        } catch (Exception e) {
+            System.err.println("Exception @ getFileList");
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
     public static List<File> getDirList(String dirPath) {
-        File[] files = (new File(dirPath)).listFiles();
-        List<File> dirList = new ArrayList<>();
-        for (File file : files) {
-            if (file.isDirectory()) {
-                dirList.add(file);
-            }
+        try {
+            return collect(listDirs(dirPath));
+        } catch (Exception e) {
+            System.err.println("Exception @ getDirList");
+            e.printStackTrace();
         }
-        return dirList;
+        return new ArrayList<>();
     }
 
     public static List<File> getFileList(List<File> dirList) {
@@ -50,7 +153,7 @@ public class FileUtil {
     public static List<String> readFile(File file) {
         List<String> lineList = new ArrayList<>();
         try {
-            BufferedReader br = new BufferedReader(new FileReader(file));
+            BufferedReader br = getReader(file);
             String line;
             while ((line = br.readLine()) != null) {
                 lineList.add(line);
@@ -95,6 +198,32 @@ public class FileUtil {
         makeDirIfNotExist(parentDirPath);
     }
 
+    // replaces the file with the complete tmp file in one step, so an incomplete file is never left at the path
+    public static void replaceFile(File tmpFile, String filePath) throws IOException {
+        Files.move(tmpFile.toPath(), new File(filePath).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // 64-bit FNV-1a hash of the text, names, lengths and modified times of files in the dirs,
+    // records of a segment file are stamped with the length and modified time of the segment file
+    public static long calcFingerprint(String text, String... dirPaths) {
+        StringBuilder sb = new StringBuilder(text);
+        for (String dirPath : dirPaths) {
+            sb.append(Config.FIRST_DELIMITER);
+            for (File file : getFileList(dirPath)) {
+                File stampFile = file.isFile() ? file : file.getParentFile();
+                sb.append(file.getName() + Config.SECOND_DELIMITER + String.valueOf(stampFile.length())
+                        + Config.SECOND_DELIMITER + String.valueOf(stampFile.lastModified()) + Config.SECOND_DELIMITER);
+            }
+        }
+
+        long fingerprint = 0xcbf29ce484222325L;
+        for (int i = 0; i < sb.length(); i++) {
+            fingerprint = (fingerprint ^ sb.charAt(i)) * 0x100000001b3L;
+        }
+        return fingerprint;
+    }
+
     public static boolean overwriteFile(List<String> lineList, boolean first, String filePath) {
         makeParentDir(filePath);
         File file = new File(filePath);
@@ -155,103 +284,21 @@ public class FileUtil {
         map.clear();
     }
 
-    public static void distributeFiles(Map<String, List<String>> map,
-                                       Set<String> fileNameSet, String tmpFilePrefix, String outputDirPath) {
+    // writes each value list as a record of the segment file named by the key suffix
+    public static void distributeRecords(Map<String, List<String>> map, WriterPool writerPool, int suffixSize,
+                                         String outputDirPath) {
         try {
-            for (String initial : map.keySet()) {
-                File outputFile = new File(outputDirPath + "/" + tmpFilePrefix + initial);
-                makeParentDir(outputFile.getPath());
-                String outputFileName = outputFile.getName();
-                BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile, fileNameSet.contains(outputFileName)));
-                List<String> valueList = map.get(initial);
-                for (String value : valueList) {
-                    bw.write(value);
-                    bw.newLine();
-                }
-
-                bw.close();
-                fileNameSet.add(outputFileName);
+            for (String key : map.keySet()) {
+                writerPool.writeRecord(outputDirPath + "/" + key.substring(key.length() - suffixSize) + "/" + key,
+                        map.get(key));
             }
         } catch (Exception e) {
-            System.err.println("Exception @ distributeFiles");
+            System.err.println("Exception @ distributeRecords");
             e.printStackTrace();
         }
         map.clear();
     }
 
-    public static Set<String> splitFile(String inputFilePath, int prefixLength,
-                                            int bufferSize, String tmpFilePrefix, String outputDirPath) {
-        Set<String> prefixSet = new HashSet<>();
-        try {
-            makeDirIfNotExist(outputDirPath);
-            File inputFile = new File(inputFilePath);
-            Map<String, List<String>> bufferMap = new HashMap<>();
-            BufferedReader br = new BufferedReader(new FileReader(inputFile));
-            Set<String> fileNameSet = new HashSet<>();
-            int count = 0;
-            String line;
-            while ((line = br.readLine()) != null) {
-                String prefix = line.substring(0, prefixLength);
-                prefixSet.add(prefix);
-                if (!bufferMap.containsKey(prefix)) {
-                    bufferMap.put(prefix, new ArrayList<>());
-                }
-
-                bufferMap.get(prefix).add(line);
-                count++;
-                if (count % bufferSize == 0) {
-                    distributeFiles(bufferMap, fileNameSet, tmpFilePrefix, outputDirPath);
-                }
-            }
-
-            br.close();
-            distributeFiles(bufferMap, fileNameSet, tmpFilePrefix, outputDirPath);
-        } catch (Exception e) {
-            System.err.println("Exception @ splitFile");
-            e.printStackTrace();
-        }
-        return prefixSet;
-    }
-
-    public static Set<String> splitFile(String inputFilePath, String delimiter, int keyIdx, int valueIdx,
-                                            int prefixLength, int bufferSize, String tmpFilePrefix, String outputDirPath) {
-        Set<String> prefixSet = new HashSet<>();
-        try {
-            File outputDir = new File (outputDirPath);
-            if (!outputDir.exists()) {
-                outputDir.mkdir();
-            }
-
-            File inputFile = new File(inputFilePath);
-            Map<String, List<String>> bufferMap = new HashMap<>();
-            BufferedReader br = new BufferedReader(new FileReader(inputFile));
-            Set<String> fileNameSet = new HashSet<>();
-            int count = 0;
-            String line;
-            while ((line = br.readLine()) != null) {
-                String prefix = line.substring(0, prefixLength);
-                prefixSet.add(prefix);
-                if (!bufferMap.containsKey(prefix)) {
-                    bufferMap.put(prefix, new ArrayList<>());
-                }
-
-                String[] elements = line.split(delimiter);
-                bufferMap.get(prefix).add(elements[keyIdx] + delimiter + elements[valueIdx]);
-                count++;
-                if (count % bufferSize == 0) {
-                    distributeFiles(bufferMap, fileNameSet, tmpFilePrefix, outputDirPath);
-                }
-            }
-
-            br.close();
-            distributeFiles(bufferMap, fileNameSet, tmpFilePrefix, outputDirPath);
-        } catch (Exception e) {
-            System.err.println("Exception @ splitFile");
-            e.printStackTrace();
-        }
-        return prefixSet;
-    }
-
     public static void writeFile(Map<String, Integer> map, String outputFilePath) {
         try {
             File publisherFile = new File(outputFilePath);
@@ -0,0 +1,233 @@
+package common;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// segment file: records of IDs (i.e., contents of files under a suffix dir) followed by an index footer.
+// record: [ID][byte size][lines in UTF-8], footer: [# of records]([ID][offset of record])*,
+// trailer: [offset of footer][magic number][version].
+// An ID may have more than one record (appended at different times), its lines are concatenated in order.
+// Appending leaves the old footer and trailer in place and writes a new footer and trailer after the new records,
+// and the last trailer whose footer ends right before it is used. Records after it (e.g., appended by a writer
+// that was not closed) are ignored, and the footers between records are skipped.
+// Records can be iterated in order (next) or read by ID (readBytes/readLines), the latter is thread-safe
+public class SegmentReader {
+    static final int TRAILER_SIZE = 16;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+    private final File file;
+    public final long length;
+    final String[] recordIds;
+    final long[] recordOffsets;
+    // first record of each ID in order of appearance and the next record of each record (-1 if the last)
+    private final Map<String, Integer> firstRecordIdxMap;
+    private final int[] nextRecordIdxs;
+    private DataInputStream in;
+    private long inOffset;
+    private int cursor;
+    private String id;
+    private byte[] bytes;
+
+    public SegmentReader(File file) throws IOException {
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            this.length = raf.length();
+            long trailerOffset = findTrailerOffset(raf, this.length);
+            if (trailerOffset < 0L) {
+                throw new IOException("Unsupported segment file " + file.getPath());
+            }
+
+            raf.seek(trailerOffset);
+            raf.seek(raf.readLong());
+            DataInputStream footerIn = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(raf.getFD())));
+            int recordSize = footerIn.readInt();
+            this.recordIds = new String[recordSize];
+            this.recordOffsets = new long[recordSize];
+            for (int i = 0; i < recordSize; i++) {
+                this.recordIds[i] = footerIn.readUTF();
+                this.recordOffsets[i] = footerIn.readLong();
+            }
+        } finally {
+            raf.close();
+        }
+
+        this.firstRecordIdxMap = new LinkedHashMap<>();
+        this.nextRecordIdxs = new int[this.recordIds.length];
+        Map<String, Integer> lastRecordIdxMap = new LinkedHashMap<>();
+        for (int i = 0; i < this.recordIds.length; i++) {
+            this.nextRecordIdxs[i] = -1;
+            Integer lastRecordIdx = lastRecordIdxMap.put(this.recordIds[i], i);
+            if (lastRecordIdx == null) {
+                this.firstRecordIdxMap.put(this.recordIds[i], i);
+            } else {
+                this.nextRecordIdxs[lastRecordIdx] = i;
+            }
+        }
+
+        this.in = null;
+        this.inOffset = 0L;
+        this.cursor = 0;
+    }
+
+    private static void skipFully(DataInput in, long size) throws IOException {
+        while (size > 0L) {
+            int skippedSize = in.skipBytes((int) Math.min(size, Integer.MAX_VALUE));
+            if (skippedSize <= 0) {
+                throw new EOFException();
+            }
+            size -= skippedSize;
+        }
+    }
+
+    // checks if the footer at footerOffset ends right at trailerOffset
+    private static boolean checkIfTrailer(RandomAccessFile raf, long trailerOffset, long footerOffset, int version)
+            throws IOException {
+        if (version <= 0 || version > Config.SEGMENT_FILE_VERSION || footerOffset < 0L
+                || footerOffset > trailerOffset - Integer.BYTES) {
+            return false;
+        }
+
+        raf.seek(footerOffset);
+        DataInputStream footerIn = new DataInputStream(new BufferedInputStream(new FileInputStream(raf.getFD())));
+        try {
+            int recordSize = footerIn.readInt();
+            long position = footerOffset + Integer.BYTES;
+            for (int i = 0; i < recordSize && position < trailerOffset; i++) {
+                int idSize = footerIn.readUnsignedShort();
+                skipFully(footerIn, idSize + Long.BYTES);
+                position += Short.BYTES + idSize + Long.BYTES;
+            }
+            return recordSize >= 0 && position == trailerOffset;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    // returns offset of the last valid trailer, -1 if no valid trailer
+    private static long findTrailerOffset(RandomAccessFile raf, long length) throws IOException {
+        byte[] buffer = new byte[SCAN_BUFFER_SIZE];
+        long end = length;
+        while (end >= TRAILER_SIZE) {
+            long start = Math.max(0L, end - buffer.length);
+            int size = (int) (end - start);
+            raf.seek(start);
+            raf.readFully(buffer, 0, size);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, size);
+            for (int i = size - TRAILER_SIZE; i >= 0; i--) {
+                if (byteBuffer.getInt(i + Long.BYTES) == Config.SEGMENT_FILE_MAGIC_NUMBER
+                        && checkIfTrailer(raf, start + i, byteBuffer.getLong(i),
+                        byteBuffer.getInt(i + Long.BYTES + Integer.BYTES))) {
+                    return start + i;
+                }
+            }
+
+            if (start == 0L) {
+                break;
+            }
+            // trailers across the boundary are in the next chunk
+            end = start + TRAILER_SIZE - 1;
+        }
+        return -1L;
+    }
+
+    public static boolean checkIfSegment(File file) {
+        return file.getName().endsWith(Config.SEGMENT_FILE_EXTENSION) && file.isFile();
+    }
+
+    // IDs in order of their first records
+    public List<String> getIdList() {
+        return new ArrayList<>(this.firstRecordIdxMap.keySet());
+    }
+
+    public int getRecordSize() {
+        return this.recordIds.length;
+    }
+
+    private static byte[] readRecord(DataInput in) throws IOException {
+        in.readUTF();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    // returns concatenated lines (with line separators) of all the records of the ID, null if no record
+    public byte[] readBytes(String id) throws IOException {
+        Integer recordIdx = this.firstRecordIdxMap.get(id);
+        if (recordIdx == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+        try {
+            for (int i = recordIdx; i != -1; i = this.nextRecordIdxs[i]) {
+                raf.seek(this.recordOffsets[i]);
+                bos.write(readRecord(raf));
+            }
+        } finally {
+            raf.close();
+        }
+        return bos.toByteArray();
+    }
+
+    public static List<String> toLineList(byte[] bytes) throws IOException {
+        List<String> lineList = new ArrayList<>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes),
+                StandardCharsets.UTF_8));
+        String line;
+        while ((line = br.readLine()) != null) {
+            lineList.add(line);
+        }
+        br.close();
+        return lineList;
+    }
+
+    public List<String> readLines(String id) throws IOException {
+        byte[] bytes = readBytes(id);
+        return bytes != null ? toLineList(bytes) : null;
+    }
+
+    // moves to the next record in the file
+    public boolean next() throws IOException {
+        if (this.cursor >= this.recordIds.length) {
+            close();
+            return false;
+        }
+
+        if (this.in == null) {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            this.inOffset = 0L;
+        }
+
+        long offset = this.recordOffsets[this.cursor];
+        skipFully(this.in, offset - this.inOffset);
+        int idSize = this.in.readUnsignedShort();
+        skipFully(this.in, idSize);
+        this.id = this.recordIds[this.cursor++];
+        this.bytes = new byte[this.in.readInt()];
+        this.in.readFully(this.bytes);
+        this.inOffset = offset + Short.BYTES + idSize + Integer.BYTES + this.bytes.length;
+        return true;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public List<String> getLineList() throws IOException {
+        return toLineList(this.bytes);
+    }
+
+    public void close() throws IOException {
+        if (this.in != null) {
+            this.in.close();
+            this.in = null;
+        }
+    }
+}
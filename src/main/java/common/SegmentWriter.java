@@ -0,0 +1,115 @@
+package common;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// appends records to a segment file (format in SegmentReader), the index footer is written when closed.
+// When appending to an existing segment file, its footer is read and new records are written after its trailer,
+// so the file keeps a valid index until the new footer is written.
+// A suspended writer only closes its stream and keeps the index in memory to write it once when closed,
+// so it can be reopened any number of times without growing the file with footers
+public class SegmentWriter implements Closeable {
+    private static final byte[] LINE_SEPARATOR_BYTES = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private final File file;
+    private final int bufferSize;
+    private final List<String> recordIdList;
+    private long[] recordOffsets;
+    private DataOutputStream out;
+    private long position;
+    private boolean suspended;
+
+    public SegmentWriter(File file, boolean append, int bufferSize) throws IOException {
+        this.file = file;
+        this.bufferSize = bufferSize;
+        this.recordIdList = new ArrayList<>();
+        this.recordOffsets = new long[16];
+        this.position = 0L;
+        this.suspended = false;
+        if (append && file.isFile() && file.length() > 0L) {
+            SegmentReader reader = new SegmentReader(file);
+            for (int i = 0; i < reader.recordIds.length; i++) {
+                addRecord(reader.recordIds[i], reader.recordOffsets[i]);
+            }
+
+            this.position = file.length();
+        }
+
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append), bufferSize));
+    }
+
+    public void reopen() throws IOException {
+        if (this.out != null) {
+            return;
+        }
+
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, true),
+                this.bufferSize));
+        this.suspended = false;
+    }
+
+    // flushes and closes the stream without writing the footer
+    public void suspend() throws IOException {
+        if (this.out == null) {
+            return;
+        }
+
+        this.out.close();
+        this.out = null;
+        this.suspended = true;
+    }
+
+    private void addRecord(String id, long offset) {
+        int recordSize = this.recordIdList.size();
+        if (recordSize == this.recordOffsets.length) {
+            this.recordOffsets = Arrays.copyOf(this.recordOffsets, recordSize * 2);
+        }
+
+        this.recordIdList.add(id);
+        this.recordOffsets[recordSize] = offset;
+    }
+
+    public void writeRecord(String id, List<String> lineList) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (String line : lineList) {
+            bos.write(line.getBytes(StandardCharsets.UTF_8));
+            bos.write(LINE_SEPARATOR_BYTES);
+        }
+
+        ByteArrayOutputStream recordBos = new ByteArrayOutputStream(bos.size() + id.length() + 8);
+        DataOutputStream recordOut = new DataOutputStream(recordBos);
+        recordOut.writeUTF(id);
+        recordOut.writeInt(bos.size());
+        bos.writeTo(recordOut);
+        addRecord(id, this.position);
+        recordBos.writeTo(this.out);
+        this.position += recordBos.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.out == null) {
+            if (!this.suspended) {
+                return;
+            }
+
+            reopen();
+        }
+
+        int recordSize = this.recordIdList.size();
+        this.out.writeInt(recordSize);
+        for (int i = 0; i < recordSize; i++) {
+            this.out.writeUTF(this.recordIdList.get(i));
+            this.out.writeLong(this.recordOffsets[i]);
+        }
+
+        this.out.writeLong(this.position);
+        this.out.writeInt(Config.SEGMENT_FILE_MAGIC_NUMBER);
+        this.out.writeInt(Config.SEGMENT_FILE_VERSION);
+        this.out.close();
+        this.out = null;
+        this.position = this.file.length();
+    }
+}
@@ -0,0 +1,212 @@
+package common;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// external sort of lines by key (text before the first delimiter) and merge-join of the sorted files
+public class SortUtil {
+    private static final String RUN_FILE_SUFFIX = "-run-";
+    private static final String SORTED_FILE_SUFFIX = "-sorted";
+    private static final int MAX_MERGE_SIZE = 64;
+
+    private static int getKeyEnd(String line) {
+        int idx = line.indexOf(Config.FIRST_DELIMITER);
+        return idx >= 0 ? idx : line.length();
+    }
+
+    public static String getKey(String line) {
+        return line.substring(0, getKeyEnd(line));
+    }
+
+    public static String getValue(String line) {
+        int keyEnd = getKeyEnd(line);
+        return keyEnd < line.length() ? line.substring(keyEnd + 1) : "";
+    }
+
+    public static int compareKeys(String lineA, String lineB) {
+        int keyEndA = getKeyEnd(lineA);
+        int keyEndB = getKeyEnd(lineB);
+        int size = Math.min(keyEndA, keyEndB);
+        for (int i = 0; i < size; i++) {
+            char a = lineA.charAt(i);
+            char b = lineB.charAt(i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return keyEndA - keyEndB;
+    }
+
+    private static File writeRun(List<String> lineList, String filePathPrefix, int runIdx) throws IOException {
+        // stable sort, lines of the same key keep their order in the input file
+        lineList.sort(SortUtil::compareKeys);
+        File runFile = new File(filePathPrefix + RUN_FILE_SUFFIX + String.valueOf(runIdx));
+        BufferedWriter bw = new BufferedWriter(new FileWriter(runFile));
+        for (String line : lineList) {
+            bw.write(line);
+            bw.newLine();
+        }
+
+        bw.close();
+        lineList.clear();
+        return runFile;
+    }
+
+    // k-way merge of sorted runs, lines of the same key are taken from earlier runs first
+    private static void mergeRuns(List<File> runFileList, File outputFile) throws IOException {
+        int runSize = runFileList.size();
+        BufferedReader[] brs = new BufferedReader[runSize];
+        String[] lines = new String[runSize];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(runSize, (i, j) -> {
+            int result = compareKeys(lines[i], lines[j]);
+            return result != 0 ? result : Integer.compare(i, j);
+        });
+
+        for (int i = 0; i < runSize; i++) {
+            brs[i] = new BufferedReader(new FileReader(runFileList.get(i)));
+            lines[i] = brs[i].readLine();
+            if (lines[i] != null) {
+                queue.add(i);
+            }
+        }
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile));
+        while (!queue.isEmpty()) {
+            int runIdx = queue.poll();
+            bw.write(lines[runIdx]);
+            bw.newLine();
+            lines[runIdx] = brs[runIdx].readLine();
+            if (lines[runIdx] != null) {
+                queue.add(runIdx);
+            }
+        }
+
+        bw.close();
+        for (int i = 0; i < runSize; i++) {
+            brs[i].close();
+            runFileList.get(i).delete();
+        }
+    }
+
+    // merges at most MAX_MERGE_SIZE runs at a time so that small buffers don't exhaust file descriptors.
+    // Runs are merged in consecutive groups, so lines of the same key keep their order
+    private static void mergeAllRuns(List<File> runFileList, String filePathPrefix, File outputFile)
+            throws IOException {
+        int passIdx = 0;
+        while (runFileList.size() > MAX_MERGE_SIZE) {
+            List<File> mergedFileList = new ArrayList<>();
+            for (int i = 0; i < runFileList.size(); i += MAX_MERGE_SIZE) {
+                File mergedFile = new File(filePathPrefix + RUN_FILE_SUFFIX + String.valueOf(passIdx) + "-"
+                        + String.valueOf(mergedFileList.size()));
+                mergeRuns(runFileList.subList(i, Math.min(i + MAX_MERGE_SIZE, runFileList.size())), mergedFile);
+                mergedFileList.add(mergedFile);
+            }
+
+            runFileList = mergedFileList;
+            passIdx++;
+        }
+
+        if (runFileList.size() == 1) {
+            FileUtil.replaceFile(runFileList.get(0), outputFile.getPath());
+        } else {
+            mergeRuns(runFileList, outputFile);
+        }
+    }
+
+    // sorts lines of the input file converted by lineFunction (skipped if it returns null) by key,
+    // keeping at most bufferSize lines in memory, and returns the sorted file in the tmp dir.
+    // lineFunction is applied on threadSize threads.
+    public static File sort(File inputFile, Function<String, String> lineFunction, int bufferSize,
+                            int threadSize, String tmpDirPath, String tmpFilePrefix) {
+        FileUtil.makeDirIfNotExist(tmpDirPath);
+        String filePathPrefix = tmpDirPath + "/" + tmpFilePrefix + inputFile.getName();
+        File sortedFile = new File(filePathPrefix + SORTED_FILE_SUFFIX);
+        try {
+            System.out.println("\tStart:\tsorting " + inputFile.getPath());
+            List<File> runFileList = new ArrayList<>();
+            List<String> lineList = new ArrayList<>();
+            ChunkedReader<String> reader = new ChunkedReader<>(inputFile, threadSize, lineFunction, true);
+            String convertedLine;
+            while ((convertedLine = reader.next()) != null) {
+                lineList.add(convertedLine);
+                if (lineList.size() >= bufferSize) {
+                    runFileList.add(writeRun(lineList, filePathPrefix, runFileList.size()));
+                }
+            }
+
+            reader.close();
+            if (lineList.size() > 0 || runFileList.size() == 0) {
+                runFileList.add(writeRun(lineList, filePathPrefix, runFileList.size()));
+            }
+
+            mergeAllRuns(runFileList, filePathPrefix, sortedFile);
+            System.out.println("\tEnd:\tsorting " + inputFile.getPath());
+        } catch (Exception e) {
+            System.err.println("Exception @ sort");
+            e.printStackTrace();
+        }
+        return sortedFile;
+    }
+
+    public static File sort(File inputFile, Function<String, String> lineFunction, int bufferSize,
+                            String tmpDirPath, String tmpFilePrefix) {
+        return sort(inputFile, lineFunction, bufferSize, 1, tmpDirPath, tmpFilePrefix);
+    }
+
+    // reads key-sorted files in parallel and writes a line returned by joinFunction (nothing if null) for each key
+    // in ascending order, joinFunction takes a key and lists of its values in each file
+    public static void mergeJoin(List<File> sortedFileList, BiFunction<String, List<List<String>>, String> joinFunction,
+                                 String outputFilePath) {
+        FileUtil.makeParentDir(outputFilePath);
+        int fileSize = sortedFileList.size();
+        try {
+            BufferedReader[] brs = new BufferedReader[fileSize];
+            String[] lines = new String[fileSize];
+            List<List<String>> valueLists = new ArrayList<>();
+            for (int i = 0; i < fileSize; i++) {
+                brs[i] = new BufferedReader(new FileReader(sortedFileList.get(i)));
+                lines[i] = brs[i].readLine();
+                valueLists.add(new ArrayList<>());
+            }
+
+            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outputFilePath)));
+            while (true) {
+                String minLine = null;
+                for (String line : lines) {
+                    if (line != null && (minLine == null || compareKeys(line, minLine) < 0)) {
+                        minLine = line;
+                    }
+                }
+
+                if (minLine == null) {
+                    break;
+                }
+
+                for (int i = 0; i < fileSize; i++) {
+                    List<String> valueList = valueLists.get(i);
+                    valueList.clear();
+                    while (lines[i] != null && compareKeys(lines[i], minLine) == 0) {
+                        valueList.add(getValue(lines[i]));
+                        lines[i] = brs[i].readLine();
+                    }
+                }
+
+                String outputLine = joinFunction.apply(getKey(minLine), valueLists);
+                if (outputLine != null) {
+                    bw.write(outputLine);
+                    bw.newLine();
+                }
+            }
+
+            bw.close();
+            for (BufferedReader br : brs) {
+                br.close();
+            }
+        } catch (Exception e) {
+            System.err.println("Exception @ mergeJoin");
+            e.printStackTrace();
+        }
+    }
+}
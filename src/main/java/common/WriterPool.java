@@ -0,0 +1,117 @@
+package common;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// LRU-bounded pool of buffered output streams keyed by file path, the least recently used stream is closed
+// when more than maxOpenSize files are open. A file is truncated when it is opened for the first time
+// (unless append is given) and appended to when it is reopened. Segment files are pooled in the same way,
+// but evicted segment writers are only suspended and their footers are written once when the pool is closed
+public class WriterPool {
+    public static final int DEFAULT_MAX_OPEN_SIZE = 512;
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final byte[] LINE_SEPARATOR_BYTES = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    private final int maxOpenSize;
+    private final int bufferSize;
+    private final boolean append;
+    private final LinkedHashMap<String, Closeable> streamMap;
+    private final Map<String, SegmentWriter> closedWriterMap;
+    private final Set<String> openedFilePathSet;
+    private final Set<String> madeDirPathSet;
+
+    public WriterPool(int maxOpenSize, int bufferSize, boolean append) {
+        this.maxOpenSize = maxOpenSize;
+        this.bufferSize = bufferSize;
+        this.append = append;
+        // access order, the first entry is the least recently used one
+        this.streamMap = new LinkedHashMap<>(16, 0.75f, true);
+        this.closedWriterMap = new HashMap<>();
+        this.openedFilePathSet = new HashSet<>();
+        this.madeDirPathSet = new HashSet<>();
+    }
+
+    public WriterPool(int maxOpenSize, int bufferSize) {
+        this(maxOpenSize, bufferSize, false);
+    }
+
+    private Closeable getStream(String filePath, boolean segment) throws IOException {
+        Closeable stream = this.streamMap.get(filePath);
+        if (stream != null) {
+            return stream;
+        }
+
+        if (this.streamMap.size() >= this.maxOpenSize) {
+            Iterator<Map.Entry<String, Closeable>> iterator = this.streamMap.entrySet().iterator();
+            Map.Entry<String, Closeable> eldestEntry = iterator.next();
+            iterator.remove();
+            if (eldestEntry.getValue() instanceof SegmentWriter) {
+                SegmentWriter writer = (SegmentWriter) eldestEntry.getValue();
+                writer.suspend();
+                this.closedWriterMap.put(eldestEntry.getKey(), writer);
+            } else {
+                eldestEntry.getValue().close();
+            }
+        }
+
+        SegmentWriter closedWriter = segment ? this.closedWriterMap.remove(filePath) : null;
+        if (closedWriter != null) {
+            closedWriter.reopen();
+            this.streamMap.put(filePath, closedWriter);
+            return closedWriter;
+        }
+
+        File file = new File(filePath);
+        String parentDirPath = file.getParent();
+        if (parentDirPath != null && this.madeDirPathSet.add(parentDirPath)) {
+            FileUtil.makeDirIfNotExist(parentDirPath);
+        }
+
+        boolean append = this.append || !this.openedFilePathSet.add(filePath);
+        stream = segment ? new SegmentWriter(file, append, this.bufferSize)
+                : new BufferedOutputStream(new FileOutputStream(file, append), this.bufferSize);
+        this.streamMap.put(filePath, stream);
+        return stream;
+    }
+
+    // writes are thread-safe, e.g., for threads writing records of different IDs to a segment file
+    public synchronized void writeLines(String filePath, List<String> lineList) throws IOException {
+        OutputStream os = (OutputStream) getStream(filePath, false);
+        for (String line : lineList) {
+            os.write(line.getBytes(StandardCharsets.UTF_8));
+            os.write(LINE_SEPARATOR_BYTES);
+        }
+    }
+
+    // writes lines of dir/suffix/ID as a record of ID to segment file dir/suffix.seg
+    public synchronized void writeRecord(String filePath, List<String> lineList) throws IOException {
+        File file = new File(filePath);
+        SegmentWriter writer = (SegmentWriter) getStream(file.getParent() + Config.SEGMENT_FILE_EXTENSION, true);
+        writer.writeRecord(file.getName(), lineList);
+    }
+
+    public synchronized void close() throws IOException {
+        IOException exception = null;
+        for (Closeable stream : this.streamMap.values()) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+
+        for (SegmentWriter writer : this.closedWriterMap.values()) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+
+        this.streamMap.clear();
+        this.closedWriterMap.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package kddcup2016;
 
 import common.Config;
-import common.FileUtil;
 import common.MiscUtil;
+import common.SortUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 
@@ -11,6 +11,7 @@ import java.util.*;
 
 public class AffiliationExtractor {
     private static final String AFFILS_FILE_OPTION = "a";
+    private static final String THREAD_SIZE_OPTION = "threads";
     private static final String EXTRA_FILE_PREFIX = "extra-";
     private static final String TMP_FILE_PREFIX = "tmp-";
     private static final int PAPER_ID_INDEX = 0;
@@ -18,13 +19,16 @@ public class AffiliationExtractor {
     private static final int AFFILIATION_ID_INDEX = 2;
     private static final int ID_MIN_LENGTH = 1;
     private static final int AUTHOR_LIST_MIN_SIZE = 1;
-    private static final int PREFIX_LENGTH = 2;
     private static final int BUFFER_SIZE = 5000000;
+    private static final int DEFAULT_THREAD_SIZE = 1;
 
     private static Options getOptions() {
         Options options = new Options();
         MiscUtil.setOption(Config.INPUT_FILE_OPTION, true, true, "[input] input file", options);
         MiscUtil.setOption(AFFILS_FILE_OPTION, true, false, "[input] PaperAuthorAffiliations file", options);
+        MiscUtil.setOption(THREAD_SIZE_OPTION, true, false,
+                "[param, optional] number of threads parsing input files, default = "
+                        + String.valueOf(DEFAULT_THREAD_SIZE), options);
         MiscUtil.setOption(Config.TMP_DIR_OPTION, true, false, "[output, optional] temporary output dir", options);
         MiscUtil.setOption(Config.OUTPUT_DIR_OPTION, true, true, "[output] output directory", options);
         return options;
@@ -49,120 +53,57 @@ public class AffiliationExtractor {
         return validPaperIdSet;
     }
 
-    private static Set<String> readIdListFile(File inputFile, String delimiter, int keyIdx, int valueIdxA,
-                                                  int valueIdxB, int minIdLength, String tmpOutputDirPath) {
-        Set<String> prefixSet = new HashSet<>();
-        try {
-            System.out.println("\tStart:\treading " + inputFile.getPath());
-            BufferedReader br = new BufferedReader(new FileReader(inputFile));
-            int count = 0;
-            Set<String> fileNameSet = new HashSet<>();
-            Map<String, List<String>> bufferMap = new HashMap<>();
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] elements = line.split(delimiter);
-                if (elements[keyIdx].length() >= minIdLength && elements[valueIdxA].length() >= minIdLength
-                        && elements[valueIdxB].length() >= minIdLength) {
-                    String prefix = elements[keyIdx].substring(0, PREFIX_LENGTH);
-                    prefixSet.add(prefix);
-                    if (!bufferMap.containsKey(prefix)) {
-                        bufferMap.put(prefix, new ArrayList<>());
-                    }
-
-                    bufferMap.get(prefix).add(elements[keyIdx] + delimiter + elements[valueIdxA]
-                            + Config.KEY_VALUE_DELIMITER + elements[valueIdxB]);
-                    count++;
-                    if (count % BUFFER_SIZE == 0) {
-                        FileUtil.distributeFiles(bufferMap, fileNameSet, TMP_FILE_PREFIX, tmpOutputDirPath);
-                    }
-                }
-            }
-
-            br.close();
-            FileUtil.distributeFiles(bufferMap, fileNameSet, TMP_FILE_PREFIX, tmpOutputDirPath);
-            System.out.println("\tEnd:\treading " + inputFile.getPath());
-        } catch (Exception e) {
-            System.err.println("Exception @ readIdListFile");
-            e.printStackTrace();
+    // projects a line to key and a pair of values, and skips it if the key is not a valid paper ID
+    // or any of them is shorter than minIdLength
+    private static String projectLine(String line, String delimiter, int keyIdx, int valueIdxA, int valueIdxB,
+                                      int minIdLength, Set<String> validPaperIdSet) {
+        String[] elements = line.split(delimiter);
+        if (elements[keyIdx].length() < minIdLength || elements[valueIdxA].length() < minIdLength
+                || elements[valueIdxB].length() < minIdLength || !validPaperIdSet.contains(elements[keyIdx])) {
+            return null;
         }
-        return prefixSet;
+        return elements[keyIdx] + Config.FIRST_DELIMITER + elements[valueIdxA]
+                + Config.KEY_VALUE_DELIMITER + elements[valueIdxB];
     }
 
-    private static Map<String, List<String>> readDistributedFiles(String inputFilePath, String delimiter,
-                                                                      Set<String> validPaperIdSet) {
-        Map<String, List<String>> map = new HashMap<>();
-        try {
-            System.out.println("\tStart:\treading " + inputFilePath);
-            File inputFile = new File(inputFilePath);
-            BufferedReader br = new BufferedReader(new FileReader(inputFile));
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] elements = line.split(delimiter);
-                if (!validPaperIdSet.contains(elements[0])) {
-                    continue;
-                } else if (!map.containsKey(elements[0])) {
-                    map.put(elements[0], new ArrayList<>());
-                }
-                map.get(elements[0]).add(elements[1]);
-            }
+    private static String join(String key, List<String> valueList, int minValueSize) {
+        if (valueList.size() < minValueSize) {
+            return null;
+        }
 
-            br.close();
-            inputFile.delete();
-            System.out.println("\tEnd:\treading " + inputFilePath);
-        } catch (Exception e) {
-            System.err.println("Exception @ readDistributedFiles");
-            e.printStackTrace();
+        StringBuilder sb = new StringBuilder(key + Config.FIRST_DELIMITER + valueList.get(0));
+        int size = valueList.size();
+        for (int i = 1; i < size; i++) {
+            sb.append(Config.SECOND_DELIMITER + valueList.get(i));
         }
-        return map;
+        return sb.toString();
     }
 
     private static void extractFromIdListFile(String inputFilePath, String delimiter, int keyIdx, int valueIdxA,
                                               int valueIdxB, int minIdLength, int minValueSize,
-                                              Set<String> validPaperIdSet, String tmpDirPath, String outputDirPath) {
+                                              Set<String> validPaperIdSet, int threadSize,
+                                              String tmpDirPath, String outputDirPath) {
         if (inputFilePath == null) {
             return;
         }
 
         System.out.println("Start:\textracting from " + inputFilePath);
-        try {
-            File inputFile = new File(inputFilePath);
-            String tmpOutputDirPath = tmpDirPath != null ? tmpDirPath : inputFile.getParent();
-            Set<String> prefixSet =
-                    readIdListFile(inputFile, delimiter, keyIdx, valueIdxA, valueIdxB, minIdLength, tmpOutputDirPath);
-            File outputFile = new File(outputDirPath + "/" + EXTRA_FILE_PREFIX + inputFile.getName());
-            boolean first = true;
-            for (String prefix : prefixSet) {
-                Map<String, List<String>> distributedMap =
-                        readDistributedFiles(tmpOutputDirPath + "/" + TMP_FILE_PREFIX + prefix, delimiter, validPaperIdSet);
-                BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile, !first));
-                for (String key : distributedMap.keySet()) {
-                    List<String> valueList = distributedMap.get(key);
-                    if (valueList.size() >= minValueSize) {
-                        StringBuilder sb = new StringBuilder(valueList.get(0));
-                        int size = valueList.size();
-                        for (int i = 1; i < size; i++) {
-                            sb.append(Config.SECOND_DELIMITER + valueList.get(i));
-                        }
-
-                        bw.write(key + Config.FIRST_DELIMITER + sb.toString());
-                        bw.newLine();
-                    }
-                }
-
-                bw.close();
-                first = false;
-            }
-        } catch (Exception e) {
-            System.err.println("Exception @ extractFromIdListFile");
-            e.printStackTrace();
-        }
+        File inputFile = new File(inputFilePath);
+        String tmpOutputDirPath = tmpDirPath != null ? tmpDirPath : inputFile.getParent();
+        File sortedFile = SortUtil.sort(inputFile, line -> projectLine(line, delimiter, keyIdx, valueIdxA, valueIdxB,
+                minIdLength, validPaperIdSet), BUFFER_SIZE, threadSize, tmpOutputDirPath, TMP_FILE_PREFIX);
+        SortUtil.mergeJoin(Collections.singletonList(sortedFile),
+                (key, valueLists) -> join(key, valueLists.get(0), minValueSize),
+                outputDirPath + "/" + EXTRA_FILE_PREFIX + inputFile.getName());
+        sortedFile.delete();
         System.out.println("End:\textracting from " + inputFilePath);
     }
 
-    private static void extract(String inputFilePath, String affilsFilePath, String tmpDirPath, String outputDirPath) {
+    private static void extract(String inputFilePath, String affilsFilePath, int threadSize,
+                                String tmpDirPath, String outputDirPath) {
         Set<String> validPaperIdSet = readValidPaperListFile(inputFilePath);
-        extractFromIdListFile(affilsFilePath, Config.FIRST_DELIMITER, PAPER_ID_INDEX, AUTHOR_ID_INDEX,
-                AFFILIATION_ID_INDEX, ID_MIN_LENGTH, AUTHOR_LIST_MIN_SIZE, validPaperIdSet, tmpDirPath, outputDirPath);
+        extractFromIdListFile(affilsFilePath, Config.FIRST_DELIMITER, PAPER_ID_INDEX, AUTHOR_ID_INDEX, AFFILIATION_ID_INDEX,
+                ID_MIN_LENGTH, AUTHOR_LIST_MIN_SIZE, validPaperIdSet, threadSize, tmpDirPath, outputDirPath);
     }
 
     public static void main(String[] args) {
@@ -170,8 +111,10 @@ public class AffiliationExtractor {
         CommandLine cl = MiscUtil.setParams("AffiliationExtractor for KDD Cup 2016 dataset", options, args);
         String inputFilePath = cl.getOptionValue(Config.INPUT_FILE_OPTION);
         String affilsFilePath = cl.getOptionValue(AFFILS_FILE_OPTION);
+        int threadSize = cl.hasOption(THREAD_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(THREAD_SIZE_OPTION)) : DEFAULT_THREAD_SIZE;
         String tmpDirPath = cl.hasOption(Config.TMP_DIR_OPTION) ? cl.getOptionValue(Config.TMP_DIR_OPTION) : null;
         String outputDirPath = cl.getOptionValue(Config.OUTPUT_DIR_OPTION);
-        extract(inputFilePath, affilsFilePath, tmpDirPath, outputDirPath);
+        extract(inputFilePath, affilsFilePath, threadSize, tmpDirPath, outputDirPath);
     }
 }
@@ -1,8 +1,10 @@
 package kddcup2016;
 
+import common.ChunkedReader;
 import common.Config;
 import common.FileUtil;
 import common.MiscUtil;
+import common.SortUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 
@@ -14,6 +16,7 @@ public class MinimumExtractor {
     private static final String AFFILS_FILE_OPTION = "a";
     private static final String REFS_FILE_OPTION = "r";
     private static final String PAPER_KEYWORDS_FILE_OPTION = "k";
+    private static final String THREAD_SIZE_OPTION = "threads";
     private static final String JOURNAL_LIST_FILE_NAME = "journal-paper-count.csv";
     private static final String CONFERENCE_LIST_FILE_NAME = "conference-paper-count.csv";
     private static final String MIN_FILE_PREFIX = "min-";
@@ -30,8 +33,8 @@ public class MinimumExtractor {
     private static final int AUTHOR_LIST_MIN_SIZE = 1;
     private static final int REF_LIST_MIN_SIZE = 1;
     private static final int FIELD_LIST_MIN_SIZE = 1;
-    private static final int PREFIX_LENGTH = 2;
     private static final int BUFFER_SIZE = 5000000;
+    private static final int DEFAULT_THREAD_SIZE = 1;
 
     private static Options getOptions() {
         Options options = new Options();
@@ -39,6 +42,9 @@ public class MinimumExtractor {
         MiscUtil.setOption(AFFILS_FILE_OPTION, true, false, "[input, optional] PaperAuthorAffiliations file", options);
         MiscUtil.setOption(REFS_FILE_OPTION, true, false, "[input, optional] PaperReferences file", options);
         MiscUtil.setOption(PAPER_KEYWORDS_FILE_OPTION, true, false, "[input, optional] PaperKeywords file", options);
+        MiscUtil.setOption(THREAD_SIZE_OPTION, true, false,
+                "[param, optional] number of threads parsing input files, default = "
+                        + String.valueOf(DEFAULT_THREAD_SIZE), options);
         MiscUtil.setOption(Config.OUTPUT_DIR_OPTION, true, true, "[output] output directory", options);
         return options;
     }
@@ -61,7 +67,14 @@ public class MinimumExtractor {
         countMap.put(venueId, countMap.getOrDefault(venueId, 0) + 1);
     }
 
-    private static void extractFromPapersFile(String inputFilePath, String delimiter, String outputDirPath) {
+    // returns elements of a valid paper, and null otherwise
+    private static String[] parsePaper(String line, String delimiter) {
+        String[] elements = line.split(delimiter);
+        return checkIfValidPaper(elements) ? elements : null;
+    }
+
+    private static void extractFromPapersFile(String inputFilePath, String delimiter,
+                                              int threadSize, String outputDirPath) {
         if (inputFilePath == null) {
             return;
         }
@@ -72,27 +85,25 @@ public class MinimumExtractor {
         try {
             Map<String, Integer> jpaperCountMap = new HashMap<>();
             Map<String, Integer> cpaperCountMap = new HashMap<>();
-            BufferedReader br = new BufferedReader(new FileReader(inputFile));
+            // Skip line which misses some information
+            ChunkedReader<String[]> reader =
+                    new ChunkedReader<>(inputFile, threadSize, line -> parsePaper(line, delimiter), true);
             BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile));
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] elements = line.split(delimiter);
-                // Skip line which misses some information
-                if (checkIfValidPaper(elements)) {
-                    String  venueId = elements[JOURNAL_ID_INDEX].length() >= ID_MIN_LENGTH ? elements[JOURNAL_ID_INDEX]
-                            : elements[CONFERENCE_ID_INDEX];
-                    bw.write(elements[PAPER_ID_INDEX] + delimiter
-                            + elements[PUB_DATE_INDEX].substring(0, PUB_DATE_MIN_LENGTH) + delimiter + venueId);
-                    bw.newLine();
-                    if (elements[JOURNAL_ID_INDEX].length() >= ID_MIN_LENGTH) {
-                        updateCountMap(jpaperCountMap, venueId);
-                    } else {
-                        updateCountMap(cpaperCountMap, venueId);
-                    }
+            String[] elements;
+            while ((elements = reader.next()) != null) {
+                String  venueId = elements[JOURNAL_ID_INDEX].length() >= ID_MIN_LENGTH ? elements[JOURNAL_ID_INDEX]
+                        : elements[CONFERENCE_ID_INDEX];
+                bw.write(elements[PAPER_ID_INDEX] + delimiter
+                        + elements[PUB_DATE_INDEX].substring(0, PUB_DATE_MIN_LENGTH) + delimiter + venueId);
+                bw.newLine();
+                if (elements[JOURNAL_ID_INDEX].length() >= ID_MIN_LENGTH) {
+                    updateCountMap(jpaperCountMap, venueId);
+                } else {
+                    updateCountMap(cpaperCountMap, venueId);
                 }
             }
 
-            br.close();
+            reader.close();
             bw.close();
             FileUtil.writeFile(jpaperCountMap, outputDirPath + "/" + JOURNAL_LIST_FILE_NAME);
             FileUtil.writeFile(cpaperCountMap, outputDirPath + "/" + CONFERENCE_LIST_FILE_NAME);
@@ -103,118 +114,54 @@ public class MinimumExtractor {
         System.out.println("End:\textracting from " + inputFilePath);
     }
 
-    private static Set<String> readIdListFile(File inputFile, String delimiter,
-                                                              int keyIdx, int valueIdx, int minIdLength) {
-        Set<String> prefixSet = new HashSet<>();
-        try {
-            System.out.println("\tStart:\treading " + inputFile.getPath());
-            BufferedReader br = new BufferedReader(new FileReader(inputFile));
-            int count = 0;
-            String dirPath = inputFile.getParent();
-            Set<String> fileNameSet = new HashSet<>();
-            Map<String, List<String>> bufferMap = new HashMap<>();
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] elements = line.split(delimiter);
-                if (elements[keyIdx].length() >= minIdLength && elements[valueIdx].length() >= minIdLength) {
-                    String prefix = elements[keyIdx].substring(0, PREFIX_LENGTH);
-                    prefixSet.add(prefix);
-                    if (!bufferMap.containsKey(prefix)) {
-                        bufferMap.put(prefix, new ArrayList<>());
-                    }
-
-                    bufferMap.get(prefix).add(elements[keyIdx] + delimiter + elements[valueIdx]);
-                    count++;
-                    if (count % BUFFER_SIZE == 0) {
-                        FileUtil.distributeFiles(bufferMap, fileNameSet, TMP_FILE_PREFIX, dirPath);
-                    }
-                }
-            }
-
-            br.close();
-            FileUtil.distributeFiles(bufferMap, fileNameSet, TMP_FILE_PREFIX, inputFile.getParent());
-            System.out.println("\tEnd:\treading " + inputFile.getPath());
-        } catch (Exception e) {
-            System.err.println("Exception @ readIdListFile");
-            e.printStackTrace();
+    // projects a line to key and value, and skips it if either is shorter than minIdLength
+    private static String projectLine(String line, String delimiter, int keyIdx, int valueIdx, int minIdLength) {
+        String[] elements = line.split(delimiter);
+        if (elements[keyIdx].length() < minIdLength || elements[valueIdx].length() < minIdLength) {
+            return null;
         }
-        return prefixSet;
+        return elements[keyIdx] + Config.FIRST_DELIMITER + elements[valueIdx];
     }
 
-    private static Map<String, List<String>> readDistributedFiles(String inputFilePath, String delimiter) {
-        Map<String, List<String>> map = new HashMap<>();
-        try {
-            System.out.println("\tStart:\treading " + inputFilePath);
-            File inputFile = new File(inputFilePath);
-            BufferedReader br = new BufferedReader(new FileReader(inputFile));
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] elements = line.split(delimiter);
-                if (!map.containsKey(elements[0])) {
-                    map.put(elements[0], new ArrayList<>());
-                }
-                map.get(elements[0]).add(elements[1]);
-            }
+    private static String join(String key, List<String> valueList, int minValueSize) {
+        if (valueList.size() < minValueSize) {
+            return null;
+        }
 
-            br.close();
-            inputFile.delete();
-            System.out.println("\tEnd:\treading " + inputFilePath);
-        } catch (Exception e) {
-            System.err.println("Exception @ readDistributedFiles");
-            e.printStackTrace();
+        StringBuilder sb = new StringBuilder(key + Config.FIRST_DELIMITER + valueList.get(0));
+        int size = valueList.size();
+        for (int i = 1; i < size; i++) {
+            sb.append(Config.SECOND_DELIMITER + valueList.get(i));
         }
-        return map;
+        return sb.toString();
     }
 
     private static void extractFromIdListFile(String inputFilePath, String delimiter, int keyIdx, int valueIdx,
-                                           int minIdLength, int minValueSize, String outputDirPath) {
+                                           int minIdLength, int minValueSize, int threadSize, String outputDirPath) {
         if (inputFilePath == null) {
             return;
         }
 
         System.out.println("Start:\textracting from " + inputFilePath);
-        try {
-            File inputFile = new File(inputFilePath);
-            Set<String> prefixSet = readIdListFile(inputFile, delimiter, keyIdx, valueIdx, minIdLength);
-            File outputFile = new File(outputDirPath + "/" + MIN_FILE_PREFIX + inputFile.getName());
-            boolean first = true;
-            for (String prefix : prefixSet) {
-                Map<String, List<String>> distributedMap =
-                        readDistributedFiles(inputFile.getParent() + "/" + TMP_FILE_PREFIX + prefix, delimiter);
-                BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile, !first));
-                for (String key : distributedMap.keySet()) {
-                    List<String> valueList = distributedMap.get(key);
-                    if (valueList.size() >= minValueSize) {
-                        StringBuilder sb = new StringBuilder(valueList.get(0));
-                        int size = valueList.size();
-                        for (int i = 1; i < size; i++) {
-                            sb.append(Config.SECOND_DELIMITER + valueList.get(i));
-                        }
-
-                        bw.write(key + Config.FIRST_DELIMITER + sb.toString());
-                        bw.newLine();
-                    }
-                }
-
-                bw.close();
-                first = false;
-            }
-        } catch (Exception e) {
-            System.err.println("Exception @ extractFromIdListFile");
-            e.printStackTrace();
-        }
+        File inputFile = new File(inputFilePath);
+        File sortedFile = SortUtil.sort(inputFile, line -> projectLine(line, delimiter, keyIdx, valueIdx, minIdLength),
+                BUFFER_SIZE, threadSize, inputFile.getParent(), TMP_FILE_PREFIX);
+        SortUtil.mergeJoin(Collections.singletonList(sortedFile),
+                (key, valueLists) -> join(key, valueLists.get(0), minValueSize),
+                outputDirPath + "/" + MIN_FILE_PREFIX + inputFile.getName());
+        sortedFile.delete();
         System.out.println("End:\textracting from " + inputFilePath);
     }
 
-    private static void extract(String papersFilePath, String affilsFilePath,
-                                String refsFilePath, String paperKeysFilePath, String outputDirPath) {
-        extractFromPapersFile(papersFilePath, Config.FIRST_DELIMITER, outputDirPath);
+    private static void extract(String papersFilePath, String affilsFilePath, String refsFilePath,
+                                String paperKeysFilePath, int threadSize, String outputDirPath) {
+        extractFromPapersFile(papersFilePath, Config.FIRST_DELIMITER, threadSize, outputDirPath);
         extractFromIdListFile(affilsFilePath, Config.FIRST_DELIMITER,
-                PAPER_ID_INDEX, AUTHOR_ID_INDEX, ID_MIN_LENGTH, AUTHOR_LIST_MIN_SIZE, outputDirPath);
+                PAPER_ID_INDEX, AUTHOR_ID_INDEX, ID_MIN_LENGTH, AUTHOR_LIST_MIN_SIZE, threadSize, outputDirPath);
         extractFromIdListFile(refsFilePath, Config.FIRST_DELIMITER,
-                PAPER_ID_INDEX, PAPER_REF_ID_INDEX, ID_MIN_LENGTH, REF_LIST_MIN_SIZE, outputDirPath);
+                PAPER_ID_INDEX, PAPER_REF_ID_INDEX, ID_MIN_LENGTH, REF_LIST_MIN_SIZE, threadSize, outputDirPath);
         extractFromIdListFile(paperKeysFilePath, Config.FIRST_DELIMITER,
-                PAPER_ID_INDEX, FIELD_ID_INDEX, ID_MIN_LENGTH, FIELD_LIST_MIN_SIZE, outputDirPath);
+                PAPER_ID_INDEX, FIELD_ID_INDEX, ID_MIN_LENGTH, FIELD_LIST_MIN_SIZE, threadSize, outputDirPath);
     }
 
     public static void main(String[] args) {
@@ -224,7 +171,9 @@ public class MinimumExtractor {
         String affilsFilePath = cl.hasOption(AFFILS_FILE_OPTION) ? cl.getOptionValue(AFFILS_FILE_OPTION) : null;
         String refsFilePath = cl.hasOption(REFS_FILE_OPTION) ? cl.getOptionValue(REFS_FILE_OPTION) : null;
         String paperKeysFilePath = cl.hasOption(PAPER_KEYWORDS_FILE_OPTION) ? cl.getOptionValue(PAPER_KEYWORDS_FILE_OPTION) : null;
+        int threadSize = cl.hasOption(THREAD_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(THREAD_SIZE_OPTION)) : DEFAULT_THREAD_SIZE;
         String outputDirPath = cl.getOptionValue(Config.OUTPUT_DIR_OPTION);
-        extract(papersFilePath, affilsFilePath, refsFilePath, paperKeysFilePath, outputDirPath);
+        extract(papersFilePath, affilsFilePath, refsFilePath, paperKeysFilePath, threadSize, outputDirPath);
     }
 }
@@ -1,8 +1,8 @@
 package kddcup2016;
 
 import common.Config;
-import common.FileUtil;
 import common.MiscUtil;
+import common.SortUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 
@@ -16,7 +16,6 @@ public class MinimumMerger {
     private static final String TMP_PAPERS_FILE_PREFIX = "tmp-p-";
     private static final String TMP_AFFILS_FILE_PREFIX = "tmp-a-";
     private static final String TMP_REFS_FILE_PREFIX = "tmp-r-";
-    private static final int PREFIX_SIZE = 2;
     private static final int BUFFER_SIZE = 5000000;
 
     private static Options getOptions() {
@@ -29,69 +28,23 @@ public class MinimumMerger {
         return options;
     }
 
-    private static File[] getTmpFiles(String tmpDirPath, String prefix) {
-        File tmpFileP = new File(tmpDirPath + "/" + TMP_PAPERS_FILE_PREFIX + prefix);
-        File tmpFileA = new File(tmpDirPath + "/" + TMP_AFFILS_FILE_PREFIX + prefix);
-        File tmpFileR = new File(tmpDirPath + "/" + TMP_REFS_FILE_PREFIX + prefix);
-        File[] tmpFiles = {tmpFileP, tmpFileA, tmpFileR};
-        return tmpFiles;
+    // skips lines with empty key or value
+    private static String filterLine(String line) {
+        int index = line.indexOf(Config.FIRST_DELIMITER);
+        return index > 0 && index < line.length() - 1 ? line : null;
     }
 
-    private static void merge(String tmpDirPath, boolean first, String prefix, String outputFilePath) {
-        try {
-            File[] tmpFiles = getTmpFiles(tmpDirPath, prefix);
-            Map<String, List<String>> mergedMap = new HashMap<>();
-            for (int i = 0; i < tmpFiles.length; i++) {
-                BufferedReader br = new BufferedReader(new FileReader(tmpFiles[i]));
-                String line;
-                while ((line = br.readLine()) != null) {
-                    int index = line.indexOf(Config.FIRST_DELIMITER);
-                    String key = line.substring(0, index);
-                    String value = line.substring(index + 1);
-                    if (key.length() == 0 || value.length() == 0) {
-                        continue;
-                    }
-
-                    if (!mergedMap.containsKey(key)) {
-                        mergedMap.put(key, new ArrayList<>());
-                    }
-                    mergedMap.get(key).add(value);
-                }
-
-                br.close();
-                tmpFiles[i].delete();
-            }
-
-            File outputFile = new File(outputFilePath);
-            BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile, !first));
-            for (String paperId : mergedMap.keySet()) {
-                List<String> valueList = mergedMap.get(paperId);
-                if (valueList.size() != 3) {
-                    continue;
-                }
-
-                StringBuilder sb = new StringBuilder(valueList.get(0));
-                for (int i = 1; i < valueList.size(); i++) {
-                    sb.append(Config.FIRST_DELIMITER + valueList.get(i));
-                }
-
-                bw.write(paperId + Config.FIRST_DELIMITER + sb.toString());
-                bw.newLine();
-            }
-            bw.close();
-        } catch (Exception e) {
-            System.err.println("Exception @ merge");
-            e.printStackTrace();
-        }
-    }
-
-    private static void deleteUnusedFiles(String tmpDirPath, String fileNamePrefix, Set<String> prefixSet) {
-        for (String prefix : prefixSet) {
-            File file = new File(tmpDirPath + "/" + fileNamePrefix + prefix);
-            if (file.exists()) {
-                file.delete();
+    // joins values of a paper ID if the paper appears once in every file
+    private static String join(String paperId, List<List<String>> valueLists) {
+        StringBuilder sb = new StringBuilder(paperId);
+        int valueSize = 0;
+        for (List<String> valueList : valueLists) {
+            for (String value : valueList) {
+                sb.append(Config.FIRST_DELIMITER + value);
+                valueSize++;
             }
         }
+        return valueSize == valueLists.size() ? sb.toString() : null;
     }
 
     private static void merge(String papersFilePath, String affilsFilePath,
@@ -101,23 +54,18 @@ public class MinimumMerger {
             outputTmpDirPath = "./";
         }
 
-        Set<String> prefixSetP = FileUtil.splitFile(papersFilePath,
-                PREFIX_SIZE, BUFFER_SIZE, TMP_PAPERS_FILE_PREFIX, outputTmpDirPath);
-        Set<String> prefixSetA = FileUtil.splitFile(affilsFilePath,
-                PREFIX_SIZE, BUFFER_SIZE, TMP_AFFILS_FILE_PREFIX, outputTmpDirPath);
-        Set<String> prefixSetR = FileUtil.splitFile(refsFilePath,
-                PREFIX_SIZE, BUFFER_SIZE, TMP_REFS_FILE_PREFIX, outputTmpDirPath);
-        boolean first = true;
-        for (String prefix : prefixSetP) {
-            if (prefixSetA.contains(prefix) && prefixSetR.contains(prefix)) {
-                merge(outputTmpDirPath, first, prefix, outputFilePath);
-                first = false;
-            }
+        // sort-merge join on paper ID
+        List<File> sortedFileList = new ArrayList<>();
+        sortedFileList.add(SortUtil.sort(new File(papersFilePath), MinimumMerger::filterLine,
+                BUFFER_SIZE, outputTmpDirPath, TMP_PAPERS_FILE_PREFIX));
+        sortedFileList.add(SortUtil.sort(new File(affilsFilePath), MinimumMerger::filterLine,
+                BUFFER_SIZE, outputTmpDirPath, TMP_AFFILS_FILE_PREFIX));
+        sortedFileList.add(SortUtil.sort(new File(refsFilePath), MinimumMerger::filterLine,
+                BUFFER_SIZE, outputTmpDirPath, TMP_REFS_FILE_PREFIX));
+        SortUtil.mergeJoin(sortedFileList, MinimumMerger::join, outputFilePath);
+        for (File sortedFile : sortedFileList) {
+            sortedFile.delete();
         }
-
-        deleteUnusedFiles(outputTmpDirPath, TMP_PAPERS_FILE_PREFIX, prefixSetP);
-        deleteUnusedFiles(outputTmpDirPath, TMP_AFFILS_FILE_PREFIX, prefixSetA);
-        deleteUnusedFiles(outputTmpDirPath, TMP_REFS_FILE_PREFIX, prefixSetR);
     }
 
     public static void main(String[] args) {
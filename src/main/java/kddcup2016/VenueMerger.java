@@ -1,8 +1,8 @@
 package kddcup2016;
 
 import common.Config;
-import common.FileUtil;
 import common.MiscUtil;
+import common.SortUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 
@@ -17,7 +17,6 @@ public class VenueMerger {
     private static final int PAPER_ID_INDEX = 0;
     private static final int PUBLISHER_ID_INDEX = 1;
     private static final int FIELD_ID_INDEX = 2;
-    private static final int PREFIX_SIZE = 2;
     private static final int BUFFER_SIZE = 5000000;
 
     private static Options getOptions() {
@@ -29,69 +28,26 @@ public class VenueMerger {
         return options;
     }
 
-    private static File[] getTmpFiles(String tmpDirPath, String prefix) {
-        File tmpFileP = new File(tmpDirPath + "/" + TMP_PAPERS_FILE_PREFIX + prefix);
-        File tmpFileK = new File(tmpDirPath + "/" + TMP_PAPER_KEYWORDS_FILE_PREFIX + prefix);
-        File[] tmpFiles = {tmpFileP, tmpFileK};
-        return tmpFiles;
-    }
-
-    private static void merge(String tmpDirPath, boolean first, String prefix, String outputFilePath) {
-        try {
-            File[] tmpFiles = getTmpFiles(tmpDirPath, prefix);
-            Map<String, List<String>> mergedMap = new HashMap<>();
-            for (int i = 0; i < tmpFiles.length; i++) {
-                BufferedReader br = new BufferedReader(new FileReader(tmpFiles[i]));
-                String line;
-                while ((line = br.readLine()) != null) {
-                    int index = line.indexOf(Config.FIRST_DELIMITER);
-                    String key = line.substring(0, index);
-                    String value = line.substring(index + 1);
-                    if (key.length() == 0 || value.length() == 0) {
-                        continue;
-                    }
-
-                    if (!mergedMap.containsKey(key)) {
-                        mergedMap.put(key, new ArrayList<>());
-                    }
-                    mergedMap.get(key).add(value);
-                }
-
-                br.close();
-                tmpFiles[i].delete();
-            }
-
-            FileUtil.makeParentDir(outputFilePath);
-            File outputFile = new File(outputFilePath);
-            BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile, !first));
-            for (String paperId : mergedMap.keySet()) {
-                List<String> valueList = mergedMap.get(paperId);
-                if (valueList.size() != 2) {
-                    continue;
-                }
-
-                StringBuilder sb = new StringBuilder(valueList.get(0));
-                for (int i = 1; i < valueList.size(); i++) {
-                    sb.append(Config.FIRST_DELIMITER + valueList.get(i));
-                }
-
-                bw.write(paperId + Config.FIRST_DELIMITER + sb.toString());
-                bw.newLine();
-            }
-            bw.close();
-        } catch (Exception e) {
-            System.err.println("Exception @ merge");
-            e.printStackTrace();
+    // projects a line to key and value, and skips it if either is empty
+    private static String projectLine(String line, int keyIdx, int valueIdx) {
+        String[] elements = line.split(Config.FIRST_DELIMITER);
+        if (elements[keyIdx].length() == 0 || elements[valueIdx].length() == 0) {
+            return null;
         }
+        return elements[keyIdx] + Config.FIRST_DELIMITER + elements[valueIdx];
     }
 
-    private static void deleteUnusedFiles(String tmpDirPath, String fileNamePrefix, Set<String> prefixSet) {
-        for (String prefix : prefixSet) {
-            File file = new File(tmpDirPath + "/" + fileNamePrefix + prefix);
-            if (file.exists()) {
-                file.delete();
+    // joins values of a paper ID if the paper appears once in every file
+    private static String join(String paperId, List<List<String>> valueLists) {
+        StringBuilder sb = new StringBuilder(paperId);
+        int valueSize = 0;
+        for (List<String> valueList : valueLists) {
+            for (String value : valueList) {
+                sb.append(Config.FIRST_DELIMITER + value);
+                valueSize++;
             }
         }
+        return valueSize == valueLists.size() ? sb.toString() : null;
     }
 
     private static void merge(String papersFilePath, String paperKeysFilePath,
@@ -101,20 +57,18 @@ public class VenueMerger {
             tmpOutputDirPath = "./";
         }
 
-        Set<String> prefixSetP = FileUtil.splitFile(papersFilePath, Config.FIRST_DELIMITER, PAPER_ID_INDEX,
-                FIELD_ID_INDEX, PREFIX_SIZE, BUFFER_SIZE, TMP_PAPERS_FILE_PREFIX, tmpOutputDirPath);
-        Set<String> prefixSetK = FileUtil.splitFile(paperKeysFilePath, Config.FIRST_DELIMITER, PAPER_ID_INDEX,
-                PUBLISHER_ID_INDEX, PREFIX_SIZE, BUFFER_SIZE, TMP_PAPER_KEYWORDS_FILE_PREFIX, tmpOutputDirPath);
-        boolean first = true;
-        for (String prefix : prefixSetP) {
-            if (prefixSetK.contains(prefix)) {
-                merge(tmpOutputDirPath, first, prefix, outputFilePath);
-                first = false;
-            }
+        // sort-merge join on paper ID
+        List<File> sortedFileList = new ArrayList<>();
+        sortedFileList.add(SortUtil.sort(new File(papersFilePath),
+                line -> projectLine(line, PAPER_ID_INDEX, FIELD_ID_INDEX),
+                BUFFER_SIZE, tmpOutputDirPath, TMP_PAPERS_FILE_PREFIX));
+        sortedFileList.add(SortUtil.sort(new File(paperKeysFilePath),
+                line -> projectLine(line, PAPER_ID_INDEX, PUBLISHER_ID_INDEX),
+                BUFFER_SIZE, tmpOutputDirPath, TMP_PAPER_KEYWORDS_FILE_PREFIX));
+        SortUtil.mergeJoin(sortedFileList, VenueMerger::join, outputFilePath);
+        for (File sortedFile : sortedFileList) {
+            sortedFile.delete();
         }
-
-        deleteUnusedFiles(tmpOutputDirPath, TMP_PAPERS_FILE_PREFIX, prefixSetP);
-        deleteUnusedFiles(tmpOutputDirPath, TMP_PAPER_KEYWORDS_FILE_PREFIX, prefixSetK);
     }
 
     public static void main(String[] args) {
@@ -3,16 +3,19 @@ package main;
 import common.Config;
 import common.FileUtil;
 import common.MiscUtil;
+import common.WriterPool;
 import model.*;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
-import structure.Pair;
-import structure.Paper;
+import structure.*;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class AuthorEstimator {
     private static final String MODEL_DIR_OPTION = "model";
@@ -21,9 +24,24 @@ public class AuthorEstimator {
     private static final String MIN_PAPER_SIZE_OPTION = "mps";
     private static final String START_INDEX_OPTION = "sidx";
     private static final String END_INDEX_OPTION = "eidx";
+    private static final String BRUTE_FORCE_OPTION = "bf";
+    private static final String THREAD_SIZE_OPTION = "threads";
+    private static final String TOP_M_OPTION = "topm";
+    private static final String RANKED_FILE_NAME = "ranked";
+    private static final String PAPER_STORE_OPTION = "pstore";
+    private static final String RESUME_OPTION = "resume";
+    private static final String CHECKPOINT_INTERVAL_OPTION = "ckpt";
+    private static final String PROGRESS_FILE_NAME = "progress";
+    private static final String JOURNAL_FILE_NAME = "progress.journal";
+    private static final String TMP_FILE_SUFFIX = ".tmp";
     private static final int DEFAULT_MIN_PAPER_SIZE = 1;
     private static final int SUFFIX_SIZE = 3;
     private static final int DEFAULT_START_INDEX = 0;
+    private static final int DEFAULT_THREAD_SIZE = 1;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 60;
+    private static final int CHUNKS_PER_THREAD = 4;
+    // # of test papers scored at a time through the citation index
+    private static final int BLOCK_SIZE = 64;
     private static final int INVALID_INDEX = -1;
     private static final double ZERO_SCORE = 0.0d;
 
@@ -40,6 +58,27 @@ public class AuthorEstimator {
                         "default = " + String.valueOf(DEFAULT_START_INDEX), options);
         MiscUtil.setOption(END_INDEX_OPTION, true, false,
                 "[param, optional] end index (0 - # of model files), default = # of model files", options);
+        MiscUtil.setOption(BRUTE_FORCE_OPTION, false, false,
+                "[param, optional] score every model for every test paper without inverted citation index", options);
+        MiscUtil.setOption(THREAD_SIZE_OPTION, true, false,
+                "[param, optional] number of threads scoring test papers, default = "
+                        + String.valueOf(DEFAULT_THREAD_SIZE), options);
+        MiscUtil.setOption(TOP_M_OPTION, true, false,
+                "[param, optional] keep only top M authors (and true authors) for each test paper"
+                        + " and write them to one ranked file (" + RANKED_FILE_NAME + ") in output dir", options);
+        MiscUtil.setOption(PAPER_STORE_OPTION, true, false,
+                "[input/output, optional] paper store file of test papers, built from test dir if it doesn't exist",
+                options);
+        MiscUtil.setOption(RESUME_OPTION, false, false,
+                "[param, optional] record completed model files in a progress file (" + PROGRESS_FILE_NAME
+                        + ") in output dir and resume an interrupted run from it", options);
+        MiscUtil.setOption(CHECKPOINT_INTERVAL_OPTION, true, false,
+                "[param, optional] minimum seconds between snapshots of heaps in the progress file with -"
+                        + RESUME_OPTION + " and -" + TOP_M_OPTION + ", default = "
+                        + String.valueOf(DEFAULT_CHECKPOINT_INTERVAL), options);
+        MiscUtil.setOption(Config.SEGMENT_OPTION, false, false,
+                "[param, optional] write each suffix dir of output dir as one segment file (suffix"
+                        + Config.SEGMENT_FILE_EXTENSION + ")", options);
         MiscUtil.setOption(Config.OUTPUT_DIR_OPTION, true, true, "[output] output dir", options);
         return options;
     }
@@ -51,16 +90,46 @@ public class AuthorEstimator {
         LogisticRegressionModel.setOptions(options);
     }
 
-    private static List<Paper> readPaperFiles(String testDirPath) {
-        List<File> testFileList = FileUtil.getFileList(testDirPath);
-        List<Paper> testPaperList = new ArrayList<>();
-        for (File testFile : testFileList) {
-            List<String> testPaperLineList = FileUtil.readFile(testFile);
-            for (String testPaperLine : testPaperLineList) {
-                testPaperList.add(new Paper(testPaperLine));
+    // returns null if the store doesn't exist or was written for other test papers
+    private static PaperStore openPaperStore(String storeFilePath, long fingerprint) {
+        File storeFile = new File(storeFilePath);
+        if (!storeFile.isFile()) {
+            return null;
+        }
+
+        try {
+            PaperStore store = new PaperStore(storeFile);
+            if (store.fingerprint == fingerprint) {
+                return store;
+            }
+        } catch (Exception e) {
+            System.err.println("Exception @ openPaperStore");
+            e.printStackTrace();
+        }
+        System.out.println("Rebuilding paper store " + storeFilePath);
+        return null;
+    }
+
+    // test papers are read from the paper store if it was written for the test dir,
+    // otherwise from the test dir (and written to the store)
+    private static PaperStore readPaperStore(String testDirPath, String storeFilePath) {
+        try {
+            long fingerprint = storeFilePath != null ? FileUtil.calcFingerprint("", testDirPath) : 0L;
+            PaperStore store = storeFilePath != null ? openPaperStore(storeFilePath, fingerprint) : null;
+            if (store != null) {
+                return store;
             }
+
+            store = new PaperStore(FileUtil.getFileList(testDirPath));
+            if (storeFilePath != null) {
+                store.write(storeFilePath, fingerprint);
+            }
+            return store;
+        } catch (Exception e) {
+            System.err.println("Exception @ readPaperStore");
+            e.printStackTrace();
         }
-        return testPaperList;
+        return null;
     }
 
     private static BaseModel selectModel(String modelType, String line, CommandLine cl) {
@@ -82,22 +151,41 @@ public class AuthorEstimator {
         return null;
     }
 
-    private static Pair<Integer, List<BaseModel>> readModelFile(File modelFile, String modelType,
-                                                               CommandLine cl, int minPaperSize) {
+    private static BaseModel selectModel(String modelType, DataInput in, CommandLine cl) throws IOException {
+        if (RandomModel.checkIfValid(modelType)) {
+            return new RandomModel(in, cl);
+        } else if (HillProvostBestModel.checkIfValid(modelType)) {
+            return new HillProvostBestModel(in);
+        } else if (CommonCitationModel.checkIfValid(modelType)) {
+            return new CommonCitationModel(in);
+        } else if (SocialCitationModel.checkIfValid(modelType)) {
+            return new SocialCitationModel(in);
+        } else if (SelfCitationModel.checkIfValid(modelType)) {
+            return new SelfCitationModel(in);
+        } else if (MultiNaiveBayesModel.checkIfValid(modelType, cl)) {
+            return new MultiNaiveBayesModel(in, cl);
+        } else if (LogisticRegressionModel.checkIfValid(modelType, cl)) {
+            return new LogisticRegressionModel(in, cl);
+        }
+        return null;
+    }
+
+    static Pair<Integer, List<BaseModel>> readModelFile(File modelFile, String modelType,
+                                                       CommandLine cl, int minPaperSize) {
         System.out.println("\tStart:\treading author files");
         List<BaseModel> modelList = new ArrayList<>();
         int modelCount = 0;
         try {
-            BufferedReader br = new BufferedReader(new FileReader(modelFile));
-            String line;
-            while ((line = br.readLine()) != null) {
+            ModelFileReader reader = new ModelFileReader(modelFile, modelType);
+            while (reader.next()) {
                 modelCount++;
-                BaseModel model = selectModel(modelType, line, cl);
+                BaseModel model = reader.binary ? selectModel(modelType, reader.getInput(), cl)
+                        : selectModel(modelType, reader.getLine(), cl);
                 if (model.paperIds.length >= minPaperSize) {
                     modelList.add(model);
                 }
             }
-            br.close();
+            reader.close();
         } catch (Exception e) {
             System.err.println("Exception @ readModelFile");
             e.printStackTrace();
@@ -107,50 +195,446 @@ public class AuthorEstimator {
         return new Pair<>(modelCount, modelList);
     }
 
-    private static void score(List<Paper> testPaperList, List<BaseModel> modelList,
+    private static String getOutputFilePath(String paperId, String outputDirPath) {
+        return outputDirPath + "/" + paperId.substring(paperId.length() - SUFFIX_SIZE) + "/" + paperId;
+    }
+
+    // in segment mode, the output file is written as a record of the segment file of its suffix dir.
+    // With a journal, the length of the output file is journaled before the file is appended to
+    private static void writeLines(List<String> outputLineList, int paperIdx, DataOutputStream journalOut,
+                                   WriterPool writerPool, boolean first, String outputFilePath) {
+        try {
+            if (journalOut != null) {
+                writeJournalEntry(journalOut, paperIdx, new File(outputFilePath));
+            }
+
+            if (writerPool == null) {
+                FileUtil.overwriteFile(outputLineList, first, outputFilePath);
+                return;
+            }
+
+            writerPool.writeRecord(outputFilePath, outputLineList);
+        } catch (Exception e) {
+            System.err.println("Exception @ writeLines");
+            e.printStackTrace();
+        }
+    }
+
+    // true authors are kept with zero score even if their models don't score the paper
+    static double adjustScore(double score, boolean isAuthor) {
+        return isAuthor && score == BaseModel.INVALID_VALUE ? ZERO_SCORE : score;
+    }
+
+    // scores test papers [fromIdx, toIdx) in the store, each of which is materialized only while being scored
+    private static void score(PaperStore testPaperStore, int fromIdx, int toIdx, List<BaseModel> modelList,
+                              List<TopScoreHeap> heapList, DataOutputStream journalOut, WriterPool writerPool,
                               boolean first, String outputDirPath) {
-        for (Paper paper : testPaperList) {
-            String suffix = paper.id.substring(paper.id.length() - SUFFIX_SIZE);
+        for (int i = fromIdx; i < toIdx; i++) {
+            Paper paper = testPaperStore.getPaper(i);
+            TopScoreHeap heap = heapList != null ? heapList.get(i) : null;
             List<String> outputLineList = new ArrayList<>();
-            if (first) {
+            if (first && heap == null) {
                 outputLineList.add(paper.toString());
             }
 
             for (BaseModel model : modelList) {
-                double score = model.estimate(paper);
-                if (paper.checkIfAuthor(model.authorId) && score == model.INVALID_VALUE) {
-                    score = ZERO_SCORE;
+                boolean isAuthor = paper.checkIfAuthor(model.authorId);
+                double score = adjustScore(model.estimate(paper), isAuthor);
+                if (score != BaseModel.INVALID_VALUE) {
+                    if (heap != null) {
+                        heap.add(model.authorIdx, score, isAuthor);
+                    } else {
+                        outputLineList.add(model.authorId + Config.FIRST_DELIMITER + String.valueOf(score));
+                    }
+                }
+            }
+
+            if (heap == null && outputLineList.size() > 0) {
+                writeLines(outputLineList, i, journalOut, writerPool, first,
+                        getOutputFilePath(paper.id, outputDirPath));
+            }
+        }
+    }
+
+    private static void score(PaperStore testPaperStore, int fromIdx, int toIdx, CitationIndex index,
+                              List<TopScoreHeap> heapList, DataOutputStream journalOut, WriterPool writerPool,
+                              boolean first, String outputDirPath) {
+        ScoreBuffer buffer = index.createScoreBuffer();
+        ScoreBlock block = new ScoreBlock();
+        for (int i = fromIdx; i < toIdx; i += BLOCK_SIZE) {
+            int blockEndIdx = Math.min(i + BLOCK_SIZE, toIdx);
+            index.score(testPaperStore, i, blockEndIdx, buffer, block);
+            for (int j = i; j < blockEndIdx; j++) {
+                TopScoreHeap heap = heapList != null ? heapList.get(j) : null;
+                List<String> outputLineList = new ArrayList<>();
+                if (first && heap == null) {
+                    outputLineList.add(testPaperStore.getPaper(j).toString());
                 }
 
-                if (score != model.INVALID_VALUE) {
-                    outputLineList.add(model.authorId + Config.FIRST_DELIMITER + String.valueOf(score));
+                int end = block.getScoreRowEnd(j - i);
+                for (int k = block.getScoreRowStart(j - i); k < end; k++) {
+                    BaseModel model = index.getModel(block.getModelIdx(k));
+                    boolean isAuthor = block.checkIfAuthor(k);
+                    double score = adjustScore(block.getScore(k), isAuthor);
+                    if (score != BaseModel.INVALID_VALUE) {
+                        if (heap != null) {
+                            heap.add(model.authorIdx, score, isAuthor);
+                        } else {
+                            outputLineList.add(model.authorId + Config.FIRST_DELIMITER + String.valueOf(score));
+                        }
+                    }
+                }
+
+                if (heap == null && outputLineList.size() > 0) {
+                    writeLines(outputLineList, j, journalOut, writerPool, first,
+                            getOutputFilePath(testPaperStore.getId(j), outputDirPath));
+                }
+            }
+        }
+    }
+
+    private static void score(PaperStore testPaperStore, List<BaseModel> modelList, CitationIndex index,
+                              List<TopScoreHeap> heapList, DataOutputStream journalOut, WriterPool writerPool,
+                              boolean first, ExecutorService executor, int threadSize, String outputDirPath) {
+        int paperSize = testPaperStore.size();
+        if (executor == null) {
+            if (index != null) {
+                score(testPaperStore, 0, paperSize, index, heapList, journalOut, writerPool, first, outputDirPath);
+            } else {
+                score(testPaperStore, 0, paperSize, modelList, heapList, journalOut, writerPool, first,
+                        outputDirPath);
+            }
+            return;
+        }
+
+        // each test paper has its own output file (or heap), so chunks of test papers can be scored independently
+        List<Future<?>> futureList = new ArrayList<>();
+        int chunkSize = Math.max(paperSize / (threadSize * CHUNKS_PER_THREAD), 1);
+        for (int i = 0; i < paperSize; i += chunkSize) {
+            int startIdx = i;
+            int endIdx = Math.min(i + chunkSize, paperSize);
+            futureList.add(executor.submit(() -> {
+                if (index != null) {
+                    score(testPaperStore, startIdx, endIdx, index, heapList, journalOut, writerPool, first,
+                            outputDirPath);
+                } else {
+                    score(testPaperStore, startIdx, endIdx, modelList, heapList, journalOut, writerPool, first,
+                            outputDirPath);
                 }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futureList) {
+                future.get();
             }
+        } catch (Exception e) {
+            System.err.println("Exception @ score");
+            e.printStackTrace();
+        }
+    }
 
-            if (outputLineList.size() > 0) {
-                FileUtil.overwriteFile(outputLineList, first, outputDirPath + "/" + suffix + "/" + paper.id);
+    private static void writeRankedFile(PaperStore testPaperStore, List<TopScoreHeap> heapList,
+                                        String outputFilePath) {
+        FileUtil.makeParentDir(outputFilePath);
+        try {
+            BufferedWriter bw = new BufferedWriter(new FileWriter(outputFilePath));
+            int paperSize = testPaperStore.size();
+            for (int i = 0; i < paperSize; i++) {
+                // paper ID, year, venue ID, author IDs, ref paper IDs, [author ID:score] in descending order
+                Pair<int[], double[]> ranking = heapList.get(i).getRanking();
+                StringBuilder sb = new StringBuilder(testPaperStore.getPaper(i).toString() + Config.FIRST_DELIMITER);
+                for (int j = 0; j < ranking.first.length; j++) {
+                    if (j > 0) {
+                        sb.append(Config.SECOND_DELIMITER);
+                    }
+                    sb.append(IdDictionary.AUTHOR_IDS.getId(ranking.first[j]) + Config.KEY_VALUE_DELIMITER
+                            + String.valueOf(ranking.second[j]));
+                }
+
+                bw.write(sb.toString());
+                bw.newLine();
             }
+            bw.close();
+        } catch (Exception e) {
+            System.err.println("Exception @ writeRankedFile");
+            e.printStackTrace();
         }
     }
 
-    private static void estimate(String modelDirPath, String testDirPath, String modelType,
-                                 CommandLine cl, int minPaperSize, int startIdx, int endIdx, String outputDirPath) {
+    // the tmp file is synced before it replaces the file so that a committed file is never partial
+    private static void commitFile(File tmpFile, FileOutputStream fos, DataOutputStream out, String filePath)
+            throws IOException {
+        out.flush();
+        fos.getFD().sync();
+        out.close();
+        Files.move(tmpFile.toPath(), new File(filePath).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // progress file: names of completed model files and, in top M mode, heaps of test papers after them,
+    // both are replaced at once so that they always agree
+    private static void writeProgressFile(List<String> doneNameList, List<TopScoreHeap> heapList,
+                                          String outputDirPath) throws IOException {
+        String filePath = outputDirPath + "/" + PROGRESS_FILE_NAME;
+        FileUtil.makeParentDir(filePath);
+        File tmpFile = new File(filePath + TMP_FILE_SUFFIX);
+        FileOutputStream fos = new FileOutputStream(tmpFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        out.writeInt(Config.PROGRESS_FILE_MAGIC_NUMBER);
+        out.writeInt(Config.PROGRESS_FILE_VERSION);
+        out.writeInt(doneNameList.size());
+        for (String doneName : doneNameList) {
+            out.writeUTF(doneName);
+        }
+
+        out.writeInt(heapList != null ? heapList.size() : INVALID_INDEX);
+        if (heapList != null) {
+            for (TopScoreHeap heap : heapList) {
+                heap.write(out, IdDictionary.AUTHOR_IDS);
+            }
+        }
+        commitFile(tmpFile, fos, out, filePath);
+    }
+
+    // returns false if the progress file doesn't exist, heaps are read only if heapList is given
+    private static boolean readProgressFile(List<String> doneNameList, List<TopScoreHeap> heapList,
+                                            int paperSize, String outputDirPath) throws IOException {
+        File file = new File(outputDirPath + "/" + PROGRESS_FILE_NAME);
+        if (!file.isFile()) {
+            return false;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int magicNumber = in.readInt();
+            int version = in.readInt();
+            if (magicNumber != Config.PROGRESS_FILE_MAGIC_NUMBER || version > Config.PROGRESS_FILE_VERSION) {
+                throw new IOException("Unsupported progress file " + file.getPath());
+            }
+
+            int doneSize = in.readInt();
+            for (int i = 0; i < doneSize; i++) {
+                doneNameList.add(in.readUTF());
+            }
+
+            int heapSize = in.readInt();
+            if (heapList != null) {
+                if (heapSize != paperSize) {
+                    throw new IOException("Progress file " + file.getPath() + " has " + String.valueOf(heapSize)
+                            + " heaps for " + String.valueOf(paperSize) + " test papers");
+                }
+
+                for (int i = 0; i < heapSize; i++) {
+                    heapList.add(new TopScoreHeap(in, IdDictionary.AUTHOR_IDS));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return true;
+    }
+
+    // undo journal: header (model file name, # of test papers) followed by an entry (test paper index,
+    // length of its output file or -1 if absent) for each output file the model file appends scores to.
+    // The header is committed before scoring, and the returned stream takes entries while scoring
+    private static DataOutputStream openJournalFile(String modelFileName, PaperStore testPaperStore,
+                                                    String outputDirPath) throws IOException {
+        String filePath = outputDirPath + "/" + JOURNAL_FILE_NAME;
+        FileUtil.makeParentDir(filePath);
+        File tmpFile = new File(filePath + TMP_FILE_SUFFIX);
+        FileOutputStream fos = new FileOutputStream(tmpFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        out.writeInt(Config.PROGRESS_JOURNAL_MAGIC_NUMBER);
+        out.writeInt(Config.PROGRESS_JOURNAL_VERSION);
+        out.writeUTF(modelFileName);
+        out.writeInt(testPaperStore.size());
+        commitFile(tmpFile, fos, out, filePath);
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath, true)));
+    }
+
+    // an entry is flushed before its output file is appended to, a partial entry is ignored when recovering
+    private static void writeJournalEntry(DataOutputStream journalOut, int paperIdx, File outputFile)
+            throws IOException {
+        synchronized (journalOut) {
+            journalOut.writeInt(paperIdx);
+            journalOut.writeLong(outputFile.isFile() ? outputFile.length() : INVALID_INDEX);
+            journalOut.flush();
+        }
+    }
+
+    // truncates output files back to their lengths in the journal unless its model file was completed,
+    // i.e., drops partial scores of a model file interrupted while being appended
+    private static void recoverFromJournalFile(Set<String> doneNameSet, PaperStore testPaperStore,
+                                               String outputDirPath) throws IOException {
+        File file = new File(outputDirPath + "/" + JOURNAL_FILE_NAME);
+        if (!file.isFile()) {
+            return;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int magicNumber = in.readInt();
+            int version = in.readInt();
+            if (magicNumber != Config.PROGRESS_JOURNAL_MAGIC_NUMBER || version != Config.PROGRESS_JOURNAL_VERSION) {
+                throw new IOException("Unsupported progress journal " + file.getPath());
+            }
+
+            String modelFileName = in.readUTF();
+            int paperSize = in.readInt();
+            if (!doneNameSet.contains(modelFileName)) {
+                if (paperSize != testPaperStore.size()) {
+                    throw new IOException("Progress journal " + file.getPath() + " was written for "
+                            + String.valueOf(paperSize) + " test papers, not " + String.valueOf(testPaperStore.size()));
+                }
+
+                System.out.println("Rolling back partial scores of " + modelFileName);
+                while (true) {
+                    int paperIdx;
+                    long length;
+                    try {
+                        paperIdx = in.readInt();
+                        length = in.readLong();
+                    } catch (EOFException e) {
+                        // the last entry is partial if the run was interrupted while writing it
+                        break;
+                    }
+
+                    File outputFile = new File(getOutputFilePath(testPaperStore.getId(paperIdx), outputDirPath));
+                    if (length == INVALID_INDEX) {
+                        Files.deleteIfExists(outputFile.toPath());
+                    } else if (outputFile.length() > length) {
+                        RandomAccessFile raf = new RandomAccessFile(outputFile, "rw");
+                        raf.setLength(length);
+                        raf.close();
+                    }
+                }
+            }
+        } finally {
+            in.close();
+        }
+        Files.delete(file.toPath());
+    }
+
+    private static void estimate(String modelDirPath, String testDirPath, String modelType, CommandLine cl,
+                                 int minPaperSize, int startIdx, int endIdx, boolean indexMode, int threadSize,
+                                 int topM, String paperStoreFilePath, boolean resume, int checkpointInterval,
+                                 boolean segmentMode, String outputDirPath) {
+        if (resume && segmentMode && topM == INVALID_INDEX) {
+            System.err.println("-" + RESUME_OPTION + " doesn't support -" + Config.SEGMENT_OPTION
+                    + " without -" + TOP_M_OPTION);
+            return;
+        }
+
         List<File> modelFileList = FileUtil.getFileList(modelDirPath);
         Collections.sort(modelFileList);
-        List<Paper> testPaperList = readPaperFiles(testDirPath);
+        PaperStore testPaperStore = readPaperStore(testDirPath, paperStoreFilePath);
+        if (testPaperStore == null) {
+            return;
+        }
+
+        List<TopScoreHeap> heapList = topM != INVALID_INDEX ? new ArrayList<>() : null;
+        List<String> doneNameList = new ArrayList<>();
+        Set<String> doneNameSet = new HashSet<>();
+        try {
+            if (resume && readProgressFile(doneNameList, heapList, testPaperStore.size(), outputDirPath)) {
+                doneNameSet.addAll(doneNameList);
+                System.out.println("Resuming after " + String.valueOf(doneNameList.size()) + " model files");
+            }
+
+            if (resume && heapList == null) {
+                recoverFromJournalFile(doneNameSet, testPaperStore, outputDirPath);
+            }
+        } catch (Exception e) {
+            System.err.println("Exception @ estimate");
+            e.printStackTrace();
+            return;
+        }
+
+        if (heapList != null && heapList.isEmpty()) {
+            for (int i = 0; i < testPaperStore.size(); i++) {
+                heapList.add(new TopScoreHeap(topM));
+            }
+        }
+
+        ExecutorService executor = threadSize > 1 ? Executors.newFixedThreadPool(threadSize) : null;
+        // segment files are truncated when first opened only if the run starts from the first model file
+        WriterPool writerPool = segmentMode && heapList == null ?
+                new WriterPool(WriterPool.DEFAULT_MAX_OPEN_SIZE, WriterPool.DEFAULT_BUFFER_SIZE, startIdx > 0) : null;
         int modelCount = 0;
         int availableCount = 0;
+        // heaps of all the test papers are written to the progress file at most once in the interval
+        long checkpointTime = System.currentTimeMillis();
+        int checkpointDoneSize = doneNameList.size();
         int listSize = modelFileList.size();
         endIdx = endIdx != INVALID_INDEX && endIdx <= listSize ? endIdx : listSize;
         for (int i = startIdx; i < endIdx; i++) {
-            File modelFile = modelFileList.remove(startIdx);
+            File modelFile = modelFileList.get(i);
             System.out.println("Stage " + String.valueOf(i + 1) + "/" + String.valueOf(listSize));
+            if (doneNameSet.contains(modelFile.getName())) {
+                System.out.println("\tSkipped:\t" + modelFile.getName() + " was completed");
+                continue;
+            }
+
             Pair<Integer, List<BaseModel>> pair = readModelFile(modelFile, modelType, cl, minPaperSize);
             List<BaseModel> modelList = pair.second;
             modelCount += pair.first;
             availableCount += modelList.size();
             boolean first = i == 0;
-            score(testPaperList, modelList, first, outputDirPath);
+            CitationIndex index = indexMode ? new CitationIndex(modelList) : null;
+            try {
+                DataOutputStream journalOut = resume && heapList == null ?
+                        openJournalFile(modelFile.getName(), testPaperStore, outputDirPath) : null;
+                score(testPaperStore, modelList, index, heapList, journalOut, writerPool, first, executor,
+                        threadSize, outputDirPath);
+                if (resume) {
+                    doneNameList.add(modelFile.getName());
+                    doneNameSet.add(modelFile.getName());
+                }
+
+                if (journalOut != null) {
+                    journalOut.close();
+                    writeProgressFile(doneNameList, null, outputDirPath);
+                    Files.deleteIfExists(new File(outputDirPath + "/" + JOURNAL_FILE_NAME).toPath());
+                } else if (resume && System.currentTimeMillis() - checkpointTime >= checkpointInterval * 1000L) {
+                    writeProgressFile(doneNameList, heapList, outputDirPath);
+                    checkpointTime = System.currentTimeMillis();
+                    checkpointDoneSize = doneNameList.size();
+                }
+            } catch (Exception e) {
+                System.err.println("Exception @ estimate");
+                e.printStackTrace();
+                if (executor != null) {
+                    executor.shutdown();
+                }
+                return;
+            }
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        if (resume && heapList != null && doneNameList.size() > checkpointDoneSize) {
+            try {
+                writeProgressFile(doneNameList, heapList, outputDirPath);
+            } catch (Exception e) {
+                System.err.println("Exception @ estimate");
+                e.printStackTrace();
+            }
+        }
+
+        if (writerPool != null) {
+            try {
+                writerPool.close();
+            } catch (Exception e) {
+                System.err.println("Exception @ estimate");
+                e.printStackTrace();
+            }
+        }
+
+        if (heapList != null) {
+            writeRankedFile(testPaperStore, heapList, outputDirPath + "/" + RANKED_FILE_NAME);
         }
 
         System.out.println(String.valueOf(availableCount) + " available authors");
@@ -170,7 +654,17 @@ public class AuthorEstimator {
                 Integer.parseInt(cl.getOptionValue(START_INDEX_OPTION)) : DEFAULT_START_INDEX;
         int endIdx = cl.hasOption(END_INDEX_OPTION) ?
                 Integer.parseInt(cl.getOptionValue(END_INDEX_OPTION)) : INVALID_INDEX;
+        boolean indexMode = !cl.hasOption(BRUTE_FORCE_OPTION) && CitationIndex.checkIfSupported(modelType);
+        int threadSize = cl.hasOption(THREAD_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(THREAD_SIZE_OPTION)) : DEFAULT_THREAD_SIZE;
+        int topM = cl.hasOption(TOP_M_OPTION) ? Integer.parseInt(cl.getOptionValue(TOP_M_OPTION)) : INVALID_INDEX;
+        String paperStoreFilePath = cl.getOptionValue(PAPER_STORE_OPTION);
+        boolean resume = cl.hasOption(RESUME_OPTION);
+        int checkpointInterval = cl.hasOption(CHECKPOINT_INTERVAL_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(CHECKPOINT_INTERVAL_OPTION)) : DEFAULT_CHECKPOINT_INTERVAL;
+        boolean segmentMode = cl.hasOption(Config.SEGMENT_OPTION);
         String outputDirPath = cl.getOptionValue(Config.OUTPUT_DIR_OPTION);
-        estimate(modelDirPath, testDirPath, modelType, cl, minPaperSize, startIdx, endIdx, outputDirPath);
+        estimate(modelDirPath, testDirPath, modelType, cl, minPaperSize, startIdx, endIdx, indexMode, threadSize,
+                topM, paperStoreFilePath, resume, checkpointInterval, segmentMode, outputDirPath);
     }
 }
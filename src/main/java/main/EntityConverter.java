@@ -3,6 +3,7 @@ package main;
 import common.Config;
 import common.FileUtil;
 import common.MiscUtil;
+import common.WriterPool;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 
@@ -15,6 +16,7 @@ public class EntityConverter {
     private static final String ENTITY_MAPPING_FILE_OPTION = "em";
     private static final String OUTPUT_TRAIN_DIR_OPTION = "otrain";
     private static final String OUTPUT_TEST_DIR_OPTION = "otest";
+    private static final String MAX_OPEN_SIZE_OPTION = "maxopen";
     private static final int AUTHOR_ID_INDEX = 3;
     private static final int SUFFIX_SIZE = 3;
     private static final int BUFFER_SIZE = 5000000;
@@ -26,6 +28,12 @@ public class EntityConverter {
         MiscUtil.setOption(ENTITY_MAPPING_FILE_OPTION, true, true, "[input] extra-PaperAuthor* file", options);
         MiscUtil.setOption(OUTPUT_TRAIN_DIR_OPTION, true, false, "[output] train dir", options);
         MiscUtil.setOption(OUTPUT_TEST_DIR_OPTION, true, false, "[output] test dir", options);
+        MiscUtil.setOption(MAX_OPEN_SIZE_OPTION, true, false,
+                "[param, optional] max number of segment files kept open with -" + Config.SEGMENT_OPTION
+                        + ", default = " + String.valueOf(WriterPool.DEFAULT_MAX_OPEN_SIZE), options);
+        MiscUtil.setOption(Config.SEGMENT_OPTION, false, false,
+                "[param, optional] write each suffix dir of training authors as one segment file (suffix"
+                        + Config.SEGMENT_FILE_EXTENSION + ")", options);
         return options;
     }
 
@@ -65,7 +73,7 @@ public class EntityConverter {
             for (File inputFile : inputFileList) {
                 String fileName = inputFile.getName();
                 File outputFile = new File(outputDirPath + fileName);
-                BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                BufferedReader br = FileUtil.getReader(inputFile);
                 BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile));
                 String line;
                 while ((line = br.readLine()) != null) {
@@ -106,15 +114,25 @@ public class EntityConverter {
         System.out.println("\tEnd:\tconverting paper files in " + inputDirPath);
     }
 
-    private static void distributeAffiliationFiles(String outputTrainDirPath) {
+    private static void distributeFiles(Map<String, List<String>> paperListMap, Set<String> fileNameSet,
+                                        WriterPool writerPool, String outputTrainDirPath) {
+        if (writerPool != null) {
+            FileUtil.distributeRecords(paperListMap, writerPool, SUFFIX_SIZE, outputTrainDirPath);
+        } else {
+            FileUtil.distributeFiles(paperListMap, fileNameSet, true, SUFFIX_SIZE, outputTrainDirPath);
+        }
+    }
+
+    private static void distributeAffiliationFiles(int maxOpenSize, boolean segmentMode, String outputTrainDirPath) {
         System.out.println("\tStart:\tdistributing paper files in " + outputTrainDirPath);
         try {
             Set<String> fileNameSet = new HashSet<>();
+            WriterPool writerPool = segmentMode ? new WriterPool(maxOpenSize, WriterPool.DEFAULT_BUFFER_SIZE) : null;
             Map<String, List<String>> paperListMap = new HashMap<>();
             int count = 0;
             List<File> inputFileList = FileUtil.getFileList(outputTrainDirPath);
             for (File inputFile : inputFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                BufferedReader br = FileUtil.getReader(inputFile);
                 String line;
                 while ((line = br.readLine()) != null) {
                     String[] elements = line.split(Config.FIRST_DELIMITER);
@@ -127,13 +145,16 @@ public class EntityConverter {
                         paperListMap.get(authorId).add(line);
                         count++;
                         if (count % BUFFER_SIZE == 0) {
-                            FileUtil.distributeFiles(paperListMap, fileNameSet, true, SUFFIX_SIZE, outputTrainDirPath);
+                            distributeFiles(paperListMap, fileNameSet, writerPool, outputTrainDirPath);
                         }
                     }
                 }
                 br.close();
             }
-            FileUtil.distributeFiles(paperListMap, fileNameSet, true, SUFFIX_SIZE, outputTrainDirPath);
+            distributeFiles(paperListMap, fileNameSet, writerPool, outputTrainDirPath);
+            if (writerPool != null) {
+                writerPool.close();
+            }
         } catch (Exception e) {
             System.err.println("Exception @ convertPapers");
             e.printStackTrace();
@@ -142,11 +163,12 @@ public class EntityConverter {
     }
 
     private static void convert(String inputTrainDirPath, String inputTestDirPath, String entityMappingFilePath,
-                                String outputTrainDirPath, String outputTestDirPath) {
+                                int maxOpenSize, boolean segmentMode, String outputTrainDirPath,
+                                String outputTestDirPath) {
         Map<String, String> entityIdMap = buildEntityIdMap(entityMappingFilePath);
         if (checkIfValidParams(inputTrainDirPath, outputTrainDirPath)) {
             convertPapers(inputTrainDirPath, entityIdMap, outputTrainDirPath);
-            distributeAffiliationFiles(outputTrainDirPath);
+            distributeAffiliationFiles(maxOpenSize, segmentMode, outputTrainDirPath);
         }
 
         if (checkIfValidParams(inputTestDirPath, outputTestDirPath)) {
@@ -166,6 +188,10 @@ public class EntityConverter {
                 cl.getOptionValue(OUTPUT_TRAIN_DIR_OPTION) : null;
         String outputTestDirPath = cl.hasOption(OUTPUT_TEST_DIR_OPTION) ?
                 cl.getOptionValue(OUTPUT_TEST_DIR_OPTION) : null;
-        convert(inputTrainDirPath, inputTestDirPath, entityMappingFilePath, outputTrainDirPath, outputTestDirPath);
+        int maxOpenSize = cl.hasOption(MAX_OPEN_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(MAX_OPEN_SIZE_OPTION)) : WriterPool.DEFAULT_MAX_OPEN_SIZE;
+        boolean segmentMode = cl.hasOption(Config.SEGMENT_OPTION);
+        convert(inputTrainDirPath, inputTestDirPath, entityMappingFilePath, maxOpenSize, segmentMode,
+                outputTrainDirPath, outputTestDirPath);
     }
 }
@@ -5,14 +5,19 @@ import common.FileUtil;
 import common.MiscUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import structure.EvaluationCounter;
 import structure.Pair;
 import structure.Paper;
 import structure.Result;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 public class Evaluator {
     private static final String TOP_M_OPTION = "m";
@@ -20,13 +25,17 @@ public class Evaluator {
     private static final String HALX_OPTION = "halx";
     private static final String UNGUESSABLE_PAPER_LIST_OUTPUT_OPTION = "uplo";
     private static final String COLD_START_OPTION = "cold";
+    private static final String THREAD_SIZE_OPTION = "threads";
     private static final int DEFAULT_HAL_THRESHOLD = 1;
+    private static final int DEFAULT_THREAD_SIZE = 1;
     private static final int HALX_LABEL = -1;
     private static final int INVALID_RANKING = -1;
+    private static final int RANKING_INDEX = 5;
 
     private static Options getOptions() {
         Options options = new Options();
-        MiscUtil.setOption(Config.INPUT_DIR_OPTION, true, true, "[input] input dir", options);
+        MiscUtil.setOption(Config.INPUT_DIR_OPTION, true, true,
+                "[input] input dir, or ranked file written by AuthorEstimator with top M option", options);
         MiscUtil.setOption(TOP_M_OPTION, true, true,
                 "[param] top M authors in rankings used for evaluation (can be plural, separate with comma)", options);
         MiscUtil.setOption(HAL_OPTION, true, false,
@@ -36,6 +45,9 @@ public class Evaluator {
                 "[param, optional] HAL (Hit At Least) threshold = # of true authors in each paper", options);
         MiscUtil.setOption(UNGUESSABLE_PAPER_LIST_OUTPUT_OPTION, true, false, "[optional, output] unguessable paper list file", options);
         MiscUtil.setOption(COLD_START_OPTION, true, false, "[optional, input] unguessable paper list file", options);
+        MiscUtil.setOption(THREAD_SIZE_OPTION, true, false,
+                "[param, optional] number of threads evaluating suffix dirs, default = "
+                        + String.valueOf(DEFAULT_THREAD_SIZE), options);
         MiscUtil.setOption(Config.OUTPUT_FILE_OPTION, true, true, "[output] output file", options);
         return options;
     }
@@ -69,76 +81,113 @@ public class Evaluator {
         return halThr == HALX_LABEL ? paper.getAuthorSize() : halThr;
     }
 
-    public static Pair<Paper, List<Result>> readScoreFile(File file, int halThr) {
+    private static void filterResults(Paper paper, List<Result> resultList, int halThr) {
+        int authorCount = 0;
+        for (Result result : resultList) {
+            if (paper.checkIfAuthor(result.authorId) && result.score > 0.0d) {
+                authorCount++;
+            }
+        }
+
+        int threshold = decideThreshold(paper, halThr);
+        if (authorCount < threshold) {
+            resultList.clear();
+        }
+    }
+
+    // returns null at the end of the reader, a score file contains only one paper
+    private static Pair<Paper, List<Result>> readScores(BufferedReader br, boolean ranked, int halThr)
+            throws IOException {
+        String line = br.readLine();
+        if (line == null) {
+            return null;
+        }
+
+        Paper paper = new Paper(line);
         List<Result> resultList = new ArrayList<>();
-        Paper paper = null;
-        try {
-            int authorCount = 0;
-            BufferedReader br = new BufferedReader(new FileReader(file));
-            String line = br.readLine();
-            paper = new Paper(line);
-            while ((line = br.readLine()) != null) {
-                Result result = new Result(line);
-                if (paper.checkIfAuthor(result.authorId) && result.score > 0.0d) {
-                    authorCount++;
+        if (ranked) {
+            String[] elements = line.split(Config.FIRST_DELIMITER);
+            if (elements.length > RANKING_INDEX) {
+                for (String resultStr : elements[RANKING_INDEX].split(Config.SECOND_DELIMITER)) {
+                    int idx = resultStr.lastIndexOf(Config.KEY_VALUE_DELIMITER);
+                    resultList.add(new Result(resultStr.substring(0, idx),
+                            Double.parseDouble(resultStr.substring(idx + 1))));
                 }
-                resultList.add(result);
             }
+        } else {
+            while ((line = br.readLine()) != null) {
+                resultList.add(new Result(line));
+            }
+        }
+
+        filterResults(paper, resultList, halThr);
+        return new Pair<>(paper, resultList);
+    }
 
+    public static Pair<Paper, List<Result>> readScoreFile(File file, int halThr) {
+        Pair<Paper, List<Result>> resultPair = null;
+        try {
+            BufferedReader br = FileUtil.getReader(file);
+            resultPair = readScores(br, false, halThr);
             br.close();
-            int threshold = decideThreshold(paper, halThr);
-            if (authorCount < threshold) {
-                resultList.clear();
-            }
         } catch (Exception e) {
             System.err.println("Exception @ readScoreFile");
             e.printStackTrace();
         }
-        return new Pair<>(paper, resultList);
+        return resultPair != null ? resultPair : new Pair<>(null, new ArrayList<>());
     }
 
     public static int calcHal(int count, int threshold) {
         return count >= threshold ? 1 : 0;
     }
 
-    private static String evaluate(List<Result> resultList, int[] topMs, int threshold, Paper paper) {
-        Collections.sort(resultList);
+    // rank of a result is 1 + # of results ranked above it by (stable) sort in descending order of score,
+    // so ranks of true authors are counted without sorting all the results
+    private static int rank(List<Result> resultList, int idx) {
+        double score = resultList.get(idx).score;
+        int resultSize = resultList.size();
+        int rank = 1;
+        for (int i = 0; i < resultSize; i++) {
+            double otherScore = resultList.get(i).score;
+            if (otherScore > score || (otherScore == score && i < idx)) {
+                rank++;
+            }
+        }
+        return rank;
+    }
+
+    private static void evaluate(List<Result> resultList, int[] topMs, int threshold, Paper paper,
+                                 EvaluationCounter counter) {
         int trueAuthorSize = paper.getAuthorSize();
         int resultSize = resultList.size();
-        int authorSizeX = 0;
-        int[] authorSizeMs = MiscUtil.initIntArray(topMs.length, 0);
+        List<Integer> rankList = new ArrayList<>();
         int bestRanking = INVALID_RANKING;
-        // Skip duplicate entity's score when wrongly using sidx/eidx in AuthorEstimator especially for 10pct dataset
-        // If sidx/eidx is correctly used or not used in Author Estimator, it doesn't matter
-        Set<String> doneIdSet = new HashSet<>();
-        int rank = 0;
         for (int i = 0; i < resultSize; i++) {
             Result result = resultList.get(i);
-            if (doneIdSet.contains(result.authorId)) {
-                continue;
+            if (paper.checkIfAuthor(result.authorId) && result.score > 0.0d) {
+                int rank = rank(resultList, i);
+                rankList.add(rank);
+                if (bestRanking == INVALID_RANKING || rank < bestRanking) {
+                    bestRanking = rank;
+                }
             }
+        }
 
-            rank++;
-            if (paper.checkIfAuthor(result.authorId)) {
-                if (result.score > 0.0d) {
-                    if (bestRanking == INVALID_RANKING) {
-                        bestRanking = rank;
-                    }
-
-                    if (rank <= trueAuthorSize) {
-                        authorSizeX++;
-                    }
-
-                    for (int j = 0; j < authorSizeMs.length; j++) {
-                        if (rank <= topMs[j]) {
-                            authorSizeMs[j]++;
-                        }
-                    }
-                }
+        // rankings are scanned until both the best ranking and (max) top M are passed
+        int lastRank = Math.max(bestRanking, topMs[topMs.length - 1] + 1);
+        int authorSizeX = 0;
+        int[] authorSizeMs = new int[topMs.length];
+        for (int rank : rankList) {
+            if (rank > lastRank) {
+                continue;
+            } else if (rank <= trueAuthorSize) {
+                authorSizeX++;
             }
 
-            if (bestRanking > 0 && rank > topMs[topMs.length - 1]) {
-                break;
+            for (int j = 0; j < authorSizeMs.length; j++) {
+                if (rank <= topMs[j]) {
+                    authorSizeMs[j]++;
+                }
             }
         }
 
@@ -149,28 +198,61 @@ public class Evaluator {
                 + String.valueOf(bestRanking) + Config.FIRST_DELIMITER
                 + String.valueOf(authorSizeX) + Config.FIRST_DELIMITER
                 + String.valueOf(overThrAtX) + Config.FIRST_DELIMITER + String.valueOf(coverageAtX));
+        counter.trueAuthorCount += trueAuthorSize;
+        counter.authorX += authorSizeX;
+        counter.overThrAtX += overThrAtX;
+        counter.coverageAtX += coverageAtX;
         for (int i = 0; i < authorSizeMs.length; i++) {
             int overThrAtM = calcHal(authorSizeMs[i], threshold);
             double coverageAtM = (double) authorSizeMs[i] / (double) trueAuthorSize;
             sb.append(Config.FIRST_DELIMITER + Config.FIRST_DELIMITER + String.valueOf(authorSizeMs[i])
                     + Config.FIRST_DELIMITER + String.valueOf(overThrAtM)
                     + Config.FIRST_DELIMITER + String.valueOf(coverageAtM));
+            counter.authorMs[i] += authorSizeMs[i];
+            counter.overThrAtMs[i] += overThrAtM;
+            counter.coverageAtMs[i] += coverageAtM;
         }
-        return sb.toString();
+
+        counter.outputLineList.add(sb.toString());
+        counter.guessablePaperSize++;
     }
 
-    private static List<String> extractElements(String line) {
-        List<String> list = new ArrayList<>();
-        String[] elements = line.split(Config.FIRST_DELIMITER);
-        for (int i = 0; i < elements.length; i++) {
-            if (elements[i].length() > 0) {
-                list.add(elements[i]);
+    private static void evaluate(Paper paper, List<Result> resultList, int[] topMs, int halThr,
+                                 Set<String> coldStartPaperIdSet, EvaluationCounter counter) {
+        if (coldStartPaperIdSet != null && !coldStartPaperIdSet.contains(paper.id)) {
+            return;
+        }
+
+        int threshold = decideThreshold(paper, halThr);
+        if (paper.getAuthorSize() >= threshold) {
+            counter.blindPaperSize++;
+        }
+
+        if (resultList.size() == 0) {
+            counter.trueAuthorCount += paper.getAuthorSize();
+            counter.unguessablePaperIdList.add(paper.id);
+        } else if (paper.getAuthorSize() >= threshold) {
+            evaluate(resultList, topMs, threshold, paper, counter);
+        }
+    }
+
+    // evaluates papers in score files under the dir, or in the ranked file
+    private static EvaluationCounter evaluate(File input, boolean ranked, int[] topMs, int halThr,
+                                              Set<String> coldStartPaperIdSet) throws IOException {
+        EvaluationCounter counter = new EvaluationCounter(topMs.length);
+        Stream<File> inputFileStream = ranked ? Stream.of(input) : FileUtil.walkFiles(input.getPath());
+        Iterator<File> iterator = inputFileStream.iterator();
+        while (iterator.hasNext()) {
+            BufferedReader br = FileUtil.getReader(iterator.next());
+            Pair<Paper, List<Result>> resultPair;
+            while ((resultPair = readScores(br, ranked, halThr)) != null) {
+                evaluate(resultPair.first, resultPair.second, topMs, halThr, coldStartPaperIdSet, counter);
             }
+            br.close();
         }
 
-        list.remove(0);
-        list.remove(1);
-        return list;
+        inputFileStream.close();
+        return counter;
     }
 
     private static List<String> createFooter(String halThrStr, int[] topMs, int trueAuthorCount, int authorX, int overThrAtX,
@@ -229,83 +311,52 @@ public class Evaluator {
         return subOutputLineList;
     }
 
-    private static void evaluate(String inputDirPath, String topMsStr, int halThr,
+    private static void evaluate(String inputDirPath, String topMsStr, int halThr, int threadSize,
                                  String uplOutputFilePath, String uplInputFilePath, String outputFilePath) {
         try {
             Set<String> coldStartPaperIdSet = buildColdStartPaperIdSet(uplInputFilePath);
             List<String> outputLineList = new ArrayList<>();
+            boolean ranked = new File(inputDirPath).isFile();
             String halThrStr = halThr != HALX_LABEL ? String.valueOf(halThr) : "X";
             int[] topMs = MiscUtil.convertToIntArray(topMsStr, Config.OPTION_DELIMITER);
             FileUtil.makeParentDir(outputFilePath);
             outputLineList.add(createHeader(halThrStr, topMs));
-            List<File> inputDirList = FileUtil.getDirList(inputDirPath);
+            List<File> inputDirList = ranked ? new ArrayList<>() : FileUtil.getDirList(inputDirPath);
             if (inputDirList.size() == 0) {
                 inputDirList.add(new File(inputDirPath));
             }
 
-            int blindPaperSize = 0;
-            int guessablePaperSize = 0;
-            int trueAuthorCount = 0;
-            int authorX = 0;
-            int overThrAtX = 0;
-            double coverageAtX = 0.0d;
-            int[] authorMs = MiscUtil.initIntArray(topMs.length, 0);
-            int[] overThrAtMs = MiscUtil.initIntArray(topMs.length, 0);
-            double[] coverageAtMs = MiscUtil.initDoubleArray(topMs.length, 0.0d);
-            List<String> unguessablePaperIdList = new ArrayList<>();
-            int dirSize = inputDirList.size();
-            for (int i = 0; i < dirSize; i++) {
-                File inputDir = inputDirList.remove(0);
-                List<File> inputFileList = FileUtil.getFileListR(inputDir.getPath());
-                int fileSize = inputFileList.size();
-                blindPaperSize += fileSize;
-                for (int j = 0; j < fileSize; j++) {
-                    File inputFile = inputFileList.remove(0);
-                    Pair<Paper, List<Result>> resultPair = readScoreFile(inputFile, halThr);
-                    Paper paper = resultPair.first;
-                    List<Result> resultList = resultPair.second;
-                    if (coldStartPaperIdSet != null && !coldStartPaperIdSet.contains(paper.id)) {
-                        blindPaperSize--;
-                        continue;
-                    }
-
-                    int threshold = decideThreshold(paper, halThr);
-                    if (paper.getAuthorSize() < threshold || resultList.size() == 0) {
-                        if (paper.getAuthorSize() < threshold) {
-                            blindPaperSize--;
-                        }
-
-                        if (resultList.size() == 0) {
-                            trueAuthorCount += paper.getAuthorSize();
-                            unguessablePaperIdList.add(paper.id);
-                        }
-                        continue;
-                    }
-
-                    String outputLine = evaluate(resultList, topMs, threshold, paper);
-                    outputLineList.add(outputLine);
-                    List<String> elementList = extractElements(outputLine);
-                    trueAuthorCount += Integer.parseInt(elementList.remove(0));
-                    authorX += Integer.parseInt(elementList.remove(0));
-                    overThrAtX += Integer.parseInt(elementList.remove(0));
-                    coverageAtX += Double.parseDouble(elementList.remove(0));
-                    guessablePaperSize++;
-                    int k = 0;
-                    while (elementList.size() > 0) {
-                        authorMs[k] += Integer.parseInt(elementList.remove(0));
-                        overThrAtMs[k] += Integer.parseInt(elementList.remove(0));
-                        coverageAtMs[k] += Double.parseDouble(elementList.remove(0));
-                        k++;
-                    }
+            // each dir is evaluated by a task with its own counter, and counters are merged in order of the dirs
+            EvaluationCounter counter = new EvaluationCounter(topMs.length);
+            ExecutorService executor = threadSize > 1 ? Executors.newFixedThreadPool(threadSize) : null;
+            List<Future<EvaluationCounter>> futureList = new ArrayList<>();
+            for (File inputDir : inputDirList) {
+                if (executor != null) {
+                    futureList.add(executor.submit(() -> evaluate(inputDir, ranked, topMs, halThr,
+                            coldStartPaperIdSet)));
+                } else {
+                    counter.merge(evaluate(inputDir, ranked, topMs, halThr, coldStartPaperIdSet));
+                }
+            }
+
+            try {
+                for (Future<EvaluationCounter> future : futureList) {
+                    counter.merge(future.get());
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
                 }
             }
 
+            outputLineList.addAll(counter.outputLineList);
             outputLineList.add("");
-            outputLineList.addAll(createFooter(halThrStr, topMs, trueAuthorCount, authorX, overThrAtX, coverageAtX,
-                    authorMs, overThrAtMs, coverageAtMs, blindPaperSize, guessablePaperSize));
+            outputLineList.addAll(createFooter(halThrStr, topMs, counter.trueAuthorCount, counter.authorX,
+                    counter.overThrAtX, counter.coverageAtX, counter.authorMs, counter.overThrAtMs, counter.coverageAtMs,
+                    counter.blindPaperSize, counter.guessablePaperSize));
             FileUtil.writeFile(outputLineList, outputFilePath);
             if (uplOutputFilePath != null) {
-                FileUtil.writeFile(unguessablePaperIdList, uplOutputFilePath);
+                FileUtil.writeFile(counter.unguessablePaperIdList, uplOutputFilePath);
             }
         } catch (Exception e) {
             System.err.println("Exception @ evaluate");
@@ -325,6 +376,8 @@ public class Evaluator {
         String uplInputFilePath = cl.hasOption(COLD_START_OPTION) ?
                 cl.getOptionValue(COLD_START_OPTION) : null;
         String outputFilePath = cl.getOptionValue(Config.OUTPUT_FILE_OPTION);
-        evaluate(inputDirPath, topMsStr, halThr, uplOutputFilePath, uplInputFilePath, outputFilePath);
+        int threadSize = cl.hasOption(THREAD_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(THREAD_SIZE_OPTION)) : DEFAULT_THREAD_SIZE;
+        evaluate(inputDirPath, topMsStr, halThr, threadSize, uplOutputFilePath, uplInputFilePath, outputFilePath);
     }
 }
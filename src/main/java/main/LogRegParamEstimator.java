@@ -3,14 +3,23 @@ package main;
 import common.Config;
 import common.FileUtil;
 import common.MiscUtil;
+import model.FeatureStore;
 import model.LogisticRegressionModel;
+import model.ModelFileReader;
+import model.NegativeSampler;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
+import structure.FeatureMatrix;
 import structure.Pair;
 import structure.Paper;
+import structure.PaperStore;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class LogRegParamEstimator {
     private static final String TRAIN_DIR_OPTION = "train";
@@ -24,16 +33,22 @@ public class LogRegParamEstimator {
     private static final String LEARNING_RATE_OPTION = "lrate";
     private static final String THRESHOLD_OPTION = "thr";
     private static final String LOG_LIKELIHOOD_OPTION = "ll";
+    private static final String THREAD_SIZE_OPTION = "threads";
+    private static final String FEATURE_STORE_OPTION = "fstore";
+    private static final String NEGATIVE_POOL_SIZE_OPTION = "nspsize";
+    private static final String NEGATIVE_SAMPLING_MODE_OPTION = "nsmode";
     private static final int PARAM_SIZE = LogisticRegressionModel.PARAM_SIZE;
     private static final int OPTION_PARAM_SIZE = 7;
     private static final int DEFAULT_EPOCH_SIZE = 1000;
     private static final int DEFAULT_START_IDX_SIZE = 0;
     private static final int DEFAULT_BATCH_SIZE = 5000;
     private static final int DEFAULT_NEGATIVE_SAMPLE_SIZE = 100;
+    private static final int DEFAULT_NEGATIVE_POOL_RATE = 10;
     private static final double DEFAULT_RANDOM_VALUE_SCALE = 1e-1d;
     private static final double DEFAULT_REGULATION_PARAM = 1e-1d;
     private static final double DEFAULT_LEARNING_RATE = 1e-1d;
     private static final double DEFAULT_THRESHOLD = 1e-3d;
+    private static final int DEFAULT_THREAD_SIZE = 1;
 
     private static Options getOptions() {
         Options options = new Options();
@@ -48,6 +63,21 @@ public class LogRegParamEstimator {
         MiscUtil.setOption(LEARNING_RATE_OPTION, true, false, "[param, optional] learning rate", options);
         MiscUtil.setOption(THRESHOLD_OPTION, true, false, "[param, optional] convergence threshold", options);
         MiscUtil.setOption(LOG_LIKELIHOOD_OPTION, false, false, "[param, optional] log-likelihood print flag", options);
+        MiscUtil.setOption(THREAD_SIZE_OPTION, true, false,
+                "[param, optional] number of threads computing gradients of a batch, default = "
+                        + String.valueOf(DEFAULT_THREAD_SIZE), options);
+        MiscUtil.setOption(FEATURE_STORE_OPTION, true, false,
+                "[param, optional] feature store file, features are extracted once and stored in the file"
+                        + " if it doesn't exist or doesn't fit the training data", options);
+        MiscUtil.setOption(NEGATIVE_POOL_SIZE_OPTION, true, false,
+                "[param, optional] number of negative samples stored for each positive sample in feature store"
+                        + " (larger than negative sample size), default = "
+                        + String.valueOf(DEFAULT_NEGATIVE_POOL_RATE) + " x negative sample size", options);
+        MiscUtil.setOption(NEGATIVE_SAMPLING_MODE_OPTION, true, false,
+                "[param, optional] negative sampling mode over all the trained authors: " + NegativeSampler.UNIFORM_MODE
+                        + ", " + NegativeSampler.POPULARITY_MODE + " (weighted by # of papers) or "
+                        + NegativeSampler.HARD_MODE + " (authors citing refs of each paper), default = "
+                        + NegativeSampler.UNIFORM_MODE, options);
         MiscUtil.setOption(Config.OUTPUT_FILE_OPTION, true, true, "[output] output file", options);
         return options;
     }
@@ -58,7 +88,7 @@ public class LogRegParamEstimator {
         List<String> optionParamList = new ArrayList<>();
         Pair<List<Double>, List<String>> paramListPair = new Pair<>(paramList, optionParamList);
         try {
-            BufferedReader br = new BufferedReader(new FileReader(file));
+            BufferedReader br = FileUtil.getReader(file);
             String line = br.readLine();
             String[] optionParams = line.split(Config.FIRST_DELIMITER);
             for (int i = 1; i < optionParams.length; i += 2) {
@@ -106,40 +136,32 @@ public class LogRegParamEstimator {
         }
     }
 
-    private static List<Paper> readPaperFiles(String trainDirPath) {
-        List<File> trainPaperFileList = FileUtil.getFileList(trainDirPath);
-        List<Paper> trainPaperList = new ArrayList<>();
+    private static PaperStore readPaperFiles(String trainDirPath) {
         try {
-            for (File trainPaperFile : trainPaperFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(trainPaperFile));
-                String line;
-                while ((line = br.readLine()) != null) {
-                    trainPaperList.add(new Paper(line));
-                }
-                br.close();
-            }
+            return new PaperStore(FileUtil.getFileList(trainDirPath));
         } catch (Exception e) {
             System.err.println("Exception @ readPaperFiles");
             e.printStackTrace();
         }
-        return trainPaperList;
+        return null;
     }
 
-    private static Pair<Map<String, LogisticRegressionModel>, List<String>> readModelFiles(String modelDirPath) {
+    private static Pair<Map<String, LogisticRegressionModel>, List<LogisticRegressionModel>> readModelFiles(
+            String modelDirPath) {
         Map<String, LogisticRegressionModel> modelMap = new HashMap<>();
-        List<String> trainAuthorIdList = new ArrayList<>();
+        List<LogisticRegressionModel> modelList = new ArrayList<>();
         List<File> modelFileList = FileUtil.getFileList(modelDirPath);
         System.out.println("Start:\treading model files");
         try {
             for (File modelFile : modelFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(modelFile));
-                String line;
-                while ((line = br.readLine()) != null) {
-                    LogisticRegressionModel model = new LogisticRegressionModel(line);
+                ModelFileReader reader = new ModelFileReader(modelFile, LogisticRegressionModel.TYPE);
+                while (reader.next()) {
+                    LogisticRegressionModel model = reader.binary ? new LogisticRegressionModel(reader.getInput())
+                            : new LogisticRegressionModel(reader.getLine());
                     modelMap.put(model.authorId, model);
-                    trainAuthorIdList.add(model.authorId);
+                    modelList.add(model);
                 }
-                br.close();
+                reader.close();
             }
         } catch (Exception e) {
             System.err.println("Exception @ readModelFiles");
@@ -147,82 +169,235 @@ public class LogRegParamEstimator {
         }
 
         System.out.println("End:\treading model files");
-        return new Pair(modelMap, trainAuthorIdList);
+        return new Pair<>(modelMap, modelList);
     }
 
-    private static List<Paper> deepCopyInRandomOrder(List<Paper> paperList) {
-        List<Paper> tmpPaperList = new ArrayList<>();
-        for (Paper paper : paperList) {
-            tmpPaperList.add(paper);
+    private static void shuffle(int[] idxs) {
+        Random rand = ThreadLocalRandom.current();
+        for (int i = idxs.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int idx = idxs[i];
+            idxs[i] = idxs[j];
+            idxs[j] = idx;
         }
-
-        List<Paper> copyPaperList = new ArrayList<>();
-        Random rand = new Random();
-        while (tmpPaperList.size() > 0) {
-            Paper paper = tmpPaperList.remove(rand.nextInt(tmpPaperList.size()));
-            copyPaperList.add(paper);
-        }
-        return copyPaperList;
     }
 
-    private static double calcInnerProduct(double[] params, double[] featureValues) {
+    private static double calcInnerProduct(double[] params, double[] featureValues, int offset) {
         double ip = 0.0d;
         for (int i = 0; i < params.length; i++) {
-            ip += params[i] * featureValues[i];
+            ip += params[i] * featureValues[offset + i];
         }
         return ip;
     }
 
-    private static double[] calcDifferentiatedLogLogReg(double[] params, double[] featureValues) {
-        double[] values = MiscUtil.initDoubleArray(params.length, 0.0d);
-        double ip = calcInnerProduct(params, featureValues);
-        double expVal = Math.exp(-ip);
-        double commonTerm = expVal / (1.0d + expVal);
-        for (int i = 0; i < values.length; i++) {
-            values[i] = featureValues[i] * commonTerm;
-        }
-        return values;
+    // derivative of log logistic function is featureValues * (this term)
+    private static double calcDifferentiatedTerm(double[] params, double[] featureValues, int offset) {
+        double expVal = Math.exp(-calcInnerProduct(params, featureValues, offset));
+        return expVal / (1.0d + expVal);
     }
 
-    private static void updateParams(double[] params, List<Paper> batchPaperList,
-                                     Map<String, LogisticRegressionModel> modelMap, List<String> trainAuthorIdList,
-                                     int negativeSampleSize, double regParam, double learnRate) {
-        double[] gradParams = MiscUtil.initDoubleArray(params.length, 0.0d);
-        int count = 0;
-        Random rand = new Random();
-        while (batchPaperList.size() > 0) {
-            Paper paper = batchPaperList.remove(0);
+    // for each pair of paper paperIdxs[fromIdx, toIdx) in paperStore and its author, adds a row of the positive sample
+    // followed by rows of negative samples to the matrix, and # of the pairs to paperGroupSizes if not null
+    private static void buildFeatureMatrix(PaperStore paperStore, int[] paperIdxs, int fromIdx, int toIdx,
+                                           Map<String, LogisticRegressionModel> modelMap,
+                                           List<LogisticRegressionModel> modelList, NegativeSampler sampler,
+                                           int negativeSampleSize, FeatureMatrix matrix, int[] paperGroupSizes) {
+        matrix.clear();
+        int[] sampleModelIdxs = new int[negativeSampleSize];
+        for (int i = fromIdx; i < toIdx; i++) {
+            Paper paper = paperStore.getPaper(paperIdxs[i]);
             for (String authorId : paper.getAuthorIdSet()) {
-                if (!modelMap.containsKey(authorId)) {
+                LogisticRegressionModel model = modelMap.get(authorId);
+                if (model == null) {
                     continue;
                 }
 
-                double[] posFeatureValues = LogisticRegressionModel.extractFeatureValues(modelMap.get(authorId), paper);
-                if (!LogisticRegressionModel.checkIfValidValues(posFeatureValues)) {
+                int offset = matrix.addRow();
+                LogisticRegressionModel.extractFeatureValues(model, paper, matrix.getValues(), offset);
+                if (!LogisticRegressionModel.checkIfValidValues(matrix.getValues(), offset)
+                        || !sampler.sample(paper, negativeSampleSize, sampleModelIdxs)) {
+                    matrix.removeLastRow();
                     continue;
                 }
 
-                double[] posGradParams = calcDifferentiatedLogLogReg(params, posFeatureValues);
-                int sampleCount = 0;
-                double[] negGradParams = MiscUtil.initDoubleArray(params.length, 0.0d);
-                while (sampleCount < negativeSampleSize) {
-                    int idx = rand.nextInt(negativeSampleSize);
-                    String id = trainAuthorIdList.get(idx);
-                    if (paper.checkIfAuthor(id)) {
-                        continue;
-                    }
+                if (paperGroupSizes != null) {
+                    paperGroupSizes[paperIdxs[i]]++;
+                }
 
-                    double[] negFeatureValues = LogisticRegressionModel.extractFeatureValues(modelMap.get(id), paper);
-                    double[] subParams = calcDifferentiatedLogLogReg(params, negFeatureValues);
-                    for (int i = 0; i < subParams.length; i++) {
-                        negGradParams[i] += subParams[i];
+                for (int sampleModelIdx : sampleModelIdxs) {
+                    offset = matrix.addRow();
+                    LogisticRegressionModel.extractFeatureValues(modelList.get(sampleModelIdx), paper,
+                            matrix.getValues(), offset);
+                }
+            }
+        }
+    }
+
+    // sets gradients of the samples in the matrix to gradParams, and returns # of positive samples
+    private static int calcGradients(double[] params, FeatureMatrix matrix, int negativeSampleSize,
+                                     double[] negGradParams, double[] gradParams) {
+        double[] values = matrix.getValues();
+        int columnSize = matrix.columnSize;
+        int groupSize = negativeSampleSize + 1;
+        int count = matrix.getRowSize() / groupSize;
+        Arrays.fill(gradParams, 0.0d);
+        for (int i = 0; i < count; i++) {
+            int posOffset = i * groupSize * columnSize;
+            Arrays.fill(negGradParams, 0.0d);
+            for (int j = 1; j < groupSize; j++) {
+                int negOffset = posOffset + j * columnSize;
+                double negTerm = calcDifferentiatedTerm(params, values, negOffset);
+                for (int k = 0; k < columnSize; k++) {
+                    negGradParams[k] += values[negOffset + k] * negTerm;
+                }
+            }
+
+            double posTerm = calcDifferentiatedTerm(params, values, posOffset);
+            for (int k = 0; k < columnSize; k++) {
+                gradParams[k] += values[posOffset + k] * posTerm - negGradParams[k] / (double) negativeSampleSize;
+            }
+        }
+        return count;
+    }
+
+    // extracts features of the papers once, in batches split into shards as in updateParams
+    private static void buildFeatureStore(PaperStore paperStore, int[] paperIdxs,
+                                          Map<String, LogisticRegressionModel> modelMap,
+                                          List<LogisticRegressionModel> modelList, NegativeSampler sampler,
+                                          int negativePoolSize, int batchSize,
+                                          List<FeatureMatrix> matrixList, ExecutorService executor,
+                                          long fingerprint, String storeFilePath) {
+        System.out.println("Start:\tbuilding feature store");
+        File tmpFile = new File(storeFilePath + ".tmp");
+        try {
+            FileUtil.makeParentDir(storeFilePath);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            FeatureStore.writeHeader(out, PARAM_SIZE, negativePoolSize, fingerprint);
+            int paperSize = paperStore.size();
+            int shardSize = matrixList.size();
+            int[] paperGroupSizes = new int[paperSize];
+            for (int i = 0; i < paperSize; i += batchSize) {
+                long size = Math.min(batchSize, paperSize - i);
+                List<Future<?>> futureList = new ArrayList<>();
+                for (int j = 0; j < shardSize; j++) {
+                    int shardFromIdx = i + (int) (size * j / shardSize);
+                    int shardToIdx = i + (int) (size * (j + 1) / shardSize);
+                    FeatureMatrix matrix = matrixList.get(j);
+                    Runnable task = () -> buildFeatureMatrix(paperStore, paperIdxs, shardFromIdx, shardToIdx, modelMap,
+                            modelList, sampler, negativePoolSize, matrix, paperGroupSizes);
+                    if (executor == null) {
+                        task.run();
+                    } else {
+                        futureList.add(executor.submit(task));
                     }
-                    sampleCount++;
                 }
-                for (int i = 0; i < gradParams.length; i++) {
-                    gradParams[i] += posGradParams[i] - negGradParams[i] / (double) negativeSampleSize;
+
+                for (Future<?> future : futureList) {
+                    future.get();
                 }
-                count++;
+
+                for (FeatureMatrix matrix : matrixList) {
+                    FeatureStore.writeRows(out, matrix);
+                }
+            }
+
+            FeatureStore.writeFooter(out, paperGroupSizes);
+            out.close();
+            FileUtil.replaceFile(tmpFile, storeFilePath);
+        } catch (Exception e) {
+            System.err.println("Exception @ buildFeatureStore");
+            e.printStackTrace();
+        }
+        System.out.println("End:\tbuilding feature store");
+    }
+
+    // features depend on the training papers, the models and the negative sampling mode.
+    // Files rewritten in place (e.g., by ModelUpdater) often keep their lengths, so modified times are included
+    private static long calcFingerprint(String trainDirPath, String modelDirPath, int modelSize,
+                                        String samplingMode) {
+        return FileUtil.calcFingerprint(samplingMode + Config.FIRST_DELIMITER + String.valueOf(modelSize),
+                trainDirPath, modelDirPath);
+    }
+
+    // returns null if the store doesn't exist or doesn't fit the inputs, papers and negative pool size
+    private static FeatureStore openFeatureStore(String storeFilePath, long fingerprint, int paperSize,
+                                                 int negativePoolSize) {
+        File storeFile = new File(storeFilePath);
+        if (!storeFile.isFile()) {
+            return null;
+        }
+
+        try {
+            FeatureStore store = new FeatureStore(storeFile);
+            if (store.fingerprint == fingerprint && store.columnSize == PARAM_SIZE
+                    && store.getPaperSize() == paperSize && store.negativePoolSize >= negativePoolSize) {
+                return store;
+            }
+
+            System.out.println("\tFeature store " + storeFilePath + " doesn't fit the inputs and is built again");
+        } catch (Exception e) {
+            System.err.println("Exception @ openFeatureStore");
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // features of papers paperIdxs[fromIdx, toIdx) are read from the store if store is not null,
+    // otherwise extracted from the papers in paperStore
+    private static int calcShardGradients(double[] params, PaperStore paperStore, FeatureStore store, int[] paperIdxs,
+                                          int fromIdx, int toIdx, Map<String, LogisticRegressionModel> modelMap,
+                                          List<LogisticRegressionModel> modelList, NegativeSampler sampler,
+                                          int negativeSampleSize, FeatureMatrix matrix, double[] negGradParams,
+                                          double[] gradParams) {
+        if (store != null) {
+            store.readGroups(paperIdxs, fromIdx, toIdx, negativeSampleSize, matrix);
+        } else {
+            buildFeatureMatrix(paperStore, paperIdxs, fromIdx, toIdx, modelMap, modelList, sampler,
+                    negativeSampleSize, matrix, null);
+        }
+        return calcGradients(params, matrix, negativeSampleSize, negGradParams, gradParams);
+    }
+
+    // the batch [fromIdx, toIdx) is split into shards, one per matrix, and their gradients are summed up
+    private static void updateParams(double[] params, PaperStore paperStore, FeatureStore store, int[] paperIdxs,
+                                     int fromIdx, int toIdx, Map<String, LogisticRegressionModel> modelMap,
+                                     List<LogisticRegressionModel> modelList, NegativeSampler sampler,
+                                     int negativeSampleSize, double regParam,
+                                     double learnRate, List<FeatureMatrix> matrixList, double[][] negGradParamsArray,
+                                     double[][] gradParamsArray, ExecutorService executor) {
+        int shardSize = matrixList.size();
+        long batchSize = toIdx - fromIdx;
+        int count = 0;
+        List<Future<Integer>> futureList = new ArrayList<>();
+        for (int i = 0; i < shardSize; i++) {
+            int shardFromIdx = fromIdx + (int) (batchSize * i / shardSize);
+            int shardToIdx = fromIdx + (int) (batchSize * (i + 1) / shardSize);
+            FeatureMatrix matrix = matrixList.get(i);
+            double[] negGradParams = negGradParamsArray[i];
+            double[] shardGradParams = gradParamsArray[i];
+            if (executor == null) {
+                count += calcShardGradients(params, paperStore, store, paperIdxs, shardFromIdx, shardToIdx, modelMap,
+                        modelList, sampler, negativeSampleSize, matrix, negGradParams, shardGradParams);
+            } else {
+                futureList.add(executor.submit(() -> calcShardGradients(params, paperStore, store, paperIdxs,
+                        shardFromIdx, shardToIdx, modelMap, modelList, sampler, negativeSampleSize, matrix,
+                        negGradParams, shardGradParams)));
+            }
+        }
+
+        try {
+            for (Future<Integer> future : futureList) {
+                count += future.get();
+            }
+        } catch (Exception e) {
+            System.err.println("Exception @ updateParams");
+            e.printStackTrace();
+        }
+
+        double[] gradParams = MiscUtil.initDoubleArray(params.length, 0.0d);
+        for (double[] shardGradParams : gradParamsArray) {
+            for (int i = 0; i < gradParams.length; i++) {
+                gradParams[i] += shardGradParams[i];
             }
         }
 
@@ -262,33 +437,30 @@ public class LogRegParamEstimator {
         }
     }
 
-    private static void showLogLikelihood(double[] params, List<Paper> paperList, Map<String, LogisticRegressionModel> modelMap,
-                                          List<String> trainAuthorIdList, int negativeSampleSize, double regParam) {
+    private static void showLogLikelihood(double[] params, PaperStore paperStore,
+                                          Map<String, LogisticRegressionModel> modelMap,
+                                          List<LogisticRegressionModel> modelList, NegativeSampler sampler,
+                                          int negativeSampleSize, double regParam) {
         double logLikelihood = 0.0d;
         int count = 0;
-        Random rand = new Random();
-        while (paperList.size() > 0) {
-            Paper paper = paperList.remove(0);
+        double[] featureValues = new double[PARAM_SIZE];
+        int[] sampleModelIdxs = new int[negativeSampleSize];
+        int paperSize = paperStore.size();
+        for (int i = 0; i < paperSize; i++) {
+            Paper paper = paperStore.getPaper(i);
             for (String authorId : paper.getAuthorIdSet()) {
-                if (!modelMap.containsKey(authorId)) {
+                if (!modelMap.containsKey(authorId) || !sampler.sample(paper, negativeSampleSize, sampleModelIdxs)) {
                     continue;
                 }
 
-                int sampleCount = 0;
                 double negLogLikelihood = 0.0d;
-                while (sampleCount < negativeSampleSize) {
-                    int idx = rand.nextInt(negativeSampleSize);
-                    String id = trainAuthorIdList.get(idx);
-                    if (paper.checkIfAuthor(id)) {
-                        continue;
-                    }
-
-                    double[] featureValues = LogisticRegressionModel.extractFeatureValues(modelMap.get(id), paper);
+                for (int sampleModelIdx : sampleModelIdxs) {
+                    LogisticRegressionModel.extractFeatureValues(modelList.get(sampleModelIdx), paper, featureValues,
+                            0);
                     negLogLikelihood += Math.log(LogisticRegressionModel.logisticFunction(featureValues, params));
-                    sampleCount++;
                 }
 
-                double[] featureValues = LogisticRegressionModel.extractFeatureValues(modelMap.get(authorId), paper);
+                LogisticRegressionModel.extractFeatureValues(modelMap.get(authorId), paper, featureValues, 0);
                 double posLogLikelihood = Math.log(LogisticRegressionModel.logisticFunction(featureValues, params));
                 logLikelihood += posLogLikelihood - negLogLikelihood / (double) negativeSampleSize;
                 count++;
@@ -315,7 +487,8 @@ public class LogRegParamEstimator {
     }
 
     private static void estimate(String trainDirPath, String modelDirPath, double randomValueScale,
-                                 String[] optionParams, boolean llPrintFlag, String outputFilePath) {
+                                 String[] optionParams, boolean llPrintFlag, int threadSize, String storeFilePath,
+                                 int negativePoolSize, String samplingMode, String outputFilePath) {
         double[] params = new double[PARAM_SIZE];
         double[] preParams = new double[PARAM_SIZE];
         initParams(outputFilePath, params, randomValueScale, optionParams);
@@ -326,32 +499,63 @@ public class LogRegParamEstimator {
         double learnRate = Double.parseDouble(optionParams[4]);
         double threshold = Double.parseDouble(optionParams[5]);
         int startIdx = Integer.parseInt(optionParams[6]);
-        List<Paper> trainPaperList = readPaperFiles(trainDirPath);
-        Pair<Map<String, LogisticRegressionModel>, List<String>> pair = readModelFiles(modelDirPath);
+        PaperStore trainPaperStore = readPaperFiles(trainDirPath);
+        Pair<Map<String, LogisticRegressionModel>, List<LogisticRegressionModel>> pair = readModelFiles(modelDirPath);
         Map<String, LogisticRegressionModel> modelMap = pair.first;
-        List<String> trainAuthorIdList = pair.second;
+        List<LogisticRegressionModel> modelList = pair.second;
+        NegativeSampler sampler = new NegativeSampler(modelList, samplingMode);
+        // feature matrices and gradient arrays of batch shards are reused through epochs
+        ExecutorService executor = threadSize > 1 ? Executors.newFixedThreadPool(threadSize) : null;
+        List<FeatureMatrix> matrixList = new ArrayList<>();
+        for (int i = 0; i < threadSize; i++) {
+            matrixList.add(new FeatureMatrix(PARAM_SIZE));
+        }
+
+        double[][] negGradParamsArray = new double[threadSize][PARAM_SIZE];
+        double[][] gradParamsArray = new double[threadSize][PARAM_SIZE];
+        int paperSize = trainPaperStore.size();
+        // papers are shuffled through their indices in the store
+        int[] paperIdxs = new int[paperSize];
+        for (int i = 0; i < paperSize; i++) {
+            paperIdxs[i] = i;
+        }
+
+        FeatureStore store = null;
+        if (storeFilePath != null) {
+            // features don't depend on params, so epochs read features from the store instead of extracting them
+            // epochs draw different negative samples only from a pool larger than a sample
+            if (negativePoolSize <= negativeSampleSize) {
+                negativePoolSize = negativeSampleSize * DEFAULT_NEGATIVE_POOL_RATE;
+            }
+
+            long fingerprint = calcFingerprint(trainDirPath, modelDirPath, modelList.size(), samplingMode);
+            store = openFeatureStore(storeFilePath, fingerprint, paperSize, negativePoolSize);
+            if (store == null) {
+                buildFeatureStore(trainPaperStore, paperIdxs, modelMap, modelList, sampler, negativePoolSize,
+                        batchSize, matrixList, executor, fingerprint, storeFilePath);
+                store = openFeatureStore(storeFilePath, fingerprint, paperSize, negativePoolSize);
+            }
+        }
+
         int t = 0;
         System.out.println("Start:\testimating parameters");
         for (int i = startIdx; i < epochSize; i++) {
             System.out.println("\tEpoch " + String.valueOf(i + 1) + "/" + String.valueOf(epochSize));
-            List<Paper> copyTrainPaperList = deepCopyInRandomOrder(trainPaperList);
+            shuffle(paperIdxs);
             MiscUtil.deepCopy(params, preParams);
-            while (copyTrainPaperList.size() > 0) {
+            for (int j = 0; j < paperSize; j += batchSize) {
                 t++;
-                List<Paper> batchPaperList = new ArrayList<>();
-                int size = copyTrainPaperList.size() > batchSize ? batchSize : copyTrainPaperList.size();
-                for (int j = 0; j < size; j++) {
-                    batchPaperList.add(copyTrainPaperList.remove(0));
-                }
-                updateParams(params, batchPaperList, modelMap, trainAuthorIdList, negativeSampleSize,
-                        regParam, learnRate / (double) t);
+                int toIdx = Math.min(j + batchSize, paperSize);
+                updateParams(params, trainPaperStore, store, paperIdxs, j, toIdx, modelMap, modelList, sampler,
+                        negativeSampleSize, regParam, learnRate / (double) t, matrixList, negGradParamsArray,
+                        gradParamsArray, executor);
             }
 
             writeUpdatedParams(params, epochSize, batchSize, negativeSampleSize, regParam, learnRate, threshold, outputFilePath);
             System.out.println("\t\tWrote updated parameters");
             if (llPrintFlag) {
-                copyTrainPaperList = deepCopyInRandomOrder(trainPaperList);
-                showLogLikelihood(params, copyTrainPaperList, modelMap, trainAuthorIdList, negativeSampleSize, regParam);
+                showLogLikelihood(params, trainPaperStore, modelMap, modelList, sampler, negativeSampleSize,
+                        regParam);
             }
 
             if (checkIfConverged(params, preParams, threshold)) {
@@ -359,6 +563,10 @@ public class LogRegParamEstimator {
                 break;
             }
         }
+
+        if (executor != null) {
+            executor.shutdown();
+        }
         System.out.println("End:\testimating parameters");
     }
 
@@ -385,7 +593,15 @@ public class LogRegParamEstimator {
         optionParams[6] = cl.hasOption(START_IDX_OPTION) ?
                 cl.getOptionValue(START_IDX_OPTION) : String.valueOf(DEFAULT_START_IDX_SIZE);
         boolean llPrintFlag = cl.hasOption(LOG_LIKELIHOOD_OPTION);
+        int threadSize = cl.hasOption(THREAD_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(THREAD_SIZE_OPTION)) : DEFAULT_THREAD_SIZE;
+        String storeFilePath = cl.getOptionValue(FEATURE_STORE_OPTION);
+        int negativePoolSize = cl.hasOption(NEGATIVE_POOL_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(NEGATIVE_POOL_SIZE_OPTION)) : 0;
+        String samplingMode = cl.hasOption(NEGATIVE_SAMPLING_MODE_OPTION) ?
+                cl.getOptionValue(NEGATIVE_SAMPLING_MODE_OPTION) : NegativeSampler.UNIFORM_MODE;
         String outputFilePath = cl.getOptionValue(Config.OUTPUT_FILE_OPTION);
-        estimate(trainDirPath, modelDirPath, randomValueScale, optionParams, llPrintFlag, outputFilePath);
+        estimate(trainDirPath, modelDirPath, randomValueScale, optionParams, llPrintFlag, threadSize, storeFilePath,
+                negativePoolSize, samplingMode, outputFilePath);
     }
 }
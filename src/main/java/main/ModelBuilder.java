@@ -7,18 +7,31 @@ import model.*;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import structure.Author;
+import structure.IntIntMap;
+import structure.Pair;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class ModelBuilder {
     private static final String TRAIN_DIR_OPTION = "train";
     private static final String MODEL_TYPE_OPTION = "mt";
     private static final String MIN_PAPER_SIZE_OPTION = "mps";
+    private static final String BINARY_OPTION = "bin";
+    private static final String THREAD_SIZE_OPTION = "threads";
+    private static final String COUNT_FILE_OPTION = "counts";
+    private static final String TRAIN_SIZE_OPTION = "trainsize";
     private static final int DEFAULT_MIN_PAPER_SIZE = 1;
+    private static final int DEFAULT_THREAD_SIZE = 1;
 
     private static Options getOptions() {
         Options options = new Options();
@@ -27,6 +40,14 @@ public class ModelBuilder {
         MiscUtil.setOption(MIN_PAPER_SIZE_OPTION, true, false,
                 "[param, optional] minimum number of papers each author requires to have, default = "
                 + String.valueOf(DEFAULT_MIN_PAPER_SIZE), options);
+        MiscUtil.setOption(BINARY_OPTION, false, false,
+                "[param, optional] write model files in binary format instead of text format", options);
+        MiscUtil.setOption(THREAD_SIZE_OPTION, true, false,
+                "[param, optional] number of threads training shards, default = "
+                        + String.valueOf(DEFAULT_THREAD_SIZE), options);
+        MiscUtil.setOption(COUNT_FILE_OPTION, true, false,
+                "[output, optional] global citation count file for ModelUpdater (" + HillProvostBestModel.TYPE
+                        + " and " + CommonCitationModel.TYPE + ")", options);
         MiscUtil.setOption(Config.OUTPUT_DIR_OPTION, true, true, "[output] output dir", options);
         return options;
     }
@@ -53,14 +74,20 @@ public class ModelBuilder {
         return null;
     }
 
-    private static List<BaseModel> readAuthorFiles(List<File> trainingFileList, String modelType,
-                                                  CommandLine cl, int minPaperSize) {
+    // returns # of author files and models of available authors, author files are streamed from the dir
+    private static Pair<Integer, List<BaseModel>> readAuthorFiles(File authorDir, String modelType,
+                                                                 CommandLine cl, int minPaperSize) {
         System.out.println("\tStart:\treading author files");
         List<BaseModel> modelList = new ArrayList<>();
+        int fileCount = 0;
         try {
-            for (File trainingFile : trainingFileList) {
+            Stream<File> trainingFileStream = FileUtil.walkFiles(authorDir.getPath());
+            Iterator<File> iterator = trainingFileStream.iterator();
+            while (iterator.hasNext()) {
+                File trainingFile = iterator.next();
+                fileCount++;
                 List<String> lineList = new ArrayList<>();
-                BufferedReader br = new BufferedReader(new FileReader(trainingFile));
+                BufferedReader br = FileUtil.getReader(trainingFile);
                 String line;
                 while ((line = br.readLine()) != null) {
                     lineList.add(line);
@@ -74,106 +101,203 @@ public class ModelBuilder {
                     modelList.add(model);
                 }
             }
+            trainingFileStream.close();
         } catch (Exception e) {
             System.err.println("Exception @ readAuthorFiles");
             e.printStackTrace();
         }
 
         System.out.println("\tEnd:\treading author files");
-        return modelList;
+        return new Pair<>(fileCount, modelList);
+    }
+
+    private static boolean writeModelFile(List<BaseModel> modelList, String modelType, String outputFilePath) {
+        try {
+            ModelFileWriter writer = new ModelFileWriter(outputFilePath, modelType);
+            int size = modelList.size();
+            for (int i = 0; i < size; i++) {
+                // released as soon as it is written
+                writer.write(modelList.set(i, null));
+            }
+            modelList.clear();
+            writer.close();
+        } catch (Exception e) {
+            System.err.println("Exception @ writeModelFile");
+            e.printStackTrace();
+            return false;
+        }
+        return true;
     }
 
-    private static void writeModelFile(List<BaseModel> modelList, String outputFilePath) {
+    // returns false if the file failed to be written
+    static boolean writeModelFile(List<BaseModel> modelList, String modelType, boolean binary,
+                                  String outputFilePath) {
+        if (binary) {
+            return writeModelFile(modelList, modelType, outputFilePath);
+        }
+
         FileUtil.makeParentDir(outputFilePath);
         try {
             BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outputFilePath)));
             int size = modelList.size();
             for (int i = 0; i < size; i++) {
-                BaseModel model = modelList.remove(0);
-                bw.write(model.toString());
+                bw.write(modelList.set(i, null).toString());
                 bw.newLine();
             }
+            modelList.clear();
             bw.close();
         } catch (Exception e) {
             System.err.println("Exception @ writeModelFile");
             e.printStackTrace();
+            return false;
         }
+        return true;
     }
 
-    private static void build(String trainingDirPath, String modelType,
-                                 CommandLine cl, int minPaperSize, String outputDirPath) {
-        List<File> authorDirList = FileUtil.getDirList(trainingDirPath);
-        if (authorDirList.size() == 0) {
-            authorDirList.add(new File(trainingDirPath));
-        }
+    private static boolean checkIfGlobalWeightModel(String modelType, CommandLine cl) {
+        return HillProvostBestModel.checkIfValid(modelType, cl) || SocialCitationModel.checkIfValid(modelType, cl)
+                || CommonCitationModel.checkIfValid(modelType, cl) || LogisticRegressionModel.checkIfValid(modelType);
+    }
 
+    // trains shards taken in turn from authorDirList, returns # of author files and # of available authors.
+    // In the first pass of models requiring global counts, counts and paper IDs are shared to the given maps,
+    // and in the second pass, the maps are used to set weights
+    private static int[] trainShards(List<File> authorDirList, AtomicInteger shardIdx, String modelType,
+                                     CommandLine cl, int minPaperSize, boolean binary, boolean secondPass,
+                                     IntIntMap totalCitationCountMap, Map<String, int[]> paperIdsMap,
+                                     String outputDirPath) {
+        boolean globalWeight = checkIfGlobalWeightModel(modelType, cl);
+        boolean social = SocialCitationModel.checkIfValid(modelType) || LogisticRegressionModel.checkIfValid(modelType);
         int fileCount = 0;
         int availableCount = 0;
         int dirSize = authorDirList.size();
-        List<BaseModel> allModelList = new ArrayList<>();
-        Map<String, List<BaseModel>> modelListMap = new HashMap<>();
-        for (int i = 0; i < dirSize; i++) {
-            File authorDir = authorDirList.remove(0);
-            System.out.println("Stage " + String.valueOf(i + 1) + "/" + String.valueOf(dirSize));
-            List<File> trainingFileList = FileUtil.getFileListR(authorDir.getPath());
-            fileCount += trainingFileList.size();
-            List<BaseModel> modelList = readAuthorFiles(trainingFileList, modelType, cl, minPaperSize);
-            modelListMap.put(authorDir.getName(), modelList);
-            allModelList.addAll(modelList);
-            availableCount += modelList.size();
-            trainingFileList.clear();
-            if (!HillProvostBestModel.checkIfValid(modelType, cl) && !SocialCitationModel.checkIfValid(modelType, cl)
-                    && !CommonCitationModel.checkIfValid(modelType, cl)
-                    && !LogisticRegressionModel.checkIfValid(modelType)) {
-                writeModelFile(modelList, outputDirPath + authorDir.getName());
+        int i;
+        while ((i = shardIdx.getAndIncrement()) < dirSize) {
+            File authorDir = authorDirList.get(i);
+            String stageStr = globalWeight ? (secondPass ? "B " : "A ") : "";
+            System.out.println("Stage " + stageStr + String.valueOf(i + 1) + "/" + String.valueOf(dirSize));
+            Pair<Integer, List<BaseModel>> pair = readAuthorFiles(authorDir, modelType, cl, minPaperSize);
+            fileCount += pair.first;
+            List<BaseModel> modelList = pair.second;
+            if (!globalWeight) {
+                availableCount += modelList.size();
+                writeModelFile(modelList, modelType, binary, outputDirPath + FileUtil.getDirName(authorDir));
+                continue;
             }
-        }
 
-        if (HillProvostBestModel.checkIfValid(modelType, cl) || SocialCitationModel.checkIfValid(modelType, cl)
-                || CommonCitationModel.checkIfValid(modelType, cl) || LogisticRegressionModel.checkIfValid(modelType)) {
-            if (SocialCitationModel.checkIfValid(modelType) || LogisticRegressionModel.checkIfValid(modelType)) {
-                Map<String, Integer> modelIdMap = new HashMap<>();
-                int allSize = allModelList.size();
-                for (int i = 0; i < allSize; i++) {
-                    BaseModel model = allModelList.get(i);
-                    modelIdMap.put(model.authorId, i);
-                }
-
-                for (BaseModel model : allModelList) {
-                    model.setSocialPaperIds(allModelList, modelIdMap);
+            if (!secondPass) {
+                availableCount += modelList.size();
+                for (BaseModel model : modelList) {
+                    model.shareCitationCounts(totalCitationCountMap);
+                    if (social) {
+                        model.sharePaperIds(paperIdsMap);
+                    }
                 }
+                continue;
             }
 
-            if (HillProvostBestModel.checkIfValid(modelType, cl) || SocialCitationModel.checkIfValid(modelType, cl)
-                    || CommonCitationModel.checkIfValid(modelType, cl)
-                    || LogisticRegressionModel.checkIfValid(modelType)) {
-                Map<String, Integer> totalCitationCountMap = new HashMap<>();
-                for (BaseModel model : allModelList) {
-                    model.shareCitationCounts(totalCitationCountMap);
+            // available models are compacted to the front in order
+            int size = modelList.size();
+            int keptSize = 0;
+            for (int j = 0; j < size; j++) {
+                BaseModel model = modelList.get(j);
+                if (social) {
+                    model.setSocialPaperIds(paperIdsMap);
                 }
 
-                for (BaseModel model : allModelList) {
-                    model.setInverseCitationFrequencyWeights(totalCitationCountMap);
+                model.setInverseCitationFrequencyWeights(totalCitationCountMap);
+                if ((SocialCitationModel.checkIfValid(modelType) == model.getSocialCitationIdSize() > 0)
+                        || !SocialCitationModel.checkIfValid(modelType)) {
+                    modelList.set(keptSize++, model);
                 }
             }
 
-            availableCount = 0;
-            for (String key : modelListMap.keySet()) {
-                List<BaseModel> modelList = modelListMap.get(key);
-                int size = modelList.size();
-                for (int i = 0; i < size; i++) {
-                    BaseModel model = modelList.remove(0);
-                    if ((SocialCitationModel.checkIfValid(modelType) == model.getSocialCitationIdSize() > 0)
-                            || !SocialCitationModel.checkIfValid(modelType)) {
-                        modelList.add(model);
-                    }
+            modelList.subList(keptSize, size).clear();
+
+            availableCount += modelList.size();
+            writeModelFile(modelList, modelType, binary, outputDirPath + FileUtil.getDirName(authorDir));
+        }
+        return new int[]{fileCount, availableCount};
+    }
+
+    private static int[] trainShards(List<File> authorDirList, String modelType, CommandLine cl, int minPaperSize,
+                                     boolean binary, boolean secondPass, IntIntMap totalCitationCountMap,
+                                     Map<String, int[]> paperIdsMap, ExecutorService executor, int threadSize,
+                                     String outputDirPath) {
+        AtomicInteger shardIdx = new AtomicInteger(0);
+        if (executor == null) {
+            return trainShards(authorDirList, shardIdx, modelType, cl, minPaperSize, binary, secondPass,
+                    totalCitationCountMap, paperIdsMap, outputDirPath);
+        }
+
+        // each worker shares counts to its own partial maps in the first pass, and they are merged at the end
+        List<IntIntMap> partialCountMapList = new ArrayList<>();
+        List<Map<String, int[]>> partialPaperIdsMapList = new ArrayList<>();
+        List<Future<int[]>> futureList = new ArrayList<>();
+        for (int i = 0; i < threadSize; i++) {
+            IntIntMap countMap = secondPass ? totalCitationCountMap : new IntIntMap();
+            Map<String, int[]> idsMap = secondPass ? paperIdsMap : new HashMap<>();
+            partialCountMapList.add(countMap);
+            partialPaperIdsMapList.add(idsMap);
+            futureList.add(executor.submit(() -> trainShards(authorDirList, shardIdx, modelType, cl, minPaperSize,
+                    binary, secondPass, countMap, idsMap, outputDirPath)));
+        }
+
+        int[] counts = new int[2];
+        try {
+            for (int i = 0; i < threadSize; i++) {
+                int[] partialCounts = futureList.get(i).get();
+                counts[0] += partialCounts[0];
+                counts[1] += partialCounts[1];
+                if (!secondPass) {
+                    totalCitationCountMap.addAll(partialCountMapList.get(i));
+                    paperIdsMap.putAll(partialPaperIdsMapList.get(i));
                 }
+            }
+        } catch (Exception e) {
+            System.err.println("Exception @ trainShards");
+            e.printStackTrace();
+        }
+        return counts;
+    }
 
-                availableCount += modelList.size();
-                writeModelFile(modelList, outputDirPath + key);
+    private static void build(String trainingDirPath, String modelType, CommandLine cl, int minPaperSize,
+                              boolean binary, int threadSize, String countFilePath, String outputDirPath) {
+        List<File> authorDirList = FileUtil.getDirList(trainingDirPath);
+        if (authorDirList.size() == 0) {
+            authorDirList.add(new File(trainingDirPath));
+        }
+
+        // models requiring global counts are trained twice: once for the counts and once for writing,
+        // so that only one shard of models per thread is kept in memory at a time
+        ExecutorService executor = threadSize > 1 ? Executors.newFixedThreadPool(threadSize) : null;
+        IntIntMap totalCitationCountMap = new IntIntMap();
+        Map<String, int[]> paperIdsMap = new HashMap<>();
+        int[] counts = trainShards(authorDirList, modelType, cl, minPaperSize, binary, false,
+                totalCitationCountMap, paperIdsMap, executor, threadSize, outputDirPath);
+        int fileCount = counts[0];
+        int availableCount = counts[1];
+        if (countFilePath != null && (HillProvostBestModel.checkIfValid(modelType, cl)
+                || CommonCitationModel.checkIfValid(modelType, cl))) {
+            try {
+                ModelFileWriter.writeCitationCounts(countFilePath,
+                        Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION)), totalCitationCountMap);
+            } catch (Exception e) {
+                System.err.println("Exception @ build");
+                e.printStackTrace();
             }
         }
 
+        if (checkIfGlobalWeightModel(modelType, cl)) {
+            counts = trainShards(authorDirList, modelType, cl, minPaperSize, binary, true,
+                    totalCitationCountMap, paperIdsMap, executor, threadSize, outputDirPath);
+            availableCount = counts[1];
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+
         System.out.println(String.valueOf(availableCount) + " available authors");
         System.out.println(String.valueOf(fileCount - availableCount) + " ignored authors");
     }
@@ -186,7 +310,11 @@ public class ModelBuilder {
         String modelType = cl.getOptionValue(MODEL_TYPE_OPTION);
         int minPaperSize = cl.hasOption(MIN_PAPER_SIZE_OPTION) ?
                 Integer.parseInt(cl.getOptionValue(MIN_PAPER_SIZE_OPTION)) : DEFAULT_MIN_PAPER_SIZE;
+        boolean binary = cl.hasOption(BINARY_OPTION);
+        int threadSize = cl.hasOption(THREAD_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(THREAD_SIZE_OPTION)) : DEFAULT_THREAD_SIZE;
+        String countFilePath = cl.getOptionValue(COUNT_FILE_OPTION);
         String outputDirPath = cl.getOptionValue(Config.OUTPUT_DIR_OPTION);
-        build(trainingDirPath, modelType, cl, minPaperSize, outputDirPath);
+        build(trainingDirPath, modelType, cl, minPaperSize, binary, threadSize, countFilePath, outputDirPath);
     }
 }
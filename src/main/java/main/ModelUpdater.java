@@ -0,0 +1,327 @@
+package main;
+
+import common.Config;
+import common.FileUtil;
+import common.MiscUtil;
+import model.*;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import structure.Author;
+import structure.IntIntMap;
+import structure.IntSet;
+import structure.Paper;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+public class ModelUpdater {
+    private static final String MODEL_DIR_OPTION = "model";
+    private static final String DELTA_FILE_OPTION = "delta";
+    private static final String MODEL_TYPE_OPTION = "mt";
+    private static final String MIN_PAPER_SIZE_OPTION = "mps";
+    private static final String COUNT_FILE_OPTION = "counts";
+    private static final String TRAIN_SIZE_OPTION = "trainsize";
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+    private static final int DEFAULT_MIN_PAPER_SIZE = 1;
+
+    private static Options getOptions() {
+        Options options = new Options();
+        MiscUtil.setOption(MODEL_DIR_OPTION, true, true,
+                "[input/output] model dir built by ModelBuilder, updated model files are replaced atomically", options);
+        MiscUtil.setOption(DELTA_FILE_OPTION, true, true, "[input] file of new training papers", options);
+        MiscUtil.setOption(MODEL_TYPE_OPTION, true, true, "[param] model type (" + HillProvostBestModel.TYPE
+                + " or " + CommonCitationModel.TYPE + ")", options);
+        MiscUtil.setOption(MIN_PAPER_SIZE_OPTION, true, false,
+                "[param, optional] minimum number of papers each author requires to have, default = "
+                        + String.valueOf(DEFAULT_MIN_PAPER_SIZE), options);
+        MiscUtil.setOption(COUNT_FILE_OPTION, true, false,
+                "[input/output, optional] global citation count file written by ModelBuilder,"
+                        + " counts are taken from model files if it doesn't exist", options);
+        return options;
+    }
+
+    private static void setModelOptions(Options options) {
+        HillProvostBestModel.setOptions(options);
+    }
+
+    private static boolean checkIfSupported(String modelType, CommandLine cl) {
+        return HillProvostBestModel.checkIfValid(modelType, cl) || CommonCitationModel.checkIfValid(modelType, cl);
+    }
+
+    private static BaseModel selectModel(String modelType, Author author, CommandLine cl) {
+        if (HillProvostBestModel.checkIfValid(modelType, cl)) {
+            return new HillProvostBestModel(author, cl);
+        } else if (CommonCitationModel.checkIfValid(modelType, cl)) {
+            return new CommonCitationModel(author, cl);
+        }
+        return null;
+    }
+
+    private static BaseModel selectModel(String modelType, String line, CommandLine cl) {
+        if (HillProvostBestModel.checkIfValid(modelType, cl)) {
+            return new HillProvostBestModel(line, cl);
+        } else if (CommonCitationModel.checkIfValid(modelType, cl)) {
+            return new CommonCitationModel(line, cl);
+        }
+        return null;
+    }
+
+    private static BaseModel selectModel(String modelType, DataInput in, CommandLine cl) throws IOException {
+        if (HillProvostBestModel.checkIfValid(modelType, cl)) {
+            return new HillProvostBestModel(in, cl);
+        } else if (CommonCitationModel.checkIfValid(modelType, cl)) {
+            return new CommonCitationModel(in, cl);
+        }
+        return null;
+    }
+
+    // new papers of each author in the order the authors appear in the delta file
+    private static Map<String, Author> readDeltaFile(String deltaFilePath) {
+        Map<String, List<String>> lineListMap = new LinkedHashMap<>();
+        for (String line : FileUtil.readFile(new File(deltaFilePath))) {
+            Paper paper = new Paper(line);
+            for (String authorId : paper.getAuthorIdSet()) {
+                if (!lineListMap.containsKey(authorId)) {
+                    lineListMap.put(authorId, new ArrayList<>());
+                }
+                lineListMap.get(authorId).add(line);
+            }
+        }
+
+        Map<String, Author> authorMap = new LinkedHashMap<>();
+        for (String authorId : lineListMap.keySet()) {
+            authorMap.put(authorId, new Author(authorId, lineListMap.get(authorId)));
+        }
+        return authorMap;
+    }
+
+    private static List<File> getShardFileList(String modelDirPath) {
+        List<File> shardFileList = new ArrayList<>();
+        for (File file : FileUtil.getFileList(modelDirPath)) {
+            if (!file.getName().endsWith(TMP_FILE_SUFFIX)) {
+                shardFileList.add(file);
+            }
+        }
+
+        Collections.sort(shardFileList);
+        return shardFileList;
+    }
+
+    // model files are named after suffixes of author IDs as author dirs of training dir,
+    // or there is only one model file if training dir had no author dirs
+    private static String getShardName(String authorId, List<File> shardFileList) {
+        String firstShardName = shardFileList.get(0).getName();
+        if (shardFileList.size() == 1) {
+            return firstShardName;
+        }
+
+        int suffixSize = firstShardName.length();
+        return authorId.length() > suffixSize ? authorId.substring(authorId.length() - suffixSize) : authorId;
+    }
+
+    private static List<BaseModel> readShard(File shardFile, String modelType, CommandLine cl) throws IOException {
+        List<BaseModel> modelList = new ArrayList<>();
+        if (!shardFile.isFile()) {
+            return modelList;
+        }
+
+        ModelFileReader reader = new ModelFileReader(shardFile, modelType);
+        while (reader.next()) {
+            modelList.add(reader.binary ? selectModel(modelType, reader.getInput(), cl)
+                    : selectModel(modelType, reader.getLine(), cl));
+        }
+
+        reader.close();
+        return modelList;
+    }
+
+    // returns true if the counts are of the given # of training papers, and false if the file doesn't exist
+    // and counts are taken from model files instead
+    private static boolean readCitationCounts(String countFilePath, List<File> shardFileList, String modelType,
+                                              CommandLine cl, double trainPaperSize,
+                                              IntIntMap totalCitationCountMap) throws IOException {
+        if (countFilePath != null && new File(countFilePath).isFile()) {
+            return ModelFileReader.readCitationCounts(new File(countFilePath), totalCitationCountMap) == trainPaperSize;
+        }
+
+        System.out.println("Start:\tcounting citations in model files");
+        for (File shardFile : shardFileList) {
+            for (BaseModel model : readShard(shardFile, modelType, cl)) {
+                model.shareCitationCounts(totalCitationCountMap);
+            }
+        }
+
+        System.out.println("End:\tcounting citations in model files");
+        return false;
+    }
+
+    // papers of the author to be added to the model, or of a new model if model is null
+    private static List<Paper> selectNewPapers(Author author, BaseModel model, int minPaperSize) {
+        if (model != null) {
+            return model.selectNewPapers(author.papers);
+        }
+        return author.papers.length >= minPaperSize ? Arrays.asList(author.papers) : new ArrayList<>();
+    }
+
+    // adds counts of refs of new papers to the global counts (once per author as ModelBuilder shares counts
+    // of each model), and returns IDs whose global counts are changed
+    private static IntSet countNewCitations(Map<String, List<Author>> shardAuthorListMap, String modelDirPath,
+                                            String modelType, CommandLine cl, int minPaperSize,
+                                            IntIntMap totalCitationCountMap) throws IOException {
+        IntSet changedIdSet = new IntSet();
+        for (String shardName : shardAuthorListMap.keySet()) {
+            Map<String, BaseModel> modelMap = new HashMap<>();
+            for (BaseModel model : readShard(new File(modelDirPath, shardName), modelType, cl)) {
+                modelMap.put(model.authorId, model);
+            }
+
+            for (Author author : shardAuthorListMap.get(shardName)) {
+                for (Paper paper : selectNewPapers(author, modelMap.get(author.id), minPaperSize)) {
+                    for (int refPaperId : paper.refPaperIds) {
+                        totalCitationCountMap.add(refPaperId, 1);
+                        changedIdSet.add(refPaperId);
+                    }
+                }
+            }
+        }
+        return changedIdSet;
+    }
+
+    // a shard is written to a temporary file and moved to its path, so it is never left partially written
+    private static void replaceShard(List<BaseModel> modelList, String modelType, boolean binary, File shardFile)
+            throws IOException {
+        File tmpFile = new File(shardFile.getPath() + TMP_FILE_SUFFIX);
+        if (!ModelBuilder.writeModelFile(modelList, modelType, binary, tmpFile.getPath())) {
+            tmpFile.delete();
+            throw new IOException("Failed to write " + tmpFile.getPath());
+        }
+
+        Files.move(tmpFile.toPath(), shardFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // adds new papers to models of the shard (and new models of new authors), and sets weights again:
+    // all the weights if allWeights is true, otherwise only those of models with new papers and
+    // those depending on changed global counts. Returns true if the shard is replaced
+    private static boolean updateShard(File shardFile, List<Author> authorList, String modelType, CommandLine cl,
+                                       int minPaperSize, boolean binary, IntIntMap totalCitationCountMap,
+                                       IntSet changedIdSet, boolean allWeights) throws IOException {
+        List<BaseModel> modelList = readShard(shardFile, modelType, cl);
+        Map<String, Author> authorMap = new LinkedHashMap<>();
+        for (Author author : authorList) {
+            authorMap.put(author.id, author);
+        }
+
+        boolean updated = false;
+        for (BaseModel model : modelList) {
+            Author author = authorMap.remove(model.authorId);
+            List<Paper> newPaperList = author != null ? selectNewPapers(author, model, minPaperSize)
+                    : new ArrayList<>();
+            if (newPaperList.size() > 0) {
+                model.addPapers(newPaperList);
+            }
+
+            if (allWeights || newPaperList.size() > 0) {
+                model.setInverseCitationFrequencyWeights(totalCitationCountMap);
+                updated = true;
+            } else if (model.updateInverseCitationFrequencyWeights(totalCitationCountMap, changedIdSet)) {
+                updated = true;
+            }
+        }
+
+        for (Author author : authorMap.values()) {
+            if (author.papers.length >= minPaperSize) {
+                BaseModel model = selectModel(modelType, author, cl);
+                model.train();
+                model.setInverseCitationFrequencyWeights(totalCitationCountMap);
+                modelList.add(model);
+                updated = true;
+            }
+        }
+
+        if (updated) {
+            replaceShard(modelList, modelType, shardFile.isFile() ? ModelFileReader.checkIfBinary(shardFile) : binary,
+                    shardFile);
+        }
+        return updated;
+    }
+
+    private static void update(String modelDirPath, String deltaFilePath, String modelType, CommandLine cl,
+                               int minPaperSize, String countFilePath) {
+        if (!checkIfSupported(modelType, cl)) {
+            System.err.println("Model type " + modelType + " cannot be updated, use ModelBuilder instead");
+            return;
+        }
+
+        List<File> shardFileList = getShardFileList(modelDirPath);
+        if (shardFileList.size() == 0) {
+            System.err.println("No model files in " + modelDirPath);
+            return;
+        }
+
+        try {
+            Map<String, Author> deltaAuthorMap = readDeltaFile(deltaFilePath);
+            Map<String, List<Author>> shardAuthorListMap = new LinkedHashMap<>();
+            for (Author author : deltaAuthorMap.values()) {
+                String shardName = getShardName(author.id, shardFileList);
+                if (!shardAuthorListMap.containsKey(shardName)) {
+                    shardAuthorListMap.put(shardName, new ArrayList<>());
+                }
+                shardAuthorListMap.get(shardName).add(author);
+            }
+
+            // weights depend on # of training papers, so all of them are set again if it is changed.
+            // If an update fails halfway, remove the count file and run it again to take counts from model files
+            double trainPaperSize = Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION));
+            IntIntMap totalCitationCountMap = new IntIntMap();
+            boolean allWeights = !readCitationCounts(countFilePath, shardFileList, modelType, cl, trainPaperSize,
+                    totalCitationCountMap);
+            IntSet changedIdSet = countNewCitations(shardAuthorListMap, modelDirPath, modelType, cl, minPaperSize,
+                    totalCitationCountMap);
+            Set<String> shardNameSet = new TreeSet<>(shardAuthorListMap.keySet());
+            for (File shardFile : shardFileList) {
+                shardNameSet.add(shardFile.getName());
+            }
+
+            boolean binary = ModelFileReader.checkIfBinary(shardFileList.get(0));
+            int shardSize = shardNameSet.size();
+            int updatedCount = 0;
+            int i = 0;
+            for (String shardName : shardNameSet) {
+                System.out.println("Stage " + String.valueOf(++i) + "/" + String.valueOf(shardSize));
+                List<Author> authorList = shardAuthorListMap.getOrDefault(shardName, new ArrayList<>());
+                if (updateShard(new File(modelDirPath, shardName), authorList, modelType, cl, minPaperSize, binary,
+                        totalCitationCountMap, changedIdSet, allWeights)) {
+                    updatedCount++;
+                }
+            }
+
+            if (countFilePath != null) {
+                ModelFileWriter.writeCitationCounts(countFilePath, trainPaperSize, totalCitationCountMap);
+            }
+
+            System.out.println(String.valueOf(deltaAuthorMap.size()) + " authors of new papers");
+            System.out.println(String.valueOf(updatedCount) + " updated model files");
+        } catch (Exception e) {
+            System.err.println("Exception @ update");
+            e.printStackTrace();
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options = getOptions();
+        setModelOptions(options);
+        CommandLine cl = MiscUtil.setParams("ModelUpdater", options, args);
+        String modelDirPath = cl.getOptionValue(MODEL_DIR_OPTION);
+        String deltaFilePath = cl.getOptionValue(DELTA_FILE_OPTION);
+        String modelType = cl.getOptionValue(MODEL_TYPE_OPTION);
+        int minPaperSize = cl.hasOption(MIN_PAPER_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(MIN_PAPER_SIZE_OPTION)) : DEFAULT_MIN_PAPER_SIZE;
+        String countFilePath = cl.getOptionValue(COUNT_FILE_OPTION);
+        update(modelDirPath, deltaFilePath, modelType, cl, minPaperSize, countFilePath);
+    }
+}
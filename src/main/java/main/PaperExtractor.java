@@ -26,7 +26,7 @@ public class PaperExtractor {
         System.out.println("\tStart:\treading author files");
         try {
             for (File trainingFile : trainingFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(trainingFile));
+                BufferedReader br = FileUtil.getReader(trainingFile);
                 String line;
                 while ((line = br.readLine()) != null) {
                     int index = line.indexOf(Config.FIRST_DELIMITER);
@@ -107,7 +107,7 @@ public class PaperExtractor {
         int dirSize = authorDirList.size();
         Set<String> paperIdSet = new HashSet<>();
         for (int i = 0; i < dirSize; i++) {
-            File authorDir = authorDirList.remove(0);
+            File authorDir = authorDirList.get(i);
             System.out.println("Stage " + String.valueOf(i + 1) + "/" + String.valueOf(dirSize));
             List<File> trainingFileList = FileUtil.getFileListR(authorDir.getPath());
             readAuthorFiles(trainingFileList, paperIdSet);
@@ -1,14 +1,14 @@
 package main;
 
+import common.ChunkedReader;
 import common.Config;
 import common.FileUtil;
 import common.MiscUtil;
+import common.WriterPool;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.util.*;
 
 public class PaperSeparator {
@@ -19,12 +19,15 @@ public class PaperSeparator {
     private static final String TEST_END_YEAR_OPTION = "etest";
     private static final String TEST_OUTPUT_DIR_OPTION = "otest";
     private static final String SAMPLE_RATE_OPTION = "rate";
+    private static final String MAX_OPEN_SIZE_OPTION = "maxopen";
+    private static final String THREAD_SIZE_OPTION = "threads";
     private static final int PAPER_ELEMENT_SIZE = 5;
     private static final int AUTHOR_ID_INDEX = 3;
     private static final int INVALID_VALUE = -1;
     private static final int TRAIN_BUFFER_SIZE = 5000000;
     private static final int TEST_BUFFER_SIZE = 2500000;
     private static final int SUFFIX_SIZE = 3;
+    private static final int DEFAULT_THREAD_SIZE = 1;
     private static final float INVALID_RATE = -Float.MAX_VALUE;
 
     private static Options getOptions() {
@@ -46,6 +49,15 @@ public class PaperSeparator {
                         + TEST_END_YEAR_OPTION + " are required", options);
         MiscUtil.setOption(SAMPLE_RATE_OPTION, true, false,
                 "[param, optional] random sampling rate (0 < rate <= 1)", options);
+        MiscUtil.setOption(MAX_OPEN_SIZE_OPTION, true, false,
+                "[param, optional] max number of segment files kept open with -" + Config.SEGMENT_OPTION
+                        + ", default = " + String.valueOf(WriterPool.DEFAULT_MAX_OPEN_SIZE), options);
+        MiscUtil.setOption(THREAD_SIZE_OPTION, true, false,
+                "[param, optional] number of threads parsing input file, default = "
+                        + String.valueOf(DEFAULT_THREAD_SIZE), options);
+        MiscUtil.setOption(Config.SEGMENT_OPTION, false, false,
+                "[param, optional] write each suffix dir of training authors as one segment file (suffix"
+                        + Config.SEGMENT_FILE_EXTENSION + ")", options);
         return options;
     }
 
@@ -71,12 +83,28 @@ public class PaperSeparator {
         return true;
     }
 
+    // returns elements of a valid paper, and null otherwise
+    private static String[] parsePaper(String line) {
+        String[] elements = line.split(Config.FIRST_DELIMITER);
+        return checkIfValidPaper(elements) ? elements : null;
+    }
+
     private static boolean checkIfValidMode(boolean mode, int startYear, int endYear, int year) {
         return mode && startYear <= year && year <= endYear;
     }
 
+    private static void distributeAuthorFiles(Map<String, List<String>> map, Set<String> fileNameSet,
+                                              WriterPool writerPool, String outputDirPath) {
+        if (writerPool != null) {
+            FileUtil.distributeRecords(map, writerPool, SUFFIX_SIZE, outputDirPath);
+        } else {
+            FileUtil.distributeFiles(map, fileNameSet, true, SUFFIX_SIZE, outputDirPath);
+        }
+    }
+
     private static void separate(String inputFilePath, int trainStartYear, int trainEndYear, int testStartYear,
-                                 int testEndYear, float sampleRate, String outputTrainDirPath, String outputTestDirPath) {
+                                 int testEndYear, float sampleRate, int maxOpenSize, int threadSize,
+                                 boolean segmentMode, String outputTrainDirPath, String outputTestDirPath) {
         try {
             boolean trainMode = checkIfValidParams(trainStartYear, trainEndYear, outputTrainDirPath);
             boolean testMode = checkIfValidParams(testStartYear, testEndYear, outputTestDirPath);
@@ -105,15 +133,15 @@ public class PaperSeparator {
             Set<String> trainFileNameSetP = new HashSet<>();
             Set<String> trainFileNameSetA = new HashSet<>();
             Set<String> testFileNameSet = new HashSet<>();
-            BufferedReader br = new BufferedReader(new FileReader(new File(inputFilePath)));
-            String line;
-            while ((line = br.readLine()) != null) {
-                String yearStr = line.split(Config.FIRST_DELIMITER)[1];
+            WriterPool writerPool = segmentMode ? new WriterPool(maxOpenSize, WriterPool.DEFAULT_BUFFER_SIZE) : null;
+            // invalid papers are skipped by the reader
+            ChunkedReader<String[]> reader =
+                    new ChunkedReader<>(new File(inputFilePath), threadSize, PaperSeparator::parsePaper, true);
+            String[] elements;
+            while ((elements = reader.next()) != null) {
+                String line = String.join(Config.FIRST_DELIMITER, elements);
+                String yearStr = elements[1];
                 int year = Integer.parseInt(yearStr);
-                String[] elements = line.split(Config.FIRST_DELIMITER);
-                if (!checkIfValidPaper(elements)) {
-                    continue;
-                }
 
                 if (checkIfValidMode(trainMode, trainStartYear, trainEndYear, year)) {
                     if (isSampled && rand.nextFloat() > sampleRate) {
@@ -141,7 +169,7 @@ public class PaperSeparator {
                         trainListMapA.get(authorId).add(line);
                         trainCountA++;
                         if (trainCountA % TRAIN_BUFFER_SIZE == 0) {
-                            FileUtil.distributeFiles(trainListMapA, trainFileNameSetA, true, SUFFIX_SIZE, outputTrainDirPath);
+                            distributeAuthorFiles(trainListMapA, trainFileNameSetA, writerPool, outputTrainDirPath);
                         }
                     }
                 } else if (checkIfValidMode(testMode, testStartYear, testEndYear, year)) {
@@ -162,10 +190,13 @@ public class PaperSeparator {
                 }
             }
 
-            br.close();
+            reader.close();
             FileUtil.distributeFiles(trainListMapP, trainFileNameSetP, false, SUFFIX_SIZE, outputTrainDirPath);
-            FileUtil.distributeFiles(trainListMapA, trainFileNameSetA, true, SUFFIX_SIZE, outputTrainDirPath);
+            distributeAuthorFiles(trainListMapA, trainFileNameSetA, writerPool, outputTrainDirPath);
             FileUtil.distributeFiles(testListMap, testFileNameSet, false, SUFFIX_SIZE, outputTestDirPath);
+            if (writerPool != null) {
+                writerPool.close();
+            }
         } catch (Exception e) {
             System.err.println("Exception @ separate");
             e.printStackTrace();
@@ -190,7 +221,12 @@ public class PaperSeparator {
                 cl.getOptionValue(TEST_OUTPUT_DIR_OPTION) : null;
         float sampleRate = cl.hasOption(SAMPLE_RATE_OPTION) ?
                 Float.parseFloat(cl.getOptionValue(SAMPLE_RATE_OPTION)) : INVALID_RATE;
-        separate(inputFilePath, trainStartYear, trainEndYear, testStartYear,
-                testEndYear, sampleRate, trainOutputDirPath, testOutputDirPath);
+        int maxOpenSize = cl.hasOption(MAX_OPEN_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(MAX_OPEN_SIZE_OPTION)) : WriterPool.DEFAULT_MAX_OPEN_SIZE;
+        int threadSize = cl.hasOption(THREAD_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(THREAD_SIZE_OPTION)) : DEFAULT_THREAD_SIZE;
+        boolean segmentMode = cl.hasOption(Config.SEGMENT_OPTION);
+        separate(inputFilePath, trainStartYear, trainEndYear, testStartYear, testEndYear, sampleRate, maxOpenSize,
+                threadSize, segmentMode, trainOutputDirPath, testOutputDirPath);
     }
 }
@@ -0,0 +1,336 @@
+package main;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.Config;
+import common.FieldCursor;
+import common.FileUtil;
+import common.MiscUtil;
+import model.*;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import structure.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// keeps models in memory and scores papers posted to a local HTTP endpoint:
+// POST /score[?k=K] with paper lines (same format as test files) returns a line of
+// paper ID and top K [author ID:score] (and true authors if given) in descending order for each paper,
+// GET /metrics returns # of requests and their latencies
+public class ScoringServer {
+    private static final String MODEL_DIR_OPTION = "model";
+    private static final String MODEL_TYPE_OPTION = "mt";
+    private static final String MIN_PAPER_SIZE_OPTION = "mps";
+    private static final String BRUTE_FORCE_OPTION = "bf";
+    private static final String PORT_OPTION = "port";
+    private static final String THREAD_SIZE_OPTION = "threads";
+    private static final String TOP_M_OPTION = "topm";
+    private static final String SCORE_PATH = "/score";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String TOP_M_PARAM = "k";
+    private static final String POST_METHOD = "POST";
+    private static final String GET_METHOD = "GET";
+    private static final String CONTENT_TYPE = "text/plain; charset=utf-8";
+    private static final int DEFAULT_MIN_PAPER_SIZE = 1;
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_THREAD_SIZE = 4;
+    private static final int DEFAULT_TOP_M = 10;
+    private static final int PAPER_FIELD_SIZE = 5;
+    private static final int BLOCK_SIZE = 64;
+    private static final int MAX_REQUEST_SIZE = 1 << 20;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int LATENCY_WINDOW_SIZE = 10000;
+    private static final int STOP_DELAY_SECONDS = 1;
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+    private static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+    private static final int HTTP_INTERNAL_ERROR = 500;
+    private static final double NANOS_PER_MILLI = 1e6d;
+
+    private static Options getOptions() {
+        Options options = new Options();
+        MiscUtil.setOption(MODEL_DIR_OPTION, true, true, "[input] model dir", options);
+        MiscUtil.setOption(MODEL_TYPE_OPTION, true, true, "[param] model type", options);
+        MiscUtil.setOption(MIN_PAPER_SIZE_OPTION, true, false,
+                "[param, optional] minimum number of papers each author requires to have, default = "
+                        + String.valueOf(DEFAULT_MIN_PAPER_SIZE), options);
+        MiscUtil.setOption(BRUTE_FORCE_OPTION, false, false,
+                "[param, optional] score every model for every paper without inverted citation index", options);
+        MiscUtil.setOption(PORT_OPTION, true, false,
+                "[param, optional] port the server listens to on loopback address, default = "
+                        + String.valueOf(DEFAULT_PORT), options);
+        MiscUtil.setOption(THREAD_SIZE_OPTION, true, false,
+                "[param, optional] number of threads handling requests, default = "
+                        + String.valueOf(DEFAULT_THREAD_SIZE), options);
+        MiscUtil.setOption(TOP_M_OPTION, true, false,
+                "[param, optional] number of authors returned for each paper unless specified by request, default = "
+                        + String.valueOf(DEFAULT_TOP_M), options);
+        return options;
+    }
+
+    private static void setModelOptions(Options options) {
+        RandomModel.setOptions(options);
+        HillProvostBestModel.setOptions(options);
+        MultiNaiveBayesModel.setOptions(options);
+        LogisticRegressionModel.setOptions(options);
+    }
+
+    private static List<BaseModel> readModels(String modelDirPath, String modelType, CommandLine cl,
+                                              int minPaperSize) {
+        List<File> modelFileList = FileUtil.getFileList(modelDirPath);
+        Collections.sort(modelFileList);
+        List<BaseModel> modelList = new ArrayList<>();
+        int modelCount = 0;
+        int fileSize = modelFileList.size();
+        for (int i = 0; i < fileSize; i++) {
+            System.out.println("Stage " + String.valueOf(i + 1) + "/" + String.valueOf(fileSize));
+            Pair<Integer, List<BaseModel>> pair =
+                    AuthorEstimator.readModelFile(modelFileList.get(i), modelType, cl, minPaperSize);
+            modelCount += pair.first;
+            modelList.addAll(pair.second);
+        }
+
+        System.out.println(String.valueOf(modelList.size()) + " available authors");
+        System.out.println(String.valueOf(modelCount - modelList.size()) + " ignored authors");
+        return modelList;
+    }
+
+    // returns null if the body is larger than MAX_REQUEST_SIZE
+    private static String readBody(InputStream is) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+        while ((length = is.read(buffer)) != -1) {
+            os.write(buffer, 0, length);
+            if (os.size() > MAX_REQUEST_SIZE) {
+                return null;
+            }
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int getTopM(String query, int defaultTopM) {
+        if (query != null) {
+            FieldCursor paramCursor = new FieldCursor("&").reset(query);
+            while (paramCursor.next()) {
+                String param = paramCursor.getString();
+                if (param.startsWith(TOP_M_PARAM + "=")) {
+                    return Integer.parseInt(param.substring(TOP_M_PARAM.length() + 1));
+                }
+            }
+        }
+        return defaultTopM;
+    }
+
+    // returns non-empty lines of the body joined, or null if any of them is not a paper line
+    private static String selectPaperLines(String body) {
+        StringBuilder sb = new StringBuilder();
+        FieldCursor lineCursor = new FieldCursor("\n").reset(body);
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER);
+        while (lineCursor.next()) {
+            String line = lineCursor.getString().trim();
+            if (line.length() == 0) {
+                continue;
+            } else if (elementCursor.reset(line).countFields() != PAPER_FIELD_SIZE) {
+                return null;
+            }
+            sb.append(line + "\n");
+        }
+        return sb.toString();
+    }
+
+    private static void addScore(TopScoreHeap heap, BaseModel model, double score, boolean isAuthor) {
+        double adjustedScore = AuthorEstimator.adjustScore(score, isAuthor);
+        if (adjustedScore != BaseModel.INVALID_VALUE) {
+            heap.add(model.authorIdx, adjustedScore, isAuthor);
+        }
+    }
+
+    // same scores as AuthorEstimator for each paper in the store
+    private static List<TopScoreHeap> score(PaperStore store, List<BaseModel> modelList, CitationIndex index,
+                                            ThreadLocal<ScoreBuffer> bufferLocal, ThreadLocal<ScoreBlock> blockLocal,
+                                            int topM) {
+        int paperSize = store.size();
+        List<TopScoreHeap> heapList = new ArrayList<>();
+        for (int i = 0; i < paperSize; i++) {
+            heapList.add(new TopScoreHeap(topM));
+        }
+
+        if (index == null) {
+            for (int i = 0; i < paperSize; i++) {
+                Paper paper = store.getPaper(i);
+                for (BaseModel model : modelList) {
+                    addScore(heapList.get(i), model, model.estimate(paper), paper.checkIfAuthor(model.authorId));
+                }
+            }
+            return heapList;
+        }
+
+        ScoreBuffer buffer = bufferLocal.get();
+        ScoreBlock block = blockLocal.get();
+        for (int i = 0; i < paperSize; i += BLOCK_SIZE) {
+            int blockEndIdx = Math.min(i + BLOCK_SIZE, paperSize);
+            index.score(store, i, blockEndIdx, buffer, block);
+            for (int j = i; j < blockEndIdx; j++) {
+                int end = block.getScoreRowEnd(j - i);
+                for (int k = block.getScoreRowStart(j - i); k < end; k++) {
+                    addScore(heapList.get(j), index.getModel(block.getModelIdx(k)), block.getScore(k),
+                            block.checkIfAuthor(k));
+                }
+            }
+        }
+        return heapList;
+    }
+
+    private static String toString(PaperStore store, List<TopScoreHeap> heapList) {
+        StringBuilder sb = new StringBuilder();
+        int paperSize = store.size();
+        for (int i = 0; i < paperSize; i++) {
+            // paper ID, [author ID:score] in descending order
+            Pair<int[], double[]> ranking = heapList.get(i).getRanking();
+            sb.append(store.getId(i) + Config.FIRST_DELIMITER);
+            for (int j = 0; j < ranking.first.length; j++) {
+                if (j > 0) {
+                    sb.append(Config.SECOND_DELIMITER);
+                }
+                sb.append(IdDictionary.AUTHOR_IDS.getId(ranking.first[j]) + Config.KEY_VALUE_DELIMITER
+                        + String.valueOf(ranking.second[j]));
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static Pair<Integer, String> score(HttpExchange exchange, List<BaseModel> modelList,
+                                               CitationIndex index, ThreadLocal<ScoreBuffer> bufferLocal,
+                                               ThreadLocal<ScoreBlock> blockLocal, int defaultTopM) {
+        if (!POST_METHOD.equals(exchange.getRequestMethod())) {
+            return new Pair<>(HTTP_METHOD_NOT_ALLOWED, "Use " + POST_METHOD + "\n");
+        }
+
+        try {
+            String body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                return new Pair<>(HTTP_PAYLOAD_TOO_LARGE, "Request is larger than "
+                        + String.valueOf(MAX_REQUEST_SIZE) + " bytes\n");
+            }
+
+            int topM = getTopM(exchange.getRequestURI().getQuery(), defaultTopM);
+            String text = selectPaperLines(body);
+            if (text == null || topM < 0) {
+                return new Pair<>(HTTP_BAD_REQUEST, "Each line has to be a paper: "
+                        + "paper ID, year, venue ID, author IDs and ref paper IDs separated by tab\n");
+            }
+
+            PaperStore store = new PaperStore(text);
+            List<TopScoreHeap> heapList = score(store, modelList, index, bufferLocal, blockLocal, topM);
+            return new Pair<>(HTTP_OK, toString(store, heapList));
+        } catch (IllegalArgumentException e) {
+            return new Pair<>(HTTP_BAD_REQUEST, e.getMessage() + "\n");
+        } catch (Exception e) {
+            System.err.println("Exception @ score");
+            e.printStackTrace();
+        }
+        return new Pair<>(HTTP_INTERNAL_ERROR, "Failed to score papers\n");
+    }
+
+    private static String getMetrics(LatencyRecorder recorder) {
+        return "requests" + Config.FIRST_DELIMITER + String.valueOf(recorder.getCount()) + "\n"
+                + "errors" + Config.FIRST_DELIMITER + String.valueOf(recorder.getErrorCount()) + "\n"
+                + "mean_ms" + Config.FIRST_DELIMITER + String.valueOf(recorder.getMeanLatency() / NANOS_PER_MILLI)
+                + "\n" + "p50_ms" + Config.FIRST_DELIMITER
+                + String.valueOf(recorder.getPercentile(50.0d) / NANOS_PER_MILLI) + "\n"
+                + "p95_ms" + Config.FIRST_DELIMITER + String.valueOf(recorder.getPercentile(95.0d) / NANOS_PER_MILLI)
+                + "\n" + "p99_ms" + Config.FIRST_DELIMITER
+                + String.valueOf(recorder.getPercentile(99.0d) / NANOS_PER_MILLI) + "\n"
+                + "max_ms" + Config.FIRST_DELIMITER + String.valueOf(recorder.getMaxLatency() / NANOS_PER_MILLI)
+                + "\n";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String response) throws IOException {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(bytes);
+        os.close();
+    }
+
+    // latency of each request is measured from when a handler thread takes it until its response is sent
+    private static void handleScore(HttpExchange exchange, List<BaseModel> modelList, CitationIndex index,
+                                    ThreadLocal<ScoreBuffer> bufferLocal, ThreadLocal<ScoreBlock> blockLocal,
+                                    int defaultTopM, LatencyRecorder recorder) throws IOException {
+        long startTime = System.nanoTime();
+        Pair<Integer, String> result = score(exchange, modelList, index, bufferLocal, blockLocal, defaultTopM);
+        try {
+            respond(exchange, result.first, result.second);
+        } finally {
+            recorder.add(System.nanoTime() - startTime, result.first != HTTP_OK);
+        }
+    }
+
+    private static void handleMetrics(HttpExchange exchange, LatencyRecorder recorder) throws IOException {
+        if (!GET_METHOD.equals(exchange.getRequestMethod())) {
+            respond(exchange, HTTP_METHOD_NOT_ALLOWED, "Use " + GET_METHOD + "\n");
+            return;
+        }
+        respond(exchange, HTTP_OK, getMetrics(recorder));
+    }
+
+    private static void serve(String modelDirPath, String modelType, CommandLine cl, int minPaperSize,
+                              boolean indexMode, int port, int threadSize, int topM) {
+        List<BaseModel> modelList = readModels(modelDirPath, modelType, cl, minPaperSize);
+        CitationIndex index = indexMode ? new CitationIndex(modelList) : null;
+        // each handler thread reuses its own buffers across requests
+        ThreadLocal<ScoreBuffer> bufferLocal = ThreadLocal.withInitial(() -> index.createScoreBuffer());
+        ThreadLocal<ScoreBlock> blockLocal = ThreadLocal.withInitial(ScoreBlock::new);
+        LatencyRecorder recorder = new LatencyRecorder(LATENCY_WINDOW_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(threadSize);
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext(SCORE_PATH, exchange -> handleScore(exchange, modelList, index, bufferLocal,
+                    blockLocal, topM, recorder));
+            server.createContext(METRICS_PATH, exchange -> handleMetrics(exchange, recorder));
+            server.setExecutor(executor);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(STOP_DELAY_SECONDS);
+                executor.shutdown();
+            }));
+            server.start();
+            System.out.println("Listening on " + server.getAddress().toString());
+        } catch (Exception e) {
+            System.err.println("Exception @ serve");
+            e.printStackTrace();
+            executor.shutdown();
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options = getOptions();
+        setModelOptions(options);
+        CommandLine cl = MiscUtil.setParams("ScoringServer", options, args);
+        String modelDirPath = cl.getOptionValue(MODEL_DIR_OPTION);
+        String modelType = cl.getOptionValue(MODEL_TYPE_OPTION);
+        int minPaperSize = cl.hasOption(MIN_PAPER_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(MIN_PAPER_SIZE_OPTION)) : DEFAULT_MIN_PAPER_SIZE;
+        boolean indexMode = !cl.hasOption(BRUTE_FORCE_OPTION) && CitationIndex.checkIfSupported(modelType);
+        int port = cl.hasOption(PORT_OPTION) ? Integer.parseInt(cl.getOptionValue(PORT_OPTION)) : DEFAULT_PORT;
+        int threadSize = cl.hasOption(THREAD_SIZE_OPTION) ?
+                Integer.parseInt(cl.getOptionValue(THREAD_SIZE_OPTION)) : DEFAULT_THREAD_SIZE;
+        int topM = cl.hasOption(TOP_M_OPTION) ? Integer.parseInt(cl.getOptionValue(TOP_M_OPTION)) : DEFAULT_TOP_M;
+        serve(modelDirPath, modelType, cl, minPaperSize, indexMode, port, threadSize, topM);
+    }
+}
@@ -1,9 +1,12 @@
 package model;
 
 import common.Config;
-import structure.Author;
-import structure.Paper;
+import common.FieldCursor;
+import structure.*;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 public abstract class BaseModel {
@@ -11,71 +14,138 @@ public abstract class BaseModel {
     public static final String NAME = "Base Model";
     public static final double INVALID_VALUE = -Double.MAX_VALUE;
     public final String authorId;
-    public final String[] paperIds;
+    public final int authorIdx;
+    public String[] paperIds;
+    // paper and ref paper IDs below are interned by IdDictionary.PAPER_IDS
+    protected int[] paperIdxs;
     protected Author author;
-    protected Set<String> paperIdSet;
-    protected Map<String, Integer> citeCountMap;
+    protected IntSet paperIdSet;
+    protected IntIntMap citeCountMap;
     protected int totalCitationCount;
 
     public BaseModel(Author author) {
-        this.authorId = author.id;
+        this.authorIdx = IdDictionary.AUTHOR_IDS.getOrAdd(author.id);
+        this.authorId = IdDictionary.AUTHOR_IDS.getId(this.authorIdx);
         this.author = author;
-        this.paperIds = new String[author.papers.length];
-        this.paperIdSet = new HashSet<>();
-        for (int i = 0; i < this.paperIds.length; i++) {
-            this.paperIds[i] = author.papers[i].id;
+        this.paperIdxs = new int[author.papers.length];
+        for (int i = 0; i < this.paperIdxs.length; i++) {
+            this.paperIdxs[i] = IdDictionary.PAPER_IDS.getOrAdd(author.papers[i].id);
         }
 
-        this.citeCountMap = new HashMap<>();
+        this.paperIds = IdDictionary.PAPER_IDS.getIds(this.paperIdxs);
+        this.paperIdSet = new IntSet();
+        this.citeCountMap = new IntIntMap();
         this.totalCitationCount = 0;
     }
 
-    public BaseModel(String line, boolean includesCommonCitationModel) {
-        String[] elements = line.split(Config.FIRST_DELIMITER);
-        this.authorId = elements[0];
+    private BaseModel(String authorId, String[] paperIds) {
+        this.authorIdx = IdDictionary.AUTHOR_IDS.getOrAdd(authorId);
+        this.authorId = IdDictionary.AUTHOR_IDS.getId(this.authorIdx);
         this.author = null;
-        String[] paperIds = elements[2].split(Config.SECOND_DELIMITER);
-        this.paperIds = new String[paperIds.length];
-        this.paperIdSet = new HashSet<>();
-        for (int i = 0; i < this.paperIds.length; i++) {
-            this.paperIds[i] = paperIds[i];
-            this.paperIdSet.add(paperIds[i]);
+        this.paperIdxs = IdDictionary.PAPER_IDS.getOrAdd(paperIds);
+        this.paperIds = IdDictionary.PAPER_IDS.getIds(this.paperIdxs);
+        this.paperIdSet = new IntSet(this.paperIdxs.length);
+        for (int paperIdx : this.paperIdxs) {
+            this.paperIdSet.add(paperIdx);
         }
+    }
 
-        this.citeCountMap = new HashMap<>();
+    private static String parseAuthorId(FieldCursor elementCursor) {
+        elementCursor.seek(0);
+        return elementCursor.getString();
+    }
+
+    private static String[] parsePaperIds(FieldCursor elementCursor) {
+        elementCursor.seek(2);
+        return ModelFileReader.parseIds(elementCursor);
+    }
+
+    private BaseModel(FieldCursor elementCursor, boolean includesCommonCitationModel) {
+        this(parseAuthorId(elementCursor), parsePaperIds(elementCursor));
         if (includesCommonCitationModel) {
+            this.citeCountMap = new IntIntMap();
             return;
         }
 
-        String[] refStrs = elements[4].split(Config.SECOND_DELIMITER);
-        for (String refStr : refStrs) {
-            String[] keyValue = refStr.split(Config.KEY_VALUE_DELIMITER);
-            this.citeCountMap.put(keyValue[0], Integer.parseInt(keyValue[1]));
-        }
-        this.totalCitationCount = Integer.parseInt(elements[5]);
+        elementCursor.seek(4);
+        this.citeCountMap = new IntIntMap(new FieldCursor(Config.SECOND_DELIMITER).reset(elementCursor).countFields());
+        ModelFileReader.parseCountMap(elementCursor, this.citeCountMap, null);
+        elementCursor.seek(5);
+        this.totalCitationCount = elementCursor.parseInt();
+    }
+
+    public BaseModel(String line, boolean includesCommonCitationModel) {
+        this(new FieldCursor(Config.FIRST_DELIMITER).reset(line), includesCommonCitationModel);
     }
 
     public BaseModel(String line) {
         this(line, false);
     }
 
+    public BaseModel(DataInput in, boolean includesCommonCitationModel) throws IOException {
+        this(in.readUTF(), ModelFileReader.readIds(in));
+        this.citeCountMap = new IntIntMap();
+        if (includesCommonCitationModel) {
+            return;
+        }
+
+        ModelFileReader.readCountMap(in, this.citeCountMap, null);
+        this.totalCitationCount = in.readInt();
+    }
+
+    public BaseModel(DataInput in) throws IOException {
+        this(in, false);
+    }
+
     public void train() {
         for (Paper paper : this.author.papers) {
-            for (String refPaperId : paper.refPaperIds) {
-                this.citeCountMap.put(refPaperId, this.citeCountMap.getOrDefault(refPaperId, 0) + 1);
+            for (int refPaperId : paper.refPaperIds) {
+                this.citeCountMap.add(refPaperId, 1);
                 this.totalCitationCount++;
             }
         }
     }
 
-    public void setSocialPaperIds(List<BaseModel> allModelList, Map<String, Integer> modelIdMap) {}
+    // papers of the author which this model doesn't have yet
+    public List<Paper> selectNewPapers(Paper[] papers) {
+        List<Paper> paperList = new ArrayList<>();
+        for (Paper paper : papers) {
+            if (!checkIfMyPaper(paper.id)) {
+                paperList.add(paper);
+            }
+        }
+        return paperList;
+    }
+
+    // adds papers of the author to a model read from a model file, weights have to be set again
+    public void addPapers(List<Paper> paperList) {
+        int size = this.paperIdxs.length;
+        this.paperIdxs = Arrays.copyOf(this.paperIdxs, size + paperList.size());
+        for (Paper paper : paperList) {
+            int paperIdx = IdDictionary.PAPER_IDS.getOrAdd(paper.id);
+            this.paperIdxs[size++] = paperIdx;
+            this.paperIdSet.add(paperIdx);
+            for (int refPaperId : paper.refPaperIds) {
+                this.citeCountMap.add(refPaperId, 1);
+                this.totalCitationCount++;
+            }
+        }
+        this.paperIds = IdDictionary.PAPER_IDS.getIds(this.paperIdxs);
+    }
+
+    public void setSocialPaperIds(Map<String, int[]> paperIdsMap) {}
 
     public abstract double estimate(Paper paper);
 
-    public boolean checkIfMyPaper(String paperId) {
+    public boolean checkIfMyPaper(int paperId) {
         return this.paperIdSet.contains(paperId);
     }
 
+    public boolean checkIfMyPaper(String paperId) {
+        int paperIdx = IdDictionary.PAPER_IDS.get(paperId);
+        return paperIdx != IdDictionary.INVALID_ID && checkIfMyPaper(paperIdx);
+    }
+
     public int getCitationIdSize() {
         return this.citeCountMap.size();
     }
@@ -92,21 +162,49 @@ public abstract class BaseModel {
         return -1;
     }
 
-    public void shareCitationCounts(Map<String, Integer> totalCitationCountMap) {
-        for (String refPaperId : this.citeCountMap.keySet()) {
-            int count = totalCitationCountMap.getOrDefault(refPaperId, 0);
-            totalCitationCountMap.put(refPaperId, count + this.citeCountMap.get(refPaperId));
+    public void shareCitationCounts(IntIntMap totalCitationCountMap) {
+        for (int refPaperId : this.citeCountMap.keys()) {
+            totalCitationCountMap.add(refPaperId, this.citeCountMap.get(refPaperId));
         }
     }
 
-    public void setInverseCitationFrequencyWeights(Map<String, Integer> totalCitationCountMap) {}
+    public void sharePaperIds(Map<String, int[]> paperIdsMap) {
+        paperIdsMap.put(this.authorId, this.paperIdxs);
+    }
+
+    public void setInverseCitationFrequencyWeights(IntIntMap totalCitationCountMap) {}
+
+    // sets again only weights depending on global counts of the given paper IDs, returns true if any weight is set
+    public boolean updateInverseCitationFrequencyWeights(IntIntMap totalCitationCountMap, IntSet changedIdSet) {
+        return false;
+    }
+
+    // ref paper IDs cited by papers of the author
+    public int[] getCitedIds() {
+        return this.citeCountMap.keys();
+    }
+
+    // ref paper IDs posted to CitationIndex, null if this model cannot be scored through the index
+    public int[] getIndexRefIds() {
+        return null;
+    }
+
+    public double getIndexWeight(int refPaperId) {
+        return 0.0d;
+    }
+
+    // score of a paper with refSize refs given the sum of index weights of its hit refs (see CitationIndex)
+    public double calcIndexScore(double weightSum, int refSize) {
+        return weightSum;
+    }
 
     public int[] calcCounts(Paper paper) {
         int score = 0;
         int hitCount = 0;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.citeCountMap.containsKey(refPaperId)) {
-                score += this.citeCountMap.get(refPaperId);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.citeCountMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                score += this.citeCountMap.valueAt(slot);
                 hitCount++;
             }
         }
@@ -116,7 +214,7 @@ public abstract class BaseModel {
     public String toString(boolean isCommonCitationModel) {
         // author ID, # of paper IDs, paper IDs, # of ref IDs
         StringBuilder sb = new StringBuilder(this.authorId + Config.FIRST_DELIMITER
-                + String.valueOf(this.author.papers.length) + Config.FIRST_DELIMITER);
+                + String.valueOf(this.paperIds.length) + Config.FIRST_DELIMITER);
         for (int i = 0; i < this.paperIds.length; i++) {
             String str = i == 0 ? this.paperIds[i] : Config.SECOND_DELIMITER + this.paperIds[i];
             sb.append(str);
@@ -127,14 +225,14 @@ public abstract class BaseModel {
             // author ID, # of paper IDs, paper IDs, # of ref IDs, [ref ID:count], # of citations
             sb.append(Config.FIRST_DELIMITER);
             boolean first = true;
-            for (String refId : this.citeCountMap.keySet()) {
+            for (int refId : this.citeCountMap.keys()) {
                 if (!first) {
                     sb.append(Config.SECOND_DELIMITER);
                 }
 
                 first = false;
                 int count = this.citeCountMap.get(refId);
-                sb.append(refId + Config.KEY_VALUE_DELIMITER + String.valueOf(count));
+                sb.append(IdDictionary.PAPER_IDS.getId(refId) + Config.KEY_VALUE_DELIMITER + String.valueOf(count));
             }
             sb.append(Config.FIRST_DELIMITER + String.valueOf(this.totalCitationCount));
         }
@@ -145,4 +243,18 @@ public abstract class BaseModel {
     public String toString() {
         return toString(false);
     }
+
+    public void write(DataOutput out, boolean isCommonCitationModel) throws IOException {
+        // author ID, paper IDs, ([ref ID], [count], # of citations)
+        out.writeUTF(this.authorId);
+        ModelFileWriter.writeIds(out, this.paperIds);
+        if (!isCommonCitationModel) {
+            ModelFileWriter.writeCountMap(out, this.citeCountMap, null);
+            out.writeInt(this.totalCitationCount);
+        }
+    }
+
+    public void write(DataOutput out) throws IOException {
+        write(out, false);
+    }
 }
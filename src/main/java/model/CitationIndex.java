@@ -0,0 +1,128 @@
+package model;
+
+import structure.*;
+
+import java.util.*;
+
+public class CitationIndex {
+    private final List<BaseModel> modelList;
+    private final Map<String, Integer> modelIdxMap;
+    private final IntIntMap refIdxMap;
+    // postings of i-th ref paper ID: modelIdxs[offsets[i]] - modelIdxs[offsets[i + 1] - 1]
+    private final int[] offsets;
+    private final int[] modelIdxs;
+    private final double[] weights;
+
+    public CitationIndex(List<BaseModel> modelList) {
+        this.modelList = modelList;
+        this.modelIdxMap = new HashMap<>();
+        this.refIdxMap = new IntIntMap();
+        int[] counts = new int[16];
+        int postingSize = 0;
+        int modelSize = modelList.size();
+        for (int i = 0; i < modelSize; i++) {
+            BaseModel model = modelList.get(i);
+            this.modelIdxMap.put(model.authorId, i);
+            for (int refPaperId : model.getIndexRefIds()) {
+                int refIdx = this.refIdxMap.get(refPaperId, -1);
+                if (refIdx < 0) {
+                    refIdx = this.refIdxMap.size();
+                    this.refIdxMap.put(refPaperId, refIdx);
+                    if (refIdx == counts.length) {
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                    }
+                }
+
+                counts[refIdx]++;
+                postingSize++;
+            }
+        }
+
+        int refSize = this.refIdxMap.size();
+        this.offsets = new int[refSize + 1];
+        for (int i = 0; i < refSize; i++) {
+            this.offsets[i + 1] = this.offsets[i] + counts[i];
+        }
+
+        this.modelIdxs = new int[postingSize];
+        this.weights = new double[postingSize];
+        int[] cursors = Arrays.copyOf(this.offsets, refSize);
+        for (int i = 0; i < modelSize; i++) {
+            BaseModel model = modelList.get(i);
+            for (int refPaperId : model.getIndexRefIds()) {
+                int cursor = cursors[this.refIdxMap.get(refPaperId)]++;
+                this.modelIdxs[cursor] = i;
+                this.weights[cursor] = model.getIndexWeight(refPaperId);
+            }
+        }
+    }
+
+    public static boolean checkIfSupported(String modelType) {
+        return HillProvostBestModel.checkIfValid(modelType) || CommonCitationModel.checkIfValid(modelType)
+                || SocialCitationModel.checkIfValid(modelType) || SelfCitationModel.checkIfValid(modelType)
+                || MultiNaiveBayesModel.checkIfValid(modelType);
+    }
+
+    public int getModelSize() {
+        return this.modelList.size();
+    }
+
+    public BaseModel getModel(int modelIdx) {
+        return this.modelList.get(modelIdx);
+    }
+
+    public ScoreBuffer createScoreBuffer() {
+        return new ScoreBuffer(this.modelList.size());
+    }
+
+    // scores papers [fromIdx, toIdx) of the store as rows of the sparse product of the paper x ref matrix and
+    // the ref x model weight matrix of this index. Refs of the whole block are mapped to rows of the index first,
+    // then postings of the rows are streamed into the buffer paper by paper. Each row of the block has models
+    // (ascending) that hit at least one ref or are true authors of the paper, with BaseModel.INVALID_VALUE
+    // as score of those without hits. A weight sum turns into a score by BaseModel.calcIndexScore.
+    public void score(PaperStore store, int fromIdx, int toIdx, ScoreBuffer buffer, ScoreBlock block) {
+        block.clear();
+        for (int i = fromIdx; i < toIdx; i++) {
+            int end = store.getRefOffset(i + 1);
+            for (int j = store.getRefOffset(i); j < end; j++) {
+                int refIdx = this.refIdxMap.get(store.getRefPaperId(j), -1);
+                if (refIdx >= 0) {
+                    block.addRefIdx(refIdx);
+                }
+            }
+            block.endRefRow();
+        }
+
+        for (int i = fromIdx; i < toIdx; i++) {
+            buffer.clear();
+            int refEnd = block.getRefRowEnd(i - fromIdx);
+            for (int j = block.getRefRowStart(i - fromIdx); j < refEnd; j++) {
+                int refIdx = block.getRefIdx(j);
+                int end = this.offsets[refIdx + 1];
+                for (int k = this.offsets[refIdx]; k < end; k++) {
+                    buffer.add(this.modelIdxs[k], this.weights[k]);
+                }
+            }
+
+            int authorSize = store.getAuthorSize(i);
+            for (int j = 0; j < authorSize; j++) {
+                Integer modelIdx = this.modelIdxMap.get(store.getAuthorId(i, j));
+                if (modelIdx != null) {
+                    buffer.mark(modelIdx);
+                }
+            }
+
+            buffer.sortIdxs();
+            int refSize = store.getRefOffset(i + 1) - store.getRefOffset(i);
+            int size = buffer.getSize();
+            for (int j = 0; j < size; j++) {
+                int modelIdx = buffer.getIdx(j);
+                double score = buffer.getHitCount(modelIdx) > 0 ?
+                        this.modelList.get(modelIdx).calcIndexScore(buffer.getScore(modelIdx), refSize)
+                        : BaseModel.INVALID_VALUE;
+                block.addScore(modelIdx, score, buffer.checkIfMarked(modelIdx));
+            }
+            block.endScoreRow();
+        }
+    }
+}
@@ -1,37 +1,57 @@
 package model;
 
 import common.Config;
+import common.FieldCursor;
 import org.apache.commons.cli.CommandLine;
 import structure.Author;
+import structure.IdDictionary;
+import structure.IntDoubleMap;
+import structure.IntIntMap;
+import structure.IntSet;
 import structure.Paper;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class CommonCitationModel extends BaseModel {
     public static final String TYPE = "cc";
     public static final String NAME = "Common Citation Model";
     private static final String TRAIN_SIZE_OPTION = "trainsize";
-    protected Map<String, Double> weightMap;
+    protected IntDoubleMap weightMap;
     protected double totalTrainPaperSize;
 
     public CommonCitationModel(Author author, CommandLine cl) {
         super(author);
         this.totalTrainPaperSize = Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION));
-        this.weightMap = new HashMap<>();
+        this.weightMap = new IntDoubleMap();
     }
 
     public CommonCitationModel(String line) {
         super(line, true);
-        this.weightMap = new HashMap<>();
-        String[] elements = line.split(Config.FIRST_DELIMITER);
-        String[] refStrs = elements[4].split(Config.SECOND_DELIMITER);
-        for (String refStr : refStrs) {
-            String[] keyValue = refStr.split(Config.KEY_VALUE_DELIMITER);
-            this.citeCountMap.put(keyValue[0], Integer.parseInt(keyValue[1]));
-            this.weightMap.put(keyValue[0], Double.parseDouble(keyValue[2]));
-        }
-        this.totalCitationCount = Integer.parseInt(elements[5]);
+        this.weightMap = new IntDoubleMap();
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER).reset(line);
+        elementCursor.seek(4);
+        ModelFileReader.parseCountMap(elementCursor, this.citeCountMap, this.weightMap);
+        elementCursor.seek(5);
+        this.totalCitationCount = elementCursor.parseInt();
+    }
+
+    public CommonCitationModel(DataInput in) throws IOException {
+        super(in, true);
+        this.weightMap = new IntDoubleMap();
+        ModelFileReader.readCountMap(in, this.citeCountMap, this.weightMap);
+        this.totalCitationCount = in.readInt();
+    }
+
+    public CommonCitationModel(String line, CommandLine cl) {
+        this(line);
+        this.totalTrainPaperSize = Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION));
+    }
+
+    public CommonCitationModel(DataInput in, CommandLine cl) throws IOException {
+        this(in);
+        this.totalTrainPaperSize = Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION));
     }
 
     @Override
@@ -39,23 +59,50 @@ public class CommonCitationModel extends BaseModel {
         super.train();
     }
 
+    private void setInverseCitationFrequencyWeight(int refPaperId, IntIntMap totalCitationCountMap) {
+        int pseudoCount = totalCitationCountMap.get(refPaperId) + 1;
+        double icfWeight = (double) this.citeCountMap.get(refPaperId)
+                * Math.log(this.totalTrainPaperSize / (double) pseudoCount);
+        this.weightMap.put(refPaperId, icfWeight);
+    }
+
     @Override
-    public void setInverseCitationFrequencyWeights(Map<String, Integer> totalCitationCountMap) {
-        for (String refPaperId : this.citeCountMap.keySet()) {
-            int pseudoCount = totalCitationCountMap.getOrDefault(refPaperId, 0) + 1;
-            double icfWeight = (double) this.citeCountMap.get(refPaperId)
-                    * Math.log(this.totalTrainPaperSize / (double) pseudoCount);
-            this.weightMap.put(refPaperId, icfWeight);
+    public void setInverseCitationFrequencyWeights(IntIntMap totalCitationCountMap) {
+        for (int refPaperId : this.citeCountMap.keys()) {
+            setInverseCitationFrequencyWeight(refPaperId, totalCitationCountMap);
         }
     }
 
+    @Override
+    public boolean updateInverseCitationFrequencyWeights(IntIntMap totalCitationCountMap, IntSet changedIdSet) {
+        boolean updated = false;
+        for (int refPaperId : this.citeCountMap.keys()) {
+            if (changedIdSet.contains(refPaperId)) {
+                setInverseCitationFrequencyWeight(refPaperId, totalCitationCountMap);
+                updated = true;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public int[] getIndexRefIds() {
+        return this.weightMap.keys();
+    }
+
+    @Override
+    public double getIndexWeight(int refPaperId) {
+        return this.weightMap.get(refPaperId);
+    }
+
     @Override
     public double estimate(Paper paper) {
         double score = 0.0d;
         int hitCount = 0;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.weightMap.containsKey(refPaperId)) {
-                score += this.weightMap.get(refPaperId);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.weightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                score += this.weightMap.valueAt(slot);
                 hitCount++;
             }
         }
@@ -76,7 +123,7 @@ public class CommonCitationModel extends BaseModel {
         StringBuilder sb = new StringBuilder(super.toString(true));
         sb.append(Config.FIRST_DELIMITER);
         boolean first = true;
-        for (String refPaperId : this.citeCountMap.keySet()) {
+        for (int refPaperId : this.citeCountMap.keys()) {
             if (!first) {
                 sb.append(Config.SECOND_DELIMITER);
             }
@@ -84,11 +131,19 @@ public class CommonCitationModel extends BaseModel {
             first = false;
             int count = this.citeCountMap.get(refPaperId);
             double icfWeight = this.weightMap.get(refPaperId);
-            sb.append(refPaperId + Config.KEY_VALUE_DELIMITER + String.valueOf(count)
+            sb.append(IdDictionary.PAPER_IDS.getId(refPaperId) + Config.KEY_VALUE_DELIMITER + String.valueOf(count)
                     + Config.KEY_VALUE_DELIMITER + String.valueOf(icfWeight));
         }
 
         sb.append(Config.FIRST_DELIMITER + String.valueOf(this.totalCitationCount));
         return sb.toString();
     }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        // author ID, paper IDs, [ref ID], [count], [icf weight], # of citations
+        super.write(out, true);
+        ModelFileWriter.writeCountMap(out, this.citeCountMap, this.weightMap);
+        out.writeInt(this.totalCitationCount);
+    }
 }
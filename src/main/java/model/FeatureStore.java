@@ -0,0 +1,146 @@
+package model;
+
+import common.Config;
+import structure.FeatureMatrix;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+// memory-mapped store of feature values extracted for LogRegParamEstimator.
+// A group consists of a row of a positive sample (pair of paper and its author) and rows of a pool of
+// negative samples for the pair, and groups of each paper are stored in a row.
+// Layout: header (magic number, version, # of columns, pool size, fingerprint of inputs), groups,
+// footer (index of the first group of each paper and total # of groups, # of papers)
+public class FeatureStore {
+    private static final int HEADER_SIZE = Integer.BYTES * 4 + Long.BYTES;
+    private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+    public final int columnSize;
+    public final int negativePoolSize;
+    public final long fingerprint;
+    private final int groupValueSize;
+    private final int segmentGroupSize;
+    private final List<DoubleBuffer> segmentList;
+    private final int[] paperGroupIdxs;
+
+    public FeatureStore(File storeFile) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(storeFile, "r");
+        FileChannel channel = raf.getChannel();
+        try {
+            int magicNumber = raf.readInt();
+            int version = raf.readInt();
+            if (magicNumber != Config.FEATURE_STORE_MAGIC_NUMBER || version != Config.FEATURE_STORE_VERSION) {
+                throw new IOException("Unsupported feature store " + storeFile.getPath());
+            }
+
+            this.columnSize = raf.readInt();
+            this.negativePoolSize = raf.readInt();
+            this.fingerprint = raf.readLong();
+            raf.seek(raf.length() - Integer.BYTES);
+            int paperSize = raf.readInt();
+            long footerPosition = raf.length() - (long) Integer.BYTES * (paperSize + 2);
+            raf.seek(footerPosition);
+            this.paperGroupIdxs = new int[paperSize + 1];
+            for (int i = 0; i < this.paperGroupIdxs.length; i++) {
+                this.paperGroupIdxs[i] = raf.readInt();
+            }
+
+            // segments consist of whole groups
+            this.groupValueSize = (this.negativePoolSize + 1) * this.columnSize;
+            long groupByteSize = (long) this.groupValueSize * Double.BYTES;
+            this.segmentGroupSize = (int) Math.max(1L, MAX_SEGMENT_SIZE / groupByteSize);
+            this.segmentList = new ArrayList<>();
+            long groupSize = this.paperGroupIdxs[paperSize];
+            for (long groupIdx = 0L; groupIdx < groupSize; groupIdx += this.segmentGroupSize) {
+                long segmentSize = Math.min(groupSize - groupIdx, this.segmentGroupSize) * groupByteSize;
+                ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + groupIdx * groupByteSize, segmentSize);
+                this.segmentList.add(segment.asDoubleBuffer());
+            }
+        } finally {
+            // mappings stay valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    public int getPaperSize() {
+        return this.paperGroupIdxs.length - 1;
+    }
+
+    public int getGroupSize() {
+        return this.paperGroupIdxs[getPaperSize()];
+    }
+
+    private void copyRow(DoubleBuffer segment, int offset, FeatureMatrix matrix) {
+        int rowOffset = matrix.addRow();
+        double[] values = matrix.getValues();
+        for (int i = 0; i < this.columnSize; i++) {
+            values[rowOffset + i] = segment.get(offset + i);
+        }
+    }
+
+    // adds rows of groups of papers paperIdxs[fromIdx, toIdx) to the matrix in the same layout as the store,
+    // but with negativeSampleSize negative samples drawn at random from each pool without replacement
+    public void readGroups(int[] paperIdxs, int fromIdx, int toIdx, int negativeSampleSize, FeatureMatrix matrix) {
+        matrix.clear();
+        Random rand = ThreadLocalRandom.current();
+        // partial Fisher-Yates shuffle, the array stays a permutation of the pool across groups
+        int[] poolIdxs = new int[this.negativePoolSize];
+        for (int i = 0; i < poolIdxs.length; i++) {
+            poolIdxs[i] = i;
+        }
+
+        for (int i = fromIdx; i < toIdx; i++) {
+            int paperIdx = paperIdxs[i];
+            for (int groupIdx = this.paperGroupIdxs[paperIdx]; groupIdx < this.paperGroupIdxs[paperIdx + 1]; groupIdx++) {
+                DoubleBuffer segment = this.segmentList.get(groupIdx / this.segmentGroupSize);
+                int groupOffset = (groupIdx % this.segmentGroupSize) * this.groupValueSize;
+                copyRow(segment, groupOffset, matrix);
+                for (int j = 0; j < negativeSampleSize; j++) {
+                    int k = j + rand.nextInt(this.negativePoolSize - j);
+                    int poolIdx = poolIdxs[k];
+                    poolIdxs[k] = poolIdxs[j];
+                    poolIdxs[j] = poolIdx;
+                    copyRow(segment, groupOffset + (1 + poolIdx) * this.columnSize, matrix);
+                }
+            }
+        }
+    }
+
+    public static void writeHeader(DataOutput out, int columnSize, int negativePoolSize, long fingerprint)
+            throws IOException {
+        out.writeInt(Config.FEATURE_STORE_MAGIC_NUMBER);
+        out.writeInt(Config.FEATURE_STORE_VERSION);
+        out.writeInt(columnSize);
+        out.writeInt(negativePoolSize);
+        out.writeLong(fingerprint);
+    }
+
+    public static void writeRows(DataOutput out, FeatureMatrix matrix) throws IOException {
+        double[] values = matrix.getValues();
+        int valueSize = matrix.getRowSize() * matrix.columnSize;
+        for (int i = 0; i < valueSize; i++) {
+            out.writeDouble(values[i]);
+        }
+    }
+
+    // paperGroupSizes: # of groups of each paper in the order they were written
+    public static void writeFooter(DataOutput out, int[] paperGroupSizes) throws IOException {
+        int groupIdx = 0;
+        for (int paperGroupSize : paperGroupSizes) {
+            out.writeInt(groupIdx);
+            groupIdx += paperGroupSize;
+        }
+
+        out.writeInt(groupIdx);
+        out.writeInt(paperGroupSizes.length);
+    }
+}
@@ -1,37 +1,56 @@
 package model;
 
 import common.Config;
+import common.FieldCursor;
 import common.MiscUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import structure.Author;
+import structure.IdDictionary;
+import structure.IntDoubleMap;
+import structure.IntIntMap;
+import structure.IntSet;
 import structure.Paper;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class HillProvostBestModel extends BaseModel {
     public static final String TYPE = "hpb";
     public static final String NAME = "Hill & Provost's Best Model";
     protected static final String TRAIN_SIZE_OPTION = "trainsize";
-    protected Map<String, Double> weightMap;
+    protected IntDoubleMap weightMap;
     protected double totalTrainPaperSize;
 
     public HillProvostBestModel(Author author, CommandLine cl) {
         super(author);
         this.totalTrainPaperSize = Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION));
-        this.weightMap = new HashMap<>();
+        this.weightMap = new IntDoubleMap();
     }
 
     public HillProvostBestModel(String line) {
         super(line);
-        this.weightMap = new HashMap<>();
-        String[] elements = line.split(Config.FIRST_DELIMITER);
-        String[] icfWeightStrs = elements[6].split(Config.SECOND_DELIMITER);
-        for (String icfWeightStr : icfWeightStrs) {
-            String[] keyValue = icfWeightStr.split(Config.KEY_VALUE_DELIMITER);
-            this.weightMap.put(keyValue[0], Double.parseDouble(keyValue[1]));
-        }
+        this.weightMap = new IntDoubleMap();
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER).reset(line);
+        elementCursor.seek(6);
+        ModelFileReader.parseWeightMap(elementCursor, this.weightMap);
+    }
+
+    public HillProvostBestModel(DataInput in) throws IOException {
+        super(in);
+        this.weightMap = new IntDoubleMap();
+        ModelFileReader.readWeightMap(in, this.weightMap);
+    }
+
+    public HillProvostBestModel(String line, CommandLine cl) {
+        this(line);
+        this.totalTrainPaperSize = Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION));
+    }
+
+    public HillProvostBestModel(DataInput in, CommandLine cl) throws IOException {
+        this(in);
+        this.totalTrainPaperSize = Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION));
     }
 
     @Override
@@ -39,21 +58,48 @@ public class HillProvostBestModel extends BaseModel {
         super.train();
     }
 
-    public void setInverseCitationFrequencyWeights(Map<String, Integer> totalCitationCountMap) {
-        for (String paperId : this.paperIds) {
-            int pseudoCount = totalCitationCountMap.getOrDefault(paperId, 0) + 1;
-            double icfWeight = Math.log(this.totalTrainPaperSize / (double) pseudoCount);
-            this.weightMap.put(paperId, icfWeight);
+    private void setInverseCitationFrequencyWeight(int paperId, IntIntMap totalCitationCountMap) {
+        int pseudoCount = totalCitationCountMap.get(paperId) + 1;
+        double icfWeight = Math.log(this.totalTrainPaperSize / (double) pseudoCount);
+        this.weightMap.put(paperId, icfWeight);
+    }
+
+    public void setInverseCitationFrequencyWeights(IntIntMap totalCitationCountMap) {
+        for (int paperId : this.paperIdxs) {
+            setInverseCitationFrequencyWeight(paperId, totalCitationCountMap);
         }
     }
 
+    @Override
+    public boolean updateInverseCitationFrequencyWeights(IntIntMap totalCitationCountMap, IntSet changedIdSet) {
+        boolean updated = false;
+        for (int paperId : this.paperIdxs) {
+            if (changedIdSet.contains(paperId)) {
+                setInverseCitationFrequencyWeight(paperId, totalCitationCountMap);
+                updated = true;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public int[] getIndexRefIds() {
+        return this.weightMap.keys();
+    }
+
+    @Override
+    public double getIndexWeight(int refPaperId) {
+        return this.weightMap.get(refPaperId);
+    }
+
     @Override
     public double estimate(Paper paper) {
         double score = 0.0d;
         int hitCount = 0;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.weightMap.containsKey(refPaperId)) {
-                score += this.weightMap.get(refPaperId);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.weightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                score += this.weightMap.valueAt(slot);
                 hitCount++;
             }
         }
@@ -79,15 +125,22 @@ public class HillProvostBestModel extends BaseModel {
         StringBuilder sb = new StringBuilder(super.toString());
         sb.append(Config.FIRST_DELIMITER);
         boolean first = true;
-        for (String paperId : this.weightMap.keySet()) {
+        for (int paperId : this.weightMap.keys()) {
             if (!first) {
                 sb.append(Config.SECOND_DELIMITER);
             }
 
             first = false;
             double icfWeight = this.weightMap.get(paperId);
-            sb.append(paperId + Config.KEY_VALUE_DELIMITER + String.valueOf(icfWeight));
+            sb.append(IdDictionary.PAPER_IDS.getId(paperId) + Config.KEY_VALUE_DELIMITER + String.valueOf(icfWeight));
         }
         return sb.toString();
     }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        // author ID, paper IDs, [ref ID], [count], # of citations, [paper ID], [icf weight]
+        super.write(out);
+        ModelFileWriter.writeWeightMap(out, this.weightMap);
+    }
 }
@@ -1,72 +1,88 @@
 package model;
 
 import common.Config;
+import common.FieldCursor;
 import common.FileUtil;
 import common.MiscUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import structure.Author;
+import structure.IdDictionary;
+import structure.IntDoubleMap;
+import structure.IntIntMap;
 import structure.Paper;
 
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 public class LogisticRegressionModel extends SocialCitationModel {
     public static final String TYPE = "lr";
     public static final String NAME = "Logistic Regression Model";
     public static final int PARAM_SIZE = 7;
     protected static final String PARAM_OPTION = "param";
-    protected Map<String, Double> commonIcfWeightMap, selfIcfWeightMap;
+    protected IntDoubleMap commonIcfWeightMap, selfIcfWeightMap;
     protected double[] params;
 
     public LogisticRegressionModel(Author author, CommandLine cl) {
         super(author, cl);
-        this.commonIcfWeightMap = new HashMap<>();
-        this.selfIcfWeightMap = new HashMap<>();
+        this.commonIcfWeightMap = new IntDoubleMap();
+        this.selfIcfWeightMap = new IntDoubleMap();
     }
 
     public LogisticRegressionModel(String line) {
         super(line, true);
-        this.commonIcfWeightMap = new HashMap<>();
-        this.selfIcfWeightMap = new HashMap<>();
-        String[] elements = line.split(Config.FIRST_DELIMITER);
-        String[] refStrs = elements[4].split(Config.SECOND_DELIMITER);
-        for (String refStr : refStrs) {
-            String[] keyValue = refStr.split(Config.KEY_VALUE_DELIMITER);
-            this.citeCountMap.put(keyValue[0], Integer.parseInt(keyValue[1]));
-            this.commonIcfWeightMap.put(keyValue[0], Double.parseDouble(keyValue[2]));
+        this.commonIcfWeightMap = new IntDoubleMap();
+        this.selfIcfWeightMap = new IntDoubleMap();
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER).reset(line);
+        elementCursor.seek(4);
+        ModelFileReader.parseCountMap(elementCursor, this.citeCountMap, this.commonIcfWeightMap);
+        elementCursor.seek(5);
+        this.totalCitationCount = elementCursor.parseInt();
+        elementCursor.seek(7);
+        if (!elementCursor.equalsTo(Config.NULL) && elementCursor.length() > 0) {
+            ModelFileReader.parseCountMap(elementCursor, this.socialPaperCountMap, this.socialWeightMap);
         }
 
-        this.totalCitationCount = Integer.parseInt(elements[5]);
-        if (!elements[7].equals(Config.NULL) && elements[7].length() > 0) {
-            String[] socialStrs = elements[7].split(Config.SECOND_DELIMITER);
-            for (String socialStr : socialStrs) {
-                String[] keyValue = socialStr.split(Config.KEY_VALUE_DELIMITER);
-                this.socialPaperCountMap.put(keyValue[0], Integer.parseInt(keyValue[1]));
-                this.socialWeightMap.put(keyValue[0], Double.parseDouble(keyValue[2]));
-            }
-        }
-
-        this.totalSocialCitationCount = Integer.parseInt(elements[8]);
-        String[] icfWeightStrs = elements[9].split(Config.SECOND_DELIMITER);
-        for (String icfWeightStr : icfWeightStrs) {
-            String[] keyValue = icfWeightStr.split(Config.KEY_VALUE_DELIMITER);
-            this.selfIcfWeightMap.put(keyValue[0], Double.parseDouble(keyValue[1]));
-        }
+        elementCursor.seek(8);
+        this.totalSocialCitationCount = elementCursor.parseInt();
+        elementCursor.seek(9);
+        ModelFileReader.parseWeightMap(elementCursor, this.selfIcfWeightMap);
     }
 
     public LogisticRegressionModel(String line, CommandLine cl) {
         this(line);
+        this.params = readParams(cl);
+    }
+
+    public LogisticRegressionModel(DataInput in) throws IOException {
+        super(in, true);
+        this.commonIcfWeightMap = new IntDoubleMap();
+        this.selfIcfWeightMap = new IntDoubleMap();
+        ModelFileReader.readCountMap(in, this.citeCountMap, this.commonIcfWeightMap);
+        this.totalCitationCount = in.readInt();
+        ModelFileReader.readCountMap(in, this.socialPaperCountMap, this.socialWeightMap);
+        this.totalSocialCitationCount = in.readInt();
+        ModelFileReader.readWeightMap(in, this.selfIcfWeightMap);
+    }
+
+    public LogisticRegressionModel(DataInput in, CommandLine cl) throws IOException {
+        this(in);
+        this.params = readParams(cl);
+    }
+
+    private static double[] readParams(CommandLine cl) {
         String paramStr = cl.getOptionValue(PARAM_OPTION);
         List<String> paramLineList = FileUtil.readFile(paramStr);
         boolean readable = paramLineList != null && paramLineList.size() > 1;
         String[] paramElements = readable ? paramLineList.get(paramLineList.size() - 1).split(Config.FIRST_DELIMITER)
                 : paramStr.split(Config.OPTION_DELIMITER);
-        this.params = new double[PARAM_SIZE];
-        for (int i = 0; i < this.params.length; i++) {
-            this.params[i] = Double.parseDouble(paramElements[i]);
+        double[] params = new double[PARAM_SIZE];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = Double.parseDouble(paramElements[i]);
         }
+        return params;
     }
 
     public static double logisticFunction(double[] values, double[] params) {
@@ -89,9 +105,10 @@ public class LogisticRegressionModel extends SocialCitationModel {
     public double[] calcCommonScores(Paper paper) {
         int[] commonScores = calcCounts(paper);
         double score = 0.0d;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.commonIcfWeightMap.containsKey(refPaperId)) {
-                score += this.commonIcfWeightMap.get(refPaperId);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.commonIcfWeightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                score += this.commonIcfWeightMap.valueAt(slot);
             }
         }
         return new double[]{score, (double) commonScores[1]};
@@ -100,9 +117,10 @@ public class LogisticRegressionModel extends SocialCitationModel {
     public double[] calcSocialScores(Paper paper) {
         int[] socialScores = calcSocialCount(paper);
         double score = 0.0d;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.socialWeightMap.containsKey(refPaperId)) {
-                score += this.socialWeightMap.get(refPaperId);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.socialWeightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                score += this.socialWeightMap.valueAt(slot);
             }
         }
         return new double[]{score, (double) socialScores[1]};
@@ -111,9 +129,10 @@ public class LogisticRegressionModel extends SocialCitationModel {
     public double[] calcSelfScores(Paper paper) {
         double score = 0.0d;
         int hitCount = 0;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.selfIcfWeightMap.containsKey(refPaperId)) {
-                score += this.selfIcfWeightMap.get(refPaperId);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.selfIcfWeightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                score += this.selfIcfWeightMap.valueAt(slot);
                 hitCount++;
             }
         }
@@ -133,36 +152,87 @@ public class LogisticRegressionModel extends SocialCitationModel {
                 selfScores[0], selfScores[1]};
     }
 
+    // writes the same values as extractFeatureValues(model, paper) to values[offset, offset + PARAM_SIZE)
+    // without allocating arrays
+    public static void extractFeatureValues(LogisticRegressionModel model, Paper paper, double[] values, int offset) {
+        double refPaperIdSize = (double) paper.refPaperIds.length;
+        double commonScore = 0.0d;
+        double socialScore = 0.0d;
+        double selfScore = 0.0d;
+        int commonHitCount = 0;
+        int socialHitCount = 0;
+        int selfHitCount = 0;
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = model.commonIcfWeightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                commonScore += model.commonIcfWeightMap.valueAt(slot);
+            }
+
+            if (model.citeCountMap.containsKey(refPaperId)) {
+                commonHitCount++;
+            }
+
+            slot = model.socialWeightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                socialScore += model.socialWeightMap.valueAt(slot);
+            }
+
+            if (model.socialPaperCountMap.containsKey(refPaperId)) {
+                socialHitCount++;
+            }
+
+            slot = model.selfIcfWeightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                selfScore += model.selfIcfWeightMap.valueAt(slot);
+                selfHitCount++;
+            }
+        }
+
+        values[offset] = 1.0d;
+        // attributes from a pair of author and paper
+        values[offset + 1] = commonScore / refPaperIdSize;
+        values[offset + 2] = (double) commonHitCount / refPaperIdSize;
+        values[offset + 3] = socialScore / refPaperIdSize;
+        values[offset + 4] = (double) socialHitCount / refPaperIdSize;
+        values[offset + 5] = selfScore;
+        values[offset + 6] = (double) selfHitCount;
+    }
+
     public static double[] extractFeatureValues(LogisticRegressionModel model, Paper paper) {
         double[] featureValues = new double[PARAM_SIZE];
-        featureValues[0] = 1.0d;
-        // attributes from a pair of author and paper
-        double[] pairValues = extractPairValues(model, paper);
-        for (int i = 0; i < pairValues.length; i++) {
-            featureValues[i + 1] = pairValues[i];
-        }
+        extractFeatureValues(model, paper, featureValues, 0);
         return featureValues;
     }
 
     @Override
-    public void setInverseCitationFrequencyWeights(Map<String, Integer> totalCitationCountMap) {
+    public void setInverseCitationFrequencyWeights(IntIntMap totalCitationCountMap) {
         super.setInverseCitationFrequencyWeights(totalCitationCountMap);
-        for (String commonPaperId : this.citeCountMap.keySet()) {
-            int pseudoCount = totalCitationCountMap.getOrDefault(commonPaperId, 0) + 1;
+        for (int commonPaperId : this.citeCountMap.keys()) {
+            int pseudoCount = totalCitationCountMap.get(commonPaperId) + 1;
             double icfWeight = (double) this.citeCountMap.get(commonPaperId)
                     * Math.log(this.totalTrainPaperSize / (double) pseudoCount);
             this.commonIcfWeightMap.put(commonPaperId, icfWeight);
         }
 
-        for (String paperId : this.paperIds) {
-            int pseudoCount = totalCitationCountMap.getOrDefault(paperId, 0) + 1;
+        for (int paperId : this.paperIdxs) {
+            int pseudoCount = totalCitationCountMap.get(paperId) + 1;
             double icfWeight = Math.log(this.totalTrainPaperSize / (double) pseudoCount);
             this.selfIcfWeightMap.put(paperId, icfWeight);
         }
     }
 
+    public static boolean checkIfValidValues(double[] featureValues, int offset) {
+        return featureValues[offset + 1] > 0.0d || featureValues[offset + 3] > 0.0d
+                || featureValues[offset + 5] > 0.0d;
+    }
+
     public static boolean checkIfValidValues(double[] featureValues) {
-        return featureValues[1] > 0.0d || featureValues[3] > 0.0d || featureValues[5] > 0.0d;
+        return checkIfValidValues(featureValues, 0);
+    }
+
+    @Override
+    public int[] getIndexRefIds() {
+        return null;
     }
 
     @Override
@@ -191,7 +261,7 @@ public class LogisticRegressionModel extends SocialCitationModel {
         StringBuilder sb = new StringBuilder(super.toString(false));
         sb.append(Config.FIRST_DELIMITER + String.valueOf(this.citeCountMap.size()) + Config.FIRST_DELIMITER);
         boolean commonFirst = true;
-        for (String refPaperId : this.citeCountMap.keySet()) {
+        for (int refPaperId : this.citeCountMap.keys()) {
             if (!commonFirst) {
                 sb.append(Config.SECOND_DELIMITER);
             }
@@ -199,14 +269,14 @@ public class LogisticRegressionModel extends SocialCitationModel {
             commonFirst = false;
             int count = this.citeCountMap.get(refPaperId);
             double icfWeight = this.commonIcfWeightMap.get(refPaperId);
-            sb.append(refPaperId + Config.KEY_VALUE_DELIMITER + String.valueOf(count)
+            sb.append(IdDictionary.PAPER_IDS.getId(refPaperId) + Config.KEY_VALUE_DELIMITER + String.valueOf(count)
                     + Config.KEY_VALUE_DELIMITER + String.valueOf(icfWeight));
         }
 
         sb.append(Config.FIRST_DELIMITER + String.valueOf(this.totalCitationCount) + Config.FIRST_DELIMITER
                 + String.valueOf(this.socialWeightMap.size()) + Config.FIRST_DELIMITER);
         boolean socialFirst = true;
-        for (String refPaperId : this.socialPaperCountMap.keySet()) {
+        for (int refPaperId : this.socialPaperCountMap.keys()) {
             if (!socialFirst) {
                 sb.append(Config.SECOND_DELIMITER);
             }
@@ -214,7 +284,7 @@ public class LogisticRegressionModel extends SocialCitationModel {
             socialFirst = false;
             int socialCount = this.socialPaperCountMap.get(refPaperId);
             double socialIcfWeight = this.socialWeightMap.get(refPaperId);
-            sb.append(refPaperId + Config.KEY_VALUE_DELIMITER + String.valueOf(socialCount)
+            sb.append(IdDictionary.PAPER_IDS.getId(refPaperId) + Config.KEY_VALUE_DELIMITER + String.valueOf(socialCount)
                     + Config.KEY_VALUE_DELIMITER + String.valueOf(socialIcfWeight));
         }
 
@@ -224,15 +294,26 @@ public class LogisticRegressionModel extends SocialCitationModel {
 
         sb.append(Config.FIRST_DELIMITER + String.valueOf(this.totalSocialCitationCount) + Config.FIRST_DELIMITER);
         boolean selfFirst = true;
-        for (String paperId : this.selfIcfWeightMap.keySet()) {
+        for (int paperId : this.selfIcfWeightMap.keys()) {
             if (!selfFirst) {
                 sb.append(Config.SECOND_DELIMITER);
             }
 
             selfFirst = false;
             double icfWeight = this.selfIcfWeightMap.get(paperId);
-            sb.append(paperId + Config.KEY_VALUE_DELIMITER + String.valueOf(icfWeight));
+            sb.append(IdDictionary.PAPER_IDS.getId(paperId) + Config.KEY_VALUE_DELIMITER + String.valueOf(icfWeight));
         }
         return sb.toString();
     }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        // author ID, paper IDs, [ref ID], [count], [weight], # of citations, [social ID], [count], [weight], # of social citations, [paper ID], [weight]
+        super.write(out, false);
+        ModelFileWriter.writeCountMap(out, this.citeCountMap, this.commonIcfWeightMap);
+        out.writeInt(this.totalCitationCount);
+        ModelFileWriter.writeCountMap(out, this.socialPaperCountMap, this.socialWeightMap);
+        out.writeInt(this.totalSocialCitationCount);
+        ModelFileWriter.writeWeightMap(out, this.selfIcfWeightMap);
+    }
 }
@@ -0,0 +1,133 @@
+package model;
+
+import common.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// memory-mapped text model file (one model per line), models are parsed from lines on demand
+public class MappedModelFile {
+    private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte ID_DELIMITER = (byte) Config.FIRST_DELIMITER.charAt(0);
+    private final List<MappedByteBuffer> segmentList;
+    private final Map<String, Integer> lineIdxMap;
+    // i-th line: bytes [offsets[i], offsets[i] + lengths[i]) in segmentList.get(segmentIdxs[i])
+    private int[] segmentIdxs;
+    private int[] offsets;
+    private int[] lengths;
+    private int size;
+
+    public MappedModelFile(File modelFile) throws IOException {
+        this.segmentList = new ArrayList<>();
+        this.lineIdxMap = new HashMap<>();
+        this.segmentIdxs = new int[DEFAULT_CAPACITY];
+        this.offsets = new int[DEFAULT_CAPACITY];
+        this.lengths = new int[DEFAULT_CAPACITY];
+        this.size = 0;
+        RandomAccessFile raf = new RandomAccessFile(modelFile, "r");
+        FileChannel channel = raf.getChannel();
+        try {
+            long fileSize = channel.size();
+            long position = 0L;
+            while (position < fileSize) {
+                long segmentSize = Math.min(fileSize - position, MAX_SEGMENT_SIZE);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, segmentSize);
+                boolean last = position + segmentSize == fileSize;
+                int end = indexLines(segment, this.segmentList.size(), last);
+                if (end == 0) {
+                    throw new IOException("Too long line in " + modelFile.getPath());
+                }
+
+                this.segmentList.add(segment);
+                position += end;
+            }
+        } finally {
+            // mappings stay valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    // returns the end of the last complete line in the segment
+    private int indexLines(MappedByteBuffer segment, int segmentIdx, boolean last) {
+        int limit = segment.limit();
+        int start = 0;
+        for (int i = 0; i < limit; i++) {
+            if (segment.get(i) == LINE_FEED) {
+                addLine(segment, segmentIdx, start, i);
+                start = i + 1;
+            }
+        }
+
+        if (last && start < limit) {
+            addLine(segment, segmentIdx, start, limit);
+            start = limit;
+        }
+        return start;
+    }
+
+    private void addLine(MappedByteBuffer segment, int segmentIdx, int start, int end) {
+        if (end > start && segment.get(end - 1) == CARRIAGE_RETURN) {
+            end--;
+        }
+
+        if (end == start) {
+            return;
+        }
+
+        if (this.size == this.offsets.length) {
+            this.segmentIdxs = Arrays.copyOf(this.segmentIdxs, this.size * 2);
+            this.offsets = Arrays.copyOf(this.offsets, this.size * 2);
+            this.lengths = Arrays.copyOf(this.lengths, this.size * 2);
+        }
+
+        this.segmentIdxs[this.size] = segmentIdx;
+        this.offsets[this.size] = start;
+        this.lengths[this.size] = end - start;
+        int idEnd = start;
+        while (idEnd < end && segment.get(idEnd) != ID_DELIMITER) {
+            idEnd++;
+        }
+
+        this.lineIdxMap.put(decode(segment, start, idEnd - start), this.size);
+        this.size++;
+    }
+
+    private static String decode(MappedByteBuffer segment, int offset, int length) {
+        ByteBuffer buffer = segment.duplicate();
+        buffer.position(offset);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean checkIfContains(String authorId) {
+        return this.lineIdxMap.containsKey(authorId);
+    }
+
+    public Set<String> getAuthorIdSet() {
+        return this.lineIdxMap.keySet();
+    }
+
+    public String getLine(int idx) {
+        return decode(this.segmentList.get(this.segmentIdxs[idx]), this.offsets[idx], this.lengths[idx]);
+    }
+
+    // returns null if there is no model of the author in this file
+    public String getLine(String authorId) {
+        Integer idx = this.lineIdxMap.get(authorId);
+        return idx != null ? getLine(idx) : null;
+    }
+}
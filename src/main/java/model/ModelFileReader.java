@@ -0,0 +1,205 @@
+package model;
+
+import common.Config;
+import common.FieldCursor;
+import structure.IdDictionary;
+import structure.IntDoubleMap;
+import structure.IntIntMap;
+
+import java.io.*;
+
+public class ModelFileReader {
+    public final boolean binary;
+    public final String modelType;
+    public final int version;
+    private final DataInputStream in;
+    private final BufferedReader br;
+    private final MappedModelFile mappedFile;
+    private int lineIdx;
+    private String line;
+
+    // reads both binary model files and text model files (one model per line),
+    // text model files are memory-mapped if mapped is true. A binary model file is rejected unless its models
+    // can be read as models of the given type
+    public ModelFileReader(File modelFile, String modelType, boolean mapped) throws IOException {
+        this.binary = checkIfBinary(modelFile);
+        this.lineIdx = -1;
+        if (!this.binary) {
+            this.modelType = null;
+            this.version = 0;
+            this.in = null;
+            this.br = mapped ? null : new BufferedReader(new FileReader(modelFile));
+            this.mappedFile = mapped ? new MappedModelFile(modelFile) : null;
+            return;
+        }
+
+        this.br = null;
+        this.mappedFile = null;
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(modelFile)));
+        this.in.readInt();
+        this.version = this.in.readInt();
+        if (this.version > Config.MODEL_FILE_VERSION) {
+            this.in.close();
+            throw new IOException("Unsupported model file version " + String.valueOf(this.version)
+                    + " in " + modelFile.getPath());
+        }
+        this.modelType = this.in.readUTF();
+        if (!checkIfReadable(this.modelType, modelType)) {
+            this.in.close();
+            throw new IOException("Model file " + modelFile.getPath() + " has " + this.modelType
+                    + " models, not " + modelType + " models");
+        }
+    }
+
+    public ModelFileReader(File modelFile, String modelType) throws IOException {
+        this(modelFile, modelType, false);
+    }
+
+    // models of random, mnb and sc are written as bare BaseModel records and interchangeable
+    private static boolean checkIfBaseModelType(String modelType) {
+        return RandomModel.checkIfValid(modelType) || MultiNaiveBayesModel.checkIfValid(modelType)
+                || SelfCitationModel.checkIfValid(modelType);
+    }
+
+    private static boolean checkIfReadable(String fileModelType, String modelType) {
+        return fileModelType.equals(modelType)
+                || (checkIfBaseModelType(fileModelType) && checkIfBaseModelType(modelType));
+    }
+
+    public static boolean checkIfBinary(File modelFile) {
+        if (modelFile.length() < Integer.BYTES) {
+            return false;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(modelFile));
+            boolean binary = in.readInt() == Config.MODEL_FILE_MAGIC_NUMBER;
+            in.close();
+            return binary;
+        } catch (Exception e) {
+            System.err.println("Exception @ checkIfBinary");
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // moves to the next model, false if there are no more models
+    public boolean next() throws IOException {
+        if (this.binary) {
+            return this.in.readBoolean();
+        } else if (this.mappedFile != null) {
+            this.lineIdx++;
+            this.line = this.lineIdx < this.mappedFile.size() ? this.mappedFile.getLine(this.lineIdx) : null;
+            return this.line != null;
+        }
+
+        this.line = this.br.readLine();
+        return this.line != null;
+    }
+
+    public DataInput getInput() {
+        return this.in;
+    }
+
+    public String getLine() {
+        return this.line;
+    }
+
+    // null unless the model file is a memory-mapped text model file
+    public MappedModelFile getMappedFile() {
+        return this.mappedFile;
+    }
+
+    public void close() throws IOException {
+        if (this.binary) {
+            this.in.close();
+        } else if (this.br != null) {
+            this.br.close();
+        }
+    }
+
+    public static String[] readIds(DataInput in) throws IOException {
+        String[] ids = new String[in.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readUTF();
+        }
+        return ids;
+    }
+
+    // IDs are interned by IdDictionary.PAPER_IDS
+    public static void readCountMap(DataInput in, IntIntMap countMap, IntDoubleMap weightMap) throws IOException {
+        int[] ids = IdDictionary.PAPER_IDS.getOrAdd(readIds(in));
+        for (int id : ids) {
+            countMap.put(id, in.readInt());
+        }
+
+        if (weightMap != null) {
+            for (int id : ids) {
+                weightMap.put(id, in.readDouble());
+            }
+        }
+    }
+
+    // returns # of training papers the counts are of
+    public static double readCitationCounts(File countFile, IntIntMap totalCitationCountMap) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(countFile)));
+        try {
+            int magicNumber = in.readInt();
+            int version = in.readInt();
+            if (magicNumber != Config.CITATION_COUNT_FILE_MAGIC_NUMBER || version > Config.CITATION_COUNT_FILE_VERSION) {
+                throw new IOException("Unsupported citation count file " + countFile.getPath());
+            }
+
+            double trainPaperSize = in.readDouble();
+            readCountMap(in, totalCitationCountMap, null);
+            return trainPaperSize;
+        } finally {
+            in.close();
+        }
+    }
+
+    public static void readWeightMap(DataInput in, IntDoubleMap weightMap) throws IOException {
+        int[] ids = IdDictionary.PAPER_IDS.getOrAdd(readIds(in));
+        for (int id : ids) {
+            weightMap.put(id, in.readDouble());
+        }
+    }
+
+    // text model files: the current field of elementCursor is a list of IDs
+    public static String[] parseIds(FieldCursor elementCursor) {
+        FieldCursor idCursor = new FieldCursor(Config.SECOND_DELIMITER).reset(elementCursor);
+        String[] ids = new String[idCursor.countFields()];
+        for (int i = 0; idCursor.next(); i++) {
+            ids[i] = idCursor.getString();
+        }
+        return ids;
+    }
+
+    // the current field of elementCursor is a list of "ID:count" or "ID:count:weight" if weightMap is not null
+    public static void parseCountMap(FieldCursor elementCursor, IntIntMap countMap, IntDoubleMap weightMap) {
+        FieldCursor entryCursor = new FieldCursor(Config.SECOND_DELIMITER).reset(elementCursor);
+        FieldCursor keyValueCursor = new FieldCursor(Config.KEY_VALUE_DELIMITER);
+        while (entryCursor.next()) {
+            keyValueCursor.reset(entryCursor).next();
+            int id = IdDictionary.PAPER_IDS.getOrAdd(keyValueCursor.getString());
+            keyValueCursor.next();
+            countMap.put(id, keyValueCursor.parseInt());
+            if (weightMap != null) {
+                keyValueCursor.next();
+                weightMap.put(id, keyValueCursor.parseDouble());
+            }
+        }
+    }
+
+    // the current field of elementCursor is a list of "ID:weight"
+    public static void parseWeightMap(FieldCursor elementCursor, IntDoubleMap weightMap) {
+        FieldCursor entryCursor = new FieldCursor(Config.SECOND_DELIMITER).reset(elementCursor);
+        FieldCursor keyValueCursor = new FieldCursor(Config.KEY_VALUE_DELIMITER);
+        while (entryCursor.next()) {
+            keyValueCursor.reset(entryCursor).next();
+            int id = IdDictionary.PAPER_IDS.getOrAdd(keyValueCursor.getString());
+            keyValueCursor.next();
+            weightMap.put(id, keyValueCursor.parseDouble());
+        }
+    }
+}
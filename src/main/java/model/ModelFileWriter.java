@@ -0,0 +1,79 @@
+package model;
+
+import common.Config;
+import common.FileUtil;
+import structure.IdDictionary;
+import structure.IntDoubleMap;
+import structure.IntIntMap;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class ModelFileWriter {
+    private final DataOutputStream out;
+
+    public ModelFileWriter(String outputFilePath, String modelType) throws IOException {
+        FileUtil.makeParentDir(outputFilePath);
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFilePath)));
+        this.out.writeInt(Config.MODEL_FILE_MAGIC_NUMBER);
+        this.out.writeInt(Config.MODEL_FILE_VERSION);
+        this.out.writeUTF(modelType);
+    }
+
+    public void write(BaseModel model) throws IOException {
+        this.out.writeBoolean(true);
+        model.write(this.out);
+    }
+
+    public void close() throws IOException {
+        this.out.writeBoolean(false);
+        this.out.close();
+    }
+
+    public static void writeIds(DataOutput out, String[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (String id : ids) {
+            out.writeUTF(id);
+        }
+    }
+
+    // ID dictionary, counts and weights (if weightMap is not null) in the same order
+    public static void writeCountMap(DataOutput out, IntIntMap countMap, IntDoubleMap weightMap) throws IOException {
+        int[] ids = countMap.keys();
+        writeIds(out, IdDictionary.PAPER_IDS.getIds(ids));
+        for (int id : ids) {
+            out.writeInt(countMap.get(id));
+        }
+
+        if (weightMap != null) {
+            for (int id : ids) {
+                out.writeDouble(weightMap.get(id));
+            }
+        }
+    }
+
+    // global citation counts of models built from trainPaperSize training papers, used by ModelUpdater.
+    // The file is replaced atomically
+    public static void writeCitationCounts(String outputFilePath, double trainPaperSize,
+                                           IntIntMap totalCitationCountMap) throws IOException {
+        FileUtil.makeParentDir(outputFilePath);
+        File tmpFile = new File(outputFilePath + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        out.writeInt(Config.CITATION_COUNT_FILE_MAGIC_NUMBER);
+        out.writeInt(Config.CITATION_COUNT_FILE_VERSION);
+        out.writeDouble(trainPaperSize);
+        writeCountMap(out, totalCitationCountMap, null);
+        out.close();
+        Files.move(tmpFile.toPath(), new File(outputFilePath).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static void writeWeightMap(DataOutput out, IntDoubleMap weightMap) throws IOException {
+        int[] ids = weightMap.keys();
+        writeIds(out, IdDictionary.PAPER_IDS.getIds(ids));
+        for (int id : ids) {
+            out.writeDouble(weightMap.get(id));
+        }
+    }
+}
@@ -4,8 +4,13 @@ import common.MiscUtil;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import structure.Author;
+import structure.IntDoubleMap;
 import structure.Paper;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 public class MultiNaiveBayesModel extends BaseModel {
     public static final String TYPE = "mnb";
     public static final String NAME = "Multinomial Naive Bayes Based Model";
@@ -15,6 +20,8 @@ public class MultiNaiveBayesModel extends BaseModel {
     protected final int totalOverlapPaperSize, totalCitationIdSize;
     protected final double alpha, logPa;
     protected double nonHitLogProb;
+    // log-probability of each cited ref minus nonHitLogProb, so only hit refs are summed up in scoring
+    protected IntDoubleMap hitLogWeightMap;
 
     public MultiNaiveBayesModel(Author author, CommandLine cl) {
         super(author);
@@ -23,6 +30,7 @@ public class MultiNaiveBayesModel extends BaseModel {
         this.alpha = Double.parseDouble(cl.getOptionValue(SMOOTHING_PRIOR_OPTION));
         this.logPa = Math.log((double) this.paperIds.length / (double) this.totalOverlapPaperSize);
         this.nonHitLogProb = 0.0d;
+        this.hitLogWeightMap = new IntDoubleMap();
     }
 
     public MultiNaiveBayesModel(String line, CommandLine cl) {
@@ -31,7 +39,16 @@ public class MultiNaiveBayesModel extends BaseModel {
         this.totalCitationIdSize = Integer.parseInt(cl.getOptionValue(TOTAL_UNIQUE_CITATION_SIZE_OPTION));
         this.alpha = Double.parseDouble(cl.getOptionValue(SMOOTHING_PRIOR_OPTION));
         this.logPa = Math.log((double) this.paperIds.length / (double) this.totalOverlapPaperSize);
-        this.nonHitLogProb = Math.log(calcProb(0));
+        setHitLogWeights();
+    }
+
+    public MultiNaiveBayesModel(DataInput in, CommandLine cl) throws IOException {
+        super(in);
+        this.totalOverlapPaperSize = Integer.parseInt(cl.getOptionValue(TOTAL_OVERLAP_PAPER_ID_SIZE_OPTION));
+        this.totalCitationIdSize = Integer.parseInt(cl.getOptionValue(TOTAL_UNIQUE_CITATION_SIZE_OPTION));
+        this.alpha = Double.parseDouble(cl.getOptionValue(SMOOTHING_PRIOR_OPTION));
+        this.logPa = Math.log((double) this.paperIds.length / (double) this.totalOverlapPaperSize);
+        setHitLogWeights();
     }
 
     protected double calcProb(int count) {
@@ -40,25 +57,49 @@ public class MultiNaiveBayesModel extends BaseModel {
         return numerator / denominator;
     }
 
+    // log is computed once per distinct count of refs
+    private void setHitLogWeights() {
+        this.nonHitLogProb = Math.log(calcProb(0));
+        int[] refPaperIds = this.citeCountMap.keys();
+        this.hitLogWeightMap = new IntDoubleMap(refPaperIds.length);
+        IntDoubleMap countWeightMap = new IntDoubleMap();
+        for (int refPaperId : refPaperIds) {
+            int count = this.citeCountMap.get(refPaperId);
+            int slot = countWeightMap.indexOf(count);
+            double weight;
+            if (slot >= 0) {
+                weight = countWeightMap.valueAt(slot);
+            } else {
+                weight = Math.log(calcProb(count)) - this.nonHitLogProb;
+                countWeightMap.put(count, weight);
+            }
+            this.hitLogWeightMap.put(refPaperId, weight);
+        }
+    }
+
     @Override
     public void train() {
         super.train();
-        this.nonHitLogProb = Math.log(calcProb(0));
+        setHitLogWeights();
+    }
+
+    // log P(a) + |refs| * log P(non-hit) + sum of (log P(ref) - log P(non-hit)) over hit refs
+    private double calcLogProb(double hitWeightSum, int refSize) {
+        return this.logPa + (double) refSize * this.nonHitLogProb + hitWeightSum;
     }
 
     public double estimate(Paper paper, boolean llMode) {
-        double logProb = this.logPa;
+        double hitWeightSum = 0.0d;
         int hitCount = 0;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.citeCountMap.containsKey(refPaperId)) {
-                double prob = calcProb(this.citeCountMap.get(refPaperId));
-                logProb += Math.log(prob);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.hitLogWeightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                hitWeightSum += this.hitLogWeightMap.valueAt(slot);
                 hitCount++;
-            } else {
-                logProb += this.nonHitLogProb;
             }
         }
 
+        double logProb = calcLogProb(hitWeightSum, paper.refPaperIds.length);
         if (llMode) {
             return logProb;
         }
@@ -70,6 +111,21 @@ public class MultiNaiveBayesModel extends BaseModel {
         return estimate(paper, false);
     }
 
+    @Override
+    public int[] getIndexRefIds() {
+        return this.citeCountMap.keys();
+    }
+
+    @Override
+    public double getIndexWeight(int refPaperId) {
+        return this.hitLogWeightMap.get(refPaperId);
+    }
+
+    @Override
+    public double calcIndexScore(double weightSum, int refSize) {
+        return Math.exp(calcLogProb(weightSum, refSize));
+    }
+
     public static void setOptions(Options options) {
         MiscUtil.setOption(TOTAL_OVERLAP_PAPER_ID_SIZE_OPTION, true, false,
                 "[param, optional] total number of overlap papers in training for " + NAME, options);
@@ -84,4 +140,8 @@ public class MultiNaiveBayesModel extends BaseModel {
         return modelType.equals(TYPE) && cl.hasOption(TOTAL_OVERLAP_PAPER_ID_SIZE_OPTION)
                 && cl.hasOption(TOTAL_UNIQUE_CITATION_SIZE_OPTION) && cl.hasOption(SMOOTHING_PRIOR_OPTION);
     }
+
+    public static boolean checkIfValid(String modelType) {
+        return modelType.equals(TYPE);
+    }
 }
@@ -0,0 +1,205 @@
+package model;
+
+import structure.IntIntMap;
+import structure.Paper;
+
+import java.util.*;
+
+// draws negative samples (with replacement) for a paper from all the given models except its true authors.
+// True authors are skipped by mapping a draw over the rest instead of drawing again:
+// uniform mode maps an index over sorted indices of true authors, popularity mode (weighted by # of papers) maps
+// a point over their intervals of cumulative weights, and hard mode draws from postings of refs of the paper
+// (i.e., authors weighted by # of shared refs), falling back to uniform mode if no other author shares any ref
+public class NegativeSampler {
+    public static final String UNIFORM_MODE = "uniform";
+    public static final String POPULARITY_MODE = "pop";
+    public static final String HARD_MODE = "hard";
+    private final String mode;
+    private final int modelSize;
+    private final Map<String, Integer> modelIdxMap;
+    private final double[] cumulativeWeights;
+    private final IntIntMap refIdxMap;
+    // postings of i-th ref paper ID: modelIdxs[offsets[i]] - modelIdxs[offsets[i + 1] - 1]
+    private final int[] offsets;
+    private final int[] modelIdxs;
+    private final SplittableRandom rootRandom;
+    private final ThreadLocal<SplittableRandom> randomLocal;
+
+    public NegativeSampler(List<? extends BaseModel> modelList, String mode) {
+        if (!checkIfValid(mode)) {
+            throw new IllegalArgumentException("Unknown negative sampling mode: " + mode);
+        }
+
+        this.mode = mode;
+        this.modelSize = modelList.size();
+        this.modelIdxMap = new HashMap<>();
+        for (int i = 0; i < this.modelSize; i++) {
+            this.modelIdxMap.put(modelList.get(i).authorId, i);
+        }
+
+        this.cumulativeWeights = mode.equals(POPULARITY_MODE) ? new double[this.modelSize + 1] : null;
+        if (this.cumulativeWeights != null) {
+            for (int i = 0; i < this.modelSize; i++) {
+                this.cumulativeWeights[i + 1] = this.cumulativeWeights[i] + modelList.get(i).paperIds.length;
+            }
+        }
+
+        this.refIdxMap = new IntIntMap();
+        if (mode.equals(HARD_MODE)) {
+            int[] counts = new int[16];
+            int postingSize = 0;
+            for (BaseModel model : modelList) {
+                for (int refPaperId : model.getCitedIds()) {
+                    int refIdx = this.refIdxMap.get(refPaperId, -1);
+                    if (refIdx < 0) {
+                        refIdx = this.refIdxMap.size();
+                        this.refIdxMap.put(refPaperId, refIdx);
+                        if (refIdx == counts.length) {
+                            counts = Arrays.copyOf(counts, counts.length * 2);
+                        }
+                    }
+
+                    counts[refIdx]++;
+                    postingSize++;
+                }
+            }
+
+            int refSize = this.refIdxMap.size();
+            this.offsets = new int[refSize + 1];
+            for (int i = 0; i < refSize; i++) {
+                this.offsets[i + 1] = this.offsets[i] + counts[i];
+            }
+
+            this.modelIdxs = new int[postingSize];
+            int[] cursors = Arrays.copyOf(this.offsets, refSize);
+            for (int i = 0; i < this.modelSize; i++) {
+                for (int refPaperId : modelList.get(i).getCitedIds()) {
+                    this.modelIdxs[cursors[this.refIdxMap.get(refPaperId)]++] = i;
+                }
+            }
+        } else {
+            this.offsets = null;
+            this.modelIdxs = null;
+        }
+
+        this.rootRandom = new SplittableRandom();
+        this.randomLocal = ThreadLocal.withInitial(() -> split());
+    }
+
+    public static boolean checkIfValid(String mode) {
+        return mode.equals(UNIFORM_MODE) || mode.equals(POPULARITY_MODE) || mode.equals(HARD_MODE);
+    }
+
+    private synchronized SplittableRandom split() {
+        return this.rootRandom.split();
+    }
+
+    // sorted indices of models of true authors of the paper
+    private int[] getAuthorModelIdxs(Paper paper) {
+        int[] authorModelIdxs = new int[paper.getAuthorSize()];
+        int size = 0;
+        for (String authorId : paper.getAuthorIdSet()) {
+            Integer modelIdx = this.modelIdxMap.get(authorId);
+            if (modelIdx != null) {
+                authorModelIdxs[size++] = modelIdx;
+            }
+        }
+
+        authorModelIdxs = Arrays.copyOf(authorModelIdxs, size);
+        Arrays.sort(authorModelIdxs);
+        return authorModelIdxs;
+    }
+
+    private void sampleUniformly(int[] authorModelIdxs, SplittableRandom random, int sampleSize,
+                                 int[] sampleModelIdxs) {
+        for (int i = 0; i < sampleSize; i++) {
+            int modelIdx = random.nextInt(this.modelSize - authorModelIdxs.length);
+            for (int authorModelIdx : authorModelIdxs) {
+                if (modelIdx < authorModelIdx) {
+                    break;
+                }
+                modelIdx++;
+            }
+            sampleModelIdxs[i] = modelIdx;
+        }
+    }
+
+    private void sampleByPopularity(int[] authorModelIdxs, SplittableRandom random, int sampleSize,
+                                    int[] sampleModelIdxs) {
+        double authorWeight = 0.0d;
+        for (int authorModelIdx : authorModelIdxs) {
+            authorWeight += this.cumulativeWeights[authorModelIdx + 1] - this.cumulativeWeights[authorModelIdx];
+        }
+
+        double totalWeight = this.cumulativeWeights[this.modelSize] - authorWeight;
+        for (int i = 0; i < sampleSize; i++) {
+            double point = random.nextDouble() * totalWeight;
+            for (int authorModelIdx : authorModelIdxs) {
+                if (point < this.cumulativeWeights[authorModelIdx]) {
+                    break;
+                }
+                point += this.cumulativeWeights[authorModelIdx + 1] - this.cumulativeWeights[authorModelIdx];
+            }
+
+            // last model whose interval starts at or before the point
+            int idx = Arrays.binarySearch(this.cumulativeWeights, point);
+            int modelIdx = idx >= 0 ? idx : -idx - 2;
+            sampleModelIdxs[i] = Math.min(modelIdx, this.modelSize - 1);
+        }
+    }
+
+    // returns false if the paper shares no ref with authors other than its true authors
+    private boolean sampleHardNegatives(Paper paper, int[] authorModelIdxs, SplittableRandom random,
+                                        int sampleSize, int[] sampleModelIdxs) {
+        int postingSize = 0;
+        for (int refPaperId : paper.refPaperIds) {
+            int refIdx = this.refIdxMap.get(refPaperId, -1);
+            if (refIdx >= 0) {
+                postingSize += this.offsets[refIdx + 1] - this.offsets[refIdx];
+            }
+        }
+
+        int[] candidateModelIdxs = new int[postingSize];
+        int candidateSize = 0;
+        for (int refPaperId : paper.refPaperIds) {
+            int refIdx = this.refIdxMap.get(refPaperId, -1);
+            if (refIdx < 0) {
+                continue;
+            }
+
+            int end = this.offsets[refIdx + 1];
+            for (int i = this.offsets[refIdx]; i < end; i++) {
+                if (Arrays.binarySearch(authorModelIdxs, this.modelIdxs[i]) < 0) {
+                    candidateModelIdxs[candidateSize++] = this.modelIdxs[i];
+                }
+            }
+        }
+
+        if (candidateSize == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < sampleSize; i++) {
+            sampleModelIdxs[i] = candidateModelIdxs[random.nextInt(candidateSize)];
+        }
+        return true;
+    }
+
+    // sets indices of models (in the given list) of sampleSize negative samples to sampleModelIdxs,
+    // returns false if there is no author other than true authors of the paper
+    public boolean sample(Paper paper, int sampleSize, int[] sampleModelIdxs) {
+        int[] authorModelIdxs = getAuthorModelIdxs(paper);
+        if (authorModelIdxs.length == this.modelSize) {
+            return false;
+        }
+
+        SplittableRandom random = this.randomLocal.get();
+        if (this.mode.equals(POPULARITY_MODE)) {
+            sampleByPopularity(authorModelIdxs, random, sampleSize, sampleModelIdxs);
+        } else if (!this.mode.equals(HARD_MODE)
+                || !sampleHardNegatives(paper, authorModelIdxs, random, sampleSize, sampleModelIdxs)) {
+            sampleUniformly(authorModelIdxs, random, sampleSize, sampleModelIdxs);
+        }
+        return true;
+    }
+}
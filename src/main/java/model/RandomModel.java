@@ -6,6 +6,9 @@ import org.apache.commons.cli.Options;
 import structure.Author;
 import structure.Paper;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 
 public class RandomModel extends BaseModel {
@@ -34,6 +37,14 @@ public class RandomModel extends BaseModel {
                 Double.parseDouble(cl.getOptionValue(PRUNING_RATE_OPTION)) : DEFAULT_PRUNING_RATE;
     }
 
+    public RandomModel(DataInput in, CommandLine cl) throws IOException {
+        super(in);
+        this.rand = new Random();
+        this.guessableOnly = cl.hasOption(GUESSABLE_ONLY_OPTION);
+        this.pruningRate = cl.hasOption(PRUNING_RATE_OPTION) ?
+                Double.parseDouble(cl.getOptionValue(PRUNING_RATE_OPTION)) : DEFAULT_PRUNING_RATE;
+    }
+
     @Override
     public void train() {
         super.train();
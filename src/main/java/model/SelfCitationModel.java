@@ -3,6 +3,10 @@ package model;
 import structure.Author;
 import structure.Paper;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 public class SelfCitationModel extends BaseModel {
     public static final String TYPE = "sc";
     public static final String NAME = "Self-citation Model";
@@ -15,15 +19,29 @@ public class SelfCitationModel extends BaseModel {
         super(line);
     }
 
+    public SelfCitationModel(DataInput in) throws IOException {
+        super(in);
+    }
+
     @Override
     public void train() {
         super.train();
     }
 
+    @Override
+    public int[] getIndexRefIds() {
+        return this.paperIdSet.keys();
+    }
+
+    @Override
+    public double getIndexWeight(int refPaperId) {
+        return 1.0d;
+    }
+
     @Override
     public double estimate(Paper paper) {
         int selfCiteCount = 0;
-        for (String refPaperId : paper.refPaperIds) {
+        for (int refPaperId : paper.refPaperIds) {
             if (checkIfMyPaper(refPaperId)) {
                 selfCiteCount++;
             }
@@ -1,10 +1,17 @@
 package model;
 
 import common.Config;
+import common.FieldCursor;
 import org.apache.commons.cli.CommandLine;
 import structure.Author;
+import structure.IdDictionary;
+import structure.IntDoubleMap;
+import structure.IntIntMap;
 import structure.Paper;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 public class SocialCitationModel extends BaseModel {
@@ -12,8 +19,8 @@ public class SocialCitationModel extends BaseModel {
     public static final String NAME = "Social Citation Model";
     protected static final String TRAIN_SIZE_OPTION = "trainsize";
     protected Set<String> coauthorIdSet;
-    protected Map<String, Integer> socialPaperCountMap;
-    protected Map<String, Double> socialWeightMap;
+    protected IntIntMap socialPaperCountMap;
+    protected IntDoubleMap socialWeightMap;
     protected double totalTrainPaperSize;
     protected int totalSocialCitationCount;
 
@@ -21,36 +28,51 @@ public class SocialCitationModel extends BaseModel {
         super(author);
         this.totalTrainPaperSize = Double.parseDouble(cl.getOptionValue(TRAIN_SIZE_OPTION));
         this.coauthorIdSet = new HashSet<>();
-        this.socialPaperCountMap = new HashMap<>();
-        this.socialWeightMap = new HashMap<>();
+        this.socialPaperCountMap = new IntIntMap();
+        this.socialWeightMap = new IntDoubleMap();
         this.totalSocialCitationCount = 0;
     }
 
     public SocialCitationModel(String line, boolean isLogRegModel) {
         super(line, isLogRegModel);
         this.coauthorIdSet = new HashSet<>();
-        this.socialPaperCountMap = new HashMap<>();
-        this.socialWeightMap = new HashMap<>();
+        this.socialPaperCountMap = new IntIntMap();
+        this.socialWeightMap = new IntDoubleMap();
         if (isLogRegModel) {
             return;
         }
 
-        String[] elements = line.split(Config.FIRST_DELIMITER);
-        if (!elements[4].equals(Config.NULL) && elements[4].length() > 0) {
-            String[] socialStrs = elements[4].split(Config.SECOND_DELIMITER);
-            for (String socialStr : socialStrs) {
-                String[] keyValue = socialStr.split(Config.KEY_VALUE_DELIMITER);
-                this.socialPaperCountMap.put(keyValue[0], Integer.parseInt(keyValue[1]));
-                this.socialWeightMap.put(keyValue[0], Double.parseDouble(keyValue[2]));
-            }
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER).reset(line);
+        elementCursor.seek(4);
+        if (!elementCursor.equalsTo(Config.NULL) && elementCursor.length() > 0) {
+            ModelFileReader.parseCountMap(elementCursor, this.socialPaperCountMap, this.socialWeightMap);
         }
-        this.totalSocialCitationCount = Integer.parseInt(elements[5]);
+
+        elementCursor.seek(5);
+        this.totalSocialCitationCount = elementCursor.parseInt();
     }
 
     public SocialCitationModel(String line) {
         this(line, false);
     }
 
+    public SocialCitationModel(DataInput in, boolean isLogRegModel) throws IOException {
+        super(in, isLogRegModel);
+        this.coauthorIdSet = new HashSet<>();
+        this.socialPaperCountMap = new IntIntMap();
+        this.socialWeightMap = new IntDoubleMap();
+        if (isLogRegModel) {
+            return;
+        }
+
+        ModelFileReader.readCountMap(in, this.socialPaperCountMap, this.socialWeightMap);
+        this.totalSocialCitationCount = in.readInt();
+    }
+
+    public SocialCitationModel(DataInput in) throws IOException {
+        this(in, false);
+    }
+
     @Override
     public void train() {
         super.train();
@@ -64,17 +86,15 @@ public class SocialCitationModel extends BaseModel {
     }
 
     @Override
-    public void setSocialPaperIds(List<BaseModel> allModelList, Map<String, Integer> modelIdMap) {
+    public void setSocialPaperIds(Map<String, int[]> paperIdsMap) {
         for (String coauthorId : this.coauthorIdSet) {
-            if (modelIdMap.containsKey(coauthorId)) {
-                int coauthorIndex = modelIdMap.get(coauthorId);
-                BaseModel model = allModelList.get(coauthorIndex);
-                for (String socialPaperId : model.paperIds) {
+            if (paperIdsMap.containsKey(coauthorId)) {
+                for (int socialPaperId : paperIdsMap.get(coauthorId)) {
                     if (this.paperIdSet.contains(socialPaperId)) {
                         continue;
                     }
 
-                    this.socialPaperCountMap.put(socialPaperId, this.socialPaperCountMap.getOrDefault(socialPaperId, 0) + 1);
+                    this.socialPaperCountMap.add(socialPaperId, 1);
                     this.totalSocialCitationCount++;
                 }
             }
@@ -82,9 +102,9 @@ public class SocialCitationModel extends BaseModel {
     }
 
     @Override
-    public void setInverseCitationFrequencyWeights(Map<String, Integer> totalCitationCountMap) {
-        for (String socialPaperId : this.socialPaperCountMap.keySet()) {
-            int pseudoCount = totalCitationCountMap.getOrDefault(socialPaperId, 0) + 1;
+    public void setInverseCitationFrequencyWeights(IntIntMap totalCitationCountMap) {
+        for (int socialPaperId : this.socialPaperCountMap.keys()) {
+            int pseudoCount = totalCitationCountMap.get(socialPaperId) + 1;
             double icfWeight = (double) this.socialPaperCountMap.get(socialPaperId)
                     * Math.log(this.totalTrainPaperSize / (double) pseudoCount);
             this.socialWeightMap.put(socialPaperId, icfWeight);
@@ -94,22 +114,34 @@ public class SocialCitationModel extends BaseModel {
     public int[] calcSocialCount(Paper paper) {
         int score = 0;
         int hitCount = 0;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.socialPaperCountMap.containsKey(refPaperId)) {
-                score += this.socialPaperCountMap.get(refPaperId);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.socialPaperCountMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                score += this.socialPaperCountMap.valueAt(slot);
                 hitCount++;
             }
         }
         return new int[]{score, hitCount};
     }
 
+    @Override
+    public int[] getIndexRefIds() {
+        return this.socialWeightMap.keys();
+    }
+
+    @Override
+    public double getIndexWeight(int refPaperId) {
+        return this.socialWeightMap.get(refPaperId);
+    }
+
     @Override
     public double estimate(Paper paper) {
         double score = 0.0d;
         int hitCount = 0;
-        for (String refPaperId : paper.refPaperIds) {
-            if (this.socialWeightMap.containsKey(refPaperId)) {
-                score += this.socialWeightMap.get(refPaperId);
+        for (int refPaperId : paper.refPaperIds) {
+            int slot = this.socialWeightMap.indexOf(refPaperId);
+            if (slot >= 0) {
+                score += this.socialWeightMap.valueAt(slot);
                 hitCount++;
             }
         }
@@ -150,7 +182,7 @@ public class SocialCitationModel extends BaseModel {
 
         sb.append(Config.FIRST_DELIMITER + String.valueOf(this.socialWeightMap.size()) + Config.FIRST_DELIMITER);
         boolean first = true;
-        for (String refPaperId : this.socialPaperCountMap.keySet()) {
+        for (int refPaperId : this.socialPaperCountMap.keys()) {
             if (!first) {
                 sb.append(Config.SECOND_DELIMITER);
             }
@@ -158,7 +190,7 @@ public class SocialCitationModel extends BaseModel {
             first = false;
             int socialCount = this.socialPaperCountMap.get(refPaperId);
             double socialIcfWeight = this.socialWeightMap.get(refPaperId);
-            sb.append(refPaperId + Config.KEY_VALUE_DELIMITER + String.valueOf(socialCount)
+            sb.append(IdDictionary.PAPER_IDS.getId(refPaperId) + Config.KEY_VALUE_DELIMITER + String.valueOf(socialCount)
                     + Config.KEY_VALUE_DELIMITER + String.valueOf(socialIcfWeight));
         }
 
@@ -175,4 +207,21 @@ public class SocialCitationModel extends BaseModel {
         // author ID, # of paper IDs, paper IDs, # of ref IDs, [ref ID:count], # of citations, # of social IDs, [social ID:count:weight], # of social citations
         return toString(true);
     }
+
+    public void write(DataOutput out, boolean includeCommon) throws IOException {
+        if (!includeCommon) {
+            super.write(out, true);
+            return;
+        }
+
+        super.write(out, false);
+        ModelFileWriter.writeCountMap(out, this.socialPaperCountMap, this.socialWeightMap);
+        out.writeInt(this.totalSocialCitationCount);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        // author ID, paper IDs, [ref ID], [count], # of citations, [social ID], [count], [weight], # of social citations
+        write(out, true);
+    }
 }
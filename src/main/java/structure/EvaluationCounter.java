@@ -0,0 +1,51 @@
+package structure;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// totals of evaluated papers and their output lines in order,
+// counters of disjoint sets of papers (e.g., suffix dirs) are merged into one
+public class EvaluationCounter {
+    public final int[] authorMs;
+    public final int[] overThrAtMs;
+    public final double[] coverageAtMs;
+    public final List<String> outputLineList;
+    public final List<String> unguessablePaperIdList;
+    public int blindPaperSize;
+    public int guessablePaperSize;
+    public int trueAuthorCount;
+    public int authorX;
+    public int overThrAtX;
+    public double coverageAtX;
+
+    public EvaluationCounter(int topMSize) {
+        this.authorMs = new int[topMSize];
+        this.overThrAtMs = new int[topMSize];
+        this.coverageAtMs = new double[topMSize];
+        this.outputLineList = new ArrayList<>();
+        this.unguessablePaperIdList = new ArrayList<>();
+        this.blindPaperSize = 0;
+        this.guessablePaperSize = 0;
+        this.trueAuthorCount = 0;
+        this.authorX = 0;
+        this.overThrAtX = 0;
+        this.coverageAtX = 0.0d;
+    }
+
+    public void merge(EvaluationCounter counter) {
+        for (int i = 0; i < this.authorMs.length; i++) {
+            this.authorMs[i] += counter.authorMs[i];
+            this.overThrAtMs[i] += counter.overThrAtMs[i];
+            this.coverageAtMs[i] += counter.coverageAtMs[i];
+        }
+
+        this.outputLineList.addAll(counter.outputLineList);
+        this.unguessablePaperIdList.addAll(counter.unguessablePaperIdList);
+        this.blindPaperSize += counter.blindPaperSize;
+        this.guessablePaperSize += counter.guessablePaperSize;
+        this.trueAuthorCount += counter.trueAuthorCount;
+        this.authorX += counter.authorX;
+        this.overThrAtX += counter.overThrAtX;
+        this.coverageAtX += counter.coverageAtX;
+    }
+}
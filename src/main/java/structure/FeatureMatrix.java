@@ -0,0 +1,45 @@
+package structure;
+
+import java.util.Arrays;
+
+// row-major matrix in a flat array with a fixed column size, the array is reused after clear
+public class FeatureMatrix {
+    private static final int INITIAL_ROW_SIZE = 1024;
+    public final int columnSize;
+    private double[] values;
+    private int rowSize;
+
+    public FeatureMatrix(int columnSize) {
+        this.columnSize = columnSize;
+        this.values = new double[INITIAL_ROW_SIZE * columnSize];
+        this.rowSize = 0;
+    }
+
+    // returns offset of the new row in getValues()
+    public int addRow() {
+        int offset = this.rowSize * this.columnSize;
+        if (offset + this.columnSize > this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.values.length * 2);
+        }
+
+        this.rowSize++;
+        return offset;
+    }
+
+    public void removeLastRow() {
+        this.rowSize--;
+    }
+
+    public int getRowSize() {
+        return this.rowSize;
+    }
+
+    // the array may be replaced when a row is added
+    public double[] getValues() {
+        return this.values;
+    }
+
+    public void clear() {
+        this.rowSize = 0;
+    }
+}
@@ -0,0 +1,82 @@
+package structure;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class IdDictionary {
+    public static final IdDictionary PAPER_IDS = new IdDictionary();
+    public static final IdDictionary AUTHOR_IDS = new IdDictionary();
+    public static final int INVALID_ID = -1;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private final Map<String, Integer> idxMap;
+    private volatile String[] ids;
+    private int size;
+
+    public IdDictionary() {
+        this.idxMap = new ConcurrentHashMap<>();
+        this.ids = new String[DEFAULT_CAPACITY];
+        this.size = 0;
+    }
+
+    public int get(String id) {
+        Integer idx = this.idxMap.get(id);
+        return idx != null ? idx : INVALID_ID;
+    }
+
+    public int getOrAdd(String id) {
+        Integer idx = this.idxMap.get(id);
+        if (idx != null) {
+            return idx;
+        }
+        return add(id);
+    }
+
+    private synchronized int add(String id) {
+        Integer idx = this.idxMap.get(id);
+        if (idx != null) {
+            return idx;
+        }
+
+        if (this.size == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, this.ids.length * 2);
+        }
+
+        // the ID has to be stored before its index is published
+        this.ids[this.size] = id;
+        this.idxMap.put(id, this.size);
+        return this.size++;
+    }
+
+    public String getId(int idx) {
+        return this.ids[idx];
+    }
+
+    public int[] getOrAdd(String[] ids) {
+        int[] idxs = new int[ids.length];
+        for (int i = 0; i < idxs.length; i++) {
+            idxs[i] = getOrAdd(ids[i]);
+        }
+        return idxs;
+    }
+
+    public int[] get(String[] ids) {
+        int[] idxs = new int[ids.length];
+        for (int i = 0; i < idxs.length; i++) {
+            idxs[i] = get(ids[i]);
+        }
+        return idxs;
+    }
+
+    public String[] getIds(int[] idxs) {
+        String[] ids = new String[idxs.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = getId(idxs[i]);
+        }
+        return ids;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+}
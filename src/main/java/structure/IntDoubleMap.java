@@ -0,0 +1,130 @@
+package structure;
+
+import common.MiscUtil;
+
+import java.util.Arrays;
+
+public class IntDoubleMap {
+    private static final int EMPTY_KEY = -1;
+    private static final int DEFAULT_CAPACITY = 8;
+    private int[] keys;
+    private double[] values;
+    private int[] orderedKeys;
+    private int size;
+
+    public IntDoubleMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        this.keys = MiscUtil.initIntArray(capacity, EMPTY_KEY);
+        this.values = new double[capacity];
+        this.orderedKeys = new int[capacity / 2];
+        this.size = 0;
+    }
+
+    public IntDoubleMap() {
+        this(0);
+    }
+
+    private static int hash(int key, int mask) {
+        return IntIntMap.hash(key, mask);
+    }
+
+    // slot of the key, -1 if the key doesn't exist
+    public int indexOf(int key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key, mask);
+        while (this.keys[slot] != EMPTY_KEY) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public double valueAt(int slot) {
+        return this.values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    public double get(int key, double defaultValue) {
+        int slot = indexOf(key);
+        return slot >= 0 ? this.values[slot] : defaultValue;
+    }
+
+    public double get(int key) {
+        return get(key, 0.0d);
+    }
+
+    public void put(int key, double value) {
+        int slot = insert(key);
+        this.values[slot] = value;
+    }
+
+    public void add(int key, double value) {
+        int slot = insert(key);
+        this.values[slot] += value;
+    }
+
+    private int insert(int key) {
+        if ((this.size + 1) * 2 > this.keys.length) {
+            rehash(this.keys.length * 2);
+        }
+
+        int mask = this.keys.length - 1;
+        int slot = hash(key, mask);
+        while (this.keys[slot] != EMPTY_KEY) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = 0.0d;
+        if (this.size == this.orderedKeys.length) {
+            this.orderedKeys = Arrays.copyOf(this.orderedKeys, this.size * 2);
+        }
+
+        this.orderedKeys[this.size++] = key;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = this.keys;
+        double[] oldValues = this.values;
+        this.keys = MiscUtil.initIntArray(capacity, EMPTY_KEY);
+        this.values = new double[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = hash(oldKeys[i], mask);
+                while (this.keys[slot] != EMPTY_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    // keys in insertion order
+    public int[] keys() {
+        return Arrays.copyOf(this.orderedKeys, this.size);
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, EMPTY_KEY);
+        this.size = 0;
+    }
+}
@@ -0,0 +1,139 @@
+package structure;
+
+import common.MiscUtil;
+
+import java.util.Arrays;
+
+// open addressing map for non-negative int keys (e.g., IDs from IdDictionary)
+public class IntIntMap {
+    private static final int EMPTY_KEY = -1;
+    private static final int DEFAULT_CAPACITY = 8;
+    private int[] keys;
+    private int[] values;
+    private int[] orderedKeys;
+    private int size;
+
+    public IntIntMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        this.keys = MiscUtil.initIntArray(capacity, EMPTY_KEY);
+        this.values = new int[capacity];
+        this.orderedKeys = new int[capacity / 2];
+        this.size = 0;
+    }
+
+    public IntIntMap() {
+        this(0);
+    }
+
+    static int hash(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // slot of the key, -1 if the key doesn't exist
+    public int indexOf(int key) {
+        int mask = this.keys.length - 1;
+        int slot = hash(key, mask);
+        while (this.keys[slot] != EMPTY_KEY) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int valueAt(int slot) {
+        return this.values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return indexOf(key) >= 0;
+    }
+
+    public int get(int key, int defaultValue) {
+        int slot = indexOf(key);
+        return slot >= 0 ? this.values[slot] : defaultValue;
+    }
+
+    public int get(int key) {
+        return get(key, 0);
+    }
+
+    public void put(int key, int value) {
+        int slot = insert(key);
+        this.values[slot] = value;
+    }
+
+    public void add(int key, int value) {
+        int slot = insert(key);
+        this.values[slot] += value;
+    }
+
+    private int insert(int key) {
+        if ((this.size + 1) * 2 > this.keys.length) {
+            rehash(this.keys.length * 2);
+        }
+
+        int mask = this.keys.length - 1;
+        int slot = hash(key, mask);
+        while (this.keys[slot] != EMPTY_KEY) {
+            if (this.keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = 0;
+        if (this.size == this.orderedKeys.length) {
+            this.orderedKeys = Arrays.copyOf(this.orderedKeys, this.size * 2);
+        }
+
+        this.orderedKeys[this.size++] = key;
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = MiscUtil.initIntArray(capacity, EMPTY_KEY);
+        this.values = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = hash(oldKeys[i], mask);
+                while (this.keys[slot] != EMPTY_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    public void addAll(IntIntMap map) {
+        for (int i = 0; i < map.size; i++) {
+            int key = map.orderedKeys[i];
+            add(key, map.get(key));
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    // keys in insertion order
+    public int[] keys() {
+        return Arrays.copyOf(this.orderedKeys, this.size);
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, EMPTY_KEY);
+        this.size = 0;
+    }
+}
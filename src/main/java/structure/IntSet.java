@@ -0,0 +1,29 @@
+package structure;
+
+public class IntSet {
+    private final IntIntMap map;
+
+    public IntSet(int expectedSize) {
+        this.map = new IntIntMap(expectedSize);
+    }
+
+    public IntSet() {
+        this(0);
+    }
+
+    public boolean contains(int key) {
+        return this.map.containsKey(key);
+    }
+
+    public void add(int key) {
+        this.map.put(key, 1);
+    }
+
+    public int size() {
+        return this.map.size();
+    }
+
+    public int[] keys() {
+        return this.map.keys();
+    }
+}
@@ -0,0 +1,63 @@
+package structure;
+
+import java.util.Arrays;
+
+// latencies (in nanoseconds) of the most recent requests in a ring buffer, and totals of all the requests
+public class LatencyRecorder {
+    private final long[] latencies;
+    private int position;
+    private long count;
+    private long errorCount;
+    private long totalLatency;
+    private long maxLatency;
+
+    public LatencyRecorder(int capacity) {
+        this.latencies = new long[capacity];
+        this.position = 0;
+        this.count = 0L;
+        this.errorCount = 0L;
+        this.totalLatency = 0L;
+        this.maxLatency = 0L;
+    }
+
+    public synchronized void add(long latency, boolean error) {
+        this.latencies[this.position] = latency;
+        this.position = (this.position + 1) % this.latencies.length;
+        this.count++;
+        if (error) {
+            this.errorCount++;
+        }
+
+        this.totalLatency += latency;
+        this.maxLatency = Math.max(this.maxLatency, latency);
+    }
+
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    public synchronized long getErrorCount() {
+        return this.errorCount;
+    }
+
+    public synchronized double getMeanLatency() {
+        return this.count > 0L ? (double) this.totalLatency / this.count : 0.0d;
+    }
+
+    public synchronized long getMaxLatency() {
+        return this.maxLatency;
+    }
+
+    // percentile (0 - 100) of the recent latencies, nearest-rank method
+    public synchronized long getPercentile(double percentile) {
+        int size = (int) Math.min(this.count, this.latencies.length);
+        if (size == 0) {
+            return 0L;
+        }
+
+        long[] sortedLatencies = Arrays.copyOf(this.latencies, size);
+        Arrays.sort(sortedLatencies);
+        int rank = (int) Math.ceil(percentile / 100.0d * size);
+        return sortedLatencies[Math.min(Math.max(rank, 1), size) - 1];
+    }
+}
@@ -1,26 +1,46 @@
 package structure;
 
 import common.Config;
+import common.FieldCursor;
 
 import java.util.HashSet;
 import java.util.Set;
 
 public class Paper {
     public final String id, year, venueId;
-    public final String[] refPaperIds;
+    // ref paper IDs interned by IdDictionary.PAPER_IDS
+    public final int[] refPaperIds;
     private final Set<String> authorIdSet;
 
     public Paper(String inputLine) {
         this.authorIdSet = new HashSet<>();
-        String[] elements = inputLine.split(Config.FIRST_DELIMITER);
-        this.id = elements[0];
-        this.year = elements[1];
-        this.venueId = elements[2];
-        String[] authorIds = elements[3].split(Config.SECOND_DELIMITER);
-        for (String authorId : authorIds) {
-            this.authorIdSet.add(authorId);
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER).reset(inputLine);
+        elementCursor.next();
+        this.id = elementCursor.getString();
+        elementCursor.next();
+        this.year = elementCursor.getString();
+        elementCursor.next();
+        this.venueId = elementCursor.getString();
+        elementCursor.next();
+        FieldCursor idCursor = new FieldCursor(Config.SECOND_DELIMITER).reset(elementCursor);
+        while (idCursor.next()) {
+            this.authorIdSet.add(idCursor.getString());
         }
-        this.refPaperIds = elements[4].split(Config.SECOND_DELIMITER);
+
+        elementCursor.next();
+        idCursor.reset(elementCursor);
+        this.refPaperIds = new int[idCursor.countFields()];
+        for (int i = 0; idCursor.next(); i++) {
+            this.refPaperIds[i] = IdDictionary.PAPER_IDS.getOrAdd(idCursor.getString());
+        }
+    }
+
+    Paper(String id, String year, String venueId, Set<String> authorIdSet, int[] refPaperIds) {
+        this.id = id;
+        this.year = year;
+        this.venueId = venueId;
+        this.authorIdSet = authorIdSet;
+        this.refPaperIds = refPaperIds;
     }
 
     public Set<String> getAuthorIdSet() {
@@ -35,6 +55,10 @@ public class Paper {
         return this.authorIdSet.contains(authorId);
     }
 
+    public String[] getRefPaperIdStrs() {
+        return IdDictionary.PAPER_IDS.getIds(this.refPaperIds);
+    }
+
     public String toString() {
         StringBuilder authorIdSetSb = new StringBuilder();
         for (String authorId : this.authorIdSet) {
@@ -43,7 +67,7 @@ public class Paper {
         }
 
         StringBuilder refPaperIdsSb = new StringBuilder();
-        for (String refPaperId : this.refPaperIds) {
+        for (String refPaperId : getRefPaperIdStrs()) {
             String str = refPaperIdsSb.length() == 0 ? refPaperId : Config.SECOND_DELIMITER + refPaperId;
             refPaperIdsSb.append(str);
         }
@@ -0,0 +1,280 @@
+package structure;
+
+import common.Config;
+import common.FieldCursor;
+import common.FileUtil;
+
+import java.io.*;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+// columnar store of papers used instead of a list of Paper objects. Years and venues of papers are int columns
+// of indices in their tables (years are kept as they are written, like Paper does),
+// and authors and refs are in CSR layout (offsets of each paper in a flat column of ID indices).
+// Each distinct paper, author and venue ID is held only once, and a Paper is materialized by getPaper on demand.
+// Layout: header (magic number, version, fingerprint of inputs, # of papers, # of author entries,
+// # of ref entries), int columns (paper ID indices, year indices, venue indices, author offsets,
+// author ID indices, ref offsets, ref paper ID indices), tables of paper, author, venue IDs and years
+// (# of IDs followed by the IDs)
+public class PaperStore {
+    private static final int HEADER_SIZE = Integer.BYTES * 5 + Long.BYTES;
+    private static final int DEFAULT_CAPACITY = 1024;
+    private final int paperSize;
+    private final IntBuffer paperIdxs, yearIdxs, venueIdxs, authorOffsets, authorIdxs, refOffsets, refIdxs;
+    // paper ID indices in the store to those of IdDictionary.PAPER_IDS
+    private final int[] globalPaperIds;
+    private final String[] paperIds, authorIds, venueIds, years;
+    // fingerprint the store was written with, 0 for a store built from files or text
+    public final long fingerprint;
+
+    public PaperStore(List<File> paperFileList) throws IOException {
+        this(paperFileList, null);
+    }
+
+    // papers given as lines of text instead of files, e.g., a request to ScoringServer.
+    // Their IDs are not added to IdDictionary.PAPER_IDS, and refs not in it are IdDictionary.INVALID_ID
+    public PaperStore(String text) throws IOException {
+        this(Collections.emptyList(), text);
+    }
+
+    private PaperStore(List<File> paperFileList, String text) throws IOException {
+        IdDictionary paperIdDic = new IdDictionary();
+        IdDictionary authorIdDic = new IdDictionary();
+        IdDictionary venueIdDic = new IdDictionary();
+        IdDictionary yearDic = new IdDictionary();
+        int[] paperIdxs = new int[DEFAULT_CAPACITY];
+        int[] yearIdxs = new int[DEFAULT_CAPACITY];
+        int[] venueIdxs = new int[DEFAULT_CAPACITY];
+        int[] authorOffsets = new int[DEFAULT_CAPACITY + 1];
+        int[] authorIdxs = new int[DEFAULT_CAPACITY];
+        int[] refOffsets = new int[DEFAULT_CAPACITY + 1];
+        int[] refIdxs = new int[DEFAULT_CAPACITY];
+        int paperSize = 0;
+        int authorEntrySize = 0;
+        int refEntrySize = 0;
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER);
+        FieldCursor idCursor = new FieldCursor(Config.SECOND_DELIMITER);
+        int readerSize = text != null ? 1 : paperFileList.size();
+        for (int i = 0; i < readerSize; i++) {
+            BufferedReader br = text != null ? new BufferedReader(new StringReader(text))
+                    : FileUtil.getReader(paperFileList.get(i));
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (paperSize == paperIdxs.length) {
+                    paperIdxs = Arrays.copyOf(paperIdxs, paperSize * 2);
+                    yearIdxs = Arrays.copyOf(yearIdxs, paperSize * 2);
+                    venueIdxs = Arrays.copyOf(venueIdxs, paperSize * 2);
+                    authorOffsets = Arrays.copyOf(authorOffsets, paperSize * 2 + 1);
+                    refOffsets = Arrays.copyOf(refOffsets, paperSize * 2 + 1);
+                }
+
+                // same fields as Paper(String)
+                elementCursor.reset(line);
+                elementCursor.next();
+                paperIdxs[paperSize] = paperIdDic.getOrAdd(elementCursor.getString());
+                elementCursor.next();
+                yearIdxs[paperSize] = yearDic.getOrAdd(elementCursor.getString());
+                elementCursor.next();
+                venueIdxs[paperSize] = venueIdDic.getOrAdd(elementCursor.getString());
+                elementCursor.next();
+                idCursor.reset(elementCursor);
+                while (idCursor.next()) {
+                    if (authorEntrySize == authorIdxs.length) {
+                        authorIdxs = Arrays.copyOf(authorIdxs, authorEntrySize * 2);
+                    }
+                    authorIdxs[authorEntrySize++] = authorIdDic.getOrAdd(idCursor.getString());
+                }
+
+                elementCursor.next();
+                idCursor.reset(elementCursor);
+                while (idCursor.next()) {
+                    if (refEntrySize == refIdxs.length) {
+                        refIdxs = Arrays.copyOf(refIdxs, refEntrySize * 2);
+                    }
+                    refIdxs[refEntrySize++] = paperIdDic.getOrAdd(idCursor.getString());
+                }
+
+                paperSize++;
+                authorOffsets[paperSize] = authorEntrySize;
+                refOffsets[paperSize] = refEntrySize;
+            }
+            br.close();
+        }
+
+        this.fingerprint = 0L;
+        this.paperSize = paperSize;
+        this.paperIdxs = IntBuffer.wrap(paperIdxs, 0, paperSize).slice();
+        this.yearIdxs = IntBuffer.wrap(yearIdxs, 0, paperSize).slice();
+        this.venueIdxs = IntBuffer.wrap(venueIdxs, 0, paperSize).slice();
+        this.authorOffsets = IntBuffer.wrap(authorOffsets, 0, paperSize + 1).slice();
+        this.authorIdxs = IntBuffer.wrap(authorIdxs, 0, authorEntrySize).slice();
+        this.refOffsets = IntBuffer.wrap(refOffsets, 0, paperSize + 1).slice();
+        this.refIdxs = IntBuffer.wrap(refIdxs, 0, refEntrySize).slice();
+        this.paperIds = toArray(paperIdDic);
+        this.globalPaperIds = text != null ? IdDictionary.PAPER_IDS.get(this.paperIds)
+                : IdDictionary.PAPER_IDS.getOrAdd(this.paperIds);
+        this.authorIds = toArray(authorIdDic);
+        this.venueIds = toArray(venueIdDic);
+        this.years = toArray(yearDic);
+    }
+
+    public PaperStore(File storeFile) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(storeFile, "r");
+        FileChannel channel = raf.getChannel();
+        try {
+            int magicNumber = raf.readInt();
+            int version = raf.readInt();
+            if (magicNumber != Config.PAPER_STORE_MAGIC_NUMBER || version != Config.PAPER_STORE_VERSION) {
+                throw new IOException("Unsupported paper store " + storeFile.getPath());
+            }
+
+            this.fingerprint = raf.readLong();
+            this.paperSize = raf.readInt();
+            int authorEntrySize = raf.readInt();
+            int refEntrySize = raf.readInt();
+            long position = HEADER_SIZE;
+            this.paperIdxs = map(channel, position, this.paperSize);
+            position += (long) Integer.BYTES * this.paperSize;
+            this.yearIdxs = map(channel, position, this.paperSize);
+            position += (long) Integer.BYTES * this.paperSize;
+            this.venueIdxs = map(channel, position, this.paperSize);
+            position += (long) Integer.BYTES * this.paperSize;
+            this.authorOffsets = map(channel, position, this.paperSize + 1);
+            position += (long) Integer.BYTES * (this.paperSize + 1);
+            this.authorIdxs = map(channel, position, authorEntrySize);
+            position += (long) Integer.BYTES * authorEntrySize;
+            this.refOffsets = map(channel, position, this.paperSize + 1);
+            position += (long) Integer.BYTES * (this.paperSize + 1);
+            this.refIdxs = map(channel, position, refEntrySize);
+            position += (long) Integer.BYTES * refEntrySize;
+            channel.position(position);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            this.paperIds = readTable(in);
+            this.globalPaperIds = IdDictionary.PAPER_IDS.getOrAdd(this.paperIds);
+            this.authorIds = readTable(in);
+            this.venueIds = readTable(in);
+            this.years = readTable(in);
+        } finally {
+            // mappings stay valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    private static IntBuffer map(FileChannel channel, long position, int size) throws IOException {
+        long byteSize = (long) Integer.BYTES * size;
+        if (byteSize > Integer.MAX_VALUE) {
+            throw new IOException("Too large column of paper store: " + String.valueOf(size) + " entries");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, byteSize).asIntBuffer();
+    }
+
+    private static String[] toArray(IdDictionary idDic) {
+        String[] ids = new String[idDic.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = idDic.getId(i);
+        }
+        return ids;
+    }
+
+    private static String[] readTable(DataInput in) throws IOException {
+        String[] ids = new String[in.readInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = in.readUTF();
+        }
+        return ids;
+    }
+
+    private static void writeTable(DataOutput out, String[] ids) throws IOException {
+        out.writeInt(ids.length);
+        for (String id : ids) {
+            out.writeUTF(id);
+        }
+    }
+
+    private static void writeColumn(DataOutput out, IntBuffer column) throws IOException {
+        int size = column.limit();
+        for (int i = 0; i < size; i++) {
+            out.writeInt(column.get(i));
+        }
+    }
+
+    public int size() {
+        return this.paperSize;
+    }
+
+    public String getId(int idx) {
+        return this.paperIds[this.paperIdxs.get(idx)];
+    }
+
+    public String getYear(int idx) {
+        return this.years[this.yearIdxs.get(idx)];
+    }
+
+    public String getVenueId(int idx) {
+        return this.venueIds[this.venueIdxs.get(idx)];
+    }
+
+    public int getAuthorSize(int idx) {
+        return this.authorOffsets.get(idx + 1) - this.authorOffsets.get(idx);
+    }
+
+    public String getAuthorId(int idx, int authorIdx) {
+        return this.authorIds[this.authorIdxs.get(this.authorOffsets.get(idx) + authorIdx)];
+    }
+
+    // ref paper IDs interned by IdDictionary.PAPER_IDS, IdDictionary.INVALID_ID for unknown refs of a text store
+    public int[] getRefPaperIds(int idx) {
+        int offset = this.refOffsets.get(idx);
+        int[] refPaperIds = new int[this.refOffsets.get(idx + 1) - offset];
+        for (int i = 0; i < refPaperIds.length; i++) {
+            refPaperIds[i] = this.globalPaperIds[this.refIdxs.get(offset + i)];
+        }
+        return refPaperIds;
+    }
+
+    // ref paper IDs of the idx-th paper are getRefPaperId(i) for i in [getRefOffset(idx), getRefOffset(idx + 1))
+    public int getRefOffset(int idx) {
+        return this.refOffsets.get(idx);
+    }
+
+    public int getRefPaperId(int refEntryIdx) {
+        return this.globalPaperIds[this.refIdxs.get(refEntryIdx)];
+    }
+
+    public Paper getPaper(int idx) {
+        Set<String> authorIdSet = new HashSet<>();
+        int authorSize = getAuthorSize(idx);
+        for (int i = 0; i < authorSize; i++) {
+            authorIdSet.add(getAuthorId(idx, i));
+        }
+        return new Paper(getId(idx), getYear(idx), getVenueId(idx), authorIdSet,
+                getRefPaperIds(idx));
+    }
+
+    public void write(String storeFilePath, long fingerprint) throws IOException {
+        FileUtil.makeParentDir(storeFilePath);
+        File tmpFile = new File(storeFilePath + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        out.writeInt(Config.PAPER_STORE_MAGIC_NUMBER);
+        out.writeInt(Config.PAPER_STORE_VERSION);
+        out.writeLong(fingerprint);
+        out.writeInt(this.paperSize);
+        out.writeInt(this.authorIdxs.limit());
+        out.writeInt(this.refIdxs.limit());
+        writeColumn(out, this.paperIdxs);
+        writeColumn(out, this.yearIdxs);
+        writeColumn(out, this.venueIdxs);
+        writeColumn(out, this.authorOffsets);
+        writeColumn(out, this.authorIdxs);
+        writeColumn(out, this.refOffsets);
+        writeColumn(out, this.refIdxs);
+        writeTable(out, this.paperIds);
+        writeTable(out, this.authorIds);
+        writeTable(out, this.venueIds);
+        writeTable(out, this.years);
+        out.close();
+        FileUtil.replaceFile(tmpFile, storeFilePath);
+    }
+}
@@ -1,15 +1,23 @@
 package structure;
 
 import common.Config;
+import common.FieldCursor;
 
 public class Result implements Comparable<Result> {
     public final String authorId;
     public final double score;
 
+    public Result(String authorId, double score) {
+        this.authorId = authorId;
+        this.score = score;
+    }
+
     public Result(String inputLine) {
-        String[] elements = inputLine.split(Config.FIRST_DELIMITER);
-        this.authorId = elements[0];
-        this.score = Double.parseDouble(elements[1]);
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER).reset(inputLine);
+        elementCursor.next();
+        this.authorId = elementCursor.getString();
+        elementCursor.next();
+        this.score = elementCursor.parseDouble();
     }
 
     @Override
@@ -0,0 +1,108 @@
+package structure;
+
+import java.util.Arrays;
+
+// block of rows of papers for CitationIndex in CSR layout: rows over refs of the index (left operand of the product)
+// and rows over models (product), i.e., scores of the i-th paper of the block are
+// modelIdxs/scores[scoreOffsets[i], scoreOffsets[i + 1]) in ascending order of model indices
+public class ScoreBlock {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private int[] refOffsets;
+    private int[] refIdxs;
+    private int refRowSize;
+    private int[] scoreOffsets;
+    private int[] modelIdxs;
+    private double[] scores;
+    private boolean[] authorFlags;
+    private int scoreRowSize;
+
+    public ScoreBlock() {
+        this.refOffsets = new int[DEFAULT_CAPACITY + 1];
+        this.refIdxs = new int[DEFAULT_CAPACITY];
+        this.scoreOffsets = new int[DEFAULT_CAPACITY + 1];
+        this.modelIdxs = new int[DEFAULT_CAPACITY];
+        this.scores = new double[DEFAULT_CAPACITY];
+        this.authorFlags = new boolean[DEFAULT_CAPACITY];
+        clear();
+    }
+
+    // entries are added to the last row [offsets[rowSize], offsets[rowSize + 1])
+    public void clear() {
+        this.refRowSize = 0;
+        this.refOffsets[1] = 0;
+        this.scoreRowSize = 0;
+        this.scoreOffsets[1] = 0;
+    }
+
+    public void addRefIdx(int refIdx) {
+        int size = this.refOffsets[this.refRowSize + 1];
+        if (size == this.refIdxs.length) {
+            this.refIdxs = Arrays.copyOf(this.refIdxs, size * 2);
+        }
+
+        this.refIdxs[size] = refIdx;
+        this.refOffsets[this.refRowSize + 1]++;
+    }
+
+    public void endRefRow() {
+        this.refRowSize++;
+        if (this.refRowSize + 1 == this.refOffsets.length) {
+            this.refOffsets = Arrays.copyOf(this.refOffsets, this.refOffsets.length * 2);
+        }
+        this.refOffsets[this.refRowSize + 1] = this.refOffsets[this.refRowSize];
+    }
+
+    public int getRefRowStart(int rowIdx) {
+        return this.refOffsets[rowIdx];
+    }
+
+    public int getRefRowEnd(int rowIdx) {
+        return this.refOffsets[rowIdx + 1];
+    }
+
+    public int getRefIdx(int entryIdx) {
+        return this.refIdxs[entryIdx];
+    }
+
+    public void addScore(int modelIdx, double score, boolean isAuthor) {
+        int size = this.scoreOffsets[this.scoreRowSize + 1];
+        if (size == this.modelIdxs.length) {
+            this.modelIdxs = Arrays.copyOf(this.modelIdxs, size * 2);
+            this.scores = Arrays.copyOf(this.scores, size * 2);
+            this.authorFlags = Arrays.copyOf(this.authorFlags, size * 2);
+        }
+
+        this.modelIdxs[size] = modelIdx;
+        this.scores[size] = score;
+        this.authorFlags[size] = isAuthor;
+        this.scoreOffsets[this.scoreRowSize + 1]++;
+    }
+
+    public void endScoreRow() {
+        this.scoreRowSize++;
+        if (this.scoreRowSize + 1 == this.scoreOffsets.length) {
+            this.scoreOffsets = Arrays.copyOf(this.scoreOffsets, this.scoreOffsets.length * 2);
+        }
+        this.scoreOffsets[this.scoreRowSize + 1] = this.scoreOffsets[this.scoreRowSize];
+    }
+
+    public int getScoreRowStart(int rowIdx) {
+        return this.scoreOffsets[rowIdx];
+    }
+
+    public int getScoreRowEnd(int rowIdx) {
+        return this.scoreOffsets[rowIdx + 1];
+    }
+
+    public int getModelIdx(int entryIdx) {
+        return this.modelIdxs[entryIdx];
+    }
+
+    public double getScore(int entryIdx) {
+        return this.scores[entryIdx];
+    }
+
+    public boolean checkIfAuthor(int entryIdx) {
+        return this.authorFlags[entryIdx];
+    }
+}
@@ -0,0 +1,75 @@
+package structure;
+
+import java.util.Arrays;
+
+public class ScoreBuffer {
+    private final double[] scores;
+    private final int[] hitCounts;
+    private final boolean[] listedFlags;
+    private final boolean[] markedFlags;
+    private final int[] idxs;
+    private int size;
+
+    public ScoreBuffer(int capacity) {
+        this.scores = new double[capacity];
+        this.hitCounts = new int[capacity];
+        this.listedFlags = new boolean[capacity];
+        this.markedFlags = new boolean[capacity];
+        this.idxs = new int[capacity];
+        this.size = 0;
+    }
+
+    private void list(int idx) {
+        if (!this.listedFlags[idx]) {
+            this.listedFlags[idx] = true;
+            this.idxs[this.size++] = idx;
+            this.scores[idx] = 0.0d;
+        }
+    }
+
+    public void add(int idx, double value) {
+        list(idx);
+        this.scores[idx] += value;
+        this.hitCounts[idx]++;
+    }
+
+    public void mark(int idx) {
+        list(idx);
+        this.markedFlags[idx] = true;
+    }
+
+    public double getScore(int idx) {
+        return this.scores[idx];
+    }
+
+    public int getHitCount(int idx) {
+        return this.hitCounts[idx];
+    }
+
+    public boolean checkIfMarked(int idx) {
+        return this.markedFlags[idx];
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    // i-th listed index, in ascending order after sortIdxs()
+    public int getIdx(int i) {
+        return this.idxs[i];
+    }
+
+    public void sortIdxs() {
+        Arrays.sort(this.idxs, 0, this.size);
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            int idx = this.idxs[i];
+            this.hitCounts[idx] = 0;
+            this.listedFlags[idx] = false;
+            this.markedFlags[idx] = false;
+        }
+        this.size = 0;
+    }
+}
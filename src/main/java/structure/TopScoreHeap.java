@@ -0,0 +1,192 @@
+package structure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// keeps top M scores (min-heap) and every kept entry (e.g., true authors) regardless of their scores,
+// entries with the same score are ranked in the order they were added
+public class TopScoreHeap {
+    private static final int INITIAL_CAPACITY = 16;
+    private final int capacity;
+    private int[] ids;
+    private double[] scores;
+    private int[] seqs;
+    private int size;
+    private int[] keptIds;
+    private double[] keptScores;
+    private int[] keptSeqs;
+    private int keptSize;
+    private int seq;
+
+    public TopScoreHeap(int capacity) {
+        this.capacity = capacity;
+        int initialCapacity = Math.min(capacity, INITIAL_CAPACITY);
+        this.ids = new int[initialCapacity];
+        this.scores = new double[initialCapacity];
+        this.seqs = new int[initialCapacity];
+        this.size = 0;
+        this.keptIds = new int[1];
+        this.keptScores = new double[1];
+        this.keptSeqs = new int[1];
+        this.keptSize = 0;
+        this.seq = 0;
+    }
+
+    // reads a heap written by write, IDs are mapped through the dictionary since indices differ between runs
+    public TopScoreHeap(DataInput in, IdDictionary dictionary) throws IOException {
+        this.capacity = in.readInt();
+        this.size = in.readInt();
+        this.ids = new int[Math.max(this.size, Math.min(this.capacity, INITIAL_CAPACITY))];
+        this.scores = new double[this.ids.length];
+        this.seqs = new int[this.ids.length];
+        for (int i = 0; i < this.size; i++) {
+            this.ids[i] = dictionary.getOrAdd(in.readUTF());
+            this.scores[i] = in.readDouble();
+            this.seqs[i] = in.readInt();
+        }
+
+        this.keptSize = in.readInt();
+        this.keptIds = new int[Math.max(this.keptSize, 1)];
+        this.keptScores = new double[this.keptIds.length];
+        this.keptSeqs = new int[this.keptIds.length];
+        for (int i = 0; i < this.keptSize; i++) {
+            this.keptIds[i] = dictionary.getOrAdd(in.readUTF());
+            this.keptScores[i] = in.readDouble();
+            this.keptSeqs[i] = in.readInt();
+        }
+        this.seq = in.readInt();
+    }
+
+    private boolean checkIfWorse(int i, int j) {
+        return this.scores[i] < this.scores[j] || (this.scores[i] == this.scores[j] && this.seqs[i] > this.seqs[j]);
+    }
+
+    private void swap(int i, int j) {
+        int id = this.ids[i];
+        double score = this.scores[i];
+        int seq = this.seqs[i];
+        this.ids[i] = this.ids[j];
+        this.scores[i] = this.scores[j];
+        this.seqs[i] = this.seqs[j];
+        this.ids[j] = id;
+        this.scores[j] = score;
+        this.seqs[j] = seq;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!checkIfWorse(i, parent)) {
+                break;
+            }
+
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = i * 2 + 1;
+            if (left >= this.size) {
+                break;
+            }
+
+            int worst = left + 1 < this.size && checkIfWorse(left + 1, left) ? left + 1 : left;
+            if (!checkIfWorse(worst, i)) {
+                break;
+            }
+
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void keep(int id, double score, int seq) {
+        if (this.keptSize == this.keptIds.length) {
+            this.keptIds = Arrays.copyOf(this.keptIds, this.keptSize * 2);
+            this.keptScores = Arrays.copyOf(this.keptScores, this.keptSize * 2);
+            this.keptSeqs = Arrays.copyOf(this.keptSeqs, this.keptSize * 2);
+        }
+
+        this.keptIds[this.keptSize] = id;
+        this.keptScores[this.keptSize] = score;
+        this.keptSeqs[this.keptSize] = seq;
+        this.keptSize++;
+    }
+
+    public void add(int id, double score, boolean kept) {
+        int seq = this.seq++;
+        if (kept) {
+            keep(id, score, seq);
+        } else if (this.size < this.capacity) {
+            if (this.size == this.ids.length) {
+                int newLength = (int) Math.min((long) this.size * 2, this.capacity);
+                this.ids = Arrays.copyOf(this.ids, newLength);
+                this.scores = Arrays.copyOf(this.scores, newLength);
+                this.seqs = Arrays.copyOf(this.seqs, newLength);
+            }
+
+            this.ids[this.size] = id;
+            this.scores[this.size] = score;
+            this.seqs[this.size] = seq;
+            siftUp(this.size++);
+        } else if (this.capacity > 0 && score > this.scores[0]) {
+            this.ids[0] = id;
+            this.scores[0] = score;
+            this.seqs[0] = seq;
+            siftDown(0);
+        }
+    }
+
+    public void write(DataOutput out, IdDictionary dictionary) throws IOException {
+        out.writeInt(this.capacity);
+        out.writeInt(this.size);
+        for (int i = 0; i < this.size; i++) {
+            out.writeUTF(dictionary.getId(this.ids[i]));
+            out.writeDouble(this.scores[i]);
+            out.writeInt(this.seqs[i]);
+        }
+
+        out.writeInt(this.keptSize);
+        for (int i = 0; i < this.keptSize; i++) {
+            out.writeUTF(dictionary.getId(this.keptIds[i]));
+            out.writeDouble(this.keptScores[i]);
+            out.writeInt(this.keptSeqs[i]);
+        }
+        out.writeInt(this.seq);
+    }
+
+    public int size() {
+        return this.size + this.keptSize;
+    }
+
+    // returns pairs of ID and score in descending order of score
+    public Pair<int[], double[]> getRanking() {
+        int totalSize = size();
+        Integer[] order = new Integer[totalSize];
+        int[] allIds = Arrays.copyOf(this.ids, totalSize);
+        double[] allScores = Arrays.copyOf(this.scores, totalSize);
+        int[] allSeqs = Arrays.copyOf(this.seqs, totalSize);
+        for (int i = 0; i < totalSize; i++) {
+            order[i] = i;
+            if (i >= this.size) {
+                allIds[i] = this.keptIds[i - this.size];
+                allScores[i] = this.keptScores[i - this.size];
+                allSeqs[i] = this.keptSeqs[i - this.size];
+            }
+        }
+
+        Arrays.sort(order, (i, j) -> allScores[i] != allScores[j] ? Double.compare(allScores[j], allScores[i])
+                : Integer.compare(allSeqs[i], allSeqs[j]));
+        int[] rankedIds = new int[totalSize];
+        double[] rankedScores = new double[totalSize];
+        for (int i = 0; i < totalSize; i++) {
+            rankedIds[i] = allIds[order[i]];
+            rankedScores[i] = allScores[order[i]];
+        }
+        return new Pair<>(rankedIds, rankedScores);
+    }
+}
@@ -9,7 +9,6 @@ import structure.Pair;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.text.DecimalFormat;
 import java.util.*;
 
@@ -43,7 +42,7 @@ public class Collector {
         int positiveSampleCount = 0;
         try {
             for (File inputFile : inputFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                BufferedReader br = FileUtil.getReader(inputFile);
                 String line;
                 while ((line = br.readLine()) != null) {
                     totalSampleCount++;
@@ -75,7 +74,7 @@ public class Collector {
             int fileSize = inputFileList.size();
             Map<Integer, List<String>> lineListMap = new HashMap<>();
             for (int i = 0; i < fileSize; i++) {
-                BufferedReader br = new BufferedReader(new FileReader(inputFileList.remove(0)));
+                BufferedReader br = FileUtil.getReader(inputFileList.get(i));
                 String line;
                 while ((line = br.readLine()) != null) {
                     String[] elements = line.split(Config.FIRST_DELIMITER);
@@ -112,7 +111,7 @@ public class Collector {
             int fileSize = inputFileList.size();
             Map<String, List<String>> lineListMap = new HashMap<>();
             for (int i = 0; i < fileSize; i++) {
-                BufferedReader br = new BufferedReader(new FileReader(inputFileList.remove(0)));
+                BufferedReader br = FileUtil.getReader(inputFileList.get(i));
                 String line;
                 while ((line = br.readLine()) != null) {
                     String[] elements = line.split(Config.FIRST_DELIMITER);
@@ -138,7 +137,7 @@ public class Collector {
         Map<String, List<Double[]>> paramListMap = new HashMap<>();
         try {
             for (File inputFile :inputFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                BufferedReader br = FileUtil.getReader(inputFile);
                 boolean first = true;
                 String line;
                 while ((line = br.readLine()) != null) {
@@ -195,7 +194,7 @@ public class Collector {
         Map<String, List<Double[]>> paramListMap = buildMinMaxMap(inputFileList, isTraining);
         try {
             for (File inputFile :inputFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                BufferedReader br = FileUtil.getReader(inputFile);
                 List<String> outputLineList = new ArrayList<>();
                 String line;
                 while ((line = br.readLine()) != null) {
@@ -224,7 +223,8 @@ public class Collector {
 
                 br.close();
                 String outputFilePath = isTraining ? outputDirPath + "/" + inputFile.getName()
-                        : outputDirPath + "/" + inputFile.getParentFile().getName() + "/" + inputFile.getName();
+                        : outputDirPath + "/" + FileUtil.getDirName(inputFile.getParentFile()) + "/"
+                        + inputFile.getName();
                 FileUtil.writeFile(outputLineList, outputFilePath);
             }
         } catch (Exception e) {
@@ -3,11 +3,14 @@ package sub;
 import common.Config;
 import common.FileUtil;
 import common.MiscUtil;
+import common.WriterPool;
 import model.HillProvostBestModel;
 import model.LogisticRegressionModel;
+import model.ModelFileReader;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import structure.Paper;
+import structure.PaperStore;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -30,6 +33,9 @@ public class FeatureExtractor {
                 "[input] input paper dir", options);
         MiscUtil.setOption(TRAIN_OPTION, false, false,
                 "[param, optional] training flag", options);
+        MiscUtil.setOption(Config.SEGMENT_OPTION, false, false,
+                "[param, optional] write each suffix dir of test features as one segment file (suffix"
+                        + Config.SEGMENT_FILE_EXTENSION + ")", options);
         MiscUtil.setOption(OUTPUT_DIR_OPTION, true, true,
                 "[output] output dir", options);
         return options;
@@ -39,23 +45,14 @@ public class FeatureExtractor {
         HillProvostBestModel.setOptions(options);
     }
 
-    private static List<Paper> getPaperList(String inputPaperDirPath) {
-        List<File> paperFileList = FileUtil.getFileList(inputPaperDirPath);
-        List<Paper> paperList = new ArrayList<>();
+    private static PaperStore getPaperStore(String inputPaperDirPath) {
         try {
-            for (File paperFile : paperFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(paperFile));
-                String line;
-                while ((line = br.readLine()) != null) {
-                    paperList.add(new Paper(line));
-                }
-                br.close();
-            }
+            return new PaperStore(FileUtil.getFileList(inputPaperDirPath));
         } catch (Exception e) {
-            System.err.println("Exception @ getPaperList");
+            System.err.println("Exception @ getPaperStore");
             e.printStackTrace();
         }
-        return paperList;
+        return null;
     }
 
     private static String convertFeatureToString(Paper paper, LogisticRegressionModel model, boolean trainingMode) {
@@ -81,15 +78,16 @@ public class FeatureExtractor {
         return sb.toString();
     }
 
-    private static void extractTrainFeature(File modelFile, List<Paper> paperList, String outputDirPath) {
+    private static void extractTrainFeature(File modelFile, PaperStore paperStore, String outputDirPath) {
         try {
-            BufferedReader br = new BufferedReader(new FileReader(modelFile));
+            ModelFileReader reader = new ModelFileReader(modelFile, LogisticRegressionModel.TYPE);
             BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outputDirPath + modelFile.getName())));
-            String line;
-            while ((line = br.readLine()) != null) {
-                LogisticRegressionModel model = new LogisticRegressionModel(line);
-                for (Paper paper : paperList) {
-                    String vecStr = convertFeatureToString(paper, model, true);
+            while (reader.next()) {
+                LogisticRegressionModel model = reader.binary ? new LogisticRegressionModel(reader.getInput())
+                        : new LogisticRegressionModel(reader.getLine());
+                int paperSize = paperStore.size();
+                for (int i = 0; i < paperSize; i++) {
+                    String vecStr = convertFeatureToString(paperStore.getPaper(i), model, true);
                     if (vecStr != null) {
                         bw.write(vecStr);
                         bw.newLine();
@@ -98,21 +96,24 @@ public class FeatureExtractor {
             }
 
             bw.close();
-            br.close();
+            reader.close();
         } catch (Exception e) {
             System.err.println("Exception @ extractTrainFeature");
             e.printStackTrace();
         }
     }
 
-    private static void extractTestFeature(File modelFile, List<Paper> paperList, boolean first, String outputDirPath) {
+    private static void extractTestFeature(File modelFile, PaperStore paperStore, boolean first, WriterPool writerPool,
+                                           String outputDirPath) {
         try {
             Map<String, List<String>> outputLineListMap = new HashMap<>();
-            BufferedReader br = new BufferedReader(new FileReader(modelFile));
-            String line;
-            while ((line = br.readLine()) != null) {
-                LogisticRegressionModel model = new LogisticRegressionModel(line);
-                for (Paper paper : paperList) {
+            ModelFileReader reader = new ModelFileReader(modelFile, LogisticRegressionModel.TYPE);
+            while (reader.next()) {
+                LogisticRegressionModel model = reader.binary ? new LogisticRegressionModel(reader.getInput())
+                        : new LogisticRegressionModel(reader.getLine());
+                int paperSize = paperStore.size();
+                for (int i = 0; i < paperSize; i++) {
+                    Paper paper = paperStore.getPaper(i);
                     if (!outputLineListMap.containsKey(paper.id)) {
                         List<String> outputLineList = new ArrayList<>();
                         if (first) {
@@ -128,11 +129,16 @@ public class FeatureExtractor {
                 }
             }
 
-            br.close();
+            reader.close();
             for (String paperId : outputLineListMap.keySet()) {
                 String suffix = paperId.substring(paperId.length() - SUFFIX_SIZE);
                 List<String> outputLineList = outputLineListMap.get(paperId);
-                FileUtil.overwriteFile(outputLineList, first, outputDirPath + "/" + suffix + "/" + paperId);
+                String outputFilePath = outputDirPath + "/" + suffix + "/" + paperId;
+                if (writerPool != null) {
+                    writerPool.writeRecord(outputFilePath, outputLineList);
+                } else {
+                    FileUtil.overwriteFile(outputLineList, first, outputFilePath);
+                }
             }
         } catch (Exception e) {
             System.err.println("Exception @ extractTestFeature");
@@ -141,18 +147,29 @@ public class FeatureExtractor {
     }
 
     private static void extract(String inputPaperDirPath, String inputModelDirPath, boolean trainingMode,
-                                String outputDirPath) {
-        List<Paper> paperList = getPaperList(inputPaperDirPath);
+                                boolean segmentMode, String outputDirPath) {
+        PaperStore paperStore = getPaperStore(inputPaperDirPath);
         List<File> modelFileList = FileUtil.getFileList(inputModelDirPath);
         FileUtil.makeDirIfNotExist(outputDirPath);
+        WriterPool writerPool = segmentMode && !trainingMode ?
+                new WriterPool(WriterPool.DEFAULT_MAX_OPEN_SIZE, WriterPool.DEFAULT_BUFFER_SIZE) : null;
         int modelFileSize = modelFileList.size();
         for (int i = 0; i < modelFileSize; i++) {
-            File modelFile = modelFileList.remove(0);
+            File modelFile = modelFileList.get(i);
             System.out.println("Stage " + String.valueOf(i + 1) + "/" + String.valueOf(modelFileSize));
             if (trainingMode) {
-                extractTrainFeature(modelFile, paperList, outputDirPath);
+                extractTrainFeature(modelFile, paperStore, outputDirPath);
             } else {
-                extractTestFeature(modelFile, paperList, i == 0, outputDirPath);
+                extractTestFeature(modelFile, paperStore, i == 0, writerPool, outputDirPath);
+            }
+        }
+
+        if (writerPool != null) {
+            try {
+                writerPool.close();
+            } catch (Exception e) {
+                System.err.println("Exception @ extract");
+                e.printStackTrace();
             }
         }
     }
@@ -164,7 +181,8 @@ public class FeatureExtractor {
         String inputPaperDirPath = cl.getOptionValue(INPUT_PAPER_OPTION);
         String inputModelDirPath = cl.getOptionValue(INPUT_MODEL_OPTION);
         boolean trainingMode = cl.hasOption(TRAIN_OPTION);
+        boolean segmentMode = cl.hasOption(Config.SEGMENT_OPTION);
         String outputDirPath = cl.getOptionValue(OUTPUT_DIR_OPTION);
-        extract(inputPaperDirPath, inputModelDirPath, trainingMode, outputDirPath);
+        extract(inputPaperDirPath, inputModelDirPath, trainingMode, segmentMode, outputDirPath);
     }
 }
@@ -2,6 +2,8 @@ package sub;
 
 import common.FileUtil;
 import common.MiscUtil;
+import model.MappedModelFile;
+import model.ModelFileReader;
 import model.MultiNaiveBayesModel;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
@@ -17,6 +19,7 @@ public class LogLikelihoodEstimator {
     private static final String MODEL_DIR_OPTION = "model";
     private static final String TEST_DIR_OPTION = "test";
     private static final String MIN_PAPER_SIZE_OPTION = "mps";
+    private static final String MMAP_OPTION = "mmap";
     private static final int DEFAULT_MIN_PAPER_SIZE = 1;
 
     private static Options getOptions() {
@@ -26,6 +29,8 @@ public class LogLikelihoodEstimator {
         MiscUtil.setOption(MIN_PAPER_SIZE_OPTION, true, false,
                 "[param, optional] minimum number of papers each author requires to have, default = "
                         + String.valueOf(DEFAULT_MIN_PAPER_SIZE), options);
+        MiscUtil.setOption(MMAP_OPTION, false, false,
+                "[param, optional] memory-map text model files and parse models of true authors on demand", options);
         return options;
     }
 
@@ -33,22 +38,27 @@ public class LogLikelihoodEstimator {
         MultiNaiveBayesModel.setOptions(options);
     }
 
-    public static Pair<Integer, List<MultiNaiveBayesModel>> readModelFile(File modelFile,
-                                                                          CommandLine cl, int minPaperSize) {
+    // if mappedFileMap is not null, text model files are memory-mapped and registered to it by author ID
+    public static Pair<Integer, List<MultiNaiveBayesModel>> readModelFile(File modelFile, CommandLine cl,
+                                                                          int minPaperSize,
+                                                                          Map<String, MappedModelFile> mappedFileMap) {
         System.out.println("\tStart:\treading author files");
         List<MultiNaiveBayesModel> modelList = new ArrayList<>();
         int modelCount = 0;
         try {
-            BufferedReader br = new BufferedReader(new FileReader(modelFile));
-            String line;
-            while ((line = br.readLine()) != null) {
+            ModelFileReader reader = new ModelFileReader(modelFile, MultiNaiveBayesModel.TYPE, mappedFileMap != null);
+            while (reader.next()) {
                 modelCount++;
-                MultiNaiveBayesModel model = new MultiNaiveBayesModel(line, cl);
+                MultiNaiveBayesModel model = reader.binary ? new MultiNaiveBayesModel(reader.getInput(), cl)
+                        : new MultiNaiveBayesModel(reader.getLine(), cl);
                 if (model.paperIds.length >= minPaperSize) {
                     modelList.add(model);
+                    if (reader.getMappedFile() != null) {
+                        mappedFileMap.put(model.authorId, reader.getMappedFile());
+                    }
                 }
             }
-            br.close();
+            reader.close();
         } catch (Exception e) {
             System.err.println("Exception @ readModelFile");
             e.printStackTrace();
@@ -60,10 +70,11 @@ public class LogLikelihoodEstimator {
 
     private static int buildMaps(File testFile, List<MultiNaiveBayesModel> modelList,
                                   Map<String, Double> totalProbMap,
-                                  Map<String, MultiNaiveBayesModel> modelMap) {
+                                  Map<String, MultiNaiveBayesModel> modelMap,
+                                  Map<String, MappedModelFile> mappedFileMap) {
         int testPaperCount = 0;
         try {
-            BufferedReader br = new BufferedReader(new FileReader(testFile));
+            BufferedReader br = FileUtil.getReader(testFile);
             String line;
             while ((line = br.readLine()) != null) {
                 Paper paper = new Paper(line);
@@ -72,7 +83,10 @@ public class LogLikelihoodEstimator {
                     double score = Math.exp(model.estimate(paper, true));
                     double totalProb = !totalProbMap.containsKey(paper.id) ? score : score + totalProbMap.get(paper.id);
                     totalProbMap.put(paper.id, totalProb);
-                    modelMap.put(model.authorId, model);
+                    // models in memory-mapped files are parsed again when they are needed
+                    if (!mappedFileMap.containsKey(model.authorId)) {
+                        modelMap.put(model.authorId, model);
+                    }
                 }
             }
             br.close();
@@ -83,20 +97,28 @@ public class LogLikelihoodEstimator {
         return testPaperCount;
     }
 
+    private static MultiNaiveBayesModel getModel(String authorId, Map<String, MultiNaiveBayesModel> modelMap,
+                                                 Map<String, MappedModelFile> mappedFileMap, CommandLine cl) {
+        MappedModelFile mappedFile = mappedFileMap.get(authorId);
+        return mappedFile != null ? new MultiNaiveBayesModel(mappedFile.getLine(authorId), cl) : modelMap.get(authorId);
+    }
+
     private static double calcLogLikelihood(File testFile, Map<String, Double> totalProbMap,
-                              Map<String, MultiNaiveBayesModel> modelMap) {
+                                            Map<String, MultiNaiveBayesModel> modelMap,
+                                            Map<String, MappedModelFile> mappedFileMap, CommandLine cl) {
         double logLikelihood = 0.0d;
         try {
-            BufferedReader br = new BufferedReader(new FileReader(testFile));
+            BufferedReader br = FileUtil.getReader(testFile);
             String line;
             while ((line = br.readLine()) != null) {
                 Paper paper = new Paper(line);
                 Set<String> authorIdSet = paper.getAuthorIdSet();
                 for (String authorId : authorIdSet) {
-                    if (modelMap.containsKey(authorId) && totalProbMap.containsKey(paper.id)) {
+                    if ((modelMap.containsKey(authorId) || mappedFileMap.containsKey(authorId))
+                            && totalProbMap.containsKey(paper.id)) {
                         double totalProb = totalProbMap.get(paper.id);
                         if (totalProb > 0.0d) {
-                            MultiNaiveBayesModel model = modelMap.get(authorId);
+                            MultiNaiveBayesModel model = getModel(authorId, modelMap, mappedFileMap, cl);
                             logLikelihood += model.estimate(paper, true) - Math.log(totalProb);
                         }
                     }
@@ -110,21 +132,24 @@ public class LogLikelihoodEstimator {
         return logLikelihood;
     }
 
-    private static void estimate(String modelDirPath, String testDirPath, CommandLine cl, int minPaperSize) {
+    private static void estimate(String modelDirPath, String testDirPath, CommandLine cl, int minPaperSize,
+                                 boolean mapped) {
         List<File> testFileList = FileUtil.getFileList(testDirPath);
         List<File> modelFileList = FileUtil.getFileList(modelDirPath);
         Collections.sort(modelFileList);
         Map<String, Double> totalProbMap = new HashMap<>();
         Map<String, MultiNaiveBayesModel> modelMap = new HashMap<>();
+        Map<String, MappedModelFile> mappedFileMap = new HashMap<>();
         int testPaperCount = 0;
         int listSize = modelFileList.size();
         for (int i = 0; i < listSize; i++) {
             File modelFile = modelFileList.get(i);
             System.out.println("Stage A " + String.valueOf(i + 1) + "/" + String.valueOf(listSize));
-            Pair<Integer, List<MultiNaiveBayesModel>> pair = readModelFile(modelFile, cl, minPaperSize);
+            Pair<Integer, List<MultiNaiveBayesModel>> pair =
+                    readModelFile(modelFile, cl, minPaperSize, mapped ? mappedFileMap : null);
             List<MultiNaiveBayesModel> modelList = pair.second;
             for (File testFile : testFileList) {
-                testPaperCount += buildMaps(testFile, modelList, totalProbMap, modelMap);
+                testPaperCount += buildMaps(testFile, modelList, totalProbMap, modelMap, mappedFileMap);
             }
         }
 
@@ -132,14 +157,14 @@ public class LogLikelihoodEstimator {
         int availableCount = 0;
         double logLikelihood = 0.0d;
         for (int i = 0; i < listSize; i++) {
-            File modelFile = modelFileList.remove(0);
+            File modelFile = modelFileList.get(i);
             System.out.println("Stage B " + String.valueOf(i + 1) + "/" + String.valueOf(listSize));
-            Pair<Integer, List<MultiNaiveBayesModel>> pair = readModelFile(modelFile, cl, minPaperSize);
+            Pair<Integer, List<MultiNaiveBayesModel>> pair = readModelFile(modelFile, cl, minPaperSize, null);
             List<MultiNaiveBayesModel> modelList = pair.second;
             modelCount += pair.first;
             availableCount += modelList.size();
             for (File testFile : testFileList) {
-                logLikelihood += calcLogLikelihood(testFile, totalProbMap, modelMap);
+                logLikelihood += calcLogLikelihood(testFile, totalProbMap, modelMap, mappedFileMap, cl);
             }
         }
 
@@ -157,6 +182,6 @@ public class LogLikelihoodEstimator {
         String testDirPath = cl.getOptionValue(TEST_DIR_OPTION);
         int minPaperSize = cl.hasOption(MIN_PAPER_SIZE_OPTION) ?
                 Integer.parseInt(cl.getOptionValue(MIN_PAPER_SIZE_OPTION)) : DEFAULT_MIN_PAPER_SIZE;
-        estimate(modelDirPath, testDirPath, cl, minPaperSize);
+        estimate(modelDirPath, testDirPath, cl, minPaperSize, cl.hasOption(MMAP_OPTION));
     }
 }
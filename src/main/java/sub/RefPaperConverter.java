@@ -65,18 +65,18 @@ public class RefPaperConverter {
             int dirSize = inputDirList.size();
             for (int i = 0; i < dirSize; i++) {
                 System.out.println("\tStage " + String.valueOf(i + 1));
-                File inputDir = inputDirList.remove(0);
-                String baseOutputDirPath = outputDirPath + inputDir.getName() + "/";
+                File inputDir = inputDirList.get(i);
+                String baseOutputDirPath = outputDirPath + FileUtil.getDirName(inputDir) + "/";
                 FileUtil.makeDirIfNotExist(baseOutputDirPath);
                 List<File> inputFileList = FileUtil.getFileListR(inputDir.getPath());
                 for (File inputFile : inputFileList) {
-                    BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                    BufferedReader br = FileUtil.getReader(inputFile);
                     List<String> outputLineList = new ArrayList<>();
                     String line;
                     while ((line = br.readLine()) != null) {
                         Paper paper = new Paper(line);
                         StringBuilder sb = new StringBuilder();
-                        for (String refPaperId : paper.refPaperIds) {
+                        for (String refPaperId : paper.getRefPaperIdStrs()) {
                             if (!refPaperIdSet.contains(refPaperId)) {
                                 refPaperIdSet.add(refPaperId);
                                 if (paperMap.containsKey(refPaperId)) {
@@ -126,13 +126,13 @@ public class RefPaperConverter {
             Set<String> refPaperIdSet = new HashSet<>();
             int hitCount = 0;
             for (File inputFile : inputFileList) {
-                BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                BufferedReader br = FileUtil.getReader(inputFile);
                 BufferedWriter bw = new BufferedWriter(new FileWriter(outputDirPath + inputFile.getName()));
                 String line;
                 while ((line = br.readLine()) != null) {
                     Paper paper = new Paper(line);
                     StringBuilder sb = new StringBuilder();
-                    for (String refPaperId : paper.refPaperIds) {
+                    for (String refPaperId : paper.getRefPaperIdStrs()) {
                         if (!refPaperIdSet.contains(refPaperId)) {
                             refPaperIdSet.add(refPaperId);
                             if (paperMap.containsKey(refPaperId)) {
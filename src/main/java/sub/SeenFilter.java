@@ -26,7 +26,7 @@ public class SeenFilter {
     private static void filter(File testFile, Set<String> authorIdSet, String outputDirPath) {
         try {
             File outputFile = new File(outputDirPath + "/" + testFile.getName());
-            BufferedReader br = new BufferedReader(new FileReader(testFile));
+            BufferedReader br = FileUtil.getReader(testFile);
             BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile));
             String line;
             while ((line = br.readLine()) != null) {
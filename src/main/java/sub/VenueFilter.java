@@ -3,6 +3,7 @@ package sub;
 import common.Config;
 import common.FileUtil;
 import common.MiscUtil;
+import common.WriterPool;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
 import structure.Paper;
@@ -10,8 +11,10 @@ import structure.Paper;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public class VenueFilter {
     private static final String VENUE_ID_LIST_FILE_OPTION = "vid";
@@ -50,6 +53,9 @@ public class VenueFilter {
                 "[param, optional] end year for testing, -" + TEST_START_YEAR_OPTION + " is required", options);
         MiscUtil.setOption(TEST_OUTPUT_DIR_OPTION, true, false,
                 "[output, optional] filtered test dir, -" + TEST_INPUT_DIR_OPTION + " is required", options);
+        MiscUtil.setOption(Config.SEGMENT_OPTION, false, false,
+                "[param, optional] write each suffix dir of filtered training dir as one segment file (suffix"
+                        + Config.SEGMENT_FILE_EXTENSION + ")", options);
         return options;
     }
 
@@ -71,8 +77,11 @@ public class VenueFilter {
     }
 
     private static void filterTrainData(String trainInputDirPath, Set<String> vidSet, int minHitCount,
-                                        int trainStartYear, int trainEndYear, String trainOutputDirPath) {
+                                        int trainStartYear, int trainEndYear, boolean segmentMode,
+                                        String trainOutputDirPath) {
         try {
+            WriterPool writerPool = segmentMode ?
+                    new WriterPool(WriterPool.DEFAULT_MAX_OPEN_SIZE, WriterPool.DEFAULT_BUFFER_SIZE) : null;
             List<File> inputDirList = FileUtil.getDirList(trainInputDirPath);
             if (inputDirList.size() == 0) {
                 inputDirList.add(new File(trainInputDirPath));
@@ -82,14 +91,14 @@ public class VenueFilter {
                         && trainStartYear <= trainEndYear;
             int dirSize = inputDirList.size();
             for (int i = 0; i < dirSize; i++) {
-                File dir = inputDirList.remove(0);
-                List<File> inputFileList = FileUtil.getFileListR(dir.getPath());
-                int fileSize = inputFileList.size();
-                for (int j = 0; j < fileSize; j++) {
-                    File inputFile = inputFileList.remove(0);
+                File dir = inputDirList.get(i);
+                Stream<File> inputFileStream = FileUtil.walkFiles(dir.getPath());
+                Iterator<File> iterator = inputFileStream.iterator();
+                while (iterator.hasNext()) {
+                    File inputFile = iterator.next();
                     int hitCount = 0;
                     List<String> lineList = new ArrayList<>();
-                    BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                    BufferedReader br = FileUtil.getReader(inputFile);
                     String line;
                     while ((line = br.readLine()) != null) {
                         lineList.add(line);
@@ -109,6 +118,11 @@ public class VenueFilter {
                         String fileName = inputFile.getName();
                         String suffix = fileName.substring(fileName.length() - SUFFIX_SIZE);
                         File outputFile = new File(trainOutputDirPath + suffix + "/" + fileName);
+                        if (writerPool != null) {
+                            writerPool.writeRecord(outputFile.getPath(), lineList);
+                            continue;
+                        }
+
                         FileUtil.makeParentDir(outputFile.getPath());
                         BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile));
                         for (String outputLine : lineList) {
@@ -118,6 +132,12 @@ public class VenueFilter {
                         bw.close();
                     }
                 }
+
+                inputFileStream.close();
+            }
+
+            if (writerPool != null) {
+                writerPool.close();
             }
         } catch (Exception e) {
             System.err.println("Exception @ filterTrainData");
@@ -138,13 +158,13 @@ public class VenueFilter {
             FileUtil.makeDirIfNotExist(testOutputDirPath);
             int dirSize = inputDirList.size();
             for (int i = 0; i < dirSize; i++) {
-                File dir = inputDirList.remove(0);
-                List<File> inputFileList = FileUtil.getFileListR(dir.getPath());
-                int fileSize = inputFileList.size();
-                for (int j = 0; j < fileSize; j++) {
-                    File inputFile = inputFileList.remove(0);
+                File dir = inputDirList.get(i);
+                Stream<File> inputFileStream = FileUtil.walkFiles(dir.getPath());
+                Iterator<File> iterator = inputFileStream.iterator();
+                while (iterator.hasNext()) {
+                    File inputFile = iterator.next();
                     File outputFile = new File(testOutputDirPath + inputFile.getName());
-                    BufferedReader br = new BufferedReader(new FileReader(inputFile));
+                    BufferedReader br = FileUtil.getReader(inputFile);
                     BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile));
                     String line;
                     while ((line = br.readLine()) != null) {
@@ -163,6 +183,8 @@ public class VenueFilter {
                     bw.close();
                     br.close();
                 }
+
+                inputFileStream.close();
             }
         } catch (Exception e) {
             System.err.println("Exception @ filterTestData");
@@ -172,14 +194,16 @@ public class VenueFilter {
 
     private static void filter(String vidListFilePath, int minHitCount, String trainInputDirPath,
                                String testInputDirPath, int trainStartYear, int trainEndYear, int testStartYear,
-                               int testEndYear, String trainOutputDirPath, String testOutputDirPath) {
+                               int testEndYear, boolean segmentMode, String trainOutputDirPath,
+                               String testOutputDirPath) {
         Set<String> vidSet = readVenueIdListFile(vidListFilePath);
         if (vidSet.size() == 0) {
             return;
         }
 
         if (trainInputDirPath != null && trainOutputDirPath != null) {
-            filterTrainData(trainInputDirPath, vidSet, minHitCount, trainStartYear, trainEndYear, trainOutputDirPath);
+            filterTrainData(trainInputDirPath, vidSet, minHitCount, trainStartYear, trainEndYear, segmentMode,
+                    trainOutputDirPath);
         }
 
         if (testInputDirPath != null && testOutputDirPath != null) {
@@ -209,7 +233,8 @@ public class VenueFilter {
                 cl.getOptionValue(TRAIN_OUTPUT_DIR_OPTION) : null;
         String testOutputDirPath = cl.hasOption(TEST_OUTPUT_DIR_OPTION) ?
                 cl.getOptionValue(TEST_OUTPUT_DIR_OPTION) : null;
+        boolean segmentMode = cl.hasOption(Config.SEGMENT_OPTION);
         filter(vidListFilePath, minHitCount, trainInputDirPath, testInputDirPath, trainStartYear, trainEndYear,
-                testStartYear, testEndYear, trainOutputDirPath, testOutputDirPath);
+                testStartYear, testEndYear, segmentMode, trainOutputDirPath, testOutputDirPath);
     }
 }
@@ -0,0 +1,104 @@
+package common;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FieldCursorTest {
+    private static final String[] DOUBLE_STRS = {
+            "0", "-0", "+0", "0.0", "-0.0", "-0.00", ".5", "-.5", "5.", "+1.25", "-1.25",
+            "0.1", "0.2", "0.3", "1.1", "123.456", "-9.87654321", "3.141592653589793", "2.718281828459045",
+            "1e22", "1e-22", "1E22", "1E-22", "9e22", "-9e-22", "1.5e22", "1.5e-22", "123456789e22", "123456789e-22",
+            "1e23", "1e-23", "-1e23", "1.5e23", "1E308", "1.7976931348623157E308", "-1.7976931348623157E308",
+            "1E309", "-1E309", "4.9E-324", "2.2250738585072014E-308", "1E-400", "1e0", "1e+5", "1e-0", "1e022",
+            "9007199254740991", "9007199254740992", "9007199254740993", "-9007199254740993", "18014398509481985",
+            "123456789012345678901234567890", "0.1234567890123456789", "1.00000000000000000000001",
+            "0000000000000000000000123", "0.000000000000000000000000001", "1e1000", "1e-1000",
+            "NaN", "Infinity", "-Infinity", "1.5d", "1.5f", "0x1p3", " 1.5", "1.5 "
+    };
+    private static final String[] INVALID_DOUBLE_STRS = {"", "-", "+", ".", "e5", "1e", "1e+", "1.2.3", "abc", "1e5x"};
+
+    private static double parseDouble(String str) {
+        FieldCursor cursor = new FieldCursor(Config.FIRST_DELIMITER);
+        cursor.reset("x" + Config.FIRST_DELIMITER + str + Config.FIRST_DELIMITER + "y");
+        cursor.seek(1);
+        return cursor.parseDouble();
+    }
+
+    private static void assertSameDouble(String str) {
+        // bits are compared to tell -0.0 from 0.0
+        assertEquals(str, Double.doubleToRawLongBits(Double.parseDouble(str)),
+                Double.doubleToRawLongBits(parseDouble(str)));
+    }
+
+    @Test
+    public void testParseDouble() {
+        for (String str : DOUBLE_STRS) {
+            assertSameDouble(str);
+        }
+    }
+
+    @Test
+    public void testParseInvalidDouble() {
+        for (String str : INVALID_DOUBLE_STRS) {
+            try {
+                parseDouble(str);
+                fail(str);
+            } catch (NumberFormatException e) {
+                // same as Double.parseDouble
+            }
+        }
+    }
+
+    @Test
+    public void testParseRandomDouble() {
+        Random random = new Random(1L);
+        for (int i = 0; i < 100000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value)) {
+                assertSameDouble(String.valueOf(value));
+            }
+
+            long mantissa = random.nextLong() >>> (1 + random.nextInt(63));
+            int exponent = random.nextInt(61) - 30;
+            String str = (random.nextBoolean() ? "-" : "") + String.valueOf(mantissa) + "e" + String.valueOf(exponent);
+            assertSameDouble(str);
+            String digits = String.valueOf(mantissa);
+            int pointIdx = random.nextInt(digits.length() + 1);
+            assertSameDouble(digits.substring(0, pointIdx) + "." + digits.substring(pointIdx) + "0");
+        }
+    }
+
+    @Test
+    public void testParseInt() {
+        String[] strs = {"0", "-0", "+7", "2016", "02016", "-123456789", "123456789", "2147483647", "-2147483648"};
+        for (String str : strs) {
+            FieldCursor cursor = new FieldCursor(Config.FIRST_DELIMITER);
+            cursor.reset(str);
+            cursor.next();
+            assertEquals(str, Integer.parseInt(str), cursor.parseInt());
+        }
+    }
+
+    @Test
+    public void testNestedFields() {
+        FieldCursor elementCursor = new FieldCursor(Config.FIRST_DELIMITER);
+        FieldCursor idCursor = new FieldCursor(Config.SECOND_DELIMITER);
+        elementCursor.reset("p1" + Config.FIRST_DELIMITER + "a1" + Config.SECOND_DELIMITER + "a2"
+                + Config.FIRST_DELIMITER);
+        assertEquals(3, elementCursor.countFields());
+        elementCursor.seek(1);
+        idCursor.reset(elementCursor);
+        idCursor.next();
+        assertEquals("a1", idCursor.getString());
+        idCursor.next();
+        assertEquals("a2", idCursor.getString());
+        assertEquals(false, idCursor.next());
+        elementCursor.next();
+        assertEquals("", elementCursor.getString());
+        assertEquals(false, elementCursor.next());
+    }
+}
@@ -0,0 +1,167 @@
+package common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SegmentFileTest {
+    private static final int BUFFER_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> createLineList(String id, int size) {
+        List<String> lineList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            lineList.add(id + Config.FIRST_DELIMITER + String.valueOf(i) + Config.FIRST_DELIMITER + "\u00e9\u3042");
+        }
+        return lineList;
+    }
+
+    private static void write(SegmentWriter writer, Map<String, List<String>> expectedMap, String id, int size)
+            throws IOException {
+        List<String> lineList = createLineList(id, size);
+        writer.writeRecord(id, lineList);
+        if (!expectedMap.containsKey(id)) {
+            expectedMap.put(id, new ArrayList<>());
+        }
+        expectedMap.get(id).addAll(lineList);
+    }
+
+    // both random access by ID and iteration in order give the expected lines
+    private static void assertRecords(File file, Map<String, List<String>> expectedMap, int recordSize)
+            throws IOException {
+        SegmentReader reader = new SegmentReader(file);
+        assertEquals(recordSize, reader.getRecordSize());
+        assertEquals(new ArrayList<>(expectedMap.keySet()), reader.getIdList());
+        for (Map.Entry<String, List<String>> entry : expectedMap.entrySet()) {
+            assertEquals(entry.getValue(), reader.readLines(entry.getKey()));
+        }
+
+        assertNull(reader.readLines("unknown"));
+        Map<String, List<String>> iteratedMap = new LinkedHashMap<>();
+        int count = 0;
+        while (reader.next()) {
+            if (!iteratedMap.containsKey(reader.getId())) {
+                iteratedMap.put(reader.getId(), new ArrayList<>());
+            }
+            iteratedMap.get(reader.getId()).addAll(reader.getLineList());
+            count++;
+        }
+
+        assertEquals(recordSize, count);
+        assertEquals(expectedMap, iteratedMap);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = new File(folder.getRoot(), "000" + Config.SEGMENT_FILE_EXTENSION);
+        Map<String, List<String>> expectedMap = new LinkedHashMap<>();
+        SegmentWriter writer = new SegmentWriter(file, false, BUFFER_SIZE);
+        for (int i = 0; i < 100; i++) {
+            write(writer, expectedMap, "ID" + String.valueOf(i), i % 5);
+        }
+
+        // more than one record of an ID
+        write(writer, expectedMap, "ID3", 2);
+        writer.close();
+        assertTrue(SegmentReader.checkIfSegment(file));
+        assertRecords(file, expectedMap, 101);
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        File file = new File(folder.getRoot(), "000" + Config.SEGMENT_FILE_EXTENSION);
+        Map<String, List<String>> expectedMap = new LinkedHashMap<>();
+        SegmentWriter writer = new SegmentWriter(file, false, BUFFER_SIZE);
+        write(writer, expectedMap, "A", 3);
+        write(writer, expectedMap, "B", 3);
+        writer.close();
+        writer = new SegmentWriter(file, true, BUFFER_SIZE);
+        write(writer, expectedMap, "A", 2);
+        write(writer, expectedMap, "C", 1);
+        writer.close();
+        assertRecords(file, expectedMap, 4);
+        // a truncated file is written from scratch
+        expectedMap.clear();
+        writer = new SegmentWriter(file, false, BUFFER_SIZE);
+        write(writer, expectedMap, "D", 1);
+        writer.close();
+        assertRecords(file, expectedMap, 1);
+    }
+
+    @Test
+    public void testSuspend() throws IOException {
+        File suspendedFile = new File(folder.getRoot(), "000" + Config.SEGMENT_FILE_EXTENSION);
+        File file = new File(folder.getRoot(), "001" + Config.SEGMENT_FILE_EXTENSION);
+        Map<String, List<String>> expectedMap = new LinkedHashMap<>();
+        SegmentWriter suspendedWriter = new SegmentWriter(suspendedFile, false, BUFFER_SIZE);
+        SegmentWriter writer = new SegmentWriter(file, false, BUFFER_SIZE);
+        for (int i = 0; i < 50; i++) {
+            String id = "ID" + String.valueOf(i % 20);
+            suspendedWriter.writeRecord(id, createLineList(id, i % 3));
+            suspendedWriter.suspend();
+            suspendedWriter.reopen();
+            write(writer, expectedMap, id, i % 3);
+        }
+
+        // a suspended writer writes its footer when closed
+        suspendedWriter.suspend();
+        suspendedWriter.close();
+        writer.close();
+        assertRecords(suspendedFile, expectedMap, 50);
+        // only one footer is written however many times the writer was suspended
+        assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(suspendedFile.toPath()));
+    }
+
+    @Test
+    public void testCrashTail() throws IOException {
+        File file = new File(folder.getRoot(), "000" + Config.SEGMENT_FILE_EXTENSION);
+        Map<String, List<String>> expectedMap = new LinkedHashMap<>();
+        SegmentWriter writer = new SegmentWriter(file, false, BUFFER_SIZE);
+        for (int i = 0; i < 10; i++) {
+            write(writer, expectedMap, "ID" + String.valueOf(i), 2);
+        }
+
+        writer.close();
+        long closedLength = file.length();
+        // records appended by a writer that is never closed are ignored
+        writer = new SegmentWriter(file, true, BUFFER_SIZE);
+        for (int i = 0; i < 100; i++) {
+            writer.writeRecord("X" + String.valueOf(i), createLineList("X", 3));
+        }
+
+        writer.suspend();
+        assertTrue(file.length() > closedLength);
+        assertRecords(file, expectedMap, 10);
+        // a footer cut in the middle is ignored as well
+        writer.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - SegmentReader.TRAILER_SIZE / 2);
+        raf.close();
+        assertRecords(file, expectedMap, 10);
+        // appending after the crash tail keeps the records before it
+        writer = new SegmentWriter(file, true, BUFFER_SIZE);
+        write(writer, expectedMap, "ID0", 1);
+        write(writer, expectedMap, "Y", 1);
+        writer.close();
+        assertRecords(file, expectedMap, 12);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoFooter() throws IOException {
+        File file = new File(folder.getRoot(), "000" + Config.SEGMENT_FILE_EXTENSION);
+        SegmentWriter writer = new SegmentWriter(file, false, BUFFER_SIZE);
+        writer.writeRecord("A", createLineList("A", 100));
+        writer.suspend();
+        new SegmentReader(file);
+    }
+}
@@ -0,0 +1,95 @@
+package common;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SortUtilTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeInputFile(List<String> lineList) throws IOException {
+        File inputFile = folder.newFile("input");
+        PrintWriter pw = new PrintWriter(inputFile);
+        for (String line : lineList) {
+            pw.println(line);
+        }
+        pw.close();
+        return inputFile;
+    }
+
+    // lines of the same key are in the order of the input file however many runs they are split into
+    private void assertStableSort(int lineSize, int keySize, int bufferSize, int threadSize) throws IOException {
+        Random random = new Random(1L);
+        List<String> lineList = new ArrayList<>();
+        for (int i = 0; i < lineSize; i++) {
+            lineList.add("k" + String.valueOf(random.nextInt(keySize)) + Config.FIRST_DELIMITER + String.valueOf(i));
+        }
+
+        File inputFile = writeInputFile(lineList);
+        File tmpDir = new File(folder.getRoot(), "tmp");
+        File sortedFile = SortUtil.sort(inputFile, line -> line, bufferSize, threadSize, tmpDir.getPath(), "test-");
+        List<String> expectedLineList = new ArrayList<>(lineList);
+        Collections.sort(expectedLineList, SortUtil::compareKeys);
+        assertEquals(expectedLineList, Files.readAllLines(sortedFile.toPath()));
+        // runs are deleted or moved to the sorted file
+        assertArrayEquals(new String[]{sortedFile.getName()}, tmpDir.list());
+    }
+
+    @Test
+    public void testSortInMemory() throws IOException {
+        assertStableSort(1000, 50, 100000, 1);
+    }
+
+    @Test
+    public void testSortRuns() throws IOException {
+        assertStableSort(5000, 50, 300, 1);
+    }
+
+    @Test
+    public void testSortMultiPassRuns() throws IOException {
+        // more runs than merged at once
+        assertStableSort(20000, 200, 5, 1);
+    }
+
+    @Test
+    public void testSortThreads() throws IOException {
+        assertStableSort(5000, 50, 100, 4);
+    }
+
+    @Test
+    public void testSortEmpty() throws IOException {
+        File sortedFile = SortUtil.sort(writeInputFile(Collections.emptyList()), line -> line, 10,
+                new File(folder.getRoot(), "tmp").getPath(), "test-");
+        assertTrue(sortedFile.isFile());
+        assertEquals(0L, sortedFile.length());
+    }
+
+    @Test
+    public void testSkipLines() throws IOException {
+        File inputFile = writeInputFile(Arrays.asList("b" + Config.FIRST_DELIMITER + "1", "skip",
+                "a" + Config.FIRST_DELIMITER + "2", "b" + Config.FIRST_DELIMITER + "3"));
+        File sortedFile = SortUtil.sort(inputFile, line -> line.equals("skip") ? null : line, 1,
+                new File(folder.getRoot(), "tmp").getPath(), "test-");
+        assertEquals(Arrays.asList("a" + Config.FIRST_DELIMITER + "2", "b" + Config.FIRST_DELIMITER + "1",
+                "b" + Config.FIRST_DELIMITER + "3"), Files.readAllLines(sortedFile.toPath()));
+    }
+
+    @Test
+    public void testCompareKeys() {
+        assertTrue(SortUtil.compareKeys("a" + Config.FIRST_DELIMITER + "z", "ab" + Config.FIRST_DELIMITER + "a") < 0);
+        assertEquals(0, SortUtil.compareKeys("a" + Config.FIRST_DELIMITER + "z", "a" + Config.FIRST_DELIMITER + "a"));
+        assertEquals(0, SortUtil.compareKeys("a", "a" + Config.FIRST_DELIMITER + "a"));
+        assertEquals("a", SortUtil.getKey("a" + Config.FIRST_DELIMITER + "b" + Config.FIRST_DELIMITER + "c"));
+        assertEquals("b" + Config.FIRST_DELIMITER + "c",
+                SortUtil.getValue("a" + Config.FIRST_DELIMITER + "b" + Config.FIRST_DELIMITER + "c"));
+    }
+}